@@ -0,0 +1,132 @@
+package org.apache.cordova.videoeditor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Keeps the jobs that run at the same time within a memory and a codec
+ * budget. JobManager asks before starting a job: a job that fits is
+ * admitted, one that doesn't waits until running jobs give their share
+ * back, and one that could never fit is rejected once its input was
+ * probed, on the job thread.
+ *
+ * Costs are estimates from the probed resolution, see transcodeCost and
+ * thumbnailCost. A job is always admitted when nothing else runs, so a
+ * budget set too low can't stall the queue.
+ */
+public class AdmissionController {
+
+    public static final int DEFAULT_CODEC_BUDGET = 4;
+    public static final long MIN_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /** decoded frames in flight per stream, in the decoder and the encoder */
+    private static final int FRAMES_PER_STREAM = 10;
+    /** ARGB frames held by a thumbnail: the decoded frame and the scaled output */
+    private static final int BITMAPS_PER_THUMBNAIL = 2;
+    /** buffers of the decoder behind MediaMetadataRetriever */
+    private static final int FRAMES_PER_THUMBNAIL_DECODER = 4;
+
+    /**
+     * What a job holds while it runs.
+     */
+    public static class Cost {
+
+        public static final Cost NONE = new Cost(0, 0);
+
+        public final long memoryBytes;
+        public final int codecs;
+
+        public Cost(long memoryBytes, int codecs) {
+            this.memoryBytes = memoryBytes;
+            this.codecs = codecs;
+        }
+
+        @Override
+        public String toString() {
+            return (memoryBytes / (1024 * 1024)) + "MB, " + codecs + " codecs";
+        }
+    }
+
+    private final long memoryBudget;
+    private final int codecBudget;
+    private long memoryInUse = 0;
+    private int codecsInUse = 0;
+    private int running = 0;
+
+    /**
+     * @param memoryBudget bytes of frame buffers and bitmaps all running jobs may hold
+     * @param codecBudget  decoder and encoder instances all running jobs may hold
+     */
+    public AdmissionController(long memoryBudget, int codecBudget) {
+        this.memoryBudget = Math.max(MIN_MEMORY_BUDGET, memoryBudget);
+        this.codecBudget = Math.max(2, codecBudget);
+    }
+
+    /**
+     * Cost of transcoding a video of width x height with streams decoder
+     * and encoder pairs running at once, e.g. the parallel segments.
+     */
+    public static Cost transcodeCost(int width, int height, int streams) {
+        long yuvFrameBytes = (long) width * height * 3 / 2;
+        long textureBytes = (long) width * height * 4;
+        int count = Math.max(1, streams);
+        return new Cost(count * (yuvFrameBytes * FRAMES_PER_STREAM + textureBytes), count * 2);
+    }
+
+    /**
+     * Cost of extracting frames of a video of width x height into
+     * thumbnails, plus extraBytes for what the job keeps, e.g. a sprite
+     * sheet.
+     */
+    public static Cost thumbnailCost(int width, int height, long extraBytes) {
+        long argbFrameBytes = (long) width * height * 4;
+        long yuvFrameBytes = (long) width * height * 3 / 2;
+        return new Cost(argbFrameBytes * BITMAPS_PER_THUMBNAIL + yuvFrameBytes * FRAMES_PER_THUMBNAIL_DECODER
+                + Math.max(0, extraBytes), 1);
+    }
+
+    /**
+     * Error code if a job of this cost could never be admitted, null if it
+     * can run once enough other jobs finished.
+     */
+    public String reject(Cost cost) {
+        if (cost.codecs > codecBudget) {
+            return JobError.CODEC_BUDGET_EXCEEDED;
+        }
+        if (cost.memoryBytes > memoryBudget) {
+            return JobError.MEMORY_BUDGET_EXCEEDED;
+        }
+        return null;
+    }
+
+    /**
+     * Whether a job of this cost fits next to the running ones. If it does
+     * its share is taken until release.
+     */
+    public synchronized boolean tryAcquire(Cost cost) {
+        boolean fits = memoryInUse + cost.memoryBytes <= memoryBudget && codecsInUse + cost.codecs <= codecBudget;
+        if (!fits && running > 0) {
+            return false;
+        }
+        memoryInUse += cost.memoryBytes;
+        codecsInUse += cost.codecs;
+        running++;
+        return true;
+    }
+
+    public synchronized void release(Cost cost) {
+        memoryInUse = Math.max(0, memoryInUse - cost.memoryBytes);
+        codecsInUse = Math.max(0, codecsInUse - cost.codecs);
+        running = Math.max(0, running - 1);
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("memoryBudget", memoryBudget);
+        json.put("memoryInUse", memoryInUse);
+        json.put("codecBudget", codecBudget);
+        json.put("codecsInUse", codecsInUse);
+        return json;
+    }
+
+}
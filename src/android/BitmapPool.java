@@ -0,0 +1,78 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+/**
+ * Keeps released bitmaps around so that thumbnails of the same size reuse
+ * them instead of allocating a new bitmap for every frame. The pool holds at
+ * most maxBytes; bitmaps that don't fit are recycled.
+ */
+public class BitmapPool {
+
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private final long maxBytes;
+    private final Map<String, List<Bitmap>> free = new HashMap<String, List<Bitmap>>();
+    private long freeBytes = 0;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    private static String key(int width, int height, Bitmap.Config config) {
+        return width + "x" + height + ":" + config;
+    }
+
+    /**
+     * Returns a mutable bitmap of the given size, reused if possible. Its
+     * content is undefined.
+     */
+    public synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        List<Bitmap> bitmaps = free.get(key(width, height, config));
+        if (bitmaps != null && !bitmaps.isEmpty()) {
+            Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+            freeBytes -= bitmap.getByteCount();
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Hands a bitmap back to the pool. It must not be used afterwards.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() == null
+                || freeBytes + bitmap.getByteCount() > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        String key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        List<Bitmap> bitmaps = free.get(key);
+        if (bitmaps == null) {
+            bitmaps = new ArrayList<Bitmap>();
+            free.put(key, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        freeBytes += bitmap.getByteCount();
+    }
+
+    public synchronized void clear() {
+        for (List<Bitmap> bitmaps : free.values()) {
+            for (Bitmap bitmap : bitmaps) {
+                bitmap.recycle();
+            }
+        }
+        free.clear();
+        freeBytes = 0;
+    }
+
+}
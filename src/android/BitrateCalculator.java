@@ -0,0 +1,99 @@
+package org.apache.cordova.videoeditor;
+
+/**
+ * Picks a video bitrate for a target file size or quality level instead
+ * of a fixed videoBitrate.
+ *
+ * Sizes are budgeted as video + audio + a few percent of container
+ * overhead. When an encode still overshoots, corrected() scales the
+ * bitrate down by how much the video part missed.
+ */
+public class BitrateCalculator {
+
+    /** share of the file taken by the MP4 container */
+    public static final double CONTAINER_OVERHEAD = 0.02;
+    /** below this H.264 output is hardly watchable */
+    public static final int MIN_VIDEO_BITRATE = 100000;
+    /** how far a file may exceed its target before a second pass is worth it */
+    public static final double OVERSHOOT_TOLERANCE = 0.01;
+    /** safety margin applied to a corrected bitrate */
+    private static final double CORRECTION_MARGIN = 0.97;
+
+    public enum Quality {
+        LOW(0.05),
+        MEDIUM(0.08),
+        HIGH(0.12);
+
+        /** bits per pixel per frame */
+        final double bitsPerPixel;
+
+        Quality(double bitsPerPixel) {
+            this.bitsPerPixel = bitsPerPixel;
+        }
+
+        /**
+         * Returns the quality for "low", "medium" or "high", or null.
+         */
+        public static Quality parse(String value) {
+            for (Quality quality : values()) {
+                if (quality.name().equalsIgnoreCase(value)) {
+                    return quality;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final double durationSeconds;
+    private final int audioBitrate;
+
+    /**
+     * @param durationSeconds duration of the output
+     * @param audioBitrate    bitrate of the output audio track, 0 without audio
+     */
+    public BitrateCalculator(double durationSeconds, int audioBitrate) {
+        this.durationSeconds = durationSeconds;
+        this.audioBitrate = Math.max(0, audioBitrate);
+    }
+
+    /**
+     * Video bitrate that makes the output about targetSizeBytes large. May be
+     * below MIN_VIDEO_BITRATE, or even negative, if the target is too small
+     * for the duration.
+     */
+    public int forTargetSize(long targetSizeBytes) {
+        if (durationSeconds <= 0) {
+            throw new IllegalArgumentException("unknown duration, can't budget a target size");
+        }
+        double videoBits = targetSizeBytes * 8 * (1 - CONTAINER_OVERHEAD) - audioBitrate * durationSeconds;
+        return (int) Math.min(Integer.MAX_VALUE, videoBits / durationSeconds);
+    }
+
+    /**
+     * Video bitrate for a quality level at the given output size and frame rate.
+     */
+    public static int forQuality(Quality quality, int width, int height, int fps) {
+        double bitrate = (double) width * height * fps * quality.bitsPerPixel;
+        return (int) Math.max(MIN_VIDEO_BITRATE, Math.min(Integer.MAX_VALUE, bitrate));
+    }
+
+    public static boolean overshoots(long actualSizeBytes, long targetSizeBytes) {
+        return actualSizeBytes > targetSizeBytes * (1 + OVERSHOOT_TOLERANCE);
+    }
+
+    /**
+     * Video bitrate for another pass after an encode at bitrate produced
+     * actualSizeBytes instead of targetSizeBytes. Only the video part of
+     * the file is scaled; audio and container stay the same.
+     */
+    public int corrected(int bitrate, long actualSizeBytes, long targetSizeBytes) {
+        double audioBits = audioBitrate * durationSeconds;
+        double actualVideoBits = actualSizeBytes * 8 * (1 - CONTAINER_OVERHEAD) - audioBits;
+        double targetVideoBits = targetSizeBytes * 8 * (1 - CONTAINER_OVERHEAD) - audioBits;
+        if (actualVideoBits <= 0 || targetVideoBits <= 0) {
+            return MIN_VIDEO_BITRATE;
+        }
+        return (int) Math.max(MIN_VIDEO_BITRATE, bitrate * targetVideoBits / actualVideoBits * CORRECTION_MARGIN);
+    }
+
+}
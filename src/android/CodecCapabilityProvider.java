@@ -0,0 +1,17 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.List;
+
+/**
+ * Source of the encoders available on the device. The platform one is
+ * MediaCodecListProvider; tests can hand EncoderSelector a fixed table.
+ */
+public interface CodecCapabilityProvider {
+
+    /**
+     * Returns all encoders for the given mime type in the order the
+     * platform lists them, or an empty list.
+     */
+    List<EncoderInfo> getEncoders(String mime);
+
+}
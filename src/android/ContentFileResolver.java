@@ -0,0 +1,74 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLDecoder;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+/**
+ * FileResolver for the URLs the plugin receives from JS: content:// URIs
+ * are read through a descriptor from the ContentResolver, anything else
+ * has to be a file URL or path.
+ */
+public class ContentFileResolver implements FileResolver {
+
+    private final ContentResolver resolver;
+
+    public ContentFileResolver(ContentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    public MediaInput resolveInput(String url) throws IOException {
+        // decoding would break the escaped ids of document URIs, so content URIs are used as given
+        if (url.startsWith("content:")) {
+            return MediaInput.fromUri(resolver, Uri.parse(url));
+        }
+
+        String decoded = URLDecoder.decode(url, "UTF-8");
+
+        // Test to see if this is a valid URL first
+        @SuppressWarnings("unused")
+        URL testUrl = new URL(decoded);
+
+        File fp = fileFromUrl(decoded);
+        if (!fp.exists()) {
+            throw new FileNotFoundException( "" + url + " -> " + fp.getCanonicalPath());
+        }
+        if (!fp.canRead()) {
+            throw new IOException("can't read file: " + url + " -> " + fp.getCanonicalPath());
+        }
+        return MediaInput.fromFile(fp);
+    }
+
+    public File resolveOutputDirectory(String url) throws IOException {
+        File dir = fileFromUrl(URLDecoder.decode(url, "UTF-8"));
+        if (!dir.exists() && !dir.mkdirs()) {
+            return null;
+        }
+        return dir.isDirectory() ? dir : null;
+    }
+
+    /**
+     * The file of a decoded file URL, without its query. Anything that
+     * isn't a file URL is taken as a path.
+     */
+    static File fileFromUrl(String decoded) {
+        if (decoded.startsWith("file://")) {
+            int questionMark = decoded.indexOf("?");
+            if (questionMark < 0) {
+                return new File(decoded.substring(7, decoded.length()));
+            } else {
+                return new File(decoded.substring(7, questionMark));
+            }
+        } else if (decoded.startsWith("file:/")) {
+            // keep the slash, the path is absolute
+            return new File(decoded.substring(5, decoded.length()));
+        }
+        return new File(decoded);
+    }
+
+}
@@ -2,6 +2,7 @@ package org.apache.cordova.videoeditor;
 
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
+import android.os.Build;
 import android.util.Log;
 import net.ypresto.androidtranscoder.format.MediaFormatStrategy;
 import net.ypresto.androidtranscoder.format.OutputFormatUnavailableException;
@@ -14,14 +15,28 @@ import net.ypresto.androidtranscoder.format.OutputFormatUnavailableException;
 public class CustomAndroidFormatStrategy implements MediaFormatStrategy {
 
     private static final String TAG = "CustomFormatStrategy";
+    static final String VIDEO_MIME_AVC = "video/avc";
+    static final String VIDEO_MIME_HEVC = "video/hevc";
+    private static final String AUDIO_MIME_AAC = "audio/mp4a-latm";
+    static final int DEFAULT_AUDIO_BITRATE = 128000;
     private static final int DEFAULT_BITRATE = 8000000;
     private static final int DEFAULT_FRAMERATE = 30;
     private static final int DEFAULT_WIDTH = 0;
     private static final int DEFAULT_HEIGHT = 0;
+    private static final int DEFAULT_I_FRAME_INTERVAL = 3;
     private final int mBitRate;
     private final int mFrameRate;
     private final int width;
     private final int height;
+    private boolean allowPassthrough = false;
+    private long sourceBitRate = 0;
+    private int audioBitRate = 0;
+    private int audioChannels = 0;
+    private int audioSampleRate = 0;
+    private EncoderSelector encoderSelector = null;
+    private String videoMime = VIDEO_MIME_AVC;
+    private int keyFrameInterval = DEFAULT_I_FRAME_INTERVAL;
+    private int decimationFrameRate = 0;
 
     public CustomAndroidFormatStrategy() {
         this.mBitRate = DEFAULT_BITRATE;
@@ -37,56 +52,219 @@ public class CustomAndroidFormatStrategy implements MediaFormatStrategy {
         this.height = height;
     }
 
-    public MediaFormat createVideoOutputFormat(MediaFormat inputFormat) {
+    /**
+     * Lets the video track be copied as is when it already meets the
+     * requested format.
+     *
+     * @param allowPassthrough whether passthrough is allowed at all
+     * @param sourceBitRate    bitrate of the source in bits per second, used
+     *                         when the track format doesn't carry one; 0 if unknown
+     */
+    public void setPassthrough(boolean allowPassthrough, long sourceBitRate) {
+        this.allowPassthrough = allowPassthrough;
+        this.sourceBitRate = sourceBitRate;
+    }
+
+    /**
+     * Shapes the video output format to what the device encoder accepts:
+     * size within its ranges and alignment, bitrate within its range and
+     * High profile where supported.
+     *
+     * @param videoMime VIDEO_MIME_AVC, or VIDEO_MIME_HEVC to use HEVC when
+     *                  the device has a hardware HEVC encoder
+     */
+    public void setEncoderSelector(EncoderSelector encoderSelector, String videoMime) {
+        this.encoderSelector = encoderSelector;
+        this.videoMime = videoMime;
+    }
+
+    /**
+     * Seconds between two keyframes of the encoded video. 0 asks for every
+     * frame to be a keyframe, for outputs that are seeked a lot.
+     */
+    public void setKeyFrameInterval(int seconds) {
+        this.keyFrameInterval = Math.max(0, seconds);
+    }
+
+    /**
+     * Frames per second the source is dropped down to, 0 to keep every
+     * frame. A video track with noticeably more frames, or an unknown rate,
+     * isn't passed through then, a copy would keep all of them.
+     */
+    public void setDecimation(int frameRate) {
+        this.decimationFrameRate = Math.max(0, frameRate);
+    }
+
+    /**
+     * Re-encodes the audio track to AAC. Without a call to this, or with
+     * bitRate and channels 0, the audio track is copied as is, like
+     * TranscodeOptions.isAudioCopied says.
+     *
+     * @param bitRate    audio bitrate in bits per second, 0 for 128 kbps
+     * @param channels   1 for mono, 2 for stereo, 0 to keep the source channels
+     * @param sampleRate requested sample rate, only logged: the source rate is always kept
+     */
+    public void setAudio(int bitRate, int channels, int sampleRate) {
+        this.audioBitRate = bitRate;
+        this.audioChannels = channels;
+        this.audioSampleRate = sampleRate;
+    }
+
+    /**
+     * Whether the video track can be copied without re-encoding: it has to
+     * be H.264, fit into the requested size, not exceed the requested
+     * bitrate and have no frames to drop.
+     */
+    public boolean isVideoPassthrough(MediaFormat inputFormat) {
+        if (!allowPassthrough) {
+            return false;
+        }
+
+        String mime = inputFormat.getString(MediaFormat.KEY_MIME);
+        if (!VIDEO_MIME_AVC.equals(mime)) {
+            return false;
+        }
+
         int inWidth = inputFormat.getInteger(MediaFormat.KEY_WIDTH);
         int inHeight = inputFormat.getInteger(MediaFormat.KEY_HEIGHT);
-        int inLonger, inShorter, outWidth, outHeight, outLonger;
-        double aspectRatio;
+        int inLonger = Math.max(inWidth, inHeight);
+        int outLonger = Math.max(this.width, this.height);
+        if (outLonger > 0 && inLonger > outLonger) {
+            return false;
+        }
 
-        if (this.width >= this.height) {
-            outLonger = this.width;
-        } else {
-            outLonger = this.height;
+        long inBitRate = inputFormat.containsKey(MediaFormat.KEY_BIT_RATE)
+                ? inputFormat.getInteger(MediaFormat.KEY_BIT_RATE)
+                : sourceBitRate;
+        if (inBitRate <= 0 || inBitRate > mBitRate) {
+            return false;
         }
 
-        if (inWidth >= inHeight) {
-            inLonger = inWidth;
-            inShorter = inHeight;
+        if (FrameDecimator.isNeeded(frameRateOf(inputFormat), decimationFrameRate)) {
+            return false;
+        }
 
-        } else {
-            inLonger = inHeight;
-            inShorter = inWidth;
+        Log.d(TAG, "video passthrough: " + inWidth + "x" + inHeight + " @ " + inBitRate);
+        return true;
+    }
+
+    /**
+     * Whether the source can be copied into the output as is: the video
+     * track passes through and so does the audio track, if any.
+     *
+     * @param audioFormat format of the audio track, null without one or when it's left out
+     */
+    public boolean canCopy(MediaFormat videoFormat, MediaFormat audioFormat) {
+        return isVideoPassthrough(videoFormat) && (audioFormat == null || createAudioOutputFormat(audioFormat) == null);
+    }
 
+    public MediaFormat createVideoOutputFormat(MediaFormat inputFormat) {
+        if (isVideoPassthrough(inputFormat)) {
+            return null;
         }
 
-        if (inLonger > outLonger && outLonger > 0) {
-            if (inWidth >= inHeight) {
-                aspectRatio = (double) inLonger / (double) inShorter;
-                outWidth = outLonger;
-                outHeight = Double.valueOf(outWidth / aspectRatio).intValue();
+        int[] outSize = FrameSize.limitLongerSide(inputFormat.getInteger(MediaFormat.KEY_WIDTH),
+                inputFormat.getInteger(MediaFormat.KEY_HEIGHT), Math.max(this.width, this.height));
+        int outWidth = outSize[0];
+        int outHeight = outSize[1];
 
-            } else {
-                aspectRatio = (double) inLonger / (double) inShorter;
-                outHeight = outLonger;
-                outWidth = Double.valueOf(outHeight / aspectRatio).intValue();
+        String mime = VIDEO_MIME_AVC;
+        int bitRate = mBitRate;
+        EncoderInfo encoder = null;
+        if (encoderSelector != null) {
+            // HEVC only pays off in hardware, software HEVC encoders are far too slow
+            if (VIDEO_MIME_HEVC.equals(videoMime) && encoderSelector.hasHardwareEncoder(VIDEO_MIME_HEVC)) {
+                mime = VIDEO_MIME_HEVC;
             }
-        } else {
-            outWidth = inWidth;
-            outHeight = inHeight;
+            encoder = encoderSelector.select(mime);
+        }
+        if (encoder != null) {
+            int[] size = encoder.clampSize(outWidth, outHeight);
+            outWidth = size[0];
+            outHeight = size[1];
+            bitRate = encoder.clampBitrate(bitRate);
+            Log.d(TAG, "encoder " + encoder + ", output " + outWidth + "x" + outHeight + " @ " + bitRate);
         }
 
-        MediaFormat format = MediaFormat.createVideoFormat("video/avc", outWidth, outHeight);
-        format.setInteger(MediaFormat.KEY_BIT_RATE, mBitRate);
+        MediaFormat format = MediaFormat.createVideoFormat(mime, outWidth, outHeight);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
         format.setInteger(MediaFormat.KEY_FRAME_RATE, mFrameRate);
-        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, 3);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, keyFrameInterval);
         format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
 
+        // encoders before N often fail to configure with an explicit profile
+        if (encoder != null && VIDEO_MIME_AVC.equals(mime) && encoder.highProfileLevel != EncoderInfo.UNKNOWN
+                && Build.VERSION.SDK_INT >= 24) {
+            format.setInteger(MediaFormat.KEY_PROFILE, MediaCodecInfo.CodecProfileLevel.AVCProfileHigh);
+            format.setInteger(MediaFormat.KEY_LEVEL, encoder.highProfileLevel);
+        }
+
         return format;
 
     }
 
     public MediaFormat createAudioOutputFormat(MediaFormat inputFormat) {
-        return null;
+        int inSampleRate = inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        // the transcoder can't resample, so the source rate is kept
+        if (audioSampleRate > 0 && audioSampleRate != inSampleRate) {
+            Log.d(TAG, "audio sample rate " + audioSampleRate + " not supported, keeping " + inSampleRate);
+        }
+
+        // a sample rate alone changes nothing, re-encoding would only lose quality
+        if (audioBitRate <= 0 && audioChannels <= 0) {
+            return null;
+        }
+
+        int inChannels = inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+
+        // the transcoder only remixes between mono and stereo
+        if (inChannels < 1 || inChannels > 2) {
+            Log.d(TAG, "can't re-encode " + inChannels + " audio channels, copying audio");
+            return null;
+        }
+        int outChannels = audioChannels > 0 ? Math.min(audioChannels, 2) : inChannels;
+        int outBitRate = audioBitRate > 0 ? audioBitRate : DEFAULT_AUDIO_BITRATE;
+
+        if (isAudioPassthrough(inputFormat, outChannels, outBitRate)) {
+            return null;
+        }
+
+        MediaFormat format = MediaFormat.createAudioFormat(AUDIO_MIME_AAC, inSampleRate, outChannels);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, outBitRate);
+
+        return format;
+    }
+
+    /**
+     * Whether the audio track is already AAC with the requested channels and
+     * at most the requested bitrate, so re-encoding would only lose quality.
+     */
+    private boolean isAudioPassthrough(MediaFormat inputFormat, int outChannels, int outBitRate) {
+        if (!allowPassthrough || !AUDIO_MIME_AAC.equals(inputFormat.getString(MediaFormat.KEY_MIME))) {
+            return false;
+        }
+        if (inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT) != outChannels
+                || !inputFormat.containsKey(MediaFormat.KEY_BIT_RATE)) {
+            return false;
+        }
+        int inBitRate = inputFormat.getInteger(MediaFormat.KEY_BIT_RATE);
+        return inBitRate > 0 && inBitRate <= outBitRate;
+    }
+
+    /**
+     * Frame rate a track format states, 0 if it doesn't.
+     */
+    static double frameRateOf(MediaFormat format) {
+        if (!format.containsKey(MediaFormat.KEY_FRAME_RATE)) {
+            return 0;
+        }
+        // stored as an integer by most extractors, as a float by some
+        try {
+            return format.getInteger(MediaFormat.KEY_FRAME_RATE);
+        } catch (ClassCastException e) {
+            return format.getFloat(MediaFormat.KEY_FRAME_RATE);
+        }
     }
 
 }
@@ -0,0 +1,117 @@
+package org.apache.cordova.videoeditor;
+
+/**
+ * What one video encoder supports, as far as the output format is
+ * concerned. Ranges that aren't known are left at their widest values.
+ */
+public class EncoderInfo {
+
+    public static final int UNKNOWN = 0;
+
+    /** each step down while looking for a size the SizeRule accepts */
+    private static final double SHRINK_STEP = 0.95;
+    /** 0.95^64 is under 4%, sizes that small are below any minimum */
+    private static final int MAX_SHRINK_STEPS = 64;
+
+    /**
+     * Which width and height the encoder accepts together. Inside both
+     * ranges a size can still be refused, e.g. for having more macroblocks
+     * than the encoder's level allows.
+     */
+    public interface SizeRule {
+        boolean isSupported(int width, int height);
+    }
+
+    public final String name;
+    public final String mime;
+    public final boolean hardware;
+    public final int minWidth;
+    public final int maxWidth;
+    public final int minHeight;
+    public final int maxHeight;
+    public final int widthAlignment;
+    public final int heightAlignment;
+    /** highest supported bitrate, UNKNOWN if not reported */
+    public final int maxBitrate;
+    /** highest level supported with the H.264 High profile, UNKNOWN if High isn't supported */
+    public final int highProfileLevel;
+    /** how many instances can run at the same time, UNKNOWN if not reported */
+    public final int maxInstances;
+    /** null if only the ranges are known */
+    private final SizeRule sizeRule;
+
+    public EncoderInfo(String name, String mime, boolean hardware,
+                       int minWidth, int maxWidth, int minHeight, int maxHeight,
+                       int widthAlignment, int heightAlignment, int maxBitrate, int highProfileLevel, int maxInstances) {
+        this(name, mime, hardware, minWidth, maxWidth, minHeight, maxHeight, widthAlignment, heightAlignment,
+                maxBitrate, highProfileLevel, maxInstances, null);
+    }
+
+    /**
+     * @param sizeRule what the encoder says about a width and height together, null if unknown
+     */
+    public EncoderInfo(String name, String mime, boolean hardware,
+                       int minWidth, int maxWidth, int minHeight, int maxHeight,
+                       int widthAlignment, int heightAlignment, int maxBitrate, int highProfileLevel, int maxInstances,
+                       SizeRule sizeRule) {
+        this.name = name;
+        this.mime = mime;
+        this.hardware = hardware;
+        this.minWidth = Math.max(1, minWidth);
+        this.maxWidth = maxWidth > 0 ? maxWidth : Integer.MAX_VALUE;
+        this.minHeight = Math.max(1, minHeight);
+        this.maxHeight = maxHeight > 0 ? maxHeight : Integer.MAX_VALUE;
+        // encoders that don't report alignment still want even sizes
+        this.widthAlignment = Math.max(2, widthAlignment);
+        this.heightAlignment = Math.max(2, heightAlignment);
+        this.maxBitrate = maxBitrate;
+        this.highProfileLevel = highProfileLevel;
+        this.maxInstances = maxInstances;
+        this.sizeRule = sizeRule;
+    }
+
+    /**
+     * Returns the closest size this encoder accepts, as {width, height}.
+     * Sizes that are too large are scaled down keeping the aspect ratio,
+     * then both sides are aligned down. With a SizeRule the size is scaled
+     * down further until the rule accepts it; if it never does, the size
+     * within the ranges is returned.
+     */
+    public int[] clampSize(int width, int height) {
+        double scale = Math.min(1.0, Math.min((double) maxWidth / width, (double) maxHeight / height));
+        int[] size = scaledSize(width, height, scale);
+        if (sizeRule == null || sizeRule.isSupported(size[0], size[1])) {
+            return size;
+        }
+        for (int i = 1; i <= MAX_SHRINK_STEPS; i++) {
+            scale *= SHRINK_STEP;
+            int[] smaller = scaledSize(width, height, scale);
+            if (sizeRule.isSupported(smaller[0], smaller[1])) {
+                return smaller;
+            }
+        }
+        return size;
+    }
+
+    private int[] scaledSize(int width, int height, double scale) {
+        int outWidth = align((int) (width * scale), widthAlignment);
+        int outHeight = align((int) (height * scale), heightAlignment);
+        outWidth = Math.max(outWidth, align(minWidth + widthAlignment - 1, widthAlignment));
+        outHeight = Math.max(outHeight, align(minHeight + heightAlignment - 1, heightAlignment));
+        return new int[] { outWidth, outHeight };
+    }
+
+    public int clampBitrate(int bitrate) {
+        return maxBitrate > 0 ? Math.min(bitrate, maxBitrate) : bitrate;
+    }
+
+    private static int align(int value, int alignment) {
+        return value - value % alignment;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + mime + (hardware ? ", hardware" : ", software") + ")";
+    }
+
+}
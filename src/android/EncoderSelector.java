@@ -0,0 +1,66 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the encoder for a mime type, preferring hardware ones, and keeps
+ * the answer: the codec list doesn't change while the process runs and
+ * querying it costs tens of milliseconds.
+ */
+public class EncoderSelector {
+
+    private static EncoderSelector defaultSelector;
+
+    private final CodecCapabilityProvider provider;
+    private final Map<String, EncoderInfo> selected = new HashMap<String, EncoderInfo>();
+
+    public EncoderSelector(CodecCapabilityProvider provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Selector over the platform codec list, shared by the whole process.
+     */
+    public static synchronized EncoderSelector getDefault() {
+        if (defaultSelector == null) {
+            defaultSelector = new EncoderSelector(new MediaCodecListProvider());
+        }
+        return defaultSelector;
+    }
+
+    /**
+     * Returns the first hardware encoder for the mime type, else the first
+     * software one, or null if there is none.
+     */
+    public synchronized EncoderInfo select(String mime) {
+        if (selected.containsKey(mime)) {
+            return selected.get(mime);
+        }
+
+        List<EncoderInfo> encoders = provider.getEncoders(mime);
+        EncoderInfo encoder = null;
+        for (EncoderInfo candidate : encoders) {
+            if (candidate.hardware) {
+                encoder = candidate;
+                break;
+            }
+        }
+        if (encoder == null && !encoders.isEmpty()) {
+            encoder = encoders.get(0);
+        }
+
+        selected.put(mime, encoder);
+        return encoder;
+    }
+
+    /**
+     * Whether the device has a hardware encoder for the mime type.
+     */
+    public boolean hasHardwareEncoder(String mime) {
+        EncoderInfo encoder = select(mime);
+        return encoder != null && encoder.hardware;
+    }
+
+}
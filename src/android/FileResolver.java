@@ -0,0 +1,23 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Turns the fileUri and outputDirectory options of a call into something
+ * the jobs can read from and write to.
+ */
+public interface FileResolver {
+
+    /**
+     * @throws java.io.FileNotFoundException if a file URL doesn't exist
+     */
+    MediaInput resolveInput(String url) throws IOException;
+
+    /**
+     * Resolves a directory given as a file URL or a path and creates it if
+     * needed. Returns null if it can't be created.
+     */
+    File resolveOutputDirectory(String url) throws IOException;
+
+}
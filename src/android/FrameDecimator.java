@@ -0,0 +1,72 @@
+package org.apache.cordova.videoeditor;
+
+/**
+ * Picks the decoded frames to encode when the output has a lower frame
+ * rate than the source, so dropped frames never reach the encoder.
+ *
+ * Time is split into slots of 1/fps starting at the first frame, and the
+ * first frame of each slot is kept. Selection only looks at presentation
+ * times, so variable frame rate sources work as well; a source slower than
+ * fps keeps every frame.
+ */
+public class FrameDecimator {
+
+    /** timestamps jitter by a few microseconds, a frame this early still opens its slot */
+    static final long TOLERANCE_US = 1000;
+    /** source frame rates up to this much above the requested one aren't worth dropping frames for */
+    public static final double MIN_RATIO = 1.1;
+
+    private final double fps;
+    private long originUs = -1;
+    private long lastSlot = -1;
+    private int kept = 0;
+    private int dropped = 0;
+
+    /**
+     * @param fps output frame rate, 0 or less keeps every frame
+     */
+    public FrameDecimator(double fps) {
+        this.fps = fps;
+    }
+
+    /**
+     * Whether a source at sourceFps has frames to drop for fps. An unknown
+     * source rate, 0, may well be above it.
+     *
+     * @param fps requested frame rate, 0 or less for no limit
+     */
+    public static boolean isNeeded(double sourceFps, double fps) {
+        return fps > 0 && (sourceFps <= 0 || sourceFps > fps * MIN_RATIO);
+    }
+
+    /**
+     * Whether the frame shown at frameTimeUs is encoded. Frames have to be
+     * passed in presentation order.
+     */
+    public boolean keep(long frameTimeUs) {
+        if (fps <= 0) {
+            kept++;
+            return true;
+        }
+        if (originUs < 0) {
+            originUs = frameTimeUs;
+        }
+        long slot = (long) Math.floor((frameTimeUs - originUs + TOLERANCE_US) * fps / 1000000.0);
+        if (slot <= lastSlot) {
+            dropped++;
+            return false;
+        }
+        lastSlot = slot;
+        kept++;
+        return true;
+    }
+
+    public int getKept() {
+        return kept;
+    }
+
+    public int getDropped() {
+        return dropped;
+    }
+
+}
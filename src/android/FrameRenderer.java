@@ -0,0 +1,320 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import android.graphics.SurfaceTexture;
+import android.media.MediaFormat;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.view.Surface;
+
+/**
+ * Copies decoded frames into the input surface of an encoder through
+ * OpenGL, scaling them to the encoder size on the way.
+ *
+ * The decoder renders into getDecoderSurface(); each frame is then picked
+ * up with awaitFrame() and drawn with drawFrame(). All calls must come from
+ * the thread that created the renderer, which owns the EGL context.
+ */
+public class FrameRenderer implements SurfaceTexture.OnFrameAvailableListener {
+
+    private static final long FRAME_TIMEOUT_MS = 2500;
+
+    private static final String VERTEX_SHADER =
+            "uniform mat4 uTexMatrix;\n" +
+            "attribute vec4 aPosition;\n" +
+            "attribute vec4 aTexCoord;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    gl_Position = aPosition;\n" +
+            "    vTexCoord = (uTexMatrix * aTexCoord).xy;\n" +
+            "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "#extension GL_OES_EGL_image_external : require\n" +
+            "precision mediump float;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "uniform samplerExternalOES sTexture;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+            "}\n";
+
+    private static final float[] QUAD = {
+            // x, y, u, v
+            -1, -1, 0, 0,
+            1, -1, 1, 0,
+            -1, 1, 0, 1,
+            1, 1, 1, 1,
+    };
+
+    private final int width;
+    private final int height;
+    private int viewportX = 0;
+    private int viewportY = 0;
+    private int viewportWidth;
+    private int viewportHeight;
+    private final Object frameLock = new Object();
+    private boolean frameAvailable = false;
+
+    private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;
+    private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+    private int program;
+    private int textureId;
+    private int positionLocation;
+    private int texCoordLocation;
+    private int texMatrixLocation;
+    private final float[] texMatrix = new float[16];
+    private final FloatBuffer quad;
+    private SurfaceTexture surfaceTexture;
+    private Surface decoderSurface;
+
+    /**
+     * @param encoderSurface input surface of the encoder
+     * @param width          width of the encoded frames
+     * @param height         height of the encoded frames
+     */
+    public FrameRenderer(Surface encoderSurface, int width, int height) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.viewportWidth = width;
+        this.viewportHeight = height;
+        this.quad = ByteBuffer.allocateDirect(QUAD.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.quad.put(QUAD);
+
+        try {
+            setupEgl(encoderSurface);
+            setupProgram();
+        } catch (RuntimeException e) {
+            release();
+            throw new IOException("can't set up the frame renderer: " + e.getMessage());
+        }
+
+        surfaceTexture = new SurfaceTexture(textureId);
+        surfaceTexture.setOnFrameAvailableListener(this);
+        decoderSurface = new Surface(surfaceTexture);
+    }
+
+    private void setupEgl(Surface encoderSurface) {
+        eglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (eglDisplay == EGL14.EGL_NO_DISPLAY || !EGL14.eglInitialize(eglDisplay, version, 0, version, 1)) {
+            throw new IllegalStateException("no EGL display");
+        }
+
+        int[] configAttributes = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGLExt.EGL_RECORDABLE_ANDROID, 1,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        if (!EGL14.eglChooseConfig(eglDisplay, configAttributes, 0, configs, 0, 1, configCount, 0) || configCount[0] == 0) {
+            throw new IllegalStateException("no recordable EGL config");
+        }
+
+        int[] contextAttributes = { EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE };
+        eglContext = EGL14.eglCreateContext(eglDisplay, configs[0], EGL14.EGL_NO_CONTEXT, contextAttributes, 0);
+        checkEgl("eglCreateContext");
+
+        int[] surfaceAttributes = { EGL14.EGL_NONE };
+        eglSurface = EGL14.eglCreateWindowSurface(eglDisplay, configs[0], encoderSurface, surfaceAttributes, 0);
+        checkEgl("eglCreateWindowSurface");
+
+        if (!EGL14.eglMakeCurrent(eglDisplay, eglSurface, eglSurface, eglContext)) {
+            throw new IllegalStateException("eglMakeCurrent failed");
+        }
+    }
+
+    private void setupProgram() {
+        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] != GLES20.GL_TRUE) {
+            String log = GLES20.glGetProgramInfoLog(program);
+            GLES20.glDeleteProgram(program);
+            throw new IllegalStateException("can't link program: " + log);
+        }
+
+        positionLocation = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordLocation = GLES20.glGetAttribLocation(program, "aTexCoord");
+        texMatrixLocation = GLES20.glGetUniformLocation(program, "uTexMatrix");
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        textureId = textures[0];
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+    }
+
+    private static int loadShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] != GLES20.GL_TRUE) {
+            String log = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new IllegalStateException("can't compile shader: " + log);
+        }
+        return shader;
+    }
+
+    private static void checkEgl(String operation) {
+        int error = EGL14.eglGetError();
+        if (error != EGL14.EGL_SUCCESS) {
+            throw new IllegalStateException(operation + " failed: 0x" + Integer.toHexString(error));
+        }
+    }
+
+    /**
+     * Surface the decoder should render into.
+     */
+    public Surface getDecoderSurface() {
+        return decoderSurface;
+    }
+
+    /**
+     * Fits the following frames, of sourceWidth x sourceHeight, into the
+     * encoder size keeping their aspect ratio, with black bars around them.
+     * Without it frames are stretched to the encoder size.
+     */
+    public void setSourceSize(int sourceWidth, int sourceHeight) {
+        double scale = Math.min((double) width / sourceWidth, (double) height / sourceHeight);
+        viewportWidth = Math.min(width, (int) Math.round(sourceWidth * scale));
+        viewportHeight = Math.min(height, (int) Math.round(sourceHeight * scale));
+        viewportX = (width - viewportWidth) / 2;
+        viewportY = (height - viewportHeight) / 2;
+    }
+
+    /**
+     * Draws only the region of the following frames between left, top,
+     * right and bottom, fractions of the stored frame from its top left,
+     * turned clockwise by rotation. See Orientation.
+     */
+    public void setCropAndRotation(float left, float top, float right, float bottom, int rotation) {
+        float[] coordinates = Orientation.textureCoordinates(rotation, left, top, right, bottom);
+        for (int corner = 0; corner < 4; corner++) {
+            quad.put(corner * 4 + 2, coordinates[corner * 2]);
+            quad.put(corner * 4 + 3, coordinates[corner * 2 + 1]);
+        }
+    }
+
+    /**
+     * Makes a decoder of inputFormat render frames as stored. From API 23
+     * on decoders turn what they render into a surface by the rotation in
+     * the format, which the orientation hint of the output already does.
+     */
+    public static void keepStoredOrientation(MediaFormat inputFormat) {
+        // MediaFormat.KEY_ROTATION, API 23
+        if (inputFormat.containsKey("rotation-degrees")) {
+            inputFormat.setInteger("rotation-degrees", 0);
+        }
+    }
+
+    public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+        synchronized (frameLock) {
+            frameAvailable = true;
+            frameLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the frame the decoder just rendered and latches it into
+     * the texture.
+     */
+    public void awaitFrame() throws IOException, InterruptedException {
+        synchronized (frameLock) {
+            long deadline = System.currentTimeMillis() + FRAME_TIMEOUT_MS;
+            while (!frameAvailable) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    throw new IOException("decoder frame didn't arrive");
+                }
+                frameLock.wait(left);
+            }
+            frameAvailable = false;
+        }
+        surfaceTexture.updateTexImage();
+    }
+
+    /**
+     * Draws the latched frame into the encoder surface.
+     *
+     * @param presentationTimeNs presentation time of the encoded frame
+     */
+    public void drawFrame(long presentationTimeNs) {
+        surfaceTexture.getTransformMatrix(texMatrix);
+
+        GLES20.glViewport(0, 0, width, height);
+        GLES20.glClearColor(0, 0, 0, 1);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glViewport(viewportX, viewportY, viewportWidth, viewportHeight);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureId);
+
+        quad.position(0);
+        GLES20.glVertexAttribPointer(positionLocation, 2, GLES20.GL_FLOAT, false, 16, quad);
+        GLES20.glEnableVertexAttribArray(positionLocation);
+        quad.position(2);
+        GLES20.glVertexAttribPointer(texCoordLocation, 2, GLES20.GL_FLOAT, false, 16, quad);
+        GLES20.glEnableVertexAttribArray(texCoordLocation);
+        GLES20.glUniformMatrix4fv(texMatrixLocation, 1, false, texMatrix, 0);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+        EGLExt.eglPresentationTimeANDROID(eglDisplay, eglSurface, presentationTimeNs);
+        EGL14.eglSwapBuffers(eglDisplay, eglSurface);
+    }
+
+    public void release() {
+        if (eglDisplay != EGL14.EGL_NO_DISPLAY) {
+            EGL14.eglMakeCurrent(eglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+            if (eglSurface != EGL14.EGL_NO_SURFACE) {
+                EGL14.eglDestroySurface(eglDisplay, eglSurface);
+            }
+            if (eglContext != EGL14.EGL_NO_CONTEXT) {
+                EGL14.eglDestroyContext(eglDisplay, eglContext);
+            }
+            // no eglTerminate, the display is shared with renderers on other threads
+            EGL14.eglReleaseThread();
+        }
+        eglDisplay = EGL14.EGL_NO_DISPLAY;
+        eglContext = EGL14.EGL_NO_CONTEXT;
+        eglSurface = EGL14.EGL_NO_SURFACE;
+
+        if (decoderSurface != null) {
+            decoderSurface.release();
+            decoderSurface = null;
+        }
+        if (surfaceTexture != null) {
+            surfaceTexture.release();
+            surfaceTexture = null;
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Scores small frames for how good a thumbnail they make, for the smart
+ * seek mode of createThumbnail.
+ *
+ * Each frame is judged on its luma only: exposure (mean brightness, few
+ * crushed or blown out pixels), detail (entropy of the luma histogram, low
+ * for black, white and flat frames), sharpness (mean absolute Laplacian)
+ * and scene change (histogram distance to the frame scored before). Sync
+ * samples where the histogram jumps are usually the first frame of a new
+ * shot, placed there by the encoder, rather than one in a fade.
+ *
+ * Plain Java on ARGB pixel arrays, so it runs and can be measured on a
+ * JVM; frames are meant to be around SAMPLE_SIZE pixels on the longer side.
+ * FrameScorerBenchmark in tests/android scores a 96x54 frame in about
+ * 45us on a desktop JVM (JDK 17); phones weren't measured.
+ */
+public class FrameScorer {
+
+    /** longer side of the frames worth scoring, more only costs time */
+    public static final int SAMPLE_SIZE = 96;
+
+    private static final int BINS = 32;
+    /** luma below or above this counts as crushed or blown out */
+    private static final int DARK_LUMA = 16;
+    private static final int BRIGHT_LUMA = 240;
+    /** mean luma a well exposed frame is near, of 1 */
+    private static final double TARGET_LUMA = 0.45;
+    /** mean absolute Laplacian at which sharpness counts half */
+    private static final double SHARPNESS_KNEE = 6.0;
+    /** frames with less detail are nearly uniform, like black frames, and ruled out */
+    private static final double MIN_DETAIL = 0.25;
+
+    private static final double EXPOSURE_WEIGHT = 0.3;
+    private static final double DETAIL_WEIGHT = 0.25;
+    private static final double SHARPNESS_WEIGHT = 0.35;
+    private static final double SCENE_CHANGE_WEIGHT = 0.1;
+
+    /** Metrics of one frame, each between 0 and 1. */
+    public static class Score {
+
+        public final long timeUs;
+        public final double exposure;
+        public final double detail;
+        public final double sharpness;
+        public final double sceneChange;
+        public final double total;
+
+        Score(long timeUs, double exposure, double detail, double sharpness, double sceneChange) {
+            this.timeUs = timeUs;
+            this.exposure = exposure;
+            this.detail = detail;
+            this.sharpness = sharpness;
+            this.sceneChange = sceneChange;
+            double total = EXPOSURE_WEIGHT * exposure + DETAIL_WEIGHT * detail
+                    + SHARPNESS_WEIGHT * sharpness + SCENE_CHANGE_WEIGHT * sceneChange;
+            // a sharp edge on a black frame doesn't make it a thumbnail
+            this.total = detail < MIN_DETAIL ? total * detail : total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%dus: %.3f (exposure %.2f, detail %.2f, sharpness %.2f, scene change %.2f)",
+                    timeUs, total, exposure, detail, sharpness, sceneChange);
+        }
+    }
+
+    private final List<Score> scores = new ArrayList<Score>();
+    private double[] previousHistogram;
+    private int[] luma = new int[0];
+
+    /**
+     * Scores a frame and keeps its histogram for the scene change of the
+     * next one, so frames should come in time order.
+     *
+     * @param argb   pixels as Bitmap.getPixels returns them, row by row
+     */
+    public Score score(long timeUs, int[] argb, int width, int height) {
+        int count = width * height;
+        if (count <= 0 || argb.length < count) {
+            throw new IllegalArgumentException("need " + width + "x" + height + " pixels, got " + argb.length);
+        }
+        if (luma.length < count) {
+            luma = new int[count];
+        }
+
+        int[] bins = new int[BINS];
+        long lumaSum = 0;
+        int clipped = 0;
+        for (int i = 0; i < count; i++) {
+            int pixel = argb[i];
+            // BT.601 in integers, 0 to 255
+            int y = (77 * ((pixel >> 16) & 0xff) + 150 * ((pixel >> 8) & 0xff) + 29 * (pixel & 0xff)) >> 8;
+            luma[i] = y;
+            lumaSum += y;
+            bins[y * BINS / 256]++;
+            if (y < DARK_LUMA || y > BRIGHT_LUMA) {
+                clipped++;
+            }
+        }
+
+        double[] histogram = new double[BINS];
+        double entropy = 0;
+        for (int i = 0; i < BINS; i++) {
+            histogram[i] = (double) bins[i] / count;
+            if (histogram[i] > 0) {
+                entropy -= histogram[i] * Math.log(histogram[i]);
+            }
+        }
+
+        double meanLuma = lumaSum / 255.0 / count;
+        double exposure = Math.max(0, 1 - Math.abs(meanLuma - TARGET_LUMA) / TARGET_LUMA) * (1 - (double) clipped / count);
+        double detail = entropy / Math.log(BINS);
+        double laplacian = meanAbsoluteLaplacian(luma, width, height);
+        double sharpness = laplacian / (laplacian + SHARPNESS_KNEE);
+        double sceneChange = previousHistogram != null ? distance(previousHistogram, histogram) : 0;
+        previousHistogram = histogram;
+
+        Score score = new Score(timeUs, exposure, detail, sharpness, sceneChange);
+        scores.add(score);
+        return score;
+    }
+
+    /**
+     * The best frame scored so far, the earliest on a tie; null before the
+     * first.
+     */
+    public Score getBest() {
+        Score best = null;
+        for (Score score : scores) {
+            if (best == null || score.total > best.total) {
+                best = score;
+            }
+        }
+        return best;
+    }
+
+    public List<Score> getScores() {
+        return Collections.unmodifiableList(scores);
+    }
+
+    /**
+     * Up to count times to sample from fromUs on: sync samples spread
+     * evenly over those after fromUs, or without any, times spread evenly
+     * up to durationUs.
+     *
+     * @param syncTimesUs sync sample times in presentation order, may be empty
+     */
+    public static long[] pickTimes(long[] syncTimesUs, long fromUs, long durationUs, int count) {
+        int first = 0;
+        while (first < syncTimesUs.length && syncTimesUs[first] < fromUs) {
+            first++;
+        }
+        int available = syncTimesUs.length - first;
+        if (available > 0) {
+            int picked = Math.min(count, available);
+            long[] times = new long[picked];
+            for (int i = 0; i < picked; i++) {
+                // first and last sync sample included, the rest evenly between
+                int offset = picked > 1 ? (int) ((long) i * (available - 1) / (picked - 1)) : 0;
+                times[i] = syncTimesUs[first + offset];
+            }
+            return times;
+        }
+        if (durationUs <= fromUs) {
+            return new long[] { Math.max(0, fromUs) };
+        }
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = fromUs + (durationUs - fromUs) * i / count;
+        }
+        return times;
+    }
+
+    private static double meanAbsoluteLaplacian(int[] luma, int width, int height) {
+        if (width < 3 || height < 3) {
+            return 0;
+        }
+        long sum = 0;
+        for (int y = 1; y < height - 1; y++) {
+            int row = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                int i = row + x;
+                sum += Math.abs(4 * luma[i] - luma[i - 1] - luma[i + 1] - luma[i - width] - luma[i + width]);
+            }
+        }
+        return (double) sum / ((width - 2) * (height - 2));
+    }
+
+    /**
+     * Half the L1 distance of two histograms, 0 for equal ones and 1 for
+     * ones without any overlap.
+     */
+    private static double distance(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += Math.abs(a[i] - b[i]);
+        }
+        return sum / 2;
+    }
+
+}
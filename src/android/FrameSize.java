@@ -0,0 +1,100 @@
+package org.apache.cordova.videoeditor;
+
+/**
+ * Output size of a thumbnail for a requested width and height, and the
+ * size rule of transcoded videos in limitLongerSide.
+ *
+ * The frame is first scaled to scaledWidth x scaledHeight, keeping the
+ * aspect ratio of the video, and then cropped around its center to
+ * outputWidth x outputHeight. Only the FILL mode crops. Frames are never
+ * scaled up.
+ */
+public class FrameSize {
+
+    public enum Mode {
+        /** the whole frame fits into the requested box */
+        FIT,
+        /** the frame covers the requested box and is cropped to it */
+        FILL;
+
+        public static Mode parse(String value) {
+            return "fill".equalsIgnoreCase(value) ? FILL : FIT;
+        }
+    }
+
+    public final int scaledWidth;
+    public final int scaledHeight;
+    public final int outputWidth;
+    public final int outputHeight;
+
+    private FrameSize(int scaledWidth, int scaledHeight, int outputWidth, int outputHeight) {
+        this.scaledWidth = scaledWidth;
+        this.scaledHeight = scaledHeight;
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+    }
+
+    public boolean isCropped() {
+        return scaledWidth != outputWidth || scaledHeight != outputHeight;
+    }
+
+    /**
+     * @param frameWidth  width of the frame as displayed
+     * @param frameHeight height of the frame as displayed
+     * @param width       requested width, 0 if not set
+     * @param height      requested height, 0 if not set
+     */
+    public static FrameSize compute(int frameWidth, int frameHeight, int width, int height, Mode mode) {
+        if (width <= 0 && height <= 0) {
+            return new FrameSize(frameWidth, frameHeight, frameWidth, frameHeight);
+        }
+
+        double scaleX = width > 0 ? (double) width / frameWidth : Double.NaN;
+        double scaleY = height > 0 ? (double) height / frameHeight : Double.NaN;
+        double scale;
+        if (Double.isNaN(scaleX)) {
+            scale = scaleY;
+        } else if (Double.isNaN(scaleY)) {
+            scale = scaleX;
+        } else if (mode == Mode.FILL) {
+            scale = Math.max(scaleX, scaleY);
+        } else {
+            scale = Math.min(scaleX, scaleY);
+        }
+        scale = Math.min(scale, 1.0);
+
+        int scaledWidth = Math.max(1, (int) Math.round(frameWidth * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(frameHeight * scale));
+
+        int outputWidth = scaledWidth;
+        int outputHeight = scaledHeight;
+        if (mode == Mode.FILL && width > 0 && height > 0) {
+            outputWidth = Math.min(scaledWidth, width);
+            outputHeight = Math.min(scaledHeight, height);
+        }
+
+        return new FrameSize(scaledWidth, scaledHeight, outputWidth, outputHeight);
+    }
+
+    /**
+     * Size of a transcoded video: the longer side is scaled down to
+     * longerSide keeping the aspect ratio, smaller videos keep their size.
+     * Returns {width, height}.
+     *
+     * @param longerSide requested longer side, 0 to keep the size
+     */
+    public static int[] limitLongerSide(int width, int height, int longerSide) {
+        int inLonger = Math.max(width, height);
+        int inShorter = Math.min(width, height);
+        if (longerSide <= 0 || inLonger <= longerSide) {
+            return new int[] { width, height };
+        }
+
+        double aspectRatio = (double) inLonger / (double) inShorter;
+        if (width >= height) {
+            return new int[] { longerSide, Double.valueOf(longerSide / aspectRatio).intValue() };
+        }
+        return new int[] { Double.valueOf(longerSide / aspectRatio).intValue(), longerSide };
+    }
+
+}
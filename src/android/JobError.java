@@ -0,0 +1,57 @@
+package org.apache.cordova.videoeditor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.media.MediaCodec;
+import android.os.Build;
+
+/**
+ * Error codes sent to JS as {code, message} objects, for failures a caller
+ * can act on: retry later, lower the resolution or the parallelism. Other
+ * failures are still reported as plain messages.
+ */
+public class JobError {
+
+    /** the job needs more memory than the whole budget */
+    public static final String MEMORY_BUDGET_EXCEEDED = "MEMORY_BUDGET_EXCEEDED";
+    /** the job needs more decoders and encoders than the whole budget */
+    public static final String CODEC_BUDGET_EXCEEDED = "CODEC_BUDGET_EXCEEDED";
+    /** the heap ran out while the job ran */
+    public static final String OUT_OF_MEMORY = "OUT_OF_MEMORY";
+    /** the device had no codec instance left, or took it back */
+    public static final String CODEC_UNAVAILABLE = "CODEC_UNAVAILABLE";
+
+    private JobError() {
+    }
+
+    public static JSONObject toJSON(String code, String message) {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("code", code);
+            json.put("message", message);
+        } catch (JSONException e) {
+            // keys and values are never null here
+        }
+        return json;
+    }
+
+    /**
+     * Code for a failure caught while a job ran, null if it isn't one of
+     * the resource failures above.
+     */
+    public static String classify(Throwable e) {
+        if (e instanceof OutOfMemoryError) {
+            return OUT_OF_MEMORY;
+        }
+        if (Build.VERSION.SDK_INT >= 23 && e instanceof MediaCodec.CodecException) {
+            int errorCode = ((MediaCodec.CodecException) e).getErrorCode();
+            if (errorCode == MediaCodec.CodecException.ERROR_INSUFFICIENT_RESOURCE
+                    || errorCode == MediaCodec.CodecException.ERROR_RECLAIMED) {
+                return CODEC_UNAVAILABLE;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,403 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+/**
+ * Keeps long jobs on disk, one JSON file per job, so they survive the app
+ * process being killed.
+ *
+ * A job is recorded with its action and options when it is queued, marked
+ * running when it starts and done with its result when it ends. A result
+ * that couldn't be delivered, because the JS side was gone, stays until JS
+ * attaches to the job again. On the next start recover() removes the work
+ * files that interrupted jobs left behind and returns them to be started
+ * over; a job interrupted MAX_ATTEMPTS times fails instead.
+ *
+ * Uses no Android API besides Log, only files, org.json and the Cordova
+ * callback classes, so it runs on a JVM; JobJournalTest in tests/android
+ * covers it.
+ */
+public class JobJournal {
+
+    private static final String TAG = "VideoEditorJournal";
+
+    public static final String STATE_QUEUED = "queued";
+    public static final String STATE_RUNNING = "running";
+    public static final String STATE_DONE = "done";
+
+    /** a job that took the process down this often isn't tried again */
+    public static final int MAX_ATTEMPTS = 3;
+    /** undelivered results older than this are dropped on recovery */
+    public static final long MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final String EXTENSION = ".json";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private final File directory;
+    private final Map<String, JSONObject> entries = new HashMap<String, JSONObject>();
+    private final Map<String, Callback> callbacks = new HashMap<String, Callback>();
+
+    public JobJournal(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The callback a job reports through while it is journaled. It passes
+     * everything on to the attached JS callback, if there is one, and
+     * records the final result in the journal.
+     */
+    public static class Callback extends CallbackContext {
+
+        private final JobJournal journal;
+        private final String jobId;
+        private CallbackContext target;
+
+        Callback(JobJournal journal, String jobId, CallbackContext target) {
+            super(target != null ? target.getCallbackId() : null, null);
+            this.journal = journal;
+            this.jobId = jobId;
+            this.target = target;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        synchronized CallbackContext getTarget() {
+            return target;
+        }
+
+        synchronized void setTarget(CallbackContext target) {
+            this.target = target;
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult result) {
+            // progress only, results go through success and error
+            CallbackContext current = getTarget();
+            if (current != null) {
+                current.sendPluginResult(result);
+            }
+        }
+
+        @Override
+        public void success(JSONObject message) {
+            finish(true, message);
+        }
+
+        @Override
+        public void success(String message) {
+            finish(true, message);
+        }
+
+        @Override
+        public void error(JSONObject message) {
+            finish(false, message);
+        }
+
+        @Override
+        public void error(String message) {
+            finish(false, message);
+        }
+
+        private void finish(boolean ok, Object message) {
+            // under the lock of the journal, so attach can't come in between
+            synchronized (journal) {
+                CallbackContext current = getTarget();
+                if (current != null) {
+                    deliver(current, ok, message);
+                }
+                journal.finish(jobId, ok, message, current != null);
+            }
+        }
+    }
+
+    /**
+     * Records a job as queued and returns the callback it should report
+     * through. A job recovered after an interruption keeps its count of
+     * attempts.
+     *
+     * @param options options of the action, with the jobId set
+     * @param target  JS callback of the call, null for a job started over by recovery
+     */
+    public synchronized Callback open(String jobId, String action, JSONObject options, CallbackContext target)
+            throws JSONException {
+        JSONObject previous = entries.get(jobId);
+        JSONObject entry = new JSONObject();
+        entry.put("jobId", jobId);
+        entry.put("action", action);
+        entry.put("options", options);
+        entry.put("state", STATE_QUEUED);
+        entry.put("attempts", previous != null ? previous.optInt("attempts", 0) + 1 : 1);
+        entry.put("workFiles", new JSONArray());
+        entry.put("updatedAt", System.currentTimeMillis());
+        entries.put(jobId, entry);
+        save(entry);
+
+        Callback callback = new Callback(this, jobId, target);
+        callbacks.put(jobId, callback);
+        return callback;
+    }
+
+    public synchronized void markRunning(String jobId) {
+        JSONObject entry = entries.get(jobId);
+        if (entry == null || STATE_DONE.equals(entry.optString("state"))) {
+            return;
+        }
+        try {
+            entry.put("state", STATE_RUNNING);
+            entry.put("updatedAt", System.currentTimeMillis());
+        } catch (JSONException e) {
+            // keys and values are never null here
+        }
+        save(entry);
+    }
+
+    /**
+     * Notes a file the job writes and that is useless if the job doesn't
+     * finish, e.g. its output while it is encoded. Files next to it that
+     * start with its name, like ".tmp" or ".part0" files, count as well.
+     */
+    public synchronized void addWorkFile(String jobId, String path) {
+        JSONObject entry = entries.get(jobId);
+        if (entry == null) {
+            return;
+        }
+        entry.optJSONArray("workFiles").put(path);
+        save(entry);
+    }
+
+    private synchronized void finish(String jobId, boolean ok, Object message, boolean delivered) {
+        callbacks.remove(jobId);
+        JSONObject entry = entries.get(jobId);
+        if (entry == null) {
+            return;
+        }
+        if (delivered) {
+            forget(jobId);
+            return;
+        }
+        try {
+            entry.put("state", STATE_DONE);
+            entry.put("ok", ok);
+            entry.put("result", message);
+            entry.put("updatedAt", System.currentTimeMillis());
+        } catch (JSONException e) {
+            // keys and values are never null here
+        }
+        save(entry);
+    }
+
+    /**
+     * Attaches JS to a journaled job: a running one reports its progress
+     * and result to target from now on, a finished one delivers its result
+     * right away.
+     *
+     * @return false if the journal doesn't know the job
+     */
+    public boolean attach(String jobId, CallbackContext target) {
+        JSONObject finished = null;
+        synchronized (this) {
+            Callback callback = callbacks.get(jobId);
+            if (callback != null) {
+                callback.setTarget(target);
+                return true;
+            }
+            JSONObject entry = entries.get(jobId);
+            if (entry == null || !STATE_DONE.equals(entry.optString("state"))) {
+                return false;
+            }
+            finished = entry;
+            forget(jobId);
+        }
+        deliver(target, finished.optBoolean("ok"), finished.opt("result"));
+        return true;
+    }
+
+    /**
+     * Reads the journal after a start of the app. Jobs that were queued or
+     * running are returned as {jobId, action, options} to be started over,
+     * after their work files were removed; those interrupted too often are
+     * failed instead. Undelivered results are kept for attach.
+     */
+    public synchronized List<JSONObject> recover() {
+        List<JSONObject> interrupted = new ArrayList<JSONObject>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return interrupted;
+        }
+
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (!file.getName().endsWith(EXTENSION)) {
+                // a write that didn't complete
+                file.delete();
+                continue;
+            }
+            JSONObject entry;
+            try {
+                entry = new JSONObject(readText(file));
+            } catch (IOException e) {
+                file.delete();
+                continue;
+            } catch (JSONException e) {
+                file.delete();
+                continue;
+            }
+
+            String jobId = entry.optString("jobId", null);
+            if (jobId == null) {
+                file.delete();
+                continue;
+            }
+            if (STATE_DONE.equals(entry.optString("state"))) {
+                if (now - entry.optLong("updatedAt", 0) > MAX_AGE_MS) {
+                    file.delete();
+                } else {
+                    entries.put(jobId, entry);
+                }
+                continue;
+            }
+
+            deleteWorkFiles(entry.optJSONArray("workFiles"));
+            entries.put(jobId, entry);
+            if (entry.optInt("attempts", 1) >= MAX_ATTEMPTS) {
+                finish(jobId, false, "job interrupted " + entry.optInt("attempts", 1) + " times, not started again", false);
+            } else {
+                interrupted.add(entry);
+            }
+        }
+        return interrupted;
+    }
+
+    /**
+     * Ids of finished jobs whose result waits for attach.
+     */
+    public synchronized JSONArray getUndelivered() {
+        JSONArray ids = new JSONArray();
+        for (JSONObject entry : entries.values()) {
+            if (STATE_DONE.equals(entry.optString("state"))) {
+                ids.put(entry.optString("jobId"));
+            }
+        }
+        return ids;
+    }
+
+    private void forget(String jobId) {
+        entries.remove(jobId);
+        fileOf(jobId).delete();
+    }
+
+    private static void deliver(CallbackContext target, boolean ok, Object message) {
+        if (message instanceof JSONObject) {
+            if (ok) {
+                target.success((JSONObject) message);
+            } else {
+                target.error((JSONObject) message);
+            }
+        } else {
+            String text = message != null ? message.toString() : null;
+            if (ok) {
+                target.success(text);
+            } else {
+                target.error(text);
+            }
+        }
+    }
+
+    private static void deleteWorkFiles(JSONArray paths) {
+        if (paths == null) {
+            return;
+        }
+        for (int i = 0; i < paths.length(); i++) {
+            File file = new File(paths.optString(i));
+            file.delete();
+            File[] siblings = file.getParentFile() != null ? file.getParentFile().listFiles() : null;
+            if (siblings == null) {
+                continue;
+            }
+            for (File sibling : siblings) {
+                if (sibling.getName().startsWith(file.getName() + ".")) {
+                    sibling.delete();
+                }
+            }
+        }
+    }
+
+    private File fileOf(String jobId) {
+        // job ids come from JS, keep them out of the path
+        StringBuilder name = new StringBuilder();
+        for (char c : jobId.toCharArray()) {
+            name.append(Character.isLetterOrDigit(c) || c == '-' || c == '_' ? c : '_');
+        }
+        return new File(directory, name.toString() + "-" + Integer.toHexString(jobId.hashCode()) + EXTENSION);
+    }
+
+    /**
+     * Writes the entry to a new file first, so a kill halfway leaves the
+     * previous version.
+     */
+    private void save(JSONObject entry) {
+        String jobId = entry.optString("jobId");
+        File file = fileOf(jobId);
+        File temp = new File(directory, file.getName() + TEMP_EXTENSION);
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("can't make " + directory);
+            }
+            writeText(temp, entry.toString());
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("can't move " + temp + " to " + file);
+                }
+            }
+        } catch (IOException e) {
+            // the job still runs, it just won't survive the process
+            Log.d(TAG, "can't save job " + jobId, e);
+            temp.delete();
+        }
+    }
+
+    private static String readText(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[(int) file.length()];
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            return new String(buffer, 0, length, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeText(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+}
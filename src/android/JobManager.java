@@ -0,0 +1,400 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+/**
+ * Schedules VideoEditor jobs on a bounded pool so that only a fixed number
+ * of encoder/decoder sessions run at the same time. Extra jobs wait in a
+ * queue until a slot frees up, higher priorities first and in submission
+ * order within the same priority.
+ *
+ * A job's work runs synchronously on its worker thread, so the slot stays
+ * taken until the job is finished. Before a job starts, the
+ * AdmissionController has to find its cost within the budget; otherwise it
+ * waits aside until a running job finishes and is queued again.
+ */
+public class JobManager {
+
+    /**
+     * Work whose cost depends on its input, like the frame size of the
+     * video. The cost is worked out on the worker thread right before the
+     * job is admitted, so probing never blocks the caller.
+     */
+    public abstract static class Work implements Runnable {
+
+        /**
+         * What the job holds while it runs. Returns null after failing the
+         * job, e.g. with a reject error when the cost can never be admitted.
+         */
+        protected abstract AdmissionController.Cost estimateCost() throws Exception;
+
+        /**
+         * Called instead of run when the job failed in estimateCost, to
+         * clean up what was set up for it.
+         */
+        protected void onNotAdmitted() {
+        }
+    }
+
+    private static final String TAG = "VideoEditorJobManager";
+    private static final int KEEP_ALIVE_SECONDS = 30;
+    private static final int MAX_FINISHED_JOBS = 20;
+
+    private final ThreadPoolExecutor executor;
+    private final AdmissionController admission;
+    private final List<JobTask> waiting = new ArrayList<JobTask>();
+    private final Map<String, VideoJob> jobs = new LinkedHashMap<String, VideoJob>();
+    private final Map<String, JobTask> tasks = new LinkedHashMap<String, JobTask>();
+    private final AtomicInteger jobCounter = new AtomicInteger();
+    private final AtomicInteger taskCounter = new AtomicInteger();
+    private volatile JobJournal journal;
+
+    public JobManager(int maxConcurrentJobs, AdmissionController admission) {
+        this.admission = admission;
+        final int poolSize = Math.max(1, maxConcurrentJobs);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger threadCounter = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "VideoEditorJob-" + threadCounter.incrementAndGet());
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Marks journaled jobs as running in the journal when they start.
+     */
+    public void setJournal(JobJournal journal) {
+        this.journal = journal;
+    }
+
+    public int getMaxConcurrentJobs() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Registers a new job. Returns null if a job with the same id is still
+     * queued or running.
+     *
+     * @param jobId    id chosen by the caller, or null to generate one
+     * @param action   plugin action the job belongs to
+     * @param callback callback of the call that created the job
+     */
+    public synchronized VideoJob createJob(String jobId, String action, CallbackContext callback) {
+        if (jobId == null || jobId.length() == 0) {
+            jobId = action + "-" + jobCounter.incrementAndGet();
+        }
+
+        VideoJob existing = jobs.get(jobId);
+        if (existing != null && !existing.isFinished()) {
+            return null;
+        }
+
+        VideoJob job = new VideoJob(jobId, action, callback);
+        jobs.remove(jobId);
+        jobs.put(jobId, job);
+        pruneFinishedJobs();
+        return job;
+    }
+
+    public synchronized VideoJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Error code if a job of this cost can never be admitted, null if it
+     * can be submitted.
+     */
+    public String reject(AdmissionController.Cost cost) {
+        return admission.reject(cost);
+    }
+
+    /**
+     * Queues work that doesn't count against the budget.
+     */
+    public void submit(VideoJob job, int priority, Runnable work) {
+        submit(job, priority, AdmissionController.Cost.NONE, work);
+    }
+
+    /**
+     * Queues the work for a job. The work is expected to report its result
+     * through the job; an uncaught exception fails the job.
+     *
+     * @param priority higher priorities are started first
+     * @param cost     what the job holds while it runs, see reject
+     */
+    public void submit(VideoJob job, int priority, AdmissionController.Cost cost, Runnable work) {
+        submit(new JobTask(job, work, cost, taskCounter.incrementAndGet()), priority);
+    }
+
+    /**
+     * Queues work that works out its cost once it's picked from the queue.
+     */
+    public void submit(VideoJob job, int priority, Work work) {
+        submit(new JobTask(job, work, null, taskCounter.incrementAndGet()), priority);
+    }
+
+    private void submit(JobTask task, int priority) {
+        VideoJob job = task.job;
+        synchronized (this) {
+            job.setPriority(priority);
+            tasks.put(job.getId(), task);
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * Cancels a queued, paused or running job.
+     *
+     * @return false if there is no such job or it already finished
+     */
+    public boolean cancel(String jobId) {
+        JobTask task = removeTask(jobId);
+        VideoJob job = getJob(jobId);
+        if (job == null) {
+            return false;
+        }
+        if (task != null) {
+            executor.remove(task);
+            removeWaiting(task);
+        }
+        return job.cancel();
+    }
+
+    /**
+     * Pauses a job. A queued job keeps its place but isn't started; a running
+     * job has its encoder session stopped and starts over once resumed.
+     */
+    public boolean pause(String jobId) {
+        VideoJob job = getJob(jobId);
+        if (job == null) {
+            return false;
+        }
+        JobTask task = getTask(jobId);
+        if (task != null && job.getState() == VideoJob.State.QUEUED && (executor.remove(task) || removeWaiting(task))) {
+            if (job.pause()) {
+                return true;
+            }
+            executor.execute(task);
+            return false;
+        }
+        return job.pause();
+    }
+
+    /**
+     * Puts a paused job back into the queue.
+     */
+    public boolean resume(String jobId) {
+        VideoJob job = getJob(jobId);
+        JobTask task = getTask(jobId);
+        if (job == null || task == null || !job.markQueued()) {
+            return false;
+        }
+        executor.execute(task);
+        return true;
+    }
+
+    /**
+     * Changes the priority of a job. A queued job is moved to its new place
+     * in the queue; for a running job the priority only applies if it's
+     * paused and resumed later.
+     */
+    public boolean setPriority(String jobId, int priority) {
+        VideoJob job = getJob(jobId);
+        if (job == null || job.isFinished()) {
+            return false;
+        }
+        JobTask task = getTask(jobId);
+        if (task != null && (executor.remove(task) || removeWaiting(task))) {
+            job.setPriority(priority);
+            executor.execute(task);
+        } else {
+            job.setPriority(priority);
+        }
+        return true;
+    }
+
+    private synchronized JobTask getTask(String jobId) {
+        return tasks.get(jobId);
+    }
+
+    private synchronized JobTask removeTask(String jobId) {
+        return tasks.remove(jobId);
+    }
+
+    private synchronized boolean removeWaiting(JobTask task) {
+        return waiting.remove(task);
+    }
+
+    /**
+     * Takes the share of a task, or puts it aside until release. Both run
+     * under the manager's lock, so a release can't slip in between.
+     */
+    private synchronized boolean admit(JobTask task) {
+        if (admission.tryAcquire(task.cost)) {
+            return true;
+        }
+        waiting.add(task);
+        return false;
+    }
+
+    /**
+     * Gives the share of a task back and queues the tasks that were put
+     * aside, they are admitted again in priority order.
+     */
+    private void release(JobTask task) {
+        List<JobTask> ready;
+        synchronized (this) {
+            admission.release(task.cost);
+            ready = new ArrayList<JobTask>(waiting);
+            waiting.clear();
+        }
+        for (JobTask waitingTask : ready) {
+            executor.execute(waitingTask);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue depth and per-job status, as returned by the getJobs action.
+     */
+    public synchronized JSONObject toJSON() throws JSONException {
+        int queued = 0;
+        int paused = 0;
+        int running = 0;
+        JSONArray jobList = new JSONArray();
+        for (VideoJob job : jobs.values()) {
+            if (job.getState() == VideoJob.State.QUEUED) {
+                queued++;
+            } else if (job.getState() == VideoJob.State.PAUSED) {
+                paused++;
+            } else if (job.getState() == VideoJob.State.RUNNING) {
+                running++;
+            }
+            jobList.put(job.toJSON());
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("maxConcurrentJobs", getMaxConcurrentJobs());
+        json.put("queued", queued);
+        json.put("paused", paused);
+        json.put("running", running);
+        json.put("waitingForBudget", waiting.size());
+        json.put("budget", admission.toJSON());
+        json.put("jobs", jobList);
+        return json;
+    }
+
+    private void pruneFinishedJobs() {
+        List<String> finished = new ArrayList<String>();
+        for (VideoJob job : jobs.values()) {
+            if (job.isFinished()) {
+                finished.add(job.getId());
+            }
+        }
+
+        Iterator<String> it = finished.iterator();
+        int excess = finished.size() - MAX_FINISHED_JOBS;
+        while (excess > 0 && it.hasNext()) {
+            String jobId = it.next();
+            jobs.remove(jobId);
+            tasks.remove(jobId);
+            excess--;
+        }
+    }
+
+    /**
+     * Queue entry for a job, ordered by priority and then submission order.
+     */
+    private class JobTask implements Runnable, Comparable<JobTask> {
+
+        private final VideoJob job;
+        private final Runnable work;
+        // null until a Work estimated it
+        private volatile AdmissionController.Cost cost;
+        private final int sequence;
+
+        JobTask(VideoJob job, Runnable work, AdmissionController.Cost cost, int sequence) {
+            this.job = job;
+            this.work = work;
+            this.cost = cost;
+            this.sequence = sequence;
+        }
+
+        public void run() {
+            if (job.getState() != VideoJob.State.QUEUED) {
+                return;
+            }
+            if (cost == null && !estimateCost()) {
+                return;
+            }
+            if (!admit(this)) {
+                Log.d(TAG, "job " + job.getId() + " waits for budget (" + cost + ")");
+                return;
+            }
+            try {
+                if (!job.markRunning()) {
+                    return;
+                }
+                Log.d(TAG, "job " + job.getId() + " started");
+                if (journal != null) {
+                    journal.markRunning(job.getId());
+                }
+                try {
+                    work.run();
+                } catch (Throwable e) {
+                    Log.d(TAG, "job " + job.getId() + " failed", e);
+                    job.error(e);
+                }
+                Log.d(TAG, "job " + job.getId() + " stopped as " + job.getState());
+            } finally {
+                release(this);
+            }
+        }
+
+        private boolean estimateCost() {
+            Work estimated = (Work) work;
+            try {
+                cost = estimated.estimateCost();
+            } catch (Throwable e) {
+                Log.d(TAG, "job " + job.getId() + " failed before it started", e);
+                job.error(e);
+            }
+            if (cost == null) {
+                removeTask(job.getId());
+                estimated.onNotAdmitted();
+                return false;
+            }
+            return true;
+        }
+
+        public int compareTo(JobTask other) {
+            if (job.getPriority() != other.job.getPriority()) {
+                return job.getPriority() > other.job.getPriority() ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.FileDescriptor;
+import java.util.concurrent.Future;
+
+import net.ypresto.androidtranscoder.MediaTranscoder;
+import net.ypresto.androidtranscoder.format.MediaFormatStrategy;
+
+/**
+ * TranscoderEngine on top of the android-transcoder library. The library
+ * runs one session at a time on its own thread.
+ */
+public class LibraryTranscoderEngine implements TranscoderEngine {
+
+    public Future<Void> transcode(FileDescriptor input, String outputPath, MediaFormatStrategy formatStrategy,
+                                  final Listener listener, long durationUs) {
+        return MediaTranscoder.getInstance().transcodeVideo(input, outputPath, formatStrategy,
+                new MediaTranscoder.Listener() {
+                    @Override
+                    public void onTranscodeProgress(double progress) {
+                        listener.onProgress(progress);
+                    }
+
+                    @Override
+                    public void onTranscodeCompleted() {
+                        listener.onCompleted();
+                    }
+
+                    @Override
+                    public void onTranscodeCanceled() {
+                        listener.onCanceled();
+                    }
+
+                    @Override
+                    public void onTranscodeFailed(Exception exception) {
+                        listener.onFailed(exception);
+                    }
+                }, durationUs);
+    }
+
+}
@@ -0,0 +1,116 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Reads the encoders from MediaCodecList. Before API 21 there are no
+ * capability ranges, so only names and the hardware guess are filled in.
+ */
+public class MediaCodecListProvider implements CodecCapabilityProvider {
+
+    private static final String TAG = "VideoEditorCodecs";
+
+    public List<EncoderInfo> getEncoders(String mime) {
+        List<EncoderInfo> encoders = new ArrayList<EncoderInfo>();
+
+        MediaCodecInfo[] codecs = Build.VERSION.SDK_INT >= 21
+                ? new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()
+                : legacyCodecInfos();
+
+        for (MediaCodecInfo codec : codecs) {
+            if (!codec.isEncoder() || !supportsType(codec, mime)) {
+                continue;
+            }
+            try {
+                encoders.add(toEncoderInfo(codec, mime));
+            } catch (RuntimeException e) {
+                // some vendor codecs throw on capability queries, skip them
+                Log.d(TAG, "can't read capabilities of " + codec.getName(), e);
+            }
+        }
+        return encoders;
+    }
+
+    /**
+     * The codec list before API 21, through the static methods deprecated
+     * since.
+     */
+    @SuppressWarnings("deprecation")
+    private static MediaCodecInfo[] legacyCodecInfos() {
+        MediaCodecInfo[] codecs = new MediaCodecInfo[MediaCodecList.getCodecCount()];
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i] = MediaCodecList.getCodecInfoAt(i);
+        }
+        return codecs;
+    }
+
+    private static boolean supportsType(MediaCodecInfo codec, String mime) {
+        for (String type : codec.getSupportedTypes()) {
+            if (type.equalsIgnoreCase(mime)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static EncoderInfo toEncoderInfo(MediaCodecInfo codec, String mime) {
+        String name = codec.getName();
+        boolean hardware = Build.VERSION.SDK_INT >= 29
+                ? codec.isHardwareAccelerated()
+                : !isSoftwareName(name);
+
+        if (Build.VERSION.SDK_INT < 21) {
+            return new EncoderInfo(name, mime, hardware, 0, 0, 0, 0, 0, 0,
+                    EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+        }
+
+        MediaCodecInfo.CodecCapabilities capabilities = codec.getCapabilitiesForType(mime);
+        final MediaCodecInfo.VideoCapabilities video = capabilities.getVideoCapabilities();
+
+        int highProfileLevel = EncoderInfo.UNKNOWN;
+        if (MediaFormat.MIMETYPE_VIDEO_AVC.equalsIgnoreCase(mime) && capabilities.profileLevels != null) {
+            for (MediaCodecInfo.CodecProfileLevel profileLevel : capabilities.profileLevels) {
+                if (profileLevel.profile == MediaCodecInfo.CodecProfileLevel.AVCProfileHigh) {
+                    highProfileLevel = Math.max(highProfileLevel, profileLevel.level);
+                }
+            }
+        }
+
+        int maxInstances = Build.VERSION.SDK_INT >= 23
+                ? capabilities.getMaxSupportedInstances()
+                : EncoderInfo.UNKNOWN;
+
+        if (video == null) {
+            return new EncoderInfo(name, mime, hardware, 0, 0, 0, 0, 0, 0,
+                    EncoderInfo.UNKNOWN, highProfileLevel, maxInstances);
+        }
+        return new EncoderInfo(name, mime, hardware,
+                video.getSupportedWidths().getLower(), video.getSupportedWidths().getUpper(),
+                video.getSupportedHeights().getLower(), video.getSupportedHeights().getUpper(),
+                video.getWidthAlignment(), video.getHeightAlignment(),
+                video.getBitrateRange().getUpper(), highProfileLevel, maxInstances,
+                new EncoderInfo.SizeRule() {
+                    public boolean isSupported(int width, int height) {
+                        return video.isSizeSupported(width, height);
+                    }
+                });
+    }
+
+    /**
+     * Software codecs of AOSP and Google, the usual fallback when a device
+     * has no hardware encoder for a type.
+     */
+    private static boolean isSoftwareName(String name) {
+        String lower = name.toLowerCase();
+        return lower.startsWith("omx.google.") || lower.startsWith("c2.android.")
+                || lower.startsWith("omx.sec.avc.sw") || lower.contains(".sw.");
+    }
+
+}
@@ -0,0 +1,194 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import android.content.ContentResolver;
+import android.media.MediaExtractor;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.util.Log;
+
+/**
+ * A video to read from, either a file or a content:// URI.
+ *
+ * Content URIs are opened with ContentResolver.openFileDescriptor and read
+ * through the descriptor, so gallery and document picks are never copied
+ * or looked up through the deprecated _data column.
+ */
+public class MediaInput {
+
+    private static final String TAG = "VideoEditorInput";
+
+    private final File file;
+    private final ContentResolver resolver;
+    private final Uri uri;
+
+    private MediaInput(File file, ContentResolver resolver, Uri uri) {
+        this.file = file;
+        this.resolver = resolver;
+        this.uri = uri;
+    }
+
+    public static MediaInput fromFile(File file) {
+        return new MediaInput(file, null, null);
+    }
+
+    public static MediaInput fromUri(ContentResolver resolver, Uri uri) {
+        return new MediaInput(null, resolver, uri);
+    }
+
+    /**
+     * The file behind this input, null for content URIs.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Opens the input for reading. The caller closes the descriptor.
+     */
+    public ParcelFileDescriptor open() throws FileNotFoundException {
+        if (file != null) {
+            return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        }
+        ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r");
+        if (pfd == null) {
+            throw new FileNotFoundException("can't open " + uri);
+        }
+        return pfd;
+    }
+
+    /**
+     * Whether the input exists and can be read.
+     */
+    public boolean exists() {
+        if (file != null) {
+            return file.exists() && file.canRead();
+        }
+        try {
+            closeQuietly(open());
+            return true;
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (SecurityException e) {
+            Log.d(TAG, "no permission to read " + uri, e);
+            return false;
+        }
+    }
+
+    public void setDataSource(MediaExtractor extractor) throws IOException {
+        if (file != null) {
+            extractor.setDataSource(file.getAbsolutePath());
+            return;
+        }
+        // the extractor keeps its own reference, the descriptor can be closed right away
+        ParcelFileDescriptor pfd = open();
+        try {
+            extractor.setDataSource(pfd.getFileDescriptor());
+        } finally {
+            closeQuietly(pfd);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the input can't be opened, like
+     *                                  MediaMetadataRetriever.setDataSource
+     */
+    public void setDataSource(MediaMetadataRetriever mmr) {
+        if (file != null) {
+            mmr.setDataSource(file.getAbsolutePath());
+            return;
+        }
+        ParcelFileDescriptor pfd;
+        try {
+            pfd = open();
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        try {
+            mmr.setDataSource(pfd.getFileDescriptor());
+        } finally {
+            closeQuietly(pfd);
+        }
+    }
+
+    /**
+     * Size in bytes, 0 if the provider doesn't tell.
+     */
+    public long length() {
+        if (file != null) {
+            return file.length();
+        }
+        try {
+            ParcelFileDescriptor pfd = open();
+            try {
+                return Math.max(0, pfd.getStatSize());
+            } finally {
+                closeQuietly(pfd);
+            }
+        } catch (FileNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Key that changes when the content does, for caches: the canonical
+     * path or URI, the size and the modification time.
+     */
+    public String getCacheKey() throws IOException {
+        if (file != null) {
+            return file.getCanonicalPath() + "|" + file.length() + "|" + file.lastModified();
+        }
+        ParcelFileDescriptor pfd = open();
+        try {
+            long modified = 0;
+            if (Build.VERSION.SDK_INT >= 21) {
+                try {
+                    modified = Os.fstat(pfd.getFileDescriptor()).st_mtime;
+                } catch (ErrnoException e) {
+                    Log.d(TAG, "can't stat " + uri, e);
+                }
+            }
+            return uri.toString() + "|" + pfd.getStatSize() + "|" + modified;
+        } finally {
+            closeQuietly(pfd);
+        }
+    }
+
+    /**
+     * Deletes the input. Content URIs are only deleted where the provider
+     * allows it, so this may return false.
+     */
+    public boolean delete() {
+        if (file != null) {
+            return file.delete();
+        }
+        try {
+            return resolver.delete(uri, null, null) > 0;
+        } catch (RuntimeException e) {
+            // SecurityException, or UnsupportedOperationException of read-only providers
+            Log.d(TAG, "can't delete " + uri, e);
+            return false;
+        }
+    }
+
+    static void closeQuietly(ParcelFileDescriptor pfd) {
+        try {
+            pfd.close();
+        } catch (IOException e) {
+            Log.d(TAG, "can't close descriptor", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file != null ? file.getAbsolutePath() : uri.toString();
+    }
+
+}
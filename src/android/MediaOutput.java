@@ -0,0 +1,166 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.util.Log;
+
+/**
+ * Where a result ends up: a file, a content:// URI picked by the caller
+ * (a Storage Access Framework document or a MediaStore entry), or a new
+ * entry in the shared MediaStore collection.
+ *
+ * The encoders write to getWorkPath(). For a file that is the output
+ * itself; otherwise it is a file in the cache directory that commit()
+ * writes through a descriptor of the URI. Scoped storage doesn't allow
+ * writing shared files by path from API 29 on.
+ */
+public class MediaOutput {
+
+    private static final String TAG = "VideoEditorOutput";
+
+    private final File workFile;
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private final Uri collection;
+    private final ContentValues entry;
+    private Uri committedUri;
+
+    private MediaOutput(File workFile, ContentResolver resolver, Uri uri, Uri collection, ContentValues entry) {
+        this.workFile = workFile;
+        this.resolver = resolver;
+        this.uri = uri;
+        this.collection = collection;
+        this.entry = entry;
+    }
+
+    public static MediaOutput toFile(File file) {
+        return new MediaOutput(file, null, null, null, null);
+    }
+
+    /**
+     * @param uri      existing document or entry, overwritten on commit
+     * @param workFile temporary file the result is written to first
+     */
+    public static MediaOutput toUri(ContentResolver resolver, Uri uri, File workFile) {
+        return new MediaOutput(workFile, resolver, uri, null, null);
+    }
+
+    /**
+     * A new MediaStore entry, inserted on commit. Needs API 29.
+     *
+     * @param collection   e.g. MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+     * @param relativePath directory of the entry, e.g. "Movies/MyApp"
+     * @param workFile     temporary file the result is written to first
+     */
+    public static MediaOutput toMediaStore(ContentResolver resolver, Uri collection, String displayName, String mimeType,
+                                           String relativePath, File workFile) {
+        ContentValues entry = new ContentValues();
+        entry.put(MediaStore.MediaColumns.DISPLAY_NAME, displayName);
+        entry.put(MediaStore.MediaColumns.MIME_TYPE, mimeType);
+        entry.put(MediaStore.MediaColumns.RELATIVE_PATH, relativePath);
+        return new MediaOutput(workFile, resolver, null, collection, entry);
+    }
+
+    /**
+     * Whether the output is a plain file, which the media scanner has to be
+     * told about to show up in the gallery.
+     */
+    public boolean isFile() {
+        return resolver == null;
+    }
+
+    public String getWorkPath() {
+        return workFile.getAbsolutePath();
+    }
+
+    /**
+     * Moves the work file to the output. Nothing to do for files.
+     */
+    public void commit() throws IOException {
+        if (isFile()) {
+            return;
+        }
+        try {
+            if (uri != null) {
+                copyTo(uri);
+                committedUri = uri;
+            } else {
+                // pending entries stay hidden from other apps until they are complete
+                entry.put(MediaStore.MediaColumns.IS_PENDING, 1);
+                Uri inserted = resolver.insert(collection, entry);
+                if (inserted == null) {
+                    throw new IOException("can't add " + workFile.getName() + " to " + collection);
+                }
+                try {
+                    copyTo(inserted);
+                    ContentValues done = new ContentValues();
+                    done.put(MediaStore.MediaColumns.IS_PENDING, 0);
+                    resolver.update(inserted, done, null, null);
+                } catch (IOException e) {
+                    resolver.delete(inserted, null, null);
+                    throw e;
+                }
+                committedUri = inserted;
+            }
+        } finally {
+            workFile.delete();
+        }
+    }
+
+    /**
+     * Removes whatever a failed or canceled job left behind. A URI given by
+     * the caller is left alone.
+     */
+    public void discard() {
+        workFile.delete();
+    }
+
+    /**
+     * What to report to the caller: the file path, or the URI once committed.
+     */
+    public String getResultPath() {
+        if (isFile()) {
+            return workFile.getAbsolutePath();
+        }
+        return committedUri != null ? committedUri.toString() : null;
+    }
+
+    private void copyTo(Uri target) throws IOException {
+        ParcelFileDescriptor pfd = resolver.openFileDescriptor(target, "w");
+        if (pfd == null) {
+            throw new FileNotFoundException("can't open " + target);
+        }
+        FileInputStream in = new FileInputStream(workFile);
+        FileOutputStream out = new FileOutputStream(pfd.getFileDescriptor());
+        try {
+            FileChannel source = in.getChannel();
+            FileChannel destination = out.getChannel();
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += destination.transferFrom(source, position, size - position);
+            }
+            // "w" doesn't truncate with every provider, cut off what a longer old document left
+            try {
+                destination.truncate(size);
+            } catch (IOException e) {
+                Log.d(TAG, "can't truncate " + target, e);
+            }
+        } finally {
+            in.close();
+            out.close();
+            MediaInput.closeQuietly(pfd);
+        }
+    }
+
+}
@@ -0,0 +1,535 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+import android.view.Surface;
+
+/**
+ * Joins several videos one after another into one MP4, with the
+ * timestamps of each clip shifted to where the previous one ended.
+ *
+ * When all clips have the same codec, size and codec config (SPS/PPS),
+ * copy() writes their samples as they are. Otherwise transcode() decodes
+ * the clips one after another into the input surface of a single encoder,
+ * so the output has one codec config and needs no joining. A FrameRenderer
+ * fits every frame into the output size keeping its aspect ratio.
+ *
+ * Audio is copied, both ways, when all clips have audio in the same format
+ * and codec config; otherwise the output has none, see hasAudio(). The
+ * output takes the rotation of the first clip as orientation hint; clips
+ * rotated otherwise can't be copied and are turned to match while they are
+ * drawn. transcode() needs API 21.
+ */
+public class MergeTranscoder {
+
+    private static final String TAG = "VideoEditorMerge";
+    private static final long TIMEOUT_US = 10000;
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Track formats and length of one input.
+     */
+    private static class Clip {
+        final MediaInput input;
+        final MediaFormat videoFormat;
+        /** null without audio */
+        final MediaFormat audioFormat;
+        final long durationUs;
+        /** start of the clip in the output */
+        long offsetUs;
+
+        Clip(MediaInput input, MediaFormat videoFormat, MediaFormat audioFormat, long durationUs) {
+            this.input = input;
+            this.videoFormat = videoFormat;
+            this.audioFormat = audioFormat;
+            this.durationUs = durationUs;
+        }
+    }
+
+    private final Clip[] clips;
+    private final String outputPath;
+    private final long durationUs;
+    private final boolean audioCompatible;
+    private int[] rotations;
+    private boolean includeAudio = true;
+
+    /**
+     * Reads the track formats of all inputs.
+     */
+    public MergeTranscoder(List<MediaInput> inputs, String outputPath) throws IOException {
+        if (inputs.isEmpty()) {
+            throw new IOException("nothing to merge");
+        }
+        this.outputPath = outputPath;
+        this.clips = new Clip[inputs.size()];
+
+        long offsetUs = 0;
+        for (int i = 0; i < clips.length; i++) {
+            clips[i] = readClip(inputs.get(i));
+            clips[i].offsetUs = offsetUs;
+            offsetUs += clips[i].durationUs;
+        }
+        this.durationUs = offsetUs;
+        this.rotations = new int[clips.length];
+
+        boolean compatible = true;
+        for (Clip clip : clips) {
+            if (clip.audioFormat == null || !sameAudio(clips[0].audioFormat, clip.audioFormat)) {
+                compatible = false;
+                break;
+            }
+        }
+        this.audioCompatible = compatible;
+    }
+
+    /**
+     * Rotation of each clip for display, as its container states.
+     */
+    public void setRotations(int[] rotations) {
+        if (rotations.length != clips.length) {
+            throw new IllegalArgumentException(rotations.length + " rotations for " + clips.length + " clips");
+        }
+        this.rotations = rotations.clone();
+    }
+
+    public void setIncludeAudio(boolean includeAudio) {
+        this.includeAudio = includeAudio;
+    }
+
+    /**
+     * Total length of the output.
+     */
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    /**
+     * Whether the output gets an audio track: it is asked for and all
+     * clips have audio that can be copied into one track.
+     */
+    public boolean hasAudio() {
+        return includeAudio && audioCompatible;
+    }
+
+    /**
+     * Whether the videos can be joined by copy() without re-encoding.
+     */
+    public boolean canCopy() {
+        MediaFormat first = clips[0].videoFormat;
+        for (int i = 0; i < clips.length; i++) {
+            MediaFormat format = clips[i].videoFormat;
+            if (rotations[i] != rotations[0]
+                    || !first.getString(MediaFormat.KEY_MIME).equals(format.getString(MediaFormat.KEY_MIME))
+                    || first.getInteger(MediaFormat.KEY_WIDTH) != format.getInteger(MediaFormat.KEY_WIDTH)
+                    || first.getInteger(MediaFormat.KEY_HEIGHT) != format.getInteger(MediaFormat.KEY_HEIGHT)
+                    || !ParallelTranscoder.sameCodecConfig(first, format)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Format of the video track of the first clip, what the output format
+     * is derived from.
+     */
+    public MediaFormat getFirstVideoFormat() {
+        return clips[0].videoFormat;
+    }
+
+    /**
+     * Copies the samples of all clips into the output, see canCopy(). Runs
+     * on the calling thread and stops with an InterruptedException when the
+     * thread is interrupted.
+     */
+    public void copy(Remuxer.ProgressListener listener) throws IOException, InterruptedException {
+        if (!canCopy()) {
+            throw new ParallelTranscoder.IncompatibleSegmentsException("clips have different video formats");
+        }
+
+        MediaMuxer muxer = null;
+        boolean muxerStarted = false;
+        AudioCopier audio = null;
+
+        try {
+            int bufferSize = DEFAULT_BUFFER_SIZE;
+            for (Clip clip : clips) {
+                bufferSize = Math.max(bufferSize, maxInputSize(clip.videoFormat));
+                if (hasAudio()) {
+                    bufferSize = Math.max(bufferSize, maxInputSize(clip.audioFormat));
+                }
+            }
+
+            muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(rotations[0]);
+            int videoMuxTrack = muxer.addTrack(clips[0].videoFormat);
+            if (hasAudio()) {
+                audio = new AudioCopier(muxer.addTrack(clips[0].audioFormat), bufferSize);
+            }
+            muxer.start();
+            muxerStarted = true;
+
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+            for (Clip clip : clips) {
+                MediaExtractor extractor = new MediaExtractor();
+                try {
+                    clip.input.setDataSource(extractor);
+                    extractor.selectTrack(Remuxer.findTrack(extractor, "video/"));
+                    long sampleTimeUs;
+                    while ((sampleTimeUs = extractor.getSampleTime()) >= 0) {
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException("merge canceled");
+                        }
+                        int size = extractor.readSampleData(buffer, 0);
+                        int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                                ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+                        long outputTimeUs = clip.offsetUs + sampleTimeUs;
+                        info.set(0, size, outputTimeUs, flags);
+                        muxer.writeSampleData(videoMuxTrack, buffer, info);
+                        extractor.advance();
+
+                        if (audio != null) {
+                            audio.copyUntil(muxer, outputTimeUs);
+                        }
+                        if (listener != null && durationUs > 0) {
+                            listener.onProgress(Math.min(1.0, (double) outputTimeUs / durationUs));
+                        }
+                    }
+                } finally {
+                    extractor.release();
+                }
+            }
+            if (audio != null) {
+                audio.copyUntil(muxer, Long.MAX_VALUE);
+            }
+
+            muxer.stop();
+            muxerStarted = false;
+        } finally {
+            if (audio != null) {
+                audio.release();
+            }
+            releaseMuxer(muxer, muxerStarted);
+        }
+    }
+
+    /**
+     * Decodes all clips into one encoder of videoFormat. With a frame rate
+     * set, frames above it are dropped like in SegmentTranscoder. Runs on
+     * the calling thread and stops with an InterruptedException when the
+     * thread is interrupted.
+     *
+     * @param videoFormat format of the encoded video, as from a MediaFormatStrategy
+     */
+    public void transcode(MediaFormat videoFormat, double frameRate, Remuxer.ProgressListener listener)
+            throws IOException, InterruptedException {
+        MediaCodec encoder = null;
+        Surface inputSurface = null;
+        FrameRenderer renderer = null;
+        MediaExtractor extractor = null;
+        MediaCodec decoder = null;
+        MediaMuxer muxer = null;
+        boolean muxerStarted = false;
+        AudioCopier audio = null;
+
+        try {
+            encoder = MediaCodec.createEncoderByType(videoFormat.getString(MediaFormat.KEY_MIME));
+            encoder.configure(videoFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = encoder.createInputSurface();
+            renderer = new FrameRenderer(inputSurface,
+                    videoFormat.getInteger(MediaFormat.KEY_WIDTH), videoFormat.getInteger(MediaFormat.KEY_HEIGHT));
+            encoder.start();
+
+            muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(rotations[0]);
+
+            FrameDecimator decimator = new FrameDecimator(frameRate);
+            MediaCodec.BufferInfo decodedInfo = new MediaCodec.BufferInfo();
+            MediaCodec.BufferInfo encodedInfo = new MediaCodec.BufferInfo();
+            int videoMuxTrack = -1;
+            int clipIndex = -1;
+            Clip clip = null;
+            boolean inputDone = true;
+            boolean decoderDone = true;
+            boolean encoderDone = false;
+            long lastFrameUs = -1;
+
+            while (!encoderDone) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("merge canceled");
+                }
+
+                // the decoder of a clip is replaced by the next one's once it ran dry
+                if (decoderDone && clipIndex + 1 < clips.length) {
+                    if (decoder != null) {
+                        stopQuietly(decoder);
+                        decoder = null;
+                        extractor.release();
+                        extractor = null;
+                    }
+                    clip = clips[++clipIndex];
+                    extractor = new MediaExtractor();
+                    clip.input.setDataSource(extractor);
+                    extractor.selectTrack(Remuxer.findTrack(extractor, "video/"));
+                    // turned to the orientation of the first clip, which the output is shown in
+                    int turn = Orientation.normalize(rotations[clipIndex] - rotations[0]);
+                    int width = clip.videoFormat.getInteger(MediaFormat.KEY_WIDTH);
+                    int height = clip.videoFormat.getInteger(MediaFormat.KEY_HEIGHT);
+                    renderer.setCropAndRotation(0, 0, 1, 1, turn);
+                    if (turn == 90 || turn == 270) {
+                        renderer.setSourceSize(height, width);
+                    } else {
+                        renderer.setSourceSize(width, height);
+                    }
+                    FrameRenderer.keepStoredOrientation(clip.videoFormat);
+                    decoder = MediaCodec.createDecoderByType(clip.videoFormat.getString(MediaFormat.KEY_MIME));
+                    decoder.configure(clip.videoFormat, renderer.getDecoderSurface(), null, 0);
+                    decoder.start();
+                    inputDone = false;
+                    decoderDone = false;
+                }
+
+                if (!inputDone) {
+                    int index = decoder.dequeueInputBuffer(TIMEOUT_US);
+                    if (index >= 0) {
+                        long sampleTimeUs = extractor.getSampleTime();
+                        if (sampleTimeUs < 0) {
+                            decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            int size = extractor.readSampleData(decoder.getInputBuffer(index), 0);
+                            decoder.queueInputBuffer(index, 0, Math.max(0, size), sampleTimeUs, 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                if (!decoderDone) {
+                    int index = decoder.dequeueOutputBuffer(decodedInfo, TIMEOUT_US);
+                    if (index >= 0) {
+                        long frameTimeUs = clip.offsetUs + decodedInfo.presentationTimeUs;
+                        if ((decodedInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                            decoder.releaseOutputBuffer(index, false);
+                            decoderDone = true;
+                            if (clipIndex + 1 == clips.length) {
+                                encoder.signalEndOfInputStream();
+                            }
+                        } else if (decodedInfo.size > 0 && frameTimeUs > lastFrameUs && decimator.keep(frameTimeUs)) {
+                            // frames past the stated end of the previous clip would go back in time, only later ones are drawn
+                            decoder.releaseOutputBuffer(index, true);
+                            renderer.awaitFrame();
+                            renderer.drawFrame(frameTimeUs * 1000);
+                            lastFrameUs = frameTimeUs;
+                        } else {
+                            decoder.releaseOutputBuffer(index, false);
+                        }
+                    }
+                }
+
+                int index = encoder.dequeueOutputBuffer(encodedInfo, TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    videoMuxTrack = muxer.addTrack(encoder.getOutputFormat());
+                    if (hasAudio()) {
+                        audio = new AudioCopier(muxer.addTrack(clips[0].audioFormat), DEFAULT_BUFFER_SIZE);
+                    }
+                    muxer.start();
+                    muxerStarted = true;
+                } else if (index >= 0) {
+                    if ((encodedInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                        encodedInfo.size = 0;
+                    }
+                    if (encodedInfo.size > 0 && muxerStarted) {
+                        muxer.writeSampleData(videoMuxTrack, encoder.getOutputBuffer(index), encodedInfo);
+                        // keep the audio interleaved with the video written so far
+                        if (audio != null) {
+                            audio.copyUntil(muxer, encodedInfo.presentationTimeUs);
+                        }
+                        if (listener != null && durationUs > 0) {
+                            listener.onProgress(Math.min(1.0, (double) encodedInfo.presentationTimeUs / durationUs));
+                        }
+                    }
+                    encoder.releaseOutputBuffer(index, false);
+                    if ((encodedInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        encoderDone = true;
+                    }
+                }
+            }
+
+            if (!muxerStarted) {
+                throw new IOException("no frames in " + clips.length + " clips");
+            }
+            if (decimator.getDropped() > 0) {
+                Log.d(TAG, "encoded " + decimator.getKept() + " frames, dropped " + decimator.getDropped());
+            }
+            if (audio != null) {
+                audio.copyUntil(muxer, Long.MAX_VALUE);
+            }
+
+            muxer.stop();
+            muxerStarted = false;
+        } finally {
+            if (extractor != null) {
+                extractor.release();
+            }
+            if (decoder != null) {
+                stopQuietly(decoder);
+            }
+            if (encoder != null) {
+                stopQuietly(encoder);
+            }
+            if (renderer != null) {
+                renderer.release();
+            }
+            if (inputSurface != null) {
+                inputSurface.release();
+            }
+            if (audio != null) {
+                audio.release();
+            }
+            releaseMuxer(muxer, muxerStarted);
+        }
+    }
+
+    /**
+     * Copies the audio of the clips one after another, each shifted by the
+     * offset of its clip and cut at its end.
+     */
+    private class AudioCopier {
+
+        private final int muxTrack;
+        private final ByteBuffer buffer;
+        private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        private int clipIndex = -1;
+        private MediaExtractor extractor;
+
+        AudioCopier(int muxTrack, int bufferSize) {
+            this.muxTrack = muxTrack;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+        }
+
+        /**
+         * Copies audio samples up to untilUs of the output time.
+         */
+        void copyUntil(MediaMuxer muxer, long untilUs) throws IOException {
+            while (true) {
+                if (extractor == null) {
+                    if (clipIndex + 1 >= clips.length) {
+                        return;
+                    }
+                    clipIndex++;
+                    extractor = new MediaExtractor();
+                    clips[clipIndex].input.setDataSource(extractor);
+                    extractor.selectTrack(Remuxer.findTrack(extractor, "audio/"));
+                }
+
+                Clip clip = clips[clipIndex];
+                long sampleTimeUs = extractor.getSampleTime();
+                if (sampleTimeUs < 0 || sampleTimeUs >= clip.durationUs) {
+                    extractor.release();
+                    extractor = null;
+                    continue;
+                }
+                if (clip.offsetUs + sampleTimeUs > untilUs) {
+                    return;
+                }
+                int size = extractor.readSampleData(buffer, 0);
+                if (size > 0) {
+                    info.set(0, size, clip.offsetUs + sampleTimeUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+                    muxer.writeSampleData(muxTrack, buffer, info);
+                }
+                extractor.advance();
+            }
+        }
+
+        void release() {
+            if (extractor != null) {
+                extractor.release();
+                extractor = null;
+            }
+        }
+    }
+
+    private static Clip readClip(MediaInput input) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            input.setDataSource(extractor);
+            int videoTrack = Remuxer.findTrack(extractor, "video/");
+            if (videoTrack < 0) {
+                throw new IOException("no video track in " + input);
+            }
+            MediaFormat videoFormat = extractor.getTrackFormat(videoTrack);
+            int audioTrack = Remuxer.findTrack(extractor, "audio/");
+            MediaFormat audioFormat = audioTrack >= 0 ? extractor.getTrackFormat(audioTrack) : null;
+
+            long durationUs = videoFormat.containsKey(MediaFormat.KEY_DURATION)
+                    ? videoFormat.getLong(MediaFormat.KEY_DURATION) : 0;
+            if (durationUs <= 0) {
+                // without a stated duration the clip lasts until one frame after its last one
+                extractor.selectTrack(videoTrack);
+                long firstUs = -1;
+                long lastUs = 0;
+                int samples = 0;
+                long sampleTimeUs;
+                while ((sampleTimeUs = extractor.getSampleTime()) >= 0) {
+                    if (firstUs < 0) {
+                        firstUs = sampleTimeUs;
+                    }
+                    lastUs = Math.max(lastUs, sampleTimeUs);
+                    samples++;
+                    extractor.advance();
+                }
+                if (samples == 0) {
+                    throw new IOException("no video samples in " + input);
+                }
+                durationUs = lastUs + (samples > 1 ? (lastUs - firstUs) / (samples - 1) : 0);
+            }
+            return new Clip(input, videoFormat, audioFormat, durationUs);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    private static boolean sameAudio(MediaFormat a, MediaFormat b) {
+        return a.getString(MediaFormat.KEY_MIME).equals(b.getString(MediaFormat.KEY_MIME))
+                && a.getInteger(MediaFormat.KEY_SAMPLE_RATE) == b.getInteger(MediaFormat.KEY_SAMPLE_RATE)
+                && a.getInteger(MediaFormat.KEY_CHANNEL_COUNT) == b.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+                && ParallelTranscoder.sameCodecConfig(a, b);
+    }
+
+    private static int maxInputSize(MediaFormat format) {
+        return format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE) ? format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE) : 0;
+    }
+
+    private static void releaseMuxer(MediaMuxer muxer, boolean started) {
+        if (muxer == null) {
+            return;
+        }
+        try {
+            if (started) {
+                muxer.stop();
+            }
+        } catch (IllegalStateException e) {
+            Log.d(TAG, "can't stop muxer", e);
+        }
+        muxer.release();
+    }
+
+    private static void stopQuietly(MediaCodec codec) {
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            Log.d(TAG, "can't stop codec", e);
+        }
+        codec.release();
+    }
+
+}
@@ -0,0 +1,16 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+
+/**
+ * Reads the container metadata of a video. MetadataRetrieverProber is the
+ * platform implementation; ProbeCache sits in front of either.
+ */
+public interface MetadataProber {
+
+    /**
+     * @throws IllegalArgumentException if the input has no readable video track
+     */
+    VideoProbe probe(MediaInput input) throws IOException;
+
+}
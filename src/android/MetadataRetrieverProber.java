@@ -0,0 +1,66 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+
+/**
+ * Reads the metadata with a MediaMetadataRetriever, which parses the
+ * container without decoding any frames.
+ */
+public class MetadataRetrieverProber implements MetadataProber {
+
+    /**
+     * The retriever is always released; its release throws IOException
+     * since API 29.
+     *
+     * @throws IllegalArgumentException if the input has no readable video track
+     */
+    public VideoProbe probe(MediaInput input) throws IOException {
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        try {
+            input.setDataSource(mmr);
+
+            int width = parseInt(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+            int height = parseInt(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("no video track in " + input);
+            }
+
+            int rotation = 0;
+            if (Build.VERSION.SDK_INT >= 17) {
+                rotation = parseInt(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+            }
+
+            long durationMs = parseLong(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+            long size = input.length();
+
+            // not every container reports a bitrate, fall back to the average one
+            long bitrate = parseLong(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE));
+            if (bitrate <= 0 && durationMs > 0) {
+                bitrate = size * 8 * 1000 / durationMs;
+            }
+
+            return new VideoProbe(width, height, rotation, durationMs, bitrate, size);
+        } finally {
+            mmr.release();
+        }
+    }
+
+    static int parseInt(String value) {
+        return (int) parseLong(value);
+    }
+
+    static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
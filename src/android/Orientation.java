@@ -0,0 +1,140 @@
+package org.apache.cordova.videoeditor;
+
+/**
+ * How a video is stored and how it is shown: frames are stored as
+ * storedWidth x storedHeight and turned clockwise by rotation for display,
+ * as the container says.
+ *
+ * Frames are kept in their stored orientation wherever possible and the
+ * output gets a rotation as orientation hint of the muxer, which costs
+ * nothing. Crop rectangles are given as the video is shown and mapped to
+ * the stored frame with toStoredRect, so the crop is done in the pass that
+ * scales the frames. Only frames that must end up in another orientation
+ * than stored, like clips of a merge, are turned while they are drawn,
+ * see textureCoordinates.
+ */
+public class Orientation {
+
+    public final int storedWidth;
+    public final int storedHeight;
+    /** 0, 90, 180 or 270 */
+    public final int rotation;
+
+    /**
+     * @param rotation clockwise rotation for display, a multiple of 90
+     */
+    public Orientation(int storedWidth, int storedHeight, int rotation) {
+        this.storedWidth = storedWidth;
+        this.storedHeight = storedHeight;
+        this.rotation = normalize(rotation);
+    }
+
+    public static Orientation of(VideoProbe probe) {
+        // containers only ever state quarter turns, anything else is rounded to one
+        return new Orientation(probe.width, probe.height, Math.round(probe.rotation / 90f) * 90);
+    }
+
+    /**
+     * Degrees as one of 0, 90, 180 or 270, e.g. -90 as 270.
+     *
+     * @throws IllegalArgumentException if degrees isn't a multiple of 90
+     */
+    public static int normalize(int degrees) {
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("rotation must be a multiple of 90 degrees, not " + degrees);
+        }
+        return ((degrees % 360) + 360) % 360;
+    }
+
+    /**
+     * Whether the video is shown turned by a quarter, so width and height
+     * swap places.
+     */
+    public boolean isSideways() {
+        return rotation == 90 || rotation == 270;
+    }
+
+    public int getDisplayWidth() {
+        return isSideways() ? storedHeight : storedWidth;
+    }
+
+    public int getDisplayHeight() {
+        return isSideways() ? storedWidth : storedHeight;
+    }
+
+    /**
+     * "portrait" if the video is shown higher than wide, "landscape"
+     * otherwise.
+     */
+    public String getName() {
+        return getDisplayWidth() < getDisplayHeight() ? "portrait" : "landscape";
+    }
+
+    /**
+     * The same frames, shown turned clockwise by degrees more.
+     */
+    public Orientation rotatedBy(int degrees) {
+        return new Orientation(storedWidth, storedHeight, rotation + normalize(degrees));
+    }
+
+    /**
+     * Maps a rectangle of the video as shown to the stored frame. Returns
+     * {x, y, width, height} in stored pixels.
+     *
+     * @throws IllegalArgumentException if the rectangle is empty or not within the video
+     */
+    public int[] toStoredRect(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0 || x < 0 || y < 0
+                || x + width > getDisplayWidth() || y + height > getDisplayHeight()) {
+            throw new IllegalArgumentException("crop " + width + "x" + height + " at " + x + "," + y
+                    + " is not within the " + getDisplayWidth() + "x" + getDisplayHeight() + " video");
+        }
+        switch (rotation) {
+            case 90:
+                return new int[] { y, storedHeight - x - width, height, width };
+            case 180:
+                return new int[] { storedWidth - x - width, storedHeight - y - height, width, height };
+            case 270:
+                return new int[] { storedWidth - y - height, x, height, width };
+            default:
+                return new int[] { x, y, width, height };
+        }
+    }
+
+    /**
+     * Texture coordinates for the corners of the output, bottom left,
+     * bottom right, top left and top right, as {u, v} pairs. They draw the
+     * region of the frame between left, top, right and bottom, fractions of
+     * the stored frame from its top left, turned clockwise by rotation.
+     */
+    public static float[] textureCoordinates(int rotation, float left, float top, float right, float bottom) {
+        // output corners as x, y from the bottom left
+        float[] corners = { 0, 0, 1, 0, 0, 1, 1, 1 };
+        float[] result = new float[corners.length];
+        int degrees = normalize(rotation);
+        for (int i = 0; i < corners.length; i += 2) {
+            float x = corners[i];
+            float y = corners[i + 1];
+            float u;
+            float v;
+            if (degrees == 90) {
+                u = 1 - y;
+                v = x;
+            } else if (degrees == 180) {
+                u = 1 - x;
+                v = 1 - y;
+            } else if (degrees == 270) {
+                u = y;
+                v = 1 - x;
+            } else {
+                u = x;
+                v = y;
+            }
+            // texture v runs up from the bottom of the frame
+            result[i] = left + u * (right - left);
+            result[i + 1] = (1 - bottom) + v * (bottom - top);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,250 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+/**
+ * Size capped LRU cache of transcode outputs in a directory of its own, so
+ * a clip that is sent again with the same options isn't encoded again.
+ *
+ * Entries are keyed by the content of the input, not its path: the size
+ * and hashes of the first and last FINGERPRINT_BYTES, together with the
+ * options that change the output. A copy of the same clip hits as well.
+ * The recency of an entry is its modification time, so the order survives
+ * a restart.
+ */
+public class OutputCache {
+
+    private static final String TAG = "VideoEditorOutputCache";
+
+    public static final long DEFAULT_MAX_BYTES = 200L * 1024 * 1024;
+
+    /** bytes hashed at the start and at the end of the input */
+    static final int FINGERPRINT_BYTES = 64 * 1024;
+
+    private static final String EXTENSION = ".mp4";
+    private static final String PARTIAL_EXTENSION = ".part";
+
+    private final File directory;
+    private final long maxBytes;
+    /** entry name to size, in access order */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long totalBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public OutputCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = Math.max(0, maxBytes);
+        load();
+    }
+
+    /**
+     * Key of the output of input transcoded with options.
+     *
+     * @throws IOException if the input can't be read
+     */
+    public static String keyFor(MediaInput input, TranscodeOptions options) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.toString());
+        }
+
+        ParcelFileDescriptor pfd = input.open();
+        FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            digest.update(Long.toString(size).getBytes("UTF-8"));
+
+            ByteBuffer buffer = ByteBuffer.allocate(FINGERPRINT_BYTES);
+            hashRange(channel, 0, buffer, digest);
+            // small files are covered by the head already
+            if (size > FINGERPRINT_BYTES) {
+                hashRange(channel, Math.max(FINGERPRINT_BYTES, size - FINGERPRINT_BYTES), buffer, digest);
+            }
+        } finally {
+            in.close();
+            MediaInput.closeQuietly(pfd);
+        }
+
+        digest.update(options.getOutputKey().getBytes("UTF-8"));
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    private static void hashRange(FileChannel channel, long position, ByteBuffer buffer, MessageDigest digest) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        digest.update(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * The cached output for key, null on a miss. A hit becomes the most
+     * recently used entry.
+     */
+    public synchronized File get(String key) {
+        String name = key + EXTENSION;
+        if (entries.get(name) == null) {
+            misses++;
+            return null;
+        }
+        File file = new File(directory, name);
+        if (!file.exists()) {
+            // removed behind our back, e.g. by the system clearing the cache directory
+            totalBytes -= entries.remove(name);
+            misses++;
+            return null;
+        }
+        hits++;
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Stores a copy of output under key and evicts the least recently used
+     * entries above the size cap. Outputs larger than the cap aren't kept.
+     */
+    public void put(String key, File output) {
+        long size = output.length();
+        if (size == 0 || size > maxBytes) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.d(TAG, "can't make " + directory);
+            return;
+        }
+
+        // copy outside the lock, into a name that isn't an entry until it is complete
+        String name = key + EXTENSION;
+        File partial = new File(directory, key + "-" + Thread.currentThread().getId() + PARTIAL_EXTENSION);
+        try {
+            copy(output, partial);
+        } catch (IOException e) {
+            Log.d(TAG, "can't cache " + output, e);
+            partial.delete();
+            return;
+        }
+
+        synchronized (this) {
+            File file = new File(directory, name);
+            if (!partial.renameTo(file)) {
+                partial.delete();
+                return;
+            }
+            Long previous = entries.put(name, size);
+            totalBytes += size - (previous != null ? previous : 0);
+            trim();
+        }
+    }
+
+    public synchronized void clear() {
+        for (String name : entries.keySet()) {
+            new File(directory, name).delete();
+        }
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("hits", hits);
+        json.put("misses", misses);
+        json.put("entries", entries.size());
+        json.put("bytes", totalBytes);
+        json.put("maxBytes", maxBytes);
+        return json;
+    }
+
+    /**
+     * Copies a file with a channel transfer, replacing target.
+     */
+    static void copy(File source, File target) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            FileChannel from = in.getChannel();
+            FileChannel to = out.getChannel();
+            long size = from.size();
+            long position = 0;
+            while (position < size) {
+                position += to.transferFrom(from, position, size - position);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(directory, entry.getKey()).delete();
+            totalBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Reads the entries left by earlier runs, oldest first, and removes
+     * copies that were interrupted.
+     */
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> outputs = new ArrayList<File>();
+        for (File file : files) {
+            if (file.getName().endsWith(EXTENSION)) {
+                outputs.add(file);
+            } else if (file.getName().endsWith(PARTIAL_EXTENSION)) {
+                file.delete();
+            }
+        }
+        Collections.sort(outputs, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+        for (File file : outputs) {
+            entries.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+        trim();
+    }
+
+}
@@ -0,0 +1,378 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+/**
+ * Transcodes a long video as several segments at once, each with its own
+ * decoder and encoder, and joins the encoded segments into one MP4 without
+ * re-encoding them.
+ *
+ * Segments are cut at sync samples of the source, so every segment starts
+ * with a frame that decodes on its own. Joining only works when all
+ * encoders produced the same codec config (SPS/PPS); otherwise
+ * IncompatibleSegmentsException is thrown and the caller should fall back
+ * to a single stream. The audio track is copied from the source.
+ */
+public class ParallelTranscoder {
+
+    private static final String TAG = "VideoEditorParallel";
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    /** segments shorter than this aren't worth an extra codec pair */
+    public static final long MIN_SEGMENT_US = 5000000;
+
+    /**
+     * The segments can't be joined losslessly.
+     */
+    public static class IncompatibleSegmentsException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public IncompatibleSegmentsException(String message) {
+            super(message);
+        }
+    }
+
+    private final MediaInput input;
+    private final String outputPath;
+    private final MediaFormat videoFormat;
+    private final int parallelism;
+    private long endUs = 0;
+    private int orientationHint = 0;
+    private double frameRate = 0;
+    private int[] crop = null;
+
+    /**
+     * @param videoFormat format of the encoded video, as from a MediaFormatStrategy
+     * @param parallelism number of segments encoded at the same time
+     */
+    public ParallelTranscoder(MediaInput input, String outputPath, MediaFormat videoFormat, int parallelism) {
+        this.input = input;
+        this.outputPath = outputPath;
+        this.videoFormat = videoFormat;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Stops at this time of the source, 0 transcodes everything.
+     */
+    public void setEndUs(long endUs) {
+        this.endUs = endUs;
+    }
+
+    public void setOrientationHint(int degrees) {
+        this.orientationHint = degrees;
+    }
+
+    /**
+     * Encodes at most fps frames per second of the source, 0 encodes every
+     * frame. See SegmentTranscoder.setFrameRate.
+     */
+    public void setFrameRate(double fps) {
+        this.frameRate = fps;
+    }
+
+    /**
+     * Encodes only this region of the frames, see SegmentTranscoder.setCrop.
+     */
+    public void setCrop(int[] crop) {
+        this.crop = crop;
+    }
+
+    /**
+     * Picks the sync samples to cut at, as close as possible to equal
+     * segments. The first cut is always the first sync sample.
+     *
+     * @param syncTimesUs sorted times of the sync samples
+     * @param durationUs  duration to split
+     * @param segments    wanted number of segments
+     */
+    public static long[] cutPoints(long[] syncTimesUs, long durationUs, int segments) {
+        List<Long> cuts = new ArrayList<Long>();
+        if (syncTimesUs.length == 0) {
+            return new long[0];
+        }
+        cuts.add(syncTimesUs[0]);
+
+        for (int k = 1; k < segments; k++) {
+            long target = durationUs * k / segments;
+            long best = -1;
+            for (long syncTimeUs : syncTimesUs) {
+                if (best < 0 || Math.abs(syncTimeUs - target) < Math.abs(best - target)) {
+                    best = syncTimeUs;
+                }
+            }
+            long last = cuts.get(cuts.size() - 1);
+            if (best - last >= MIN_SEGMENT_US && durationUs - best >= MIN_SEGMENT_US) {
+                cuts.add(best);
+            }
+        }
+
+        long[] result = new long[cuts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = cuts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Runs on the calling thread and stops with an InterruptedException
+     * when the thread is interrupted.
+     */
+    public void transcode(final Remuxer.ProgressListener listener) throws IOException, InterruptedException {
+        long durationUs = durationOf(input);
+        if (endUs > 0 && (durationUs == 0 || endUs < durationUs)) {
+            durationUs = endUs;
+        }
+
+        int segments = (int) Math.max(1, Math.min(parallelism, durationUs / MIN_SEGMENT_US));
+        final long[] cuts = cutPoints(SyncSampleIndex.read(input, durationUs), durationUs, segments);
+        if (cuts.length == 0) {
+            throw new IOException("no sync samples in " + input);
+        }
+        Log.d(TAG, "transcoding " + cuts.length + " segments of " + input);
+
+        final File[] parts = new File[cuts.length];
+        final double[] partProgress = new double[cuts.length];
+        ExecutorService executor = Executors.newFixedThreadPool(cuts.length, new ThreadFactory() {
+            private int count = 0;
+
+            public synchronized Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "VideoEditorSegment-" + (++count));
+            }
+        });
+
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < cuts.length; i++) {
+                final int segment = i;
+                final long segmentEndUs = i + 1 < cuts.length ? cuts[i + 1] : durationUs;
+                parts[i] = new File(outputPath + ".part" + i);
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        SegmentTranscoder transcoder = new SegmentTranscoder(input, parts[segment].getAbsolutePath(), videoFormat);
+                        transcoder.setRange(cuts[segment], segmentEndUs);
+                        transcoder.setIncludeAudio(false);
+                        transcoder.setFrameRate(frameRate);
+                        transcoder.setCrop(crop);
+                        transcoder.transcode(new Remuxer.ProgressListener() {
+                            public void onProgress(double progress) {
+                                if (listener == null) {
+                                    return;
+                                }
+                                double total = 0;
+                                synchronized (partProgress) {
+                                    partProgress[segment] = progress;
+                                    for (double value : partProgress) {
+                                        total += value;
+                                    }
+                                }
+                                listener.onProgress(total / partProgress.length);
+                            }
+                        });
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("segment failed: " + cause, cause);
+                }
+            }
+
+            join(parts, cuts, durationUs);
+        } finally {
+            // interrupts segments still running when one failed or the job was stopped
+            executor.shutdownNow();
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            for (File part : parts) {
+                if (part != null) {
+                    part.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the video samples of all parts one after another, shifted to
+     * their place in the source, and the source audio interleaved with them.
+     */
+    private void join(File[] parts, long[] cuts, long durationUs) throws IOException, InterruptedException {
+        MediaExtractor[] extractors = new MediaExtractor[parts.length];
+        MediaExtractor audioExtractor = null;
+        MediaMuxer muxer = null;
+        boolean muxerStarted = false;
+
+        try {
+            MediaFormat joinedFormat = null;
+            int bufferSize = DEFAULT_BUFFER_SIZE;
+            for (int i = 0; i < parts.length; i++) {
+                extractors[i] = new MediaExtractor();
+                extractors[i].setDataSource(parts[i].getAbsolutePath());
+                int track = Remuxer.findTrack(extractors[i], "video/");
+                if (track < 0) {
+                    throw new IOException("segment " + i + " has no video");
+                }
+                extractors[i].selectTrack(track);
+                MediaFormat format = extractors[i].getTrackFormat(track);
+                if (joinedFormat == null) {
+                    joinedFormat = format;
+                } else if (!sameCodecConfig(joinedFormat, format)) {
+                    throw new IncompatibleSegmentsException("segment " + i + " has another codec config");
+                }
+                if (format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+                    bufferSize = Math.max(bufferSize, format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+                }
+            }
+
+            muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(orientationHint);
+            int videoMuxTrack = muxer.addTrack(joinedFormat);
+
+            int audioMuxTrack = -1;
+            audioExtractor = new MediaExtractor();
+            input.setDataSource(audioExtractor);
+            int audioTrack = Remuxer.findTrack(audioExtractor, "audio/");
+            if (audioTrack >= 0) {
+                audioExtractor.selectTrack(audioTrack);
+                MediaFormat audioFormat = audioExtractor.getTrackFormat(audioTrack);
+                audioMuxTrack = muxer.addTrack(audioFormat);
+                if (audioFormat.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+                    bufferSize = Math.max(bufferSize, audioFormat.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+                }
+            }
+
+            muxer.start();
+            muxerStarted = true;
+
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            long startUs = cuts[0];
+            long audioEndUs = durationUs > 0 ? durationUs : Long.MAX_VALUE;
+            boolean audioDone = audioMuxTrack < 0;
+
+            for (int i = 0; i < parts.length; i++) {
+                long offsetUs = cuts[i] - startUs;
+                MediaExtractor extractor = extractors[i];
+                long sampleTimeUs;
+                while ((sampleTimeUs = extractor.getSampleTime()) >= 0) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException("join canceled");
+                    }
+                    int size = extractor.readSampleData(buffer, 0);
+                    int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                            ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+                    info.set(0, size, sampleTimeUs + offsetUs, flags);
+                    muxer.writeSampleData(videoMuxTrack, buffer, info);
+                    extractor.advance();
+
+                    if (!audioDone) {
+                        audioDone = copyAudio(audioExtractor, muxer, audioMuxTrack, buffer, info,
+                                startUs, startUs + sampleTimeUs + offsetUs, audioEndUs);
+                    }
+                }
+            }
+            if (!audioDone) {
+                copyAudio(audioExtractor, muxer, audioMuxTrack, buffer, info, startUs, Long.MAX_VALUE, audioEndUs);
+            }
+
+            muxer.stop();
+            muxerStarted = false;
+        } finally {
+            for (MediaExtractor extractor : extractors) {
+                if (extractor != null) {
+                    extractor.release();
+                }
+            }
+            if (audioExtractor != null) {
+                audioExtractor.release();
+            }
+            if (muxer != null) {
+                try {
+                    if (muxerStarted) {
+                        muxer.stop();
+                    }
+                } catch (IllegalStateException e) {
+                    Log.d(TAG, "can't stop muxer", e);
+                }
+                muxer.release();
+            }
+        }
+    }
+
+    /**
+     * Copies audio samples of the source up to untilUs. Returns true once
+     * the audio up to endUs is used up.
+     */
+    private static boolean copyAudio(MediaExtractor extractor, MediaMuxer muxer, int muxTrack, ByteBuffer buffer,
+                                     MediaCodec.BufferInfo info, long startUs, long untilUs, long endUs) {
+        while (true) {
+            long sampleTimeUs = extractor.getSampleTime();
+            if (sampleTimeUs < 0 || sampleTimeUs >= endUs) {
+                return true;
+            }
+            if (sampleTimeUs > untilUs) {
+                return false;
+            }
+            if (sampleTimeUs >= startUs) {
+                int size = extractor.readSampleData(buffer, 0);
+                if (size > 0) {
+                    info.set(0, size, sampleTimeUs - startUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+                    muxer.writeSampleData(muxTrack, buffer, info);
+                }
+            }
+            extractor.advance();
+        }
+    }
+
+    static boolean sameCodecConfig(MediaFormat a, MediaFormat b) {
+        for (String key : new String[] { "csd-0", "csd-1" }) {
+            ByteBuffer bufferA = a.containsKey(key) ? a.getByteBuffer(key) : null;
+            ByteBuffer bufferB = b.containsKey(key) ? b.getByteBuffer(key) : null;
+            if (bufferA == null ? bufferB != null : !bufferA.equals(bufferB)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long durationOf(MediaInput input) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            input.setDataSource(extractor);
+            int videoTrack = Remuxer.findTrack(extractor, "video/");
+            if (videoTrack < 0) {
+                throw new IOException("no video track in " + input);
+            }
+            MediaFormat format = extractor.getTrackFormat(videoTrack);
+            return format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+        } finally {
+            extractor.release();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Bounded LRU cache of VideoProbe results, so that repeated getVideoInfo,
+ * transcodeVideo and createThumbnail calls on the same file don't parse the
+ * container again.
+ *
+ * Entries are keyed by canonical path or URI, size and modification time, so
+ * a video that changed is probed again.
+ */
+public class ProbeCache {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private final MetadataProber prober;
+    private final Map<String, VideoProbe> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    public ProbeCache(final int capacity, MetadataProber prober) {
+        this.capacity = Math.max(1, capacity);
+        this.prober = prober;
+        this.entries = new LinkedHashMap<String, VideoProbe>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VideoProbe> eldest) {
+                return size() > ProbeCache.this.capacity;
+            }
+        };
+    }
+
+    public VideoProbe get(MediaInput input) throws IOException {
+        String key = input.getCacheKey();
+
+        synchronized (this) {
+            VideoProbe probe = entries.get(key);
+            if (probe != null) {
+                hits++;
+                return probe;
+            }
+            misses++;
+        }
+
+        // probe outside the lock, a slow container must not block other lookups
+        VideoProbe probe = prober.probe(input);
+        synchronized (this) {
+            entries.put(key, probe);
+        }
+        return probe;
+    }
+
+    /**
+     * Keeps a probe made elsewhere, like from a StreamProbe.
+     */
+    public void put(MediaInput input, VideoProbe probe) throws IOException {
+        String key = input.getCacheKey();
+        synchronized (this) {
+            entries.put(key, probe);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("hits", hits);
+        json.put("misses", misses);
+        json.put("size", entries.size());
+        json.put("capacity", capacity);
+        return json;
+    }
+
+}
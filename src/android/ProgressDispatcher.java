@@ -0,0 +1,142 @@
+package org.apache.cordova.videoeditor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Forwards transcoder progress to JS without flooding the bridge.
+ *
+ * An update is only sent once at least minIntervalMs passed and progress
+ * moved by at least minStep since the last one. The final 1.0 update is
+ * always sent. The payload object is reused between updates.
+ */
+public class ProgressDispatcher {
+
+    private static final String TAG = "VideoEditorProgress";
+
+    public static final long DEFAULT_INTERVAL_MS = 250;
+    public static final double DEFAULT_STEP = 0.01;
+
+    /**
+     * Receives the updates, usually a VideoJob.
+     */
+    public interface Target {
+        void sendProgress(double progress, JSONObject payload);
+    }
+
+    /**
+     * Source of the update times, in milliseconds.
+     */
+    public interface Clock {
+        long elapsedRealtime();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    private final Target job;
+    private final Clock clock;
+    private final long minIntervalMs;
+    private final double minStep;
+    private final double durationSeconds;
+    private final JSONObject payload = new JSONObject();
+
+    private final long startedAt;
+    private long lastSentAt = 0;
+    private double lastSentProgress = -1;
+    private double stageStart = 0;
+    private double stageEnd = 1;
+    private double rangeStart = 0;
+    private double rangeEnd = 1;
+
+    /**
+     * @param job             job that receives the updates
+     * @param minIntervalMs   minimum time between two updates
+     * @param minStep         minimum progress change between two updates (0 to 1)
+     * @param durationSeconds duration of the output, used for the frame time
+     */
+    public ProgressDispatcher(Target job, long minIntervalMs, double minStep, double durationSeconds) {
+        this(job, minIntervalMs, minStep, durationSeconds, SYSTEM_CLOCK);
+    }
+
+    public ProgressDispatcher(Target job, long minIntervalMs, double minStep, double durationSeconds, Clock clock) {
+        this.job = job;
+        this.clock = clock;
+        this.minIntervalMs = Math.max(0, minIntervalMs);
+        this.minStep = Math.max(0, minStep);
+        this.durationSeconds = durationSeconds;
+        this.startedAt = clock.elapsedRealtime();
+    }
+
+    /**
+     * Maps the progress of the following updates into [start, end), for
+     * jobs that run several passes.
+     */
+    public synchronized void setRange(double start, double end) {
+        this.rangeStart = start;
+        this.rangeEnd = end;
+    }
+
+    /**
+     * Like setRange, one level up: ranges set afterwards are taken within
+     * [start, end). Used for steps that run before the passes, like trimming.
+     */
+    public synchronized void setStage(double start, double end) {
+        this.stageStart = start;
+        this.stageEnd = end;
+        this.rangeStart = 0;
+        this.rangeEnd = 1;
+    }
+
+    public synchronized void onProgress(double progress) {
+        long now = clock.elapsedRealtime();
+        if (progress >= 1) {
+            return;
+        }
+        progress = rangeStart + progress * (rangeEnd - rangeStart);
+        progress = stageStart + progress * (stageEnd - stageStart);
+        if (lastSentProgress >= 0
+                && (now - lastSentAt < minIntervalMs || progress - lastSentProgress < minStep)) {
+            return;
+        }
+        send(progress, now);
+    }
+
+    /**
+     * Sends the final 1.0 update if it hasn't been sent yet.
+     */
+    public synchronized void finish() {
+        if (lastSentProgress < 1) {
+            send(1, clock.elapsedRealtime());
+        }
+    }
+
+    private void send(double progress, long now) {
+        lastSentAt = now;
+        lastSentProgress = progress;
+
+        try {
+            payload.put("progress", progress);
+            payload.put("time", progress * durationSeconds);
+            if (progress > 0) {
+                double elapsedSeconds = (now - startedAt) / 1000.0;
+                payload.put("eta", elapsedSeconds * (1 - progress) / progress);
+            } else {
+                payload.remove("eta");
+            }
+        } catch (JSONException e) {
+            Log.d(TAG, "can't build progress payload", e);
+            return;
+        }
+
+        job.sendProgress(progress, payload);
+    }
+
+}
@@ -0,0 +1,137 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import android.util.Log;
+
+/**
+ * Editing proxies of videos, one per source, in a directory of the app.
+ *
+ * A proxy is named after the path or URI of its source. Next to it a key
+ * file records the size and modification time of the source and the
+ * proxy settings it was made with; when either changed, the proxy is out
+ * of date and made again.
+ */
+public class ProxyStore {
+
+    private static final String TAG = "VideoEditorProxies";
+
+    private static final String EXTENSION = ".mp4";
+    private static final String KEY_EXTENSION = ".key";
+    private static final String WORK_EXTENSION = ".part";
+
+    private final File directory;
+
+    public ProxyStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The proxy of input made with settings, null if there is none or it is
+     * out of date. An outdated proxy is removed.
+     */
+    public synchronized File get(MediaInput input, String settings) throws IOException {
+        String name = nameOf(input);
+        File proxy = new File(directory, name + EXTENSION);
+        File keyFile = new File(directory, name + KEY_EXTENSION);
+        if (!proxy.exists() || !keyFile.exists()) {
+            return null;
+        }
+        if (keyOf(input, settings).equals(readText(keyFile))) {
+            return proxy;
+        }
+        Log.d(TAG, "proxy of " + input + " is out of date");
+        proxy.delete();
+        keyFile.delete();
+        return null;
+    }
+
+    /**
+     * A file to encode a new proxy of input into, see put.
+     */
+    public File newWorkFile(MediaInput input) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("can't make " + directory);
+        }
+        return File.createTempFile(nameOf(input), WORK_EXTENSION, directory);
+    }
+
+    /**
+     * Makes a finished work file the proxy of input.
+     */
+    public synchronized File put(MediaInput input, String settings, File workFile) throws IOException {
+        String name = nameOf(input);
+        File proxy = new File(directory, name + EXTENSION);
+        File keyFile = new File(directory, name + KEY_EXTENSION);
+        keyFile.delete();
+        proxy.delete();
+        if (!workFile.renameTo(proxy)) {
+            throw new IOException("can't move " + workFile + " to " + proxy);
+        }
+        writeText(keyFile, keyOf(input, settings));
+        return proxy;
+    }
+
+    /**
+     * Removes all proxies, and work files of proxies still being made.
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private static String keyOf(MediaInput input, String settings) throws IOException {
+        return input.getCacheKey() + "\n" + settings;
+    }
+
+    private static String nameOf(MediaInput input) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.toString());
+        }
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest(input.toString().getBytes("UTF-8"))) {
+            name.append(String.format("%02x", b));
+        }
+        return name.toString();
+    }
+
+    private static String readText(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[(int) file.length()];
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            return new String(buffer, 0, length, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeText(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+}
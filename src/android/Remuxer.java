@@ -0,0 +1,213 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+/**
+ * Copies the audio and video samples of a file into a new MP4 without
+ * decoding or encoding them. Used when the source already meets the
+ * requested output format, and for trimming: the copy then starts at the
+ * sync sample at or before the start time, so it costs as much as the
+ * segment, not the whole source.
+ */
+public class Remuxer {
+
+    private static final String TAG = "VideoEditorRemuxer";
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    public interface ProgressListener {
+        void onProgress(double progress);
+    }
+
+    private final MediaInput input;
+    private final String outputPath;
+    private long maxDurationUs = 0;
+    private long startUs = 0;
+    private long endUs = 0;
+    private int orientationHint = 0;
+    private boolean includeAudio = true;
+
+    public Remuxer(MediaInput input, String outputPath) {
+        this.input = input;
+        this.outputPath = outputPath;
+    }
+
+    /**
+     * Stops copying after this many microseconds, 0 copies everything.
+     */
+    public void setMaxDurationUs(long maxDurationUs) {
+        this.maxDurationUs = maxDurationUs;
+    }
+
+    /**
+     * Copies only the samples between startUs and endUs of the source, 0
+     * for either end means from the start or to the end. The output starts
+     * at the last sync sample at or before startUs.
+     */
+    public void setRange(long startUs, long endUs) {
+        this.startUs = startUs;
+        this.endUs = endUs;
+    }
+
+    public void setOrientationHint(int degrees) {
+        this.orientationHint = degrees;
+    }
+
+    /**
+     * Leaves the audio track out of the output when false.
+     */
+    public void setIncludeAudio(boolean includeAudio) {
+        this.includeAudio = includeAudio;
+    }
+
+    /**
+     * Returns the index of the first track whose mime type starts with
+     * the given prefix ("video/" or "audio/"), or -1.
+     */
+    public static int findTrack(MediaExtractor extractor, String mimePrefix) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(mimePrefix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the samples. Runs on the calling thread and stops with an
+     * InterruptedException when the thread is interrupted.
+     */
+    public void remux(ProgressListener listener) throws IOException, InterruptedException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaMuxer muxer = null;
+        boolean muxerStarted = false;
+
+        try {
+            input.setDataSource(extractor);
+
+            int videoTrack = findTrack(extractor, "video/");
+            int audioTrack = includeAudio ? findTrack(extractor, "audio/") : -1;
+            int[] srcTracks = videoTrack >= 0 && audioTrack >= 0
+                    ? new int[] { videoTrack, audioTrack }
+                    : new int[] { videoTrack >= 0 ? videoTrack : audioTrack };
+            if (srcTracks[0] < 0) {
+                throw new IOException("no audio or video track in " + input);
+            }
+
+            muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(orientationHint);
+
+            int[] muxTracks = new int[extractor.getTrackCount()];
+            boolean[] trackDone = new boolean[extractor.getTrackCount()];
+            int bufferSize = DEFAULT_BUFFER_SIZE;
+            long durationUs = 0;
+            for (int srcTrack : srcTracks) {
+                MediaFormat format = extractor.getTrackFormat(srcTrack);
+                extractor.selectTrack(srcTrack);
+                muxTracks[srcTrack] = muxer.addTrack(format);
+                if (format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+                    bufferSize = Math.max(bufferSize, format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+                }
+                if (format.containsKey(MediaFormat.KEY_DURATION)) {
+                    durationUs = Math.max(durationUs, format.getLong(MediaFormat.KEY_DURATION));
+                }
+            }
+
+            // line all tracks up on the video sync sample, it becomes time 0 of the output
+            long baseUs = 0;
+            if (startUs > 0) {
+                boolean both = srcTracks.length > 1;
+                if (both) {
+                    extractor.unselectTrack(audioTrack);
+                }
+                extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                baseUs = Math.max(0, extractor.getSampleTime());
+                if (both) {
+                    extractor.selectTrack(audioTrack);
+                    extractor.seekTo(baseUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                }
+            }
+
+            long limitUs = endUs > 0 ? endUs : Long.MAX_VALUE;
+            if (maxDurationUs > 0) {
+                limitUs = Math.min(limitUs, baseUs + maxDurationUs);
+            }
+            if (limitUs != Long.MAX_VALUE && (durationUs == 0 || limitUs < durationUs)) {
+                durationUs = limitUs;
+            }
+            durationUs -= baseUs;
+
+            muxer.start();
+            muxerStarted = true;
+
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            int tracksLeft = srcTracks.length;
+
+            while (tracksLeft > 0) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("remux canceled");
+                }
+
+                int srcTrack = extractor.getSampleTrackIndex();
+                if (srcTrack < 0) {
+                    break;
+                }
+
+                long sampleTimeUs = extractor.getSampleTime();
+                if (sampleTimeUs < baseUs) {
+                    extractor.advance();
+                    continue;
+                }
+                if (sampleTimeUs > limitUs) {
+                    if (!trackDone[srcTrack]) {
+                        trackDone[srcTrack] = true;
+                        tracksLeft--;
+                    }
+                    extractor.advance();
+                    continue;
+                }
+
+                int size = extractor.readSampleData(buffer, 0);
+                if (size < 0) {
+                    break;
+                }
+
+                int flags = 0;
+                if ((extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0) {
+                    flags |= MediaCodec.BUFFER_FLAG_KEY_FRAME;
+                }
+                info.set(0, size, sampleTimeUs - baseUs, flags);
+                muxer.writeSampleData(muxTracks[srcTrack], buffer, info);
+
+                if (listener != null && durationUs > 0) {
+                    listener.onProgress(Math.min(1.0, (double) (sampleTimeUs - baseUs) / durationUs));
+                }
+                extractor.advance();
+            }
+
+            muxer.stop();
+            muxerStarted = false;
+        } finally {
+            extractor.release();
+            if (muxer != null) {
+                try {
+                    if (muxerStarted) {
+                        muxer.stop();
+                    }
+                } catch (IllegalStateException e) {
+                    Log.d(TAG, "can't stop muxer", e);
+                }
+                muxer.release();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,312 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+import android.view.Surface;
+
+/**
+ * Re-encodes the video between two times of a file with frame accuracy,
+ * copying the audio of that range as is.
+ *
+ * Decoding starts at the sync sample before the start time, so only the
+ * segment plus at most one GOP is decoded. Decoded frames are drawn into
+ * the input surface of the encoder by a FrameRenderer, which scales them
+ * to the size of the output format, cropped in the same pass when a crop
+ * is set. With a frame rate set, frames above it are dropped by a
+ * FrameDecimator before they are drawn. Needs API 21.
+ */
+public class SegmentTranscoder {
+
+    private static final String TAG = "VideoEditorSegment";
+    private static final long TIMEOUT_US = 10000;
+    private static final int AUDIO_BUFFER_SIZE = 256 * 1024;
+
+    private final MediaInput input;
+    private final String outputPath;
+    private final MediaFormat videoFormat;
+    private long startUs = 0;
+    private long endUs = 0;
+    private int orientationHint = 0;
+    private boolean includeAudio = true;
+    private double frameRate = 0;
+    private int[] crop = null;
+
+    /**
+     * @param videoFormat format of the encoded video, as from a MediaFormatStrategy
+     */
+    public SegmentTranscoder(MediaInput input, String outputPath, MediaFormat videoFormat) {
+        this.input = input;
+        this.outputPath = outputPath;
+        this.videoFormat = videoFormat;
+    }
+
+    /**
+     * Encodes the frames from startUs up to, but not including, endUs.
+     * 0 for either end means from the start or to the end.
+     */
+    public void setRange(long startUs, long endUs) {
+        this.startUs = startUs;
+        this.endUs = endUs;
+    }
+
+    public void setOrientationHint(int degrees) {
+        this.orientationHint = degrees;
+    }
+
+    public void setIncludeAudio(boolean includeAudio) {
+        this.includeAudio = includeAudio;
+    }
+
+    /**
+     * Encodes at most fps frames per second of the source, 0 encodes every
+     * frame.
+     */
+    public void setFrameRate(double fps) {
+        this.frameRate = fps;
+    }
+
+    /**
+     * Encodes only this region of the frames, {x, y, width, height} in
+     * stored pixels as from Orientation.toStoredRect; null for the whole
+     * frame. The output format should have the aspect ratio of the region.
+     */
+    public void setCrop(int[] crop) {
+        this.crop = crop;
+    }
+
+    /**
+     * Runs on the calling thread and stops with an InterruptedException
+     * when the thread is interrupted.
+     */
+    public void transcode(Remuxer.ProgressListener listener) throws IOException, InterruptedException {
+        MediaExtractor videoExtractor = new MediaExtractor();
+        MediaExtractor audioExtractor = null;
+        MediaCodec decoder = null;
+        MediaCodec encoder = null;
+        Surface inputSurface = null;
+        FrameRenderer renderer = null;
+        MediaMuxer muxer = null;
+        boolean muxerStarted = false;
+
+        try {
+            input.setDataSource(videoExtractor);
+            int videoTrack = Remuxer.findTrack(videoExtractor, "video/");
+            if (videoTrack < 0) {
+                throw new IOException("no video track in " + input);
+            }
+            MediaFormat inputFormat = videoExtractor.getTrackFormat(videoTrack);
+            videoExtractor.selectTrack(videoTrack);
+            videoExtractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+
+            long durationUs = inputFormat.containsKey(MediaFormat.KEY_DURATION)
+                    ? inputFormat.getLong(MediaFormat.KEY_DURATION) : 0;
+            if (endUs > 0 && (durationUs == 0 || endUs < durationUs)) {
+                durationUs = endUs;
+            }
+            durationUs -= startUs;
+
+            MediaFormat audioFormat = null;
+            if (includeAudio) {
+                audioExtractor = new MediaExtractor();
+                input.setDataSource(audioExtractor);
+                int audioTrack = Remuxer.findTrack(audioExtractor, "audio/");
+                if (audioTrack >= 0) {
+                    audioFormat = audioExtractor.getTrackFormat(audioTrack);
+                    audioExtractor.selectTrack(audioTrack);
+                    audioExtractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                }
+            }
+
+            encoder = MediaCodec.createEncoderByType(videoFormat.getString(MediaFormat.KEY_MIME));
+            encoder.configure(videoFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = encoder.createInputSurface();
+            renderer = new FrameRenderer(inputSurface,
+                    videoFormat.getInteger(MediaFormat.KEY_WIDTH), videoFormat.getInteger(MediaFormat.KEY_HEIGHT));
+            if (crop != null) {
+                float storedWidth = inputFormat.getInteger(MediaFormat.KEY_WIDTH);
+                float storedHeight = inputFormat.getInteger(MediaFormat.KEY_HEIGHT);
+                renderer.setCropAndRotation(crop[0] / storedWidth, crop[1] / storedHeight,
+                        (crop[0] + crop[2]) / storedWidth, (crop[1] + crop[3]) / storedHeight, 0);
+            }
+            encoder.start();
+
+            FrameRenderer.keepStoredOrientation(inputFormat);
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(inputFormat, renderer.getDecoderSurface(), null, 0);
+            decoder.start();
+
+            muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(orientationHint);
+
+            FrameDecimator decimator = new FrameDecimator(frameRate);
+            MediaCodec.BufferInfo decodedInfo = new MediaCodec.BufferInfo();
+            MediaCodec.BufferInfo encodedInfo = new MediaCodec.BufferInfo();
+            MediaCodec.BufferInfo audioInfo = new MediaCodec.BufferInfo();
+            int audioBufferSize = AUDIO_BUFFER_SIZE;
+            if (audioFormat != null && audioFormat.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+                audioBufferSize = Math.max(audioBufferSize, audioFormat.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+            }
+            ByteBuffer audioBuffer = ByteBuffer.allocate(audioBufferSize);
+            int videoMuxTrack = -1;
+            int audioMuxTrack = -1;
+            boolean inputDone = false;
+            boolean decoderDone = false;
+            boolean encoderDone = false;
+            boolean audioDone = audioFormat == null;
+
+            while (!encoderDone) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("segment transcode canceled");
+                }
+
+                if (!inputDone) {
+                    int index = decoder.dequeueInputBuffer(TIMEOUT_US);
+                    if (index >= 0) {
+                        long sampleTimeUs = videoExtractor.getSampleTime();
+                        // samples come in decode order, so keep feeding up to the next sync
+                        // sample past the end; frames shown after it aren't rendered
+                        boolean pastEnd = endUs > 0 && sampleTimeUs >= endUs
+                                && (videoExtractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0;
+                        if (sampleTimeUs < 0 || pastEnd) {
+                            decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            int size = videoExtractor.readSampleData(decoder.getInputBuffer(index), 0);
+                            decoder.queueInputBuffer(index, 0, Math.max(0, size), sampleTimeUs, 0);
+                            videoExtractor.advance();
+                        }
+                    }
+                }
+
+                if (!decoderDone) {
+                    int index = decoder.dequeueOutputBuffer(decodedInfo, TIMEOUT_US);
+                    if (index >= 0) {
+                        long frameTimeUs = decodedInfo.presentationTimeUs;
+                        if ((decodedInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                            decoder.releaseOutputBuffer(index, false);
+                            encoder.signalEndOfInputStream();
+                            decoderDone = true;
+                        } else if (decodedInfo.size > 0 && frameTimeUs >= startUs && (endUs <= 0 || frameTimeUs < endUs)
+                                && decimator.keep(frameTimeUs)) {
+                            decoder.releaseOutputBuffer(index, true);
+                            renderer.awaitFrame();
+                            renderer.drawFrame((frameTimeUs - startUs) * 1000);
+                        } else {
+                            decoder.releaseOutputBuffer(index, false);
+                        }
+                    }
+                }
+
+                int index = encoder.dequeueOutputBuffer(encodedInfo, TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    videoMuxTrack = muxer.addTrack(encoder.getOutputFormat());
+                    if (audioFormat != null) {
+                        audioMuxTrack = muxer.addTrack(audioFormat);
+                    }
+                    muxer.start();
+                    muxerStarted = true;
+                } else if (index >= 0) {
+                    if ((encodedInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                        encodedInfo.size = 0;
+                    }
+                    if (encodedInfo.size > 0 && muxerStarted) {
+                        muxer.writeSampleData(videoMuxTrack, encoder.getOutputBuffer(index), encodedInfo);
+                        // keep the audio interleaved with the video written so far
+                        if (!audioDone) {
+                            audioDone = copyAudio(audioExtractor, muxer, audioMuxTrack, audioBuffer, audioInfo,
+                                    encodedInfo.presentationTimeUs);
+                        }
+                        if (listener != null && durationUs > 0) {
+                            listener.onProgress(Math.min(1.0, (double) encodedInfo.presentationTimeUs / durationUs));
+                        }
+                    }
+                    encoder.releaseOutputBuffer(index, false);
+                    if ((encodedInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        encoderDone = true;
+                    }
+                }
+            }
+
+            if (!muxerStarted) {
+                throw new IOException("no frames between " + startUs + " and " + endUs + "us");
+            }
+            if (decimator.getDropped() > 0) {
+                Log.d(TAG, "encoded " + decimator.getKept() + " frames, dropped " + decimator.getDropped());
+            }
+            if (!audioDone) {
+                copyAudio(audioExtractor, muxer, audioMuxTrack, audioBuffer, audioInfo, Long.MAX_VALUE);
+            }
+
+            muxer.stop();
+            muxerStarted = false;
+        } finally {
+            videoExtractor.release();
+            if (audioExtractor != null) {
+                audioExtractor.release();
+            }
+            if (decoder != null) {
+                stopQuietly(decoder);
+            }
+            if (encoder != null) {
+                stopQuietly(encoder);
+            }
+            if (renderer != null) {
+                renderer.release();
+            }
+            if (inputSurface != null) {
+                inputSurface.release();
+            }
+            if (muxer != null) {
+                try {
+                    if (muxerStarted) {
+                        muxer.stop();
+                    }
+                } catch (IllegalStateException e) {
+                    Log.d(TAG, "can't stop muxer", e);
+                }
+                muxer.release();
+            }
+        }
+    }
+
+    /**
+     * Copies audio samples of the range up to untilUs of the output time.
+     * Returns true once the audio of the range is used up.
+     */
+    private boolean copyAudio(MediaExtractor extractor, MediaMuxer muxer, int muxTrack, ByteBuffer buffer,
+                              MediaCodec.BufferInfo info, long untilUs) {
+        while (true) {
+            long sampleTimeUs = extractor.getSampleTime();
+            if (sampleTimeUs < 0 || (endUs > 0 && sampleTimeUs >= endUs)) {
+                return true;
+            }
+            if (sampleTimeUs - startUs > untilUs) {
+                return false;
+            }
+            if (sampleTimeUs >= startUs) {
+                int size = extractor.readSampleData(buffer, 0);
+                if (size > 0) {
+                    info.set(0, size, sampleTimeUs - startUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+                    muxer.writeSampleData(muxTrack, buffer, info);
+                }
+            }
+            extractor.advance();
+        }
+    }
+
+    private static void stopQuietly(MediaCodec codec) {
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            Log.d(TAG, "can't stop codec", e);
+        }
+        codec.release();
+    }
+
+}
@@ -0,0 +1,90 @@
+package org.apache.cordova.videoeditor;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Tiles frames of the same size into one bitmap, row by row, and keeps
+ * an index of where each frame ended up.
+ */
+public class SpriteSheet {
+
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int columns;
+    private final int rows;
+    private final Bitmap sheet;
+    private final Canvas canvas;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect tileRect = new Rect();
+    private final JSONArray tiles = new JSONArray();
+    private int count = 0;
+
+    public SpriteSheet(int tileWidth, int tileHeight, int columns, int frameCount) {
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.columns = Math.max(1, Math.min(columns, frameCount));
+        this.rows = (frameCount + this.columns - 1) / this.columns;
+        this.sheet = Bitmap.createBitmap(this.columns * tileWidth, rows * tileHeight, Bitmap.Config.ARGB_8888);
+        this.sheet.eraseColor(Color.BLACK);
+        this.canvas = new Canvas(sheet);
+    }
+
+    /**
+     * Number of columns needed for a roughly square sheet.
+     */
+    public static int defaultColumns(int frameCount) {
+        return Math.max(1, (int) Math.ceil(Math.sqrt(frameCount)));
+    }
+
+    /**
+     * Draws the next frame into its tile. Frames of another size are scaled
+     * to the tile size.
+     *
+     * @param timeSeconds time of the frame, stored in the index
+     */
+    public void addFrame(Bitmap frame, double timeSeconds) throws JSONException {
+        int x = (count % columns) * tileWidth;
+        int y = (count / columns) * tileHeight;
+        tileRect.set(x, y, x + tileWidth, y + tileHeight);
+        canvas.drawBitmap(frame, null, tileRect, paint);
+
+        JSONObject tile = new JSONObject();
+        tile.put("time", timeSeconds);
+        tile.put("x", x);
+        tile.put("y", y);
+        tile.put("width", tileWidth);
+        tile.put("height", tileHeight);
+        tiles.put(tile);
+        count++;
+    }
+
+    public Bitmap getBitmap() {
+        return sheet;
+    }
+
+    /**
+     * Index of the tile coordinates, also written next to the sheet.
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("tileWidth", tileWidth);
+        json.put("tileHeight", tileHeight);
+        json.put("columns", columns);
+        json.put("rows", rows);
+        json.put("frames", tiles);
+        return json;
+    }
+
+    public void recycle() {
+        sheet.recycle();
+    }
+
+}
@@ -0,0 +1,283 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+/**
+ * The tracks of a video and the sample table of its video track, read in
+ * one MediaExtractor pass without decoding.
+ *
+ * getVideoInfoBatch reports it per file; the sync samples it collects on
+ * the way make up the SyncSampleIndex thumbnails need later.
+ */
+public class StreamProbe {
+
+    /** Format of one track, as the container states it. */
+    public static class Track {
+
+        public final int index;
+        public final String mime;
+        public final MediaFormat format;
+
+        Track(int index, String mime, MediaFormat format) {
+            this.index = index;
+            this.mime = mime;
+            this.format = format;
+        }
+
+        public boolean isVideo() {
+            return mime.startsWith("video/");
+        }
+
+        public boolean isAudio() {
+            return mime.startsWith("audio/");
+        }
+
+        public JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("index", index);
+            json.put("type", isVideo() ? "video" : isAudio() ? "audio" : "other");
+            json.put("mime", mime);
+            json.put("codec", codecName(mime));
+            putLong(json, "durationUs", format, MediaFormat.KEY_DURATION);
+            putInt(json, "bitrate", format, MediaFormat.KEY_BIT_RATE);
+            if (format.containsKey(MediaFormat.KEY_LANGUAGE)) {
+                json.put("language", format.getString(MediaFormat.KEY_LANGUAGE));
+            }
+            if (isVideo()) {
+                putInt(json, "width", format, MediaFormat.KEY_WIDTH);
+                putInt(json, "height", format, MediaFormat.KEY_HEIGHT);
+                putInt(json, "profile", format, MediaFormat.KEY_PROFILE);
+                putInt(json, "level", format, MediaFormat.KEY_LEVEL);
+                String profileName = format.containsKey(MediaFormat.KEY_PROFILE)
+                        ? profileName(mime, format.getInteger(MediaFormat.KEY_PROFILE)) : null;
+                if (profileName != null) {
+                    json.put("profileName", profileName);
+                }
+                double frameRate = CustomAndroidFormatStrategy.frameRateOf(format);
+                if (frameRate > 0) {
+                    json.put("frameRate", frameRate);
+                }
+            } else if (isAudio()) {
+                putInt(json, "sampleRate", format, MediaFormat.KEY_SAMPLE_RATE);
+                putInt(json, "channels", format, MediaFormat.KEY_CHANNEL_COUNT);
+            }
+            return json;
+        }
+    }
+
+    public final List<Track> tracks;
+    /** first video track, null without one */
+    public final Track video;
+    /** first audio track, null without one */
+    public final Track audio;
+    /** clockwise rotation for display, -1 if the format doesn't tell (before API 23) */
+    public final int rotation;
+    public final long durationUs;
+    public final int videoSampleCount;
+    /** null when the samples weren't read */
+    public final SyncSampleIndex syncIndex;
+
+    StreamProbe(List<Track> tracks, int rotation, long durationUs, int videoSampleCount, SyncSampleIndex syncIndex) {
+        Track video = null;
+        Track audio = null;
+        for (Track track : tracks) {
+            if (video == null && track.isVideo()) {
+                video = track;
+            } else if (audio == null && track.isAudio()) {
+                audio = track;
+            }
+        }
+        this.tracks = Collections.unmodifiableList(tracks);
+        this.video = video;
+        this.audio = audio;
+        this.rotation = rotation;
+        this.durationUs = durationUs;
+        this.videoSampleCount = videoSampleCount;
+        this.syncIndex = syncIndex;
+    }
+
+    /**
+     * Reads the track formats and, with readSamples, walks the sample table
+     * of the video track for its sync samples and frame count. The extractor
+     * is always released.
+     *
+     * @throws IOException if the input can't be read or has no video track
+     */
+    public static StreamProbe read(MediaInput input, boolean readSamples) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            input.setDataSource(extractor);
+
+            List<Track> tracks = new ArrayList<Track>();
+            int videoTrack = -1;
+            long durationUs = 0;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat format = extractor.getTrackFormat(i);
+                String mime = format.getString(MediaFormat.KEY_MIME);
+                if (mime == null) {
+                    continue;
+                }
+                tracks.add(new Track(i, mime, format));
+                if (videoTrack < 0 && mime.startsWith("video/")) {
+                    videoTrack = i;
+                }
+                if (format.containsKey(MediaFormat.KEY_DURATION)) {
+                    durationUs = Math.max(durationUs, format.getLong(MediaFormat.KEY_DURATION));
+                }
+            }
+            if (videoTrack < 0) {
+                throw new IOException("no video track in " + input);
+            }
+
+            MediaFormat videoFormat = extractor.getTrackFormat(videoTrack);
+            // MediaFormat.KEY_ROTATION, API 23
+            int rotation = videoFormat.containsKey("rotation-degrees") ? videoFormat.getInteger("rotation-degrees") : -1;
+
+            if (!readSamples) {
+                return new StreamProbe(tracks, rotation, durationUs, 0, null);
+            }
+
+            extractor.selectTrack(videoTrack);
+            List<Long> syncTimes = new ArrayList<Long>();
+            int sampleCount = 0;
+            long sampleTimeUs;
+            while ((sampleTimeUs = extractor.getSampleTime()) >= 0) {
+                sampleCount++;
+                if ((extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0) {
+                    syncTimes.add(sampleTimeUs);
+                }
+                extractor.advance();
+            }
+            return new StreamProbe(tracks, rotation, durationUs, sampleCount,
+                    new SyncSampleIndex(SyncSampleIndex.sorted(syncTimes)));
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Frame rate the container states, or else the average over the
+     * samples read; 0 if neither is known.
+     */
+    public double getFrameRate() {
+        double frameRate = CustomAndroidFormatStrategy.frameRateOf(video.format);
+        if (frameRate <= 0 && videoSampleCount > 0 && durationUs > 0) {
+            frameRate = videoSampleCount * 1000000.0 / durationUs;
+        }
+        return frameRate;
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("codec", codecName(video.mime));
+        putInt(json, "profile", video.format, MediaFormat.KEY_PROFILE);
+        putInt(json, "level", video.format, MediaFormat.KEY_LEVEL);
+        String profileName = video.format.containsKey(MediaFormat.KEY_PROFILE)
+                ? profileName(video.mime, video.format.getInteger(MediaFormat.KEY_PROFILE)) : null;
+        if (profileName != null) {
+            json.put("profileName", profileName);
+        }
+        double frameRate = getFrameRate();
+        if (frameRate > 0) {
+            json.put("frameRate", Math.round(frameRate * 1000) / 1000.0);
+        }
+        if (syncIndex != null) {
+            json.put("frameCount", videoSampleCount);
+            json.put("syncSampleCount", syncIndex.size());
+        }
+        json.put("audio", audio != null ? audio.toJSON() : JSONObject.NULL);
+
+        JSONArray trackList = new JSONArray();
+        for (Track track : tracks) {
+            trackList.put(track.toJSON());
+        }
+        json.put("tracks", trackList);
+        return json;
+    }
+
+    /**
+     * Short name of the codec of a mime type, like the videoCodec option
+     * takes it: "h264", "hevc", "aac", ... The subtype for anything else.
+     */
+    static String codecName(String mime) {
+        if ("video/avc".equals(mime)) {
+            return "h264";
+        } else if ("video/hevc".equals(mime)) {
+            return "hevc";
+        } else if ("video/x-vnd.on2.vp8".equals(mime)) {
+            return "vp8";
+        } else if ("video/x-vnd.on2.vp9".equals(mime)) {
+            return "vp9";
+        } else if ("video/av01".equals(mime)) {
+            return "av1";
+        } else if ("video/mp4v-es".equals(mime)) {
+            return "mpeg4";
+        } else if ("video/3gpp".equals(mime)) {
+            return "h263";
+        } else if ("audio/mp4a-latm".equals(mime)) {
+            return "aac";
+        } else if ("audio/mpeg".equals(mime)) {
+            return "mp3";
+        } else if ("audio/3gpp".equals(mime)) {
+            return "amr-nb";
+        } else if ("audio/amr-wb".equals(mime)) {
+            return "amr-wb";
+        }
+        int slash = mime.indexOf('/');
+        return slash >= 0 ? mime.substring(slash + 1) : mime;
+    }
+
+    /**
+     * Name of an H.264 or HEVC profile constant of MediaCodecInfo, null for
+     * others.
+     */
+    static String profileName(String mime, int profile) {
+        if ("video/avc".equals(mime)) {
+            switch (profile) {
+                case 0x01: return "baseline";
+                case 0x02: return "main";
+                case 0x04: return "extended";
+                case 0x08: return "high";
+                case 0x10: return "high10";
+                case 0x20: return "high422";
+                case 0x40: return "high444";
+                case 0x10000: return "constrainedBaseline";
+                case 0x80000: return "constrainedHigh";
+                default: return null;
+            }
+        } else if ("video/hevc".equals(mime)) {
+            switch (profile) {
+                case 0x01: return "main";
+                case 0x02: return "main10";
+                case 0x04: return "mainStill";
+                case 0x1000: return "main10HDR10";
+                case 0x2000: return "main10HDR10Plus";
+                default: return null;
+            }
+        }
+        return null;
+    }
+
+    private static void putInt(JSONObject json, String name, MediaFormat format, String key) throws JSONException {
+        if (format.containsKey(key)) {
+            json.put(name, format.getInteger(key));
+        }
+    }
+
+    private static void putLong(JSONObject json, String name, MediaFormat format, String key) throws JSONException {
+        if (format.containsKey(key)) {
+            json.put(name, format.getLong(key));
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import android.media.MediaExtractor;
+
+/**
+ * Sorted times of the sync samples (keyframes) of a video track, read once
+ * from the container index without decoding.
+ *
+ * Thumbnails use it to snap to the nearest keyframe in fast mode, and to
+ * know which keyframe decoding starts from in exact mode; the parallel
+ * transcoder cuts its segments at these times.
+ */
+public class SyncSampleIndex {
+
+    private final long[] timesUs;
+
+    SyncSampleIndex(long[] timesUs) {
+        this.timesUs = timesUs;
+    }
+
+    public static SyncSampleIndex build(MediaInput input) throws IOException {
+        return new SyncSampleIndex(read(input, 0));
+    }
+
+    /**
+     * Times of the video sync samples of a video up to endUs, 0 for all.
+     */
+    static long[] read(MediaInput input, long endUs) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            input.setDataSource(extractor);
+            int videoTrack = Remuxer.findTrack(extractor, "video/");
+            if (videoTrack < 0) {
+                throw new IOException("no video track in " + input);
+            }
+            extractor.selectTrack(videoTrack);
+
+            List<Long> times = new ArrayList<Long>();
+            long sampleTimeUs;
+            while ((sampleTimeUs = extractor.getSampleTime()) >= 0 && (endUs <= 0 || sampleTimeUs < endUs)) {
+                if ((extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0) {
+                    times.add(sampleTimeUs);
+                }
+                extractor.advance();
+            }
+            return sorted(times);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Sync sample times as read from the extractor, in presentation order.
+     */
+    static long[] sorted(List<Long> times) {
+        long[] result = new long[times.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = times.get(i);
+        }
+        // samples come in decode order, which may differ from presentation order
+        Arrays.sort(result);
+        return result;
+    }
+
+    public int size() {
+        return timesUs.length;
+    }
+
+    /**
+     * The sync samples up to, but not including, endUs. 0 for all.
+     */
+    public long[] timesBefore(long endUs) {
+        if (endUs <= 0) {
+            return timesUs.clone();
+        }
+        int count = Arrays.binarySearch(timesUs, endUs);
+        return Arrays.copyOf(timesUs, count >= 0 ? count : -count - 1);
+    }
+
+    /**
+     * The sync sample at or before timeUs, where decoding for a frame at
+     * timeUs starts. The first one for earlier times, -1 without any.
+     */
+    public long previous(long timeUs) {
+        if (timesUs.length == 0) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(timesUs, timeUs);
+        if (index >= 0) {
+            return timesUs[index];
+        }
+        int insertion = -index - 1;
+        return timesUs[Math.max(0, insertion - 1)];
+    }
+
+    /**
+     * The sync sample closest to timeUs, the earlier one on a tie. -1
+     * without any.
+     */
+    public long nearest(long timeUs) {
+        if (timesUs.length == 0) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(timesUs, timeUs);
+        if (index >= 0) {
+            return timesUs[index];
+        }
+        int insertion = -index - 1;
+        if (insertion == 0) {
+            return timesUs[0];
+        }
+        if (insertion == timesUs.length) {
+            return timesUs[timesUs.length - 1];
+        }
+        long before = timesUs[insertion - 1];
+        long after = timesUs[insertion];
+        return timeUs - before <= after - timeUs ? before : after;
+    }
+
+    public boolean isSync(long timeUs) {
+        return Arrays.binarySearch(timesUs, timeUs) >= 0;
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Bounded LRU cache of SyncSampleIndex, so scrubbing through a video reads
+ * its sample table once. Keyed like ProbeCache, by path or URI, size and
+ * modification time.
+ */
+public class SyncSampleIndexCache {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final int capacity;
+    private final Map<String, SyncSampleIndex> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    public SyncSampleIndexCache(final int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new LinkedHashMap<String, SyncSampleIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SyncSampleIndex> eldest) {
+                return size() > SyncSampleIndexCache.this.capacity;
+            }
+        };
+    }
+
+    public SyncSampleIndex get(MediaInput input) throws IOException {
+        String key = input.getCacheKey();
+
+        synchronized (this) {
+            SyncSampleIndex index = entries.get(key);
+            if (index != null) {
+                hits++;
+                return index;
+            }
+            misses++;
+        }
+
+        // read outside the lock, a long sample table must not block other lookups
+        SyncSampleIndex index = SyncSampleIndex.build(input);
+        synchronized (this) {
+            entries.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Keeps an index read elsewhere, like by StreamProbe.
+     */
+    public void put(MediaInput input, SyncSampleIndex index) throws IOException {
+        String key = input.getCacheKey();
+        synchronized (this) {
+            entries.put(key, index);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("hits", hits);
+        json.put("misses", misses);
+        json.put("size", entries.size());
+        json.put("capacity", capacity);
+        return json;
+    }
+
+}
@@ -0,0 +1,197 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Extracts frames of one video through a single MediaMetadataRetriever
+ * session, so that several thumbnails don't open the container again for
+ * every frame.
+ *
+ * Frames are decoded at the requested size where the platform supports it
+ * (API 27+), so a 4K frame is never held at full resolution just to be
+ * scaled down. Output bitmaps come from a BitmapPool and must be handed back
+ * with releaseFrame.
+ */
+public class ThumbnailExtractor {
+
+    private static final String TAG = "VideoEditorThumbnails";
+
+    public enum SeekMode {
+        /** the keyframe nearest to the requested time, no decoding past it */
+        FAST,
+        /** the frame at the requested time, decoded forward from the keyframe before it */
+        EXACT,
+        /** the keyframe at or after the requested time FrameScorer likes best */
+        SMART;
+
+        public static SeekMode parse(String value) {
+            if ("exact".equalsIgnoreCase(value)) {
+                return EXACT;
+            }
+            return "smart".equalsIgnoreCase(value) ? SMART : FAST;
+        }
+    }
+
+    private final MediaMetadataRetriever mmr;
+    private final BitmapPool pool;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect srcRect = new Rect();
+    private final Rect dstRect = new Rect();
+    private int displayWidth;
+    private int displayHeight;
+    private long peakBytes = 0;
+
+    public ThumbnailExtractor(MediaInput input, BitmapPool pool) {
+        this.pool = pool;
+        mmr = new MediaMetadataRetriever();
+        try {
+            input.setDataSource(mmr);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+
+        displayWidth = parseInt(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+        displayHeight = parseInt(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+        if (Build.VERSION.SDK_INT >= 17) {
+            int rotation = parseInt(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+            // frames come out of the retriever already rotated
+            if (rotation == 90 || rotation == 270) {
+                int swap = displayWidth;
+                displayWidth = displayHeight;
+                displayHeight = swap;
+            }
+        }
+    }
+
+    /**
+     * Returns the frame at the given time, scaled to the requested size.
+     * The aspect ratio of the video is kept; in FILL mode the frame is
+     * cropped around its center to the requested box. Returns null if there
+     * is no frame at that time.
+     *
+     * @param timeUs time of the frame in microseconds
+     * @param width  requested width, 0 to derive it from the height
+     * @param height requested height, 0 to derive it from the width
+     */
+    public Bitmap getFrame(long timeUs, int width, int height, FrameSize.Mode mode) {
+        return getFrame(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, width, height, mode);
+    }
+
+    /**
+     * Like getFrame, with the MediaMetadataRetriever option that picks the
+     * frame: OPTION_CLOSEST_SYNC only decodes a keyframe, OPTION_CLOSEST
+     * decodes forward to the exact frame.
+     */
+    public Bitmap getFrame(long timeUs, int option, int width, int height, FrameSize.Mode mode) {
+        FrameSize size = null;
+        Bitmap decoded;
+
+        if (displayWidth > 0 && displayHeight > 0) {
+            size = FrameSize.compute(displayWidth, displayHeight, width, height, mode);
+        }
+
+        if (size != null && Build.VERSION.SDK_INT >= 27
+                && (size.scaledWidth != displayWidth || size.scaledHeight != displayHeight)) {
+            decoded = mmr.getScaledFrameAtTime(timeUs, option, size.scaledWidth, size.scaledHeight);
+        } else {
+            decoded = mmr.getFrameAtTime(timeUs, option);
+        }
+        if (decoded == null) {
+            return null;
+        }
+
+        if (size == null) {
+            size = FrameSize.compute(decoded.getWidth(), decoded.getHeight(), width, height, mode);
+        }
+        if (decoded.getWidth() == size.outputWidth && decoded.getHeight() == size.outputHeight) {
+            trackPeak(decoded.getByteCount());
+            return decoded;
+        }
+
+        // the part of the decoded frame that ends up in the output, in decoded pixels
+        double scale = (double) size.scaledWidth / decoded.getWidth();
+        int cropLeft = (size.scaledWidth - size.outputWidth) / 2;
+        int cropTop = (size.scaledHeight - size.outputHeight) / 2;
+        srcRect.set(
+                (int) Math.round(cropLeft / scale),
+                (int) Math.round(cropTop / scale),
+                (int) Math.round((cropLeft + size.outputWidth) / scale),
+                (int) Math.round((cropTop + size.outputHeight) / scale));
+        dstRect.set(0, 0, size.outputWidth, size.outputHeight);
+
+        Bitmap output = pool.acquire(size.outputWidth, size.outputHeight, Bitmap.Config.ARGB_8888);
+        new Canvas(output).drawBitmap(decoded, srcRect, dstRect, paint);
+        trackPeak((long) decoded.getByteCount() + output.getByteCount());
+        pool.release(decoded);
+
+        Log.d(TAG, "frame " + decoded.getWidth() + "x" + decoded.getHeight()
+                + " -> " + size.outputWidth + "x" + size.outputHeight);
+        return output;
+    }
+
+    /**
+     * Hands a bitmap returned by getFrame back for reuse.
+     */
+    public void releaseFrame(Bitmap frame) {
+        pool.release(frame);
+    }
+
+    /**
+     * Largest amount of bitmap memory held at once while extracting a
+     * single frame, in bytes.
+     */
+    public long getPeakBytes() {
+        return peakBytes;
+    }
+
+    private void trackPeak(long bytes) {
+        peakBytes = Math.max(peakBytes, bytes);
+    }
+
+    public void release() {
+        try {
+            mmr.release();
+        } catch (Exception e) {
+            // an IOException since API 29, not declared before, nothing is left to clean up
+            Log.d(TAG, "can't release retriever", e);
+        }
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Writes a bitmap as a JPEG file.
+     *
+     * @param quality JPEG quality between 1 and 100
+     */
+    public static void writeJpeg(Bitmap bitmap, File outputFile, int quality) throws IOException {
+        OutputStream outStream = new FileOutputStream(outputFile);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, outStream);
+        } finally {
+            outStream.close();
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package org.apache.cordova.videoeditor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Performance figures of one transcode job, sent with its result and
+ * collected into TranscodeStats.
+ */
+public class TranscodeMetrics {
+
+    /** source copied without re-encoding */
+    public static final String MODE_REMUX = "remux";
+    /** one stream through the transcoder library */
+    public static final String MODE_ENCODE = "encode";
+    /** segments encoded at the same time and joined */
+    public static final String MODE_PARALLEL = "parallel";
+    /** frame accurate trim encoded straight into the output */
+    public static final String MODE_SEGMENT = "segment";
+    /** copied from the OutputCache */
+    public static final String MODE_CACHED = "cached";
+
+    private String mode;
+    private String encoder;
+    private int passes = 0;
+    private long inputBytes = 0;
+    private long outputBytes = 0;
+    private double mediaSeconds = 0;
+    private int frames = 0;
+    private long queueWaitMs = 0;
+    private long wallMs = 0;
+    private String failure;
+    private boolean finished = false;
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public String getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * Name of the encoder the output was encoded with, null when remuxed.
+     */
+    public void setEncoder(String encoder) {
+        this.encoder = encoder;
+    }
+
+    public void addPass() {
+        passes++;
+    }
+
+    public void setInputBytes(long inputBytes) {
+        this.inputBytes = inputBytes;
+    }
+
+    public void setOutputBytes(long outputBytes) {
+        this.outputBytes = outputBytes;
+    }
+
+    /**
+     * Duration of the output, in seconds.
+     */
+    public void setMediaSeconds(double mediaSeconds) {
+        this.mediaSeconds = mediaSeconds;
+    }
+
+    /**
+     * Number of video frames in the output.
+     */
+    public void setFrames(int frames) {
+        this.frames = frames;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+
+    public long getQueueWaitMs() {
+        return queueWaitMs;
+    }
+
+    public long getWallMs() {
+        return wallMs;
+    }
+
+    /**
+     * Stops the clock, the times are taken from the job. Only the first
+     * call counts.
+     */
+    public void finish(long queuedAt, long startedAt, long finishedAt) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (startedAt > 0) {
+            queueWaitMs = Math.max(0, startedAt - queuedAt);
+            wallMs = Math.max(0, finishedAt - startedAt);
+        }
+    }
+
+    /**
+     * Output frames per second of wall time, 0 if unknown.
+     */
+    public double getFramesPerSecond() {
+        return wallMs > 0 ? frames * 1000.0 / wallMs : 0;
+    }
+
+    /**
+     * Seconds of video per second of wall time, above 1 is faster than
+     * realtime. 0 if unknown.
+     */
+    public double getRealtimeFactor() {
+        return wallMs > 0 ? mediaSeconds * 1000.0 / wallMs : 0;
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("queueWaitMs", queueWaitMs);
+        json.put("wallMs", wallMs);
+        json.put("framesPerSecond", round(getFramesPerSecond()));
+        json.put("realtimeFactor", round(getRealtimeFactor()));
+        json.put("frames", frames);
+        json.put("mediaSeconds", round(mediaSeconds));
+        json.put("inputBytes", inputBytes);
+        json.put("outputBytes", outputBytes);
+        json.put("passes", passes);
+        if (mode != null) {
+            json.put("mode", mode);
+        }
+        if (encoder != null) {
+            json.put("encoder", encoder);
+        }
+        if (failure != null) {
+            json.put("failure", failure);
+        }
+        return json;
+    }
+
+    static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+}
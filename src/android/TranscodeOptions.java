@@ -0,0 +1,149 @@
+package org.apache.cordova.videoeditor;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The options of a transcodeVideo call, parsed and checked once. Times are
+ * converted to microseconds and codec names to MIME types, so the job only
+ * deals with ready values.
+ */
+public class TranscodeOptions {
+
+    public static final int MAX_PARALLELISM = 4;
+    public static final int DEFAULT_FPS = 24;
+    public static final int DEFAULT_VIDEO_BITRATE = 1000000; // 1 megabit
+
+    public final String fileUri;
+    public final String outputFileName;
+    public final String outputUri;
+    public final String outputDirectory;
+    public final boolean saveToLibrary;
+    public final boolean deleteInputFile;
+    public final int width;
+    public final int height;
+    public final int fps;
+    /** drop source frames above fps, only when fps was requested */
+    public final boolean decimateFrames;
+    public final int videoBitrate;
+    /** maximum duration of the output, 0 for no limit */
+    public final long videoDuration;
+    public final boolean allowPassthrough;
+    public final int audioBitrate;
+    public final int audioChannels;
+    public final int audioSampleRate;
+    public final boolean removeAudio;
+    public final String videoMime;
+    public final long trimStartUs;
+    /** end of the output in the source, 0 for the end of the video */
+    public final long trimEndUs;
+    public final boolean exactTrim;
+    public final long targetSizeBytes;
+    public final int parallelism;
+    public final boolean secondPass;
+    /** null when not requested */
+    public final BitrateCalculator.Quality videoQuality;
+    public final long progressIntervalMs;
+    public final double progressStep;
+    public final String jobId;
+    public final int priority;
+    /** look the output up in the OutputCache and store it there */
+    public final boolean cache;
+    /** clockwise rotation on top of the one of the source, 0, 90, 180 or 270 */
+    public final int rotate;
+    /** {x, y, width, height} of the video as shown, null for the whole frame */
+    public final int[] crop;
+
+    private TranscodeOptions(JSONObject options) throws JSONException {
+        fileUri = options.getString("fileUri");
+        outputFileName = options.optString(
+                "outputFileName",
+                new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.ENGLISH).format(new Date())
+        );
+        outputUri = options.optString("outputUri", null);
+        outputDirectory = options.optString("outputDirectory", null);
+        saveToLibrary = options.optBoolean("saveToLibrary", true);
+        deleteInputFile = options.optBoolean("deleteInputFile", false);
+        width = options.optInt("width", 0);
+        height = options.optInt("height", 0);
+        fps = options.optInt("fps", DEFAULT_FPS);
+        decimateFrames = options.has("fps") && fps > 0;
+        videoBitrate = options.optInt("videoBitrate", DEFAULT_VIDEO_BITRATE);
+        videoDuration = options.optLong("duration", 0) * 1000 * 1000;
+        allowPassthrough = options.optBoolean("allowPassthrough", true);
+        audioBitrate = options.optInt("audioBitrate", 0);
+        audioChannels = options.optInt("audioChannels", 0);
+        audioSampleRate = options.optInt("audioSampleRate", 0);
+        removeAudio = options.optBoolean("removeAudio", false);
+        videoMime = "hevc".equalsIgnoreCase(options.optString("videoCodec", "h264"))
+                ? CustomAndroidFormatStrategy.VIDEO_MIME_HEVC
+                : CustomAndroidFormatStrategy.VIDEO_MIME_AVC;
+        trimStartUs = (long) (options.optDouble("startTime", 0) * 1000000);
+        trimEndUs = (long) (options.optDouble("endTime", 0) * 1000000);
+        exactTrim = options.optBoolean("exactTrim", false);
+        targetSizeBytes = options.optLong("targetSizeBytes", 0);
+        parallelism = Math.max(1, Math.min(MAX_PARALLELISM, options.optInt("parallelism", 1)));
+        secondPass = options.optBoolean("secondPass", true);
+        videoQuality = BitrateCalculator.Quality.parse(options.optString("videoQuality", null));
+        progressIntervalMs = options.optLong("progressIntervalMs", ProgressDispatcher.DEFAULT_INTERVAL_MS);
+        progressStep = options.optDouble("progressStep", ProgressDispatcher.DEFAULT_STEP);
+        jobId = options.optString("jobId", null);
+        priority = options.optInt("priority", VideoJob.DEFAULT_PRIORITY);
+        cache = options.optBoolean("cache", false);
+        rotate = Orientation.normalize(options.optInt("rotate", 0));
+        JSONObject cropJson = options.optJSONObject("crop");
+        crop = cropJson == null ? null : new int[] {
+                cropJson.optInt("x", 0), cropJson.optInt("y", 0),
+                cropJson.getInt("width"), cropJson.getInt("height")
+        };
+
+        if (trimEndUs > 0 && trimEndUs <= trimStartUs) {
+            throw new IllegalArgumentException("endTime must be after startTime");
+        }
+        if (options.has("videoQuality") && videoQuality == null) {
+            throw new IllegalArgumentException("videoQuality must be 'low', 'medium' or 'high'");
+        }
+    }
+
+    /**
+     * @throws JSONException            if fileUri, or the size of a crop, is missing
+     * @throws IllegalArgumentException with a message for the caller if an option is invalid
+     */
+    public static TranscodeOptions parse(JSONObject options) throws JSONException {
+        return new TranscodeOptions(options);
+    }
+
+    /**
+     * Whether the audio is copied as is, i.e. neither bitrate nor channels
+     * were requested. audioSampleRate doesn't count, the audio is never
+     * resampled.
+     */
+    public boolean isAudioCopied() {
+        return audioBitrate <= 0 && audioChannels <= 0;
+    }
+
+    /**
+     * The options that change the encoded output, in a fixed order. Where
+     * and under which name the output is saved doesn't count.
+     */
+    public String getOutputKey() {
+        return width + "x" + height
+                + "|" + fps + (decimateFrames ? "d" : "")
+                + "|" + videoBitrate
+                + "|" + videoDuration
+                + "|" + allowPassthrough
+                + "|" + audioBitrate + "," + audioChannels
+                + "|" + removeAudio
+                + "|" + videoMime
+                + "|" + trimStartUs + "-" + trimEndUs + (exactTrim ? "x" : "")
+                + "|" + targetSizeBytes + (secondPass ? "+" : "")
+                + "|" + videoQuality
+                + "|" + rotate
+                + "|" + (crop != null ? crop[0] + "," + crop[1] + "," + crop[2] + "x" + crop[3] : "");
+    }
+
+}
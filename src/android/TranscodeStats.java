@@ -0,0 +1,163 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Rolling aggregates of TranscodeMetrics: totals since the plugin started,
+ * and averages over the most recent completed jobs, overall and per encoder.
+ * Thumbnail latencies are kept the same way, per seek mode.
+ */
+public class TranscodeStats {
+
+    public static final int DEFAULT_WINDOW = 50;
+
+    /** distinct failure causes kept, the rest are counted as "other" */
+    private static final int MAX_FAILURE_CAUSES = 20;
+    private static final int MAX_CAUSE_LENGTH = 120;
+
+    private final int window;
+    private final LinkedList<TranscodeMetrics> recent = new LinkedList<TranscodeMetrics>();
+    private final Map<String, Integer> failureCauses = new LinkedHashMap<String, Integer>();
+    private final Map<String, LinkedList<Long>> thumbnailLatencies = new LinkedHashMap<String, LinkedList<Long>>();
+    private long completed = 0;
+    private long failed = 0;
+    private long canceled = 0;
+
+    public TranscodeStats(int window) {
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * Adds a finished job. Only completed jobs count for the averages.
+     */
+    public synchronized void record(TranscodeMetrics metrics, VideoJob.State state) {
+        if (state == VideoJob.State.COMPLETED) {
+            completed++;
+            recent.addLast(metrics);
+            if (recent.size() > window) {
+                recent.removeFirst();
+            }
+        } else if (state == VideoJob.State.CANCELED) {
+            canceled++;
+        } else if (state == VideoJob.State.FAILED) {
+            failed++;
+            String cause = metrics.getFailure() != null ? metrics.getFailure() : "unknown";
+            if (cause.length() > MAX_CAUSE_LENGTH) {
+                cause = cause.substring(0, MAX_CAUSE_LENGTH);
+            }
+            if (!failureCauses.containsKey(cause) && failureCauses.size() >= MAX_FAILURE_CAUSES) {
+                cause = "other";
+            }
+            Integer count = failureCauses.get(cause);
+            failureCauses.put(cause, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Adds the latency of a completed createThumbnail job.
+     *
+     * @param mode seek mode of the thumbnail, e.g. "fast" or "exact"
+     */
+    public synchronized void recordThumbnail(String mode, long latencyMs) {
+        LinkedList<Long> latencies = thumbnailLatencies.get(mode);
+        if (latencies == null) {
+            latencies = new LinkedList<Long>();
+            thumbnailLatencies.put(mode, latencies);
+        }
+        latencies.addLast(latencyMs);
+        if (latencies.size() > window) {
+            latencies.removeFirst();
+        }
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("completed", completed);
+        json.put("failed", failed);
+        json.put("canceled", canceled);
+        json.put("window", window);
+        json.put("recent", summarize(recent));
+
+        Map<String, List<TranscodeMetrics>> byEncoder = new LinkedHashMap<String, List<TranscodeMetrics>>();
+        for (TranscodeMetrics metrics : recent) {
+            String encoder = metrics.getEncoder() != null ? metrics.getEncoder() : TranscodeMetrics.MODE_REMUX;
+            List<TranscodeMetrics> jobs = byEncoder.get(encoder);
+            if (jobs == null) {
+                jobs = new ArrayList<TranscodeMetrics>();
+                byEncoder.put(encoder, jobs);
+            }
+            jobs.add(metrics);
+        }
+        JSONObject encoders = new JSONObject();
+        for (Map.Entry<String, List<TranscodeMetrics>> entry : byEncoder.entrySet()) {
+            encoders.put(entry.getKey(), summarize(entry.getValue()));
+        }
+        json.put("encoders", encoders);
+
+        JSONObject failures = new JSONObject();
+        for (Map.Entry<String, Integer> entry : failureCauses.entrySet()) {
+            failures.put(entry.getKey(), entry.getValue());
+        }
+        json.put("failures", failures);
+
+        JSONObject thumbnails = new JSONObject();
+        for (Map.Entry<String, LinkedList<Long>> entry : thumbnailLatencies.entrySet()) {
+            List<Long> latencies = new ArrayList<Long>(entry.getValue());
+            long total = 0;
+            for (long latency : latencies) {
+                total += latency;
+            }
+            Collections.sort(latencies);
+            JSONObject summary = new JSONObject();
+            summary.put("thumbnails", latencies.size());
+            summary.put("avgLatencyMs", Math.round((double) total / latencies.size()));
+            summary.put("medianLatencyMs", latencies.get(latencies.size() / 2));
+            thumbnails.put(entry.getKey(), summary);
+        }
+        json.put("thumbnails", thumbnails);
+        return json;
+    }
+
+    /**
+     * Averages of a list of completed jobs, with the median realtime factor
+     * since a single slow job skews the average.
+     */
+    private static JSONObject summarize(List<TranscodeMetrics> jobs) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("jobs", jobs.size());
+        if (jobs.isEmpty()) {
+            return json;
+        }
+
+        double queueWaitMs = 0;
+        double wallMs = 0;
+        double framesPerSecond = 0;
+        double realtimeFactor = 0;
+        List<Double> realtimeFactors = new ArrayList<Double>();
+        for (TranscodeMetrics metrics : jobs) {
+            queueWaitMs += metrics.getQueueWaitMs();
+            wallMs += metrics.getWallMs();
+            framesPerSecond += metrics.getFramesPerSecond();
+            realtimeFactor += metrics.getRealtimeFactor();
+            realtimeFactors.add(metrics.getRealtimeFactor());
+        }
+        Collections.sort(realtimeFactors);
+
+        int count = jobs.size();
+        json.put("avgQueueWaitMs", Math.round(queueWaitMs / count));
+        json.put("avgWallMs", Math.round(wallMs / count));
+        json.put("avgFramesPerSecond", TranscodeMetrics.round(framesPerSecond / count));
+        json.put("avgRealtimeFactor", TranscodeMetrics.round(realtimeFactor / count));
+        json.put("medianRealtimeFactor", TranscodeMetrics.round(realtimeFactors.get(count / 2)));
+        return json;
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.FileDescriptor;
+import java.util.concurrent.Future;
+
+import net.ypresto.androidtranscoder.format.MediaFormatStrategy;
+
+/**
+ * Runs a single transcode session, so VideoEditor doesn't depend on one
+ * transcoder implementation and the session handling can be driven by a
+ * fake engine.
+ */
+public interface TranscoderEngine {
+
+    interface Listener {
+        void onProgress(double progress);
+
+        void onCompleted();
+
+        /** the session was stopped through its Future */
+        void onCanceled();
+
+        void onFailed(Exception exception);
+    }
+
+    /**
+     * Starts transcoding in the background. Canceling the returned Future
+     * stops the session; the engine then calls onCanceled, unless the
+     * session never started.
+     *
+     * @param input      source, must stay open until the session is over
+     * @param durationUs stop after this much of the source, 0 for all of it
+     */
+    Future<Void> transcode(FileDescriptor input, String outputPath, MediaFormatStrategy formatStrategy,
+                           Listener listener, long durationUs);
+
+}
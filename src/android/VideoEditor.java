@@ -1,36 +1,50 @@
 package org.apache.cordova.videoeditor;
 
 import java.io.*;
-import java.net.URL;
-import java.net.URLDecoder;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import android.graphics.Bitmap;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CallbackContext;
-import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import android.content.ContentUris;
+import android.app.ActivityManager;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
-import android.database.Cursor;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
 import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
-import android.provider.DocumentsContract;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
 
-import net.ypresto.androidtranscoder.MediaTranscoder;
+import net.ypresto.androidtranscoder.format.MediaFormatStrategy;
 
 /**
  * VideoEditor plugin for Android
@@ -40,35 +54,249 @@ public class VideoEditor extends CordovaPlugin {
 
     private static final String TAG = "VideoEditor";
 
-    private CallbackContext callback;
+    private static final int DEFAULT_MAX_CONCURRENT_JOBS = 2;
+    private static final int DEFAULT_MAX_THUMBNAILS = 100;
+    /** keyframes the smart seek mode looks at, and the time it may spend on them by default */
+    private static final int SMART_THUMBNAIL_CANDIDATES = 8;
+    private static final long DEFAULT_SMART_BUDGET_MS = 1000;
+    /** share of the device memory the running jobs may hold when no budget is configured */
+    private static final int MEMORY_BUDGET_DIVISOR = 8;
+    private static final int DEFAULT_PROXY_SIZE = 640;
+    private static final int DEFAULT_PROXY_BITRATE = 2000000;
+    /** files a getVideoInfoBatch reads at the same time by default, and at most */
+    private static final int DEFAULT_PROBE_CONCURRENCY = 4;
+    private static final int MAX_PROBE_CONCURRENCY = 8;
+    private static final long SESSION_POLL_MS = 1000;
+    private static final long SESSION_CANCEL_GRACE_MS = 2000;
+    private static final double SECOND_PASS_PROGRESS = 0.8;
+    private static final double TRIM_STAGE_PROGRESS = 0.5;
+    /** actions whose jobs are journaled and started over after the process died */
+    private static final List<String> JOURNALED_ACTIONS = Arrays.asList("transcodeVideo", "mergeVideos", "createProxy");
+
+    private JobManager jobManager;
+    private ProbeCache probeCache;
+    private SyncSampleIndexCache syncIndexCache;
+    private BitmapPool bitmapPool;
+    private TranscodeStats transcodeStats;
+    private FileResolver fileResolver;
+    private MetadataProber metadataProber;
+    private TranscoderEngine transcoderEngine;
+    private OutputCache outputCache;
+    private ProxyStore proxyStore;
+    private JobJournal jobJournal;
+
+    public VideoEditor() {
+    }
+
+    /**
+     * Uses the given file resolver, metadata prober and transcoder engine
+     * instead of the platform ones, e.g. fakes that run on a JVM.
+     */
+    VideoEditor(FileResolver fileResolver, MetadataProber metadataProber, TranscoderEngine transcoderEngine) {
+        this.fileResolver = fileResolver;
+        this.metadataProber = metadataProber;
+        this.transcoderEngine = transcoderEngine;
+    }
+
+    @Override
+    protected void pluginInitialize() {
+        int maxConcurrentJobs = preferences.getInteger("VideoEditorMaxConcurrentJobs", DEFAULT_MAX_CONCURRENT_JOBS);
+        long memoryBudget = preferences.getInteger("VideoEditorMemoryBudgetMB", 0) * 1024L * 1024L;
+        if (memoryBudget <= 0) {
+            ActivityManager activityManager = (ActivityManager) cordova.getActivity().getApplicationContext()
+                    .getSystemService(Context.ACTIVITY_SERVICE);
+            ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+            activityManager.getMemoryInfo(memoryInfo);
+            memoryBudget = memoryInfo.totalMem / MEMORY_BUDGET_DIVISOR;
+        }
+        AdmissionController admission = new AdmissionController(memoryBudget,
+                preferences.getInteger("VideoEditorCodecBudget", AdmissionController.DEFAULT_CODEC_BUDGET));
+        jobManager = new JobManager(maxConcurrentJobs, admission);
+        if (fileResolver == null) {
+            fileResolver = new ContentFileResolver(cordova.getActivity().getApplicationContext().getContentResolver());
+        }
+        if (metadataProber == null) {
+            metadataProber = new MetadataRetrieverProber();
+        }
+        if (transcoderEngine == null) {
+            transcoderEngine = new LibraryTranscoderEngine();
+        }
+        probeCache = new ProbeCache(preferences.getInteger("VideoEditorProbeCacheSize", ProbeCache.DEFAULT_CAPACITY), metadataProber);
+        syncIndexCache = new SyncSampleIndexCache(SyncSampleIndexCache.DEFAULT_CAPACITY);
+        bitmapPool = new BitmapPool(BitmapPool.DEFAULT_MAX_BYTES);
+        transcodeStats = new TranscodeStats(preferences.getInteger("VideoEditorStatsWindow", TranscodeStats.DEFAULT_WINDOW));
+        outputCache = new OutputCache(new File(cordova.getActivity().getApplicationContext().getCacheDir(), "videoeditor-outputs"),
+                preferences.getInteger("VideoEditorOutputCacheMB", (int) (OutputCache.DEFAULT_MAX_BYTES / (1024 * 1024))) * 1024L * 1024L);
+        proxyStore = new ProxyStore(new File(cordova.getActivity().getApplicationContext().getCacheDir(), "videoeditor-proxies"));
+        jobJournal = new JobJournal(new File(cordova.getActivity().getApplicationContext().getFilesDir(), "videoeditor-jobs"));
+        jobManager.setJournal(jobJournal);
+
+        resumeInterruptedJobs();
+
+        // read the codec list once up front, so the first transcode doesn't wait for it
+        cordova.getThreadPool().execute(new Runnable() {
+            public void run() {
+                EncoderSelector.getDefault().select(CustomAndroidFormatStrategy.VIDEO_MIME_AVC);
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        jobManager.shutdown();
+        bitmapPool.clear();
+        super.onDestroy();
+    }
+
+    /**
+     * Starts the jobs the app process died in over. Their journal entries
+     * are opened right away, so reattachJob finds them, the jobs themselves
+     * are set up off this thread since they probe their inputs.
+     */
+    private void resumeInterruptedJobs() {
+        final List<JSONObject> entries = new ArrayList<JSONObject>();
+        final List<CallbackContext> callbacks = new ArrayList<CallbackContext>();
+        for (JSONObject entry : jobJournal.recover()) {
+            String jobId = entry.optString("jobId");
+            Log.d(TAG, "starting interrupted job " + jobId + " over");
+            try {
+                callbacks.add(jobJournal.open(jobId, entry.getString("action"), entry.getJSONObject("options"), null));
+                entries.add(entry);
+            } catch (JSONException e) {
+                Log.d(TAG, "can't start job " + jobId + " over", e);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        cordova.getThreadPool().execute(new Runnable() {
+            public void run() {
+                for (int i = 0; i < entries.size(); i++) {
+                    JSONObject entry = entries.get(i);
+                    CallbackContext callbackContext = callbacks.get(i);
+                    try {
+                        dispatch(entry.getString("action"), new JSONArray().put(entry.getJSONObject("options")),
+                                callbackContext);
+                    } catch (JSONException e) {
+                        callbackContext.error(e.toString());
+                    }
+                }
+            }
+        });
+    }
 
     @Override
     public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
         Log.d(TAG, "execute method starting");
 
-        this.callback = callbackContext;
+        if (JOURNALED_ACTIONS.contains(action)) {
+            callbackContext = journal(action, args, callbackContext);
+        }
+        return dispatch(action, args, callbackContext);
+    }
 
+    /**
+     * Records a long job in the journal and returns the callback it has to
+     * report through. A missing jobId is generated here, so the job keeps
+     * its id when it is started over.
+     */
+    private CallbackContext journal(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        JSONObject options = args.optJSONObject(0);
+        if (options == null) {
+            return callbackContext;
+        }
+        String jobId = options.optString("jobId", "");
+        if (jobId.length() == 0) {
+            jobId = action + "-" + Long.toString(System.currentTimeMillis(), 36);
+            options.put("jobId", jobId);
+        }
+        VideoJob existing = jobManager.getJob(jobId);
+        if (existing != null && !existing.isFinished()) {
+            // createJob turns the call down, the entry of the running job stays
+            return callbackContext;
+        }
+        return jobJournal.open(jobId, action, options, callbackContext);
+    }
+
+    private boolean dispatch(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
         if (action.equals("transcodeVideo")) {
             try {
-                this.transcodeVideo(args);
+                this.transcodeVideo(args, callbackContext);
             } catch (IOException e) {
-                callback.error(e.toString());
+                callbackContext.error(e.toString());
+            }
+            return true;
+        } else if (action.equals("createProxy")) {
+            try {
+                this.createProxy(args, callbackContext);
+            } catch (IOException e) {
+                callbackContext.error(e.toString());
+            }
+            return true;
+        } else if (action.equals("mergeVideos")) {
+            try {
+                this.mergeVideos(args, callbackContext);
+            } catch (IOException e) {
+                callbackContext.error(e.toString());
             }
             return true;
         } else if (action.equals("createThumbnail")) {
             try {
-                this.createThumbnail(args);
+                this.createThumbnail(args, callbackContext);
             } catch (IOException e) {
-                callback.error(e.toString());
+                callbackContext.error(e.toString());
+            }
+            return true;
+        } else if (action.equals("createThumbnails")) {
+            try {
+                this.createThumbnails(args, callbackContext);
+            } catch (IOException e) {
+                callbackContext.error(e.toString());
             }
             return true;
         } else if (action.equals("getVideoInfo")) {
             try {
-                this.getVideoInfo(args);
+                this.getVideoInfo(args, callbackContext);
             } catch (IOException e) {
-                callback.error(e.toString());
+                callbackContext.error(e.toString());
             }
             return true;
+        } else if (action.equals("getVideoInfoBatch")) {
+            this.getVideoInfoBatch(args, callbackContext);
+            return true;
+        } else if (action.equals("getJobs")) {
+            JSONObject jobs = jobManager.toJSON();
+            jobs.put("undelivered", jobJournal.getUndelivered());
+            callbackContext.success(jobs);
+            return true;
+        } else if (action.equals("reattachJob")) {
+            this.reattachJob(args, callbackContext);
+            return true;
+        } else if (action.equals("getProbeCacheStats")) {
+            callbackContext.success(probeCache.toJSON());
+            return true;
+        } else if (action.equals("getTranscodeStats")) {
+            this.getTranscodeStats(callbackContext);
+            return true;
+        } else if (action.equals("getOutputCacheStats")) {
+            callbackContext.success(outputCache.toJSON());
+            return true;
+        } else if (action.equals("clearOutputCache")) {
+            this.clearOutputCache(callbackContext);
+            return true;
+        } else if (action.equals("cancelTranscode")) {
+            this.controlJob(action, args, callbackContext);
+            return true;
+        } else if (action.equals("pauseTranscode")) {
+            this.controlJob(action, args, callbackContext);
+            return true;
+        } else if (action.equals("resumeTranscode")) {
+            this.controlJob(action, args, callbackContext);
+            return true;
+        } else if (action.equals("setPriority")) {
+            this.controlJob(action, args, callbackContext);
+            return true;
         }
 
         return false;
@@ -82,169 +310,1348 @@ public class VideoEditor extends CordovaPlugin {
      * ARGUMENTS
      * =========
      *
-     * fileUri              - path to input video
+     * fileUri              - path to input video, or a content:// URI read through a descriptor
      * outputFileName       - output file name
-     * saveToLibrary        - save to gallery
+     * outputDirectory      - directory to write the output to (default: depends on saveToLibrary)
+     * outputUri            - content:// URI of a document or MediaStore entry to write the output to,
+     *                        overrides outputDirectory and saveToLibrary
+     * saveToLibrary        - save to gallery, through MediaStore from API 29 on
      * deleteInputFile      - optionally remove input file
      * width                - width for the output video
      * height               - height for the output video
      * fps                  - fps the video
      * videoBitrate         - video bitrate for the output video in bits
      * duration             - max video duration (in seconds?)
+     * allowPassthrough     - copy the source without re-encoding when it already
+     *                        meets the requested format (default true)
+     * audioBitrate         - re-encode the audio to AAC at this bitrate in bits (default: copy the audio)
+     * audioChannels        - re-encode the audio to 1 (mono) or 2 (stereo) channels (default: copy the audio)
+     * audioSampleRate      - ignored, the audio isn't resampled and is copied unless audioBitrate or
+     *                        audioChannels is set
+     * removeAudio          - leave the audio track out of the output (default false)
+     * startTime            - start of the output in the source (in seconds, default 0)
+     * endTime              - end of the output in the source (in seconds, default end of the video)
+     * exactTrim            - cut exactly at startTime by re-encoding, instead of at the sync
+     *                        sample before it (default false, needs API 21)
+     * parallelism          - number of segments of a long video encoded at the same time (default 1, max 4,
+     *                        needs API 21, only when the audio is copied)
+     * videoCodec           - 'h264' (default) or 'hevc', HEVC is only used with a hardware encoder
+     * targetSizeBytes      - derive the video bitrate from this output size, overrides videoBitrate
+     * secondPass           - encode again at a lower bitrate if the output exceeds targetSizeBytes (default true)
+     * videoQuality         - 'low', 'medium' or 'high', derive the video bitrate from the output
+     *                        size and fps, overrides videoBitrate
+     * progressIntervalMs   - minimum time between two progress updates (default 250)
+     * progressStep         - minimum progress change between two updates (default 0.01)
+     * jobId                - optional id for the job, generated when missing
+     * priority             - optional queue priority, higher runs first (default 0)
+     * cache                - reuse the output of an earlier transcode of the same content with the
+     *                        same options, and keep this output for later ones (default false)
+     * rotate               - turn the output clockwise by 90, 180 or 270 degrees more than the source,
+     *                        through the orientation hint without re-rendering (default 0)
+     * crop                 - {x, y, width, height} of the video as shown to keep, done in the pass that
+     *                        scales the frames (needs API 21 and the audio copied)
+     *
+     * RESPONSE
+     * ========
+     *
+     * outputFilePath - path to output file, or the content:// URI of the output
+     * metrics        - queue wait, wall time, frames per second, realtime factor, sizes and encoder of the job
+     *
+     * @param JSONArray args
+     * @param CallbackContext callbackContext
+     * @return void
+     */
+    private void transcodeVideo(JSONArray args, final CallbackContext callbackContext) throws JSONException, IOException {
+        Log.d(TAG, "transcodeVideo firing");
+
+        JSONObject json = args.optJSONObject(0);
+        Log.d(TAG, "options: " + json.toString());
+
+        final TranscodeOptions options;
+        try {
+            options = TranscodeOptions.parse(json);
+        } catch (IllegalArgumentException e) {
+            callbackContext.error(e.getMessage());
+            return;
+        }
+
+        final MediaInput input = fileResolver.resolveInput(options.fileUri);
+        if (!input.exists()) {
+            Log.d(TAG, "input file does not exist");
+            callbackContext.error("input video does not exist.");
+            return;
+        }
+
+        Log.d(TAG, "input: " + input);
+
+        if (options.crop != null && (!options.isAudioCopied() || Build.VERSION.SDK_INT < 21)) {
+            callbackContext.error("crop needs API 21 and the audio copied as is");
+            return;
+        }
+
+        final MediaOutput output = createVideoOutput(options.outputUri, options.outputDirectory, options.saveToLibrary,
+                options.outputFileName, callbackContext);
+        if (output == null) {
+            return;
+        }
+
+        // everything is encoded into this file, outputs that aren't files get it copied on completion
+        final String outputFilePath = output.getWorkPath();
+
+        // the transcoder always writes an audio track, without audio it goes to a
+        // temporary file first and the video track is copied out of it afterwards
+        final String transcodeFilePath = options.removeAudio ? outputFilePath + ".tmp" : outputFilePath;
+
+        Log.d(TAG, "outputFilePath: " + outputFilePath);
+
+        final VideoJob job = jobManager.createJob(options.jobId, "transcodeVideo", callbackContext);
+        if (job == null) {
+            callbackContext.error("a job with this jobId is already queued or running");
+            return;
+        }
+        jobJournal.addWorkFile(job.getId(), outputFilePath);
+
+        // the input is probed for the cost on the job thread, not here on the bridge
+        jobManager.submit(job, options.priority, new JobManager.Work() {
+
+            private int admittedParallelism;
+
+            protected AdmissionController.Cost estimateCost() throws IOException {
+                // parallel segments are lowered to what the budget allows before the job is turned down
+                VideoProbe inputProbe = probeCache.get(input);
+                int parallelism = options.isAudioCopied() ? options.parallelism : 1;
+                AdmissionController.Cost cost = AdmissionController.transcodeCost(inputProbe.width, inputProbe.height, parallelism);
+                while (parallelism > 1 && jobManager.reject(cost) != null) {
+                    parallelism--;
+                    cost = AdmissionController.transcodeCost(inputProbe.width, inputProbe.height, parallelism);
+                }
+                String rejection = jobManager.reject(cost);
+                if (rejection != null) {
+                    job.error(rejection, "a " + inputProbe.width + "x" + inputProbe.height
+                            + " transcode needs " + cost + ", more than the budget");
+                    return null;
+                }
+                admittedParallelism = parallelism;
+                return cost;
+            }
+
+            protected void onNotAdmitted() {
+                output.discard();
+            }
+
+            public void run() {
+
+                File trimFile = null;
+                TranscodeMetrics metrics = new TranscodeMetrics();
+
+                try {
+                    String cacheKey = options.cache ? OutputCache.keyFor(input, options) : null;
+
+                    VideoProbe probe = probeCache.get(input);
+                    metrics.setInputBytes(probe.size);
+                    Log.d(TAG, "source: " + probe.width + "x" + probe.height + ", rotation " + probe.rotation);
+
+                    // frames stay as stored: rotate only changes the orientation hint, and the
+                    // crop is mapped to the stored frame and done in the pass that scales it
+                    Orientation orientation = Orientation.of(probe);
+                    final int outputRotation = orientation.rotatedBy(options.rotate).rotation;
+                    final int[] storedCrop;
+                    try {
+                        storedCrop = options.crop != null
+                                ? orientation.toStoredRect(options.crop[0], options.crop[1], options.crop[2], options.crop[3])
+                                : null;
+                    } catch (IllegalArgumentException e) {
+                        job.error(e.getMessage());
+                        return;
+                    }
+
+                    if (cacheKey != null) {
+                        File cached = outputCache.get(cacheKey);
+                        if (cached != null) {
+                            Log.d(TAG, "output cache hit " + cached.getName());
+                            OutputCache.copy(cached, new File(outputFilePath));
+                            metrics.setMode(TranscodeMetrics.MODE_CACHED);
+                            finishTranscode(job, input, output, options.saveToLibrary, options.deleteInputFile, metrics, null);
+                            return;
+                        }
+                    }
+
+                    // the range of the source that ends up in the output
+                    long sourceDurationUs = probe.durationMs * 1000;
+                    long endUs = options.trimEndUs > 0 && (sourceDurationUs == 0 || options.trimEndUs < sourceDurationUs) ? options.trimEndUs : 0;
+                    if (options.videoDuration > 0 && (endUs == 0 || options.trimStartUs + options.videoDuration < endUs)) {
+                        endUs = options.trimStartUs + options.videoDuration;
+                    }
+                    boolean trimming = options.trimStartUs > 0 || endUs > 0;
+
+                    double durationSeconds = ((endUs > 0 ? endUs : sourceDurationUs) - options.trimStartUs) / 1000000.0;
+                    if (trimming && durationSeconds <= 0) {
+                        job.error("startTime is past the end of the video");
+                        return;
+                    }
+                    metrics.setMediaSeconds(durationSeconds);
+                    final ProgressDispatcher progressDispatcher = new ProgressDispatcher(job, options.progressIntervalMs, options.progressStep, durationSeconds);
+                    Remuxer.ProgressListener progressListener = new Remuxer.ProgressListener() {
+                        public void onProgress(double progress) {
+                            progressDispatcher.onProgress(progress);
+                        }
+                    };
+
+                    // with a target size or quality the bitrate is derived from the source
+                    int outputBitrate = options.videoBitrate;
+                    BitrateCalculator bitrateCalculator = null;
+                    if (options.targetSizeBytes > 0) {
+                        int outputAudioBitrate = options.removeAudio ? 0
+                                : options.audioBitrate > 0 ? options.audioBitrate
+                                : options.audioChannels > 0 ? CustomAndroidFormatStrategy.DEFAULT_AUDIO_BITRATE
+                                : sourceAudioBitrate(input);
+                        bitrateCalculator = new BitrateCalculator(durationSeconds, outputAudioBitrate);
+                        outputBitrate = bitrateCalculator.forTargetSize(options.targetSizeBytes);
+                        if (outputBitrate < BitrateCalculator.MIN_VIDEO_BITRATE) {
+                            job.error("targetSizeBytes is too small for " + durationSeconds + "s of video");
+                            return;
+                        }
+                    } else if (options.videoQuality != null) {
+                        int inLonger = Math.max(probe.width, probe.height);
+                        int outLonger = Math.max(options.width, options.height);
+                        double scale = outLonger > 0 && inLonger > outLonger ? (double) outLonger / inLonger : 1;
+                        outputBitrate = BitrateCalculator.forQuality(options.videoQuality,
+                                (int) (probe.width * scale), (int) (probe.height * scale), options.fps);
+                    }
+                    Log.d(TAG, "video bitrate: " + outputBitrate);
+
+                    // after trimming, the rest of the job works on the trimmed segment
+                    MediaInput source = input;
+                    long sourceBitrate = probe.bitrate;
+                    long durationLimitUs = options.videoDuration;
+
+                    if (trimming && options.exactTrim && Build.VERSION.SDK_INT >= 21) {
+                        // frames are re-encoded from startTime on; straight into the output
+                        // unless audio or size targets need the transcoder, else into a high
+                        // quality segment at source size
+                        CustomAndroidFormatStrategy segmentStrategy = new CustomAndroidFormatStrategy(outputBitrate, options.fps, options.width, options.height);
+                        segmentStrategy.setEncoderSelector(EncoderSelector.getDefault(), options.videoMime);
+                        MediaFormat sourceFormat = videoTrackFormat(input);
+                        MediaFormat segmentFormat = segmentStrategy.createVideoOutputFormat(
+                                storedCrop != null ? croppedFormat(sourceFormat, storedCrop) : sourceFormat);
+                        boolean direct = options.isAudioCopied() && bitrateCalculator == null;
+                        if (!direct) {
+                            segmentFormat.setInteger(MediaFormat.KEY_WIDTH, sourceFormat.getInteger(MediaFormat.KEY_WIDTH));
+                            segmentFormat.setInteger(MediaFormat.KEY_HEIGHT, sourceFormat.getInteger(MediaFormat.KEY_HEIGHT));
+                            segmentFormat.setInteger(MediaFormat.KEY_BIT_RATE, (int) Math.max(outputBitrate, Math.min(Integer.MAX_VALUE, probe.bitrate)));
+                            trimFile = new File(outputFilePath + ".trim");
+                            progressDispatcher.setStage(0, TRIM_STAGE_PROGRESS);
+                        }
+
+                        EncoderInfo segmentEncoder = EncoderSelector.getDefault().select(segmentFormat.getString(MediaFormat.KEY_MIME));
+                        metrics.setEncoder(segmentEncoder != null ? segmentEncoder.name : null);
+                        metrics.addPass();
+                        final SegmentTranscoder segmentTranscoder = new SegmentTranscoder(input,
+                                direct ? outputFilePath : trimFile.getAbsolutePath(), segmentFormat);
+                        segmentTranscoder.setRange(options.trimStartUs, endUs);
+                        segmentTranscoder.setOrientationHint(outputRotation);
+                        // the transcoder wants an audio track if there is one, removeAudio comes last
+                        segmentTranscoder.setIncludeAudio(!direct || !options.removeAudio);
+                        segmentTranscoder.setFrameRate(options.decimateFrames ? options.fps : 0);
+                        if (direct) {
+                            segmentTranscoder.setCrop(storedCrop);
+                        }
+                        final Remuxer.ProgressListener segmentListener = progressListener;
+                        if (!runLocalSession(job, new Callable<Void>() {
+                            public Void call() throws Exception {
+                                segmentTranscoder.transcode(segmentListener);
+                                return null;
+                            }
+                        })) {
+                            return;
+                        }
+
+                        if (direct) {
+                            metrics.setMode(TranscodeMetrics.MODE_SEGMENT);
+                            progressDispatcher.finish();
+                            finishTranscode(job, input, output, options.saveToLibrary, options.deleteInputFile, metrics, cacheKey);
+                            return;
+                        }
+                        progressDispatcher.setStage(TRIM_STAGE_PROGRESS, 1);
+                        source = MediaInput.fromFile(trimFile);
+                        sourceBitrate = metadataProber.probe(source).bitrate;
+                        durationLimitUs = 0;
+
+                    } else if (trimming) {
+                        // copying from the sync sample before startTime costs next to nothing
+                        if (options.exactTrim) {
+                            Log.d(TAG, "exact trimming needs API 21, trimming at sync samples");
+                        }
+                        trimFile = new File(outputFilePath + ".trim");
+                        final Remuxer trimmer = new Remuxer(input, trimFile.getAbsolutePath());
+                        trimmer.setRange(options.trimStartUs, endUs);
+                        trimmer.setOrientationHint(outputRotation);
+                        if (!runLocalSession(job, new Callable<Void>() {
+                            public Void call() throws Exception {
+                                trimmer.remux(null);
+                                return null;
+                            }
+                        })) {
+                            return;
+                        }
+                        source = MediaInput.fromFile(trimFile);
+                        sourceBitrate = metadataProber.probe(source).bitrate;
+                        durationLimitUs = 0;
+                    }
+
+                    final CustomAndroidFormatStrategy formatStrategy = new CustomAndroidFormatStrategy(outputBitrate, options.fps, options.width, options.height);
+                    formatStrategy.setPassthrough(options.allowPassthrough && storedCrop == null, sourceBitrate);
+                    formatStrategy.setAudio(options.audioBitrate, options.audioChannels, options.audioSampleRate);
+                    formatStrategy.setEncoderSelector(EncoderSelector.getDefault(), options.videoMime);
+                    formatStrategy.setDecimation(options.decimateFrames ? options.fps : 0);
+
+                    if (storedCrop == null && canRemux(source, formatStrategy, options.removeAudio)) {
+                        Log.d(TAG, "source already meets the output format, remuxing");
+                        final Remuxer remuxer = new Remuxer(source, outputFilePath);
+                        remuxer.setMaxDurationUs(durationLimitUs);
+                        remuxer.setOrientationHint(outputRotation);
+                        remuxer.setIncludeAudio(!options.removeAudio);
+
+                        final Remuxer.ProgressListener remuxListener = progressListener;
+                        if (!runLocalSession(job, new Callable<Void>() {
+                            public Void call() throws Exception {
+                                remuxer.remux(remuxListener);
+                                return null;
+                            }
+                        })) {
+                            return;
+                        }
+
+                        metrics.setMode(TranscodeMetrics.MODE_REMUX);
+                        progressDispatcher.finish();
+                        finishTranscode(job, input, output, options.saveToLibrary, options.deleteInputFile, metrics, cacheKey);
+                        return;
+                    }
+
+                    // our own pipeline copies the source audio, so it can only run segments or drop frames when it is copied
+                    boolean audioCopied = options.isAudioCopied();
+                    int frameRate = options.decimateFrames ? options.fps : 0;
+
+                    // a second pass only makes sense when the first one re-encoded the video
+                    boolean secondPassAllowed = bitrateCalculator != null && options.secondPass;
+                    if (secondPassAllowed) {
+                        progressDispatcher.setRange(0, SECOND_PASS_PROGRESS);
+                    }
+                    if (!runEncodePass(job, source, transcodeFilePath, formatStrategy, progressDispatcher,
+                            durationLimitUs, audioCopied, admittedParallelism, frameRate, outputRotation, storedCrop, metrics)) {
+                        return;
+                    }
+
+                    long outputSize = new File(transcodeFilePath).length();
+                    if (secondPassAllowed && BitrateCalculator.overshoots(outputSize, options.targetSizeBytes)) {
+                        int correctedBitrate = bitrateCalculator.corrected(outputBitrate, outputSize, options.targetSizeBytes);
+                        Log.d(TAG, "output is " + outputSize + " bytes, second pass at " + correctedBitrate);
+
+                        // no passthrough, the source is known to be too large
+                        CustomAndroidFormatStrategy secondPassStrategy = new CustomAndroidFormatStrategy(correctedBitrate, options.fps, options.width, options.height);
+                        secondPassStrategy.setAudio(options.audioBitrate, options.audioChannels, options.audioSampleRate);
+                        secondPassStrategy.setEncoderSelector(EncoderSelector.getDefault(), options.videoMime);
+                        progressDispatcher.setRange(SECOND_PASS_PROGRESS, 1);
+                        if (!runEncodePass(job, source, transcodeFilePath, secondPassStrategy, progressDispatcher,
+                                durationLimitUs, audioCopied, admittedParallelism, frameRate, outputRotation, storedCrop, metrics)) {
+                            return;
+                        }
+                    }
+
+                    if (options.removeAudio) {
+                        Remuxer remuxer = new Remuxer(MediaInput.fromFile(new File(transcodeFilePath)), outputFilePath);
+                        remuxer.setOrientationHint(outputRotation);
+                        remuxer.setIncludeAudio(false);
+                        remuxer.remux(null);
+                    }
+                    progressDispatcher.finish();
+                    finishTranscode(job, input, output, options.saveToLibrary, options.deleteInputFile, metrics, cacheKey);
+
+                } catch (Throwable e) {
+                    Log.d(TAG, "transcode exception ", e);
+                    job.error(e);
+                } finally {
+                    if (options.removeAudio) {
+                        new File(transcodeFilePath).delete();
+                    }
+                    if (trimFile != null) {
+                        trimFile.delete();
+                    }
+
+                    // don't leave partial output of canceled, paused or failed jobs behind
+                    if (job.getState() != VideoJob.State.COMPLETED) {
+                        output.discard();
+                    }
+
+                    // a paused job runs again later and is counted then
+                    if (job.isFinished()) {
+                        if (job.getState() == VideoJob.State.FAILED) {
+                            metrics.setFailure(job.getError());
+                        }
+                        metrics.finish(job.getQueuedAt(), job.getStartedAt(), System.currentTimeMillis());
+                        transcodeStats.record(metrics, job.getState());
+                    }
+                }
+
+            }
+        });
+    }
+
+    /**
+     * Where a video output goes: outputUri, outputDirectory, the gallery or
+     * the files of the app, in this order. Returns null after reporting
+     * why the output can't be written.
+     */
+    private MediaOutput createVideoOutput(String outputUri, String outputDirectory, boolean saveToLibrary,
+                                          String outputFileName, CallbackContext callbackContext) throws IOException {
+        String outputExtension = ".mp4";
+
+        Context appContext = cordova.getActivity().getApplicationContext();
+        PackageManager pm = appContext.getPackageManager();
+
+        ApplicationInfo ai;
+        try {
+            ai = pm.getApplicationInfo(cordova.getActivity().getPackageName(), 0);
+        } catch (final NameNotFoundException e) {
+            ai = null;
+        }
+        String appName = (String) (ai != null ? pm.getApplicationLabel(ai) : "Unknown");
+
+        ContentResolver resolver = appContext.getContentResolver();
+
+        if (outputUri != null) {
+            return MediaOutput.toUri(resolver, Uri.parse(outputUri),
+                    File.createTempFile(outputFileName, outputExtension, appContext.getCacheDir()));
+        } else if (outputDirectory != null) {
+            File outputDir = fileResolver.resolveOutputDirectory(outputDirectory);
+            if (outputDir == null) {
+                callbackContext.error("Can't access or make " + outputDirectory);
+                return null;
+            }
+            return MediaOutput.toFile(new File(outputDir, outputFileName + outputExtension));
+        } else if (saveToLibrary && Build.VERSION.SDK_INT >= 29) {
+            // shared storage can't be written by path anymore
+            return MediaOutput.toMediaStore(resolver, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
+                    outputFileName + outputExtension, "video/mp4", Environment.DIRECTORY_MOVIES + "/" + appName,
+                    File.createTempFile(outputFileName, outputExtension, appContext.getCacheDir()));
+        } else {
+            File mediaStorageDir;
+
+            if (saveToLibrary) {
+                mediaStorageDir = new File(
+                        Environment.getExternalStorageDirectory() + "/Movies",
+                        appName
+                );
+            } else {
+                mediaStorageDir = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + "/Android/data/" + cordova.getActivity().getPackageName() + "/files/files/videos");
+            }
+
+            if (!mediaStorageDir.exists()) {
+                if (!mediaStorageDir.mkdirs()) {
+                    callbackContext.error("Can't access or make Movies directory");
+                    return null;
+                }
+            }
+
+            return MediaOutput.toFile(new File(mediaStorageDir.getPath(), outputFileName + outputExtension));
+        }
+    }
+
+    /**
+     * Runs work of our own, like remuxing or trimming, on the job thread as
+     * the session of the job, so cancel and pause stop it like a transcoder
+     * session. Returns true if it completed; otherwise the job has already
+     * been canceled or paused.
+     */
+    private boolean runLocalSession(VideoJob job, Callable<Void> work) throws Throwable {
+        FutureTask<Void> session = new FutureTask<Void>(work);
+        job.setSession(session);
+        session.run();
+
+        if (session.isCancelled()) {
+            if (!job.onSessionStopped()) {
+                job.error("transcode canceled");
+            }
+            return false;
+        }
+        try {
+            session.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+        return true;
+    }
+
+    /**
+     * Format of the first video track of a video.
+     */
+    private MediaFormat videoTrackFormat(MediaInput input) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            input.setDataSource(extractor);
+            int videoTrack = Remuxer.findTrack(extractor, "video/");
+            if (videoTrack < 0) {
+                throw new IOException("no video track in " + input);
+            }
+            return extractor.getTrackFormat(videoTrack);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Encodes the source into outputPath. With a parallelism above 1 the
+     * source is split into segments that are encoded at the same time by our
+     * own pipeline. When the source has more frames per second than
+     * frameRate, our own pipeline drops them before the encoder, which the
+     * transcoder engine can't, and a crop is done by it as well. Otherwise,
+     * or when the segments can't be joined, it runs as one session of the
+     * transcoder engine. Returns true if it completed; otherwise the job has
+     * already been failed, canceled or paused.
+     *
+     * @param audioCopied whether the audio is copied as is, which our own pipeline needs
+     * @param frameRate   frames per second to drop the source down to, 0 to keep every frame
+     * @param rotation    orientation hint of the output
+     * @param crop        region of the stored frames to encode, null for all; needs our own pipeline
+     */
+    private boolean runEncodePass(VideoJob job, MediaInput source, String outputPath, CustomAndroidFormatStrategy formatStrategy,
+                                  final ProgressDispatcher progressDispatcher, long durationLimitUs, boolean audioCopied,
+                                  int parallelism, int frameRate, int rotation, int[] crop, TranscodeMetrics metrics) throws Throwable {
+        long startedAt = SystemClock.elapsedRealtime();
+
+        // null when the video is passed through, that only the transcoder can combine with new audio
+        MediaFormat sourceFormat = videoTrackFormat(source);
+        MediaFormat videoFormat = formatStrategy.createVideoOutputFormat(
+                crop != null ? croppedFormat(sourceFormat, crop) : sourceFormat);
+        boolean ownPipeline = videoFormat != null && audioCopied && Build.VERSION.SDK_INT >= 21;
+        EncoderInfo encoder = videoFormat != null
+                ? EncoderSelector.getDefault().select(videoFormat.getString(MediaFormat.KEY_MIME))
+                : null;
+        metrics.setEncoder(encoder != null ? encoder.name : null);
+        metrics.setMode(TranscodeMetrics.MODE_ENCODE);
+        metrics.addPass();
+
+        if (ownPipeline && parallelism > 1) {
+            if (encoder != null && encoder.maxInstances != EncoderInfo.UNKNOWN) {
+                parallelism = Math.min(parallelism, encoder.maxInstances);
+            }
+
+            final ParallelTranscoder parallelTranscoder = new ParallelTranscoder(source, outputPath,
+                    videoFormat, parallelism);
+            parallelTranscoder.setEndUs(durationLimitUs);
+            parallelTranscoder.setOrientationHint(rotation);
+            parallelTranscoder.setFrameRate(frameRate);
+            parallelTranscoder.setCrop(crop);
+            metrics.setMode(TranscodeMetrics.MODE_PARALLEL);
+            try {
+                boolean completed = runLocalSession(job, new Callable<Void>() {
+                    public Void call() throws Exception {
+                        parallelTranscoder.transcode(new Remuxer.ProgressListener() {
+                            public void onProgress(double progress) {
+                                progressDispatcher.onProgress(progress);
+                            }
+                        });
+                        return null;
+                    }
+                });
+                Log.d(TAG, "encode pass with " + parallelism + " segments took "
+                        + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+                return completed;
+            } catch (ParallelTranscoder.IncompatibleSegmentsException e) {
+                Log.d(TAG, "segments can't be joined, transcoding as one stream", e);
+                metrics.setMode(TranscodeMetrics.MODE_ENCODE);
+            }
+        }
+
+        double sourceFrameRate = CustomAndroidFormatStrategy.frameRateOf(sourceFormat);
+        boolean decimating = FrameDecimator.isNeeded(sourceFrameRate, frameRate);
+        if (ownPipeline && (decimating || crop != null)) {
+            final SegmentTranscoder segmentTranscoder = new SegmentTranscoder(source, outputPath, videoFormat);
+            segmentTranscoder.setRange(0, durationLimitUs);
+            segmentTranscoder.setOrientationHint(rotation);
+            segmentTranscoder.setFrameRate(decimating ? frameRate : 0);
+            segmentTranscoder.setCrop(crop);
+            boolean completed = runLocalSession(job, new Callable<Void>() {
+                public Void call() throws Exception {
+                    segmentTranscoder.transcode(new Remuxer.ProgressListener() {
+                        public void onProgress(double progress) {
+                            progressDispatcher.onProgress(progress);
+                        }
+                    });
+                    return null;
+                }
+            });
+            Log.d(TAG, "encode pass from " + sourceFrameRate + " fps, " + (decimating ? "down to " + frameRate : "all frames")
+                    + (crop != null ? ", cropped" : "") + ", took " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+            return completed;
+        }
+        if (crop != null) {
+            throw new IOException("cropping needs API 21 and the audio copied as is");
+        }
+
+        // the transcoder engine keeps the rotation of the source, another one is set by remuxing afterwards
+        int sourceRotation = metadataProber.probe(source).rotation;
+        if (sourceRotation == rotation) {
+            boolean completed = runTranscoderSession(job, source, outputPath, formatStrategy, progressDispatcher, durationLimitUs);
+            Log.d(TAG, "encode pass as one stream took " + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+            return completed;
+        }
+        File engineOutput = new File(outputPath + ".rotate");
+        try {
+            if (!runTranscoderSession(job, source, engineOutput.getAbsolutePath(), formatStrategy, progressDispatcher, durationLimitUs)) {
+                return false;
+            }
+            Remuxer remuxer = new Remuxer(MediaInput.fromFile(engineOutput), outputPath);
+            remuxer.setOrientationHint(rotation);
+            remuxer.remux(null);
+            Log.d(TAG, "encode pass as one stream, rotated from " + sourceRotation + " to " + rotation + " degrees, took "
+                    + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+            return true;
+        } finally {
+            engineOutput.delete();
+        }
+    }
+
+    /**
+     * Format standing in for the source format when only the crop region
+     * of the stored frames is encoded: the size of the region, with the
+     * bitrate and frame rate of the source.
+     */
+    private static MediaFormat croppedFormat(MediaFormat sourceFormat, int[] crop) {
+        MediaFormat format = MediaFormat.createVideoFormat(sourceFormat.getString(MediaFormat.KEY_MIME), crop[2], crop[3]);
+        for (String key : new String[] { MediaFormat.KEY_BIT_RATE, MediaFormat.KEY_FRAME_RATE }) {
+            if (sourceFormat.containsKey(key)) {
+                // the frame rate is an integer with most extractors, a float with some
+                try {
+                    format.setInteger(key, sourceFormat.getInteger(key));
+                } catch (ClassCastException e) {
+                    format.setFloat(key, sourceFormat.getFloat(key));
+                }
+            }
+        }
+        return format;
+    }
+
+    /**
+     * Runs one session of the transcoder engine and waits for it to end.
+     * Returns true if it completed; otherwise the job has already been
+     * failed, canceled or paused.
+     */
+    boolean runTranscoderSession(final VideoJob job, MediaInput input, String outputPath, MediaFormatStrategy formatStrategy,
+                                 final ProgressDispatcher progressDispatcher, long durationUs)
+            throws IOException, InterruptedException {
+        ParcelFileDescriptor pfd = input.open();
+        try {
+            final CountDownLatch transcodeDone = new CountDownLatch(1);
+            final AtomicBoolean sessionOver = new AtomicBoolean(false);
+            final AtomicBoolean transcodeCompleted = new AtomicBoolean(false);
+
+            TranscoderEngine.Listener listener = new TranscoderEngine.Listener() {
+                public void onProgress(double progress) {
+                    progressDispatcher.onProgress(progress);
+                }
+
+                public void onCompleted() {
+                    if (sessionOver.getAndSet(true)) {
+                        return;
+                    }
+                    // finished on the job thread, so further passes don't block the UI
+                    transcodeCompleted.set(true);
+                    transcodeDone.countDown();
+                }
+
+                public void onCanceled() {
+                    if (sessionOver.getAndSet(true)) {
+                        return;
+                    }
+                    // a paused job is stopped the same way, but isn't finished
+                    if (!job.onSessionStopped()) {
+                        job.error("transcode canceled");
+                    }
+                    Log.d(TAG, "transcode canceled");
+                    transcodeDone.countDown();
+                }
+
+                public void onFailed(Exception exception) {
+                    if (sessionOver.getAndSet(true)) {
+                        return;
+                    }
+                    job.error(exception);
+                    Log.d(TAG, "transcode exception", exception);
+                    transcodeDone.countDown();
+                }
+            };
+
+            Future<Void> session = transcoderEngine.transcode(pfd.getFileDescriptor(), outputPath,
+                    formatStrategy, listener, durationUs);
+            job.setSession(session);
+
+            // hold on to the job slot until the encoder session is over. A session
+            // canceled before the transcoder picked it up never calls back, so give
+            // up waiting shortly after it was canceled.
+            while (!transcodeDone.await(SESSION_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (session.isCancelled() && !transcodeDone.await(SESSION_CANCEL_GRACE_MS, TimeUnit.MILLISECONDS)) {
+                    if (!sessionOver.getAndSet(true) && !job.onSessionStopped()) {
+                        job.error("transcode canceled");
+                    }
+                    break;
+                }
+            }
+
+            return transcodeCompleted.get();
+        } finally {
+            MediaInput.closeQuietly(pfd);
+        }
+    }
+
+    /**
+     * Bitrate of the first audio track in bits per second, a default when
+     * the container doesn't tell, or 0 without audio.
+     */
+    private int sourceAudioBitrate(MediaInput input) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            input.setDataSource(extractor);
+            int audioTrack = Remuxer.findTrack(extractor, "audio/");
+            if (audioTrack < 0) {
+                return 0;
+            }
+            MediaFormat format = extractor.getTrackFormat(audioTrack);
+            return format.containsKey(MediaFormat.KEY_BIT_RATE)
+                    ? format.getInteger(MediaFormat.KEY_BIT_RATE)
+                    : CustomAndroidFormatStrategy.DEFAULT_AUDIO_BITRATE;
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Whether the source can be copied into the output without re-encoding,
+     * i.e. the strategy passes both the video and the audio track through.
+     * The audio track doesn't matter when it is left out anyway.
+     */
+    private boolean canRemux(MediaInput input, CustomAndroidFormatStrategy formatStrategy, boolean removeAudio) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            input.setDataSource(extractor);
+            int videoTrack = Remuxer.findTrack(extractor, "video/");
+            if (videoTrack < 0) {
+                return false;
+            }
+            int audioTrack = removeAudio ? -1 : Remuxer.findTrack(extractor, "audio/");
+            return formatStrategy.canCopy(extractor.getTrackFormat(videoTrack),
+                    audioTrack >= 0 ? extractor.getTrackFormat(audioTrack) : null);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Reports a finished transcode: moves the output to its destination,
+     * adds it to the gallery if requested, removes the input if requested
+     * and sends the output path or URI with the metrics of the job. With a
+     * cacheKey the output is kept in the output cache as well.
+     */
+    private void finishTranscode(VideoJob job, MediaInput input, MediaOutput output, boolean saveToLibrary,
+                                 boolean deleteInputFile, TranscodeMetrics metrics, String cacheKey) throws IOException, JSONException {
+        finishTranscode(job, input, output, saveToLibrary, deleteInputFile, metrics, cacheKey, new JSONObject());
+    }
+
+    /**
+     * Like the above, sending the path and metrics along with what result
+     * holds already.
+     */
+    private void finishTranscode(VideoJob job, MediaInput input, MediaOutput output, boolean saveToLibrary,
+                                 boolean deleteInputFile, TranscodeMetrics metrics, String cacheKey,
+                                 JSONObject result) throws IOException, JSONException {
+        File outFile = new File(output.getWorkPath());
+        if (!outFile.exists() || outFile.length() == 0) {
+            Log.d(TAG, "outputFile doesn't exist!");
+            job.error("an error ocurred during transcoding");
+            return;
+        }
+        metrics.setOutputBytes(outFile.length());
+        metrics.setFrames(countVideoFrames(outFile));
+        if (cacheKey != null) {
+            outputCache.put(cacheKey, outFile);
+        }
+        output.commit();
+
+        // make the gallery display the new file if saving to library, MediaStore entries show up by themselves
+        if (saveToLibrary && output.isFile()) {
+            Intent scanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
+            scanIntent.setData(Uri.fromFile(outFile));
+            cordova.getActivity().getApplicationContext().sendBroadcast(scanIntent);
+        }
+
+        if (deleteInputFile && !input.delete()) {
+            Log.d(TAG, "can't delete input " + input);
+        }
+
+        metrics.finish(job.getQueuedAt(), job.getStartedAt(), System.currentTimeMillis());
+        Log.d(TAG, "transcode metrics: " + metrics.toJSON());
+
+        result.put("outputFilePath", output.getResultPath());
+        result.put("metrics", metrics.toJSON());
+        job.success(result);
+    }
+
+    /**
+     * Number of samples in the video track of a file, read from the
+     * container index without decoding.
+     */
+    private static int countVideoFrames(File file) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(file.getAbsolutePath());
+            int videoTrack = Remuxer.findTrack(extractor, "video/");
+            if (videoTrack < 0) {
+                return 0;
+            }
+            extractor.selectTrack(videoTrack);
+            int frames = 0;
+            while (extractor.getSampleTime() >= 0) {
+                frames++;
+                extractor.advance();
+            }
+            return frames;
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * createProxy
+     *
+     * Makes a small, quickly seekable copy of a video for editing timelines,
+     * or returns the one made before if the video didn't change
+     *
+     * ARGUMENTS
+     * =========
+     *
+     * fileUri          - path to input video, or a content:// URI
+     * size             - longer side of the proxy (default 640, i.e. 360p for 16:9)
+     * keyframeInterval - seconds between keyframes, 0 makes every frame a keyframe (default 0)
+     * videoBitrate     - bitrate of the proxy in bits per second (default 2 megabits)
+     * fps              - drop frames above this rate (optional, default: keep every frame)
+     * jobId            - optional id for the job, generated when missing
+     * priority         - optional queue priority, higher runs first (default 0)
+     *
+     * RESPONSE
+     * ========
+     *
+     * outputFilePath - path to the proxy
+     * cached         - whether the proxy was already there
+     * metrics        - like transcodeVideo, when the proxy was made
+     *
+     * @param JSONArray args
+     * @param CallbackContext callbackContext
+     * @return void
+     */
+    private void createProxy(JSONArray args, final CallbackContext callbackContext) throws JSONException, IOException {
+        Log.d(TAG, "createProxy firing");
+
+        JSONObject options = args.optJSONObject(0);
+        Log.d(TAG, "options: " + options.toString());
+
+        final MediaInput input = fileResolver.resolveInput(options.getString("fileUri"));
+        if (!input.exists()) {
+            Log.d(TAG, "input file does not exist");
+            callbackContext.error("input video does not exist.");
+            return;
+        }
+
+        final int size = options.optInt("size", DEFAULT_PROXY_SIZE);
+        final int keyframeInterval = options.optInt("keyframeInterval", 0);
+        final int videoBitrate = options.optInt("videoBitrate", DEFAULT_PROXY_BITRATE);
+        final int fps = options.optInt("fps", 0);
+        final long progressIntervalMs = options.optLong("progressIntervalMs", ProgressDispatcher.DEFAULT_INTERVAL_MS);
+        final double progressStep = options.optDouble("progressStep", ProgressDispatcher.DEFAULT_STEP);
+        // a proxy made with other settings isn't the one asked for
+        final String settings = size + "|" + keyframeInterval + "|" + videoBitrate + "|" + fps;
+
+        final VideoJob job = jobManager.createJob(options.optString("jobId", null), "createProxy", callbackContext);
+        if (job == null) {
+            callbackContext.error("a job with this jobId is already queued or running");
+            return;
+        }
+
+        jobManager.submit(job, options.optInt("priority", VideoJob.DEFAULT_PRIORITY), new JobManager.Work() {
+
+            protected AdmissionController.Cost estimateCost() throws IOException {
+                VideoProbe inputProbe = probeCache.get(input);
+                AdmissionController.Cost cost = AdmissionController.transcodeCost(inputProbe.width, inputProbe.height, 1);
+                String rejection = jobManager.reject(cost);
+                if (rejection != null) {
+                    job.error(rejection, "a " + inputProbe.width + "x" + inputProbe.height
+                            + " proxy needs " + cost + ", more than the budget");
+                    return null;
+                }
+                return cost;
+            }
+
+            public void run() {
+
+                File workFile = null;
+
+                try {
+                    File proxy = proxyStore.get(input, settings);
+                    if (proxy != null) {
+                        JSONObject result = new JSONObject();
+                        result.put("outputFilePath", proxy.getAbsolutePath());
+                        result.put("cached", true);
+                        job.success(result);
+                        return;
+                    }
+
+                    VideoProbe probe = probeCache.get(input);
+                    TranscodeMetrics metrics = new TranscodeMetrics();
+                    metrics.setInputBytes(probe.size);
+                    metrics.setMediaSeconds(probe.durationMs / 1000.0);
+                    ProgressDispatcher progressDispatcher = new ProgressDispatcher(job, progressIntervalMs, progressStep,
+                            probe.durationMs / 1000.0);
+
+                    // never passed through, the source GOP is what makes seeking slow
+                    CustomAndroidFormatStrategy formatStrategy = new CustomAndroidFormatStrategy(videoBitrate,
+                            fps > 0 ? fps : TranscodeOptions.DEFAULT_FPS, size, size);
+                    formatStrategy.setKeyFrameInterval(keyframeInterval);
+                    formatStrategy.setEncoderSelector(EncoderSelector.getDefault(), CustomAndroidFormatStrategy.VIDEO_MIME_AVC);
+
+                    workFile = proxyStore.newWorkFile(input);
+                    jobJournal.addWorkFile(job.getId(), workFile.getAbsolutePath());
+                    if (!runEncodePass(job, input, workFile.getAbsolutePath(), formatStrategy, progressDispatcher,
+                            0, true, 1, fps, probe.rotation, null, metrics)) {
+                        return;
+                    }
+                    progressDispatcher.finish();
+
+                    metrics.setOutputBytes(workFile.length());
+                    metrics.setFrames(countVideoFrames(workFile));
+                    proxy = proxyStore.put(input, settings, workFile);
+                    metrics.finish(job.getQueuedAt(), job.getStartedAt(), System.currentTimeMillis());
+
+                    JSONObject result = new JSONObject();
+                    result.put("outputFilePath", proxy.getAbsolutePath());
+                    result.put("cached", false);
+                    result.put("metrics", metrics.toJSON());
+                    job.success(result);
+
+                } catch (Throwable e) {
+                    Log.d(TAG, "exception on proxy creation", e);
+                    job.error(e);
+                } finally {
+                    if (workFile != null) {
+                        workFile.delete();
+                    }
+                }
+
+            }
+        });
+    }
+
+    /**
+     * mergeVideos
+     *
+     * Joins several videos one after another into one MP4, copying their
+     * samples when they all share their format and re-encoding them in a
+     * single encoder session otherwise
+     *
+     * ARGUMENTS
+     * =========
+     *
+     * fileUris           - paths to the input videos, or content:// URIs, in the order they are played
+     * outputFileName     - output file name
+     * outputDirectory    - directory to write the output to (default: depends on saveToLibrary)
+     * outputUri          - content:// URI of a document or MediaStore entry to write the output to,
+     *                      overrides outputDirectory and saveToLibrary
+     * saveToLibrary      - save to gallery, through MediaStore from API 29 on
+     * width              - width for the output video, when re-encoded
+     * height             - height for the output video, when re-encoded
+     * fps                - drop frames above this rate, re-encodes (optional, default: keep every frame)
+     * videoBitrate       - video bitrate for the output video in bits, when re-encoded
+     * videoCodec         - 'h264' (default) or 'hevc', when re-encoded
+     * allowPassthrough   - copy the samples when all videos have the same codec, size and codec
+     *                      config and fit into width and height (default true)
+     * removeAudio        - leave the audio track out of the output (default false)
+     * progressIntervalMs - minimum time between two progress updates (default 250)
+     * progressStep       - minimum progress change between two updates (default 0.01)
+     * jobId              - optional id for the job, generated when missing
+     * priority           - optional queue priority, higher runs first (default 0)
+     *
+     * RESPONSE
+     * ========
+     *
+     * outputFilePath - path to output file, or the content:// URI of the output
+     * metrics        - like transcodeVideo, with mode 'remux' when the samples were copied
+     * audioDropped   - true when the output has no audio although removeAudio wasn't set, because
+     *                  a video has none or its audio can't be copied into one track with the others
+     *
+     * @param JSONArray args
+     * @param CallbackContext callbackContext
+     * @return void
+     */
+    private void mergeVideos(JSONArray args, final CallbackContext callbackContext) throws JSONException, IOException {
+        Log.d(TAG, "mergeVideos firing");
+
+        JSONObject options = args.optJSONObject(0);
+        Log.d(TAG, "options: " + options.toString());
+
+        JSONArray fileUris = options.getJSONArray("fileUris");
+        if (fileUris.length() < 2) {
+            callbackContext.error("fileUris needs at least two videos");
+            return;
+        }
+
+        final List<MediaInput> inputs = new ArrayList<MediaInput>();
+        for (int i = 0; i < fileUris.length(); i++) {
+            MediaInput input = fileResolver.resolveInput(fileUris.getString(i));
+            if (!input.exists()) {
+                Log.d(TAG, "input file does not exist: " + input);
+                callbackContext.error("input video " + i + " does not exist.");
+                return;
+            }
+            inputs.add(input);
+        }
+
+        final boolean saveToLibrary = options.optBoolean("saveToLibrary", true);
+        final int width = options.optInt("width", 0);
+        final int height = options.optInt("height", 0);
+        final int fps = options.optInt("fps", 0);
+        final int videoBitrate = options.optInt("videoBitrate", TranscodeOptions.DEFAULT_VIDEO_BITRATE);
+        final String videoMime = "hevc".equalsIgnoreCase(options.optString("videoCodec", "h264"))
+                ? CustomAndroidFormatStrategy.VIDEO_MIME_HEVC
+                : CustomAndroidFormatStrategy.VIDEO_MIME_AVC;
+        final boolean allowPassthrough = options.optBoolean("allowPassthrough", true);
+        final boolean removeAudio = options.optBoolean("removeAudio", false);
+        final long progressIntervalMs = options.optLong("progressIntervalMs", ProgressDispatcher.DEFAULT_INTERVAL_MS);
+        final double progressStep = options.optDouble("progressStep", ProgressDispatcher.DEFAULT_STEP);
+
+        final MediaOutput output = createVideoOutput(options.optString("outputUri", null), options.optString("outputDirectory", null),
+                saveToLibrary, options.optString("outputFileName",
+                        new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.ENGLISH).format(new Date())), callbackContext);
+        if (output == null) {
+            return;
+        }
+        final String outputFilePath = output.getWorkPath();
+        Log.d(TAG, "outputFilePath: " + outputFilePath);
+
+        final VideoJob job = jobManager.createJob(options.optString("jobId", null), "mergeVideos", callbackContext);
+        if (job == null) {
+            callbackContext.error("a job with this jobId is already queued or running");
+            return;
+        }
+        jobJournal.addWorkFile(job.getId(), outputFilePath);
+
+        jobManager.submit(job, options.optInt("priority", VideoJob.DEFAULT_PRIORITY), new JobManager.Work() {
+
+            private final int[] rotations = new int[inputs.size()];
+            private boolean fitsSize;
+
+            protected AdmissionController.Cost estimateCost() throws IOException {
+                int maxWidth = 0;
+                int maxHeight = 0;
+                for (int i = 0; i < inputs.size(); i++) {
+                    VideoProbe probe = probeCache.get(inputs.get(i));
+                    rotations[i] = probe.rotation;
+                    maxWidth = Math.max(maxWidth, probe.width);
+                    maxHeight = Math.max(maxHeight, probe.height);
+                }
+                fitsSize = Math.max(width, height) <= 0 || Math.max(maxWidth, maxHeight) <= Math.max(width, height);
+
+                // clips are decoded one after another, so one codec pair at most
+                AdmissionController.Cost cost = AdmissionController.transcodeCost(maxWidth, maxHeight, 1);
+                String rejection = jobManager.reject(cost);
+                if (rejection != null) {
+                    job.error(rejection, "a " + maxWidth + "x" + maxHeight
+                            + " merge needs " + cost + ", more than the budget");
+                    return null;
+                }
+                return cost;
+            }
+
+            protected void onNotAdmitted() {
+                output.discard();
+            }
+
+            public void run() {
+
+                TranscodeMetrics metrics = new TranscodeMetrics();
+
+                try {
+                    long inputBytes = 0;
+                    for (MediaInput input : inputs) {
+                        inputBytes += probeCache.get(input).size;
+                    }
+                    metrics.setInputBytes(inputBytes);
+
+                    final MergeTranscoder merger = new MergeTranscoder(inputs, outputFilePath);
+                    merger.setRotations(rotations);
+                    merger.setIncludeAudio(!removeAudio);
+                    final boolean audioDropped = !removeAudio && !merger.hasAudio();
+                    if (audioDropped) {
+                        Log.d(TAG, "audio tracks of the inputs missing or in different formats, merging without audio");
+                    }
+                    double durationSeconds = merger.getDurationUs() / 1000000.0;
+                    metrics.setMediaSeconds(durationSeconds);
+                    final ProgressDispatcher progressDispatcher = new ProgressDispatcher(job, progressIntervalMs, progressStep, durationSeconds);
+                    final Remuxer.ProgressListener progressListener = new Remuxer.ProgressListener() {
+                        public void onProgress(double progress) {
+                            progressDispatcher.onProgress(progress);
+                        }
+                    };
+                    metrics.addPass();
+
+                    Callable<Void> work;
+                    if (allowPassthrough && fitsSize && fps <= 0 && merger.canCopy()) {
+                        Log.d(TAG, "inputs share their video format, copying samples");
+                        metrics.setMode(TranscodeMetrics.MODE_REMUX);
+                        work = new Callable<Void>() {
+                            public Void call() throws Exception {
+                                merger.copy(progressListener);
+                                return null;
+                            }
+                        };
+                    } else if (Build.VERSION.SDK_INT >= 21) {
+                        // the first input decides the output size, the others are fitted into it
+                        CustomAndroidFormatStrategy formatStrategy = new CustomAndroidFormatStrategy(videoBitrate,
+                                fps > 0 ? fps : TranscodeOptions.DEFAULT_FPS, width, height);
+                        formatStrategy.setEncoderSelector(EncoderSelector.getDefault(), videoMime);
+                        final MediaFormat videoFormat = formatStrategy.createVideoOutputFormat(merger.getFirstVideoFormat());
+                        EncoderInfo encoder = EncoderSelector.getDefault().select(videoFormat.getString(MediaFormat.KEY_MIME));
+                        metrics.setEncoder(encoder != null ? encoder.name : null);
+                        metrics.setMode(TranscodeMetrics.MODE_ENCODE);
+                        work = new Callable<Void>() {
+                            public Void call() throws Exception {
+                                merger.transcode(videoFormat, fps, progressListener);
+                                return null;
+                            }
+                        };
+                    } else {
+                        job.error("merging videos of different formats needs API 21");
+                        return;
+                    }
+
+                    if (!runLocalSession(job, work)) {
+                        return;
+                    }
+                    progressDispatcher.finish();
+                    JSONObject result = new JSONObject();
+                    result.put("audioDropped", audioDropped);
+                    finishTranscode(job, inputs.get(0), output, saveToLibrary, false, metrics, null, result);
+
+                } catch (Throwable e) {
+                    Log.d(TAG, "merge exception ", e);
+                    job.error(e);
+                } finally {
+                    // don't leave partial output of canceled, paused or failed jobs behind
+                    if (job.getState() != VideoJob.State.COMPLETED) {
+                        output.discard();
+                    }
+
+                    if (job.isFinished()) {
+                        if (job.getState() == VideoJob.State.FAILED) {
+                            metrics.setFailure(job.getError());
+                        }
+                        metrics.finish(job.getQueuedAt(), job.getStartedAt(), System.currentTimeMillis());
+                        transcodeStats.record(metrics, job.getState());
+                    }
+                }
+
+            }
+        });
+    }
+
+    /**
+     * createThumbnail
+     *
+     * Creates a thumbnail from the start of a video.
+     *
+     * ARGUMENTS
+     * =========
+     * fileUri        - input file path or content:// URI
+     * outputFileName - output file name
+     * outputDirectory - directory to write the thumbnail to (optional)
+     * outputUri      - content:// URI of a document or MediaStore entry to write the thumbnail to (optional)
+     * atTime         - location in the video to create the thumbnail (in seconds)
+     * seekMode       - 'fast' takes the keyframe nearest to atTime, 'exact' the frame at atTime, 'smart' the best
+     *                  looking of a few keyframes from atTime on (optional, default 'fast')
+     * smartBudgetMs  - time the smart mode may spend sampling keyframes (optional, default 1000)
+     * width          - width for the thumbnail (optional)
+     * height         - height for the thumbnail (optional)
+     * resizeMode     - 'fit' keeps the whole frame inside width x height, 'fill' crops to it (optional, default 'fit')
+     * quality        - quality of the thumbnail (optional, between 1 and 100)
+     * jobId          - optional id for the job, generated when missing
+     * priority       - optional queue priority, higher runs first (default 0)
      *
      * RESPONSE
      * ========
      *
-     * outputFilePath - path to output file
+     * outputFilePath - path to output file, or the content:// URI of the output
+     * frameTime      - time of the frame in the thumbnail (in seconds)
+     * keyframeTime   - time of the keyframe decoding started from (in seconds)
+     * seekMode       - 'fast', 'exact' or 'smart'
+     * score          - score of the chosen frame between 0 and 1, and
+     * framesScored   - number of keyframes sampled (smart only)
+     * latencyMs      - time from the start of the job until the thumbnail was written
      *
      * @param JSONArray args
+     * @param CallbackContext callbackContext
      * @return void
      */
-    private void transcodeVideo(JSONArray args) throws JSONException, IOException {
-        Log.d(TAG, "transcodeVideo firing");
+    private void createThumbnail(JSONArray args, final CallbackContext callbackContext) throws JSONException, IOException {
+        Log.d(TAG, "createThumbnail firing");
 
         JSONObject options = args.optJSONObject(0);
         Log.d(TAG, "options: " + options.toString());
 
-        final File inFile = this.resolveLocalFileSystemURI(options.getString("fileUri"));
-        if (!inFile.exists()) {
+        String fileUri = options.getString("fileUri");
+        if (!fileUri.startsWith("file:/") && !fileUri.startsWith("content:")) {
+            fileUri = "file:/" + fileUri;
+        }
+
+        final MediaInput input = fileResolver.resolveInput(fileUri);
+        if (!input.exists()) {
             Log.d(TAG, "input file does not exist");
-            callback.error("input video does not exist.");
+            callbackContext.error("input video does not exist.");
             return;
         }
-
-        final String videoSrcPath = inFile.getAbsolutePath();
-        final String outputFileName = options.optString(
+        String outputFileName = options.optString(
                 "outputFileName",
                 new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.ENGLISH).format(new Date())
         );
 
-        final boolean deleteInputFile = options.optBoolean("deleteInputFile", false);
+        final int quality = options.optInt("quality", 100);
         final int width = options.optInt("width", 0);
         final int height = options.optInt("height", 0);
-        final int fps = options.optInt("fps", 24);
-        final int videoBitrate = options.optInt("videoBitrate", 1000000); // default to 1 megabit
-        final long videoDuration = options.optLong("duration", 0) * 1000 * 1000;
-
-        Log.d(TAG, "videoSrcPath: " + videoSrcPath);
-
-        final String outputExtension = ".mp4";
-
-        final Context appContext = cordova.getActivity().getApplicationContext();
-        final PackageManager pm = appContext.getPackageManager();
+        final FrameSize.Mode resizeMode = FrameSize.Mode.parse(options.optString("resizeMode", "fit"));
+        final long atTime = (long) (options.optDouble("atTime", 0) * 1000000);
+        final ThumbnailExtractor.SeekMode seekMode = ThumbnailExtractor.SeekMode.parse(options.optString("seekMode", "fast"));
+        final long smartBudgetMs = options.optLong("smartBudgetMs", DEFAULT_SMART_BUDGET_MS);
+
+        final MediaOutput output;
+        String outputUri = options.optString("outputUri", null);
+        if (outputUri != null) {
+            Context appContext = cordova.getActivity().getApplicationContext();
+            output = MediaOutput.toUri(appContext.getContentResolver(), Uri.parse(outputUri),
+                    File.createTempFile(outputFileName, ".jpg", appContext.getCacheDir()));
+        } else {
+            File externalFilesDir = getThumbnailDirectory(options.optString("outputDirectory", null));
+            if (externalFilesDir == null) {
+                callbackContext.error("Can't access or make Movies directory");
+                return;
+            }
 
-        ApplicationInfo ai;
-        try {
-            ai = pm.getApplicationInfo(cordova.getActivity().getPackageName(), 0);
-        } catch (final NameNotFoundException e) {
-            ai = null;
+            output = MediaOutput.toFile(new File(
+                    externalFilesDir.getPath(),
+                    outputFileName + ".jpg"
+            ));
         }
-        final String appName = (String) (ai != null ? pm.getApplicationLabel(ai) : "Unknown");
-
-        final boolean saveToLibrary = options.optBoolean("saveToLibrary", true);
-        File mediaStorageDir;
+        final File outputFile = new File(output.getWorkPath());
 
-        if (saveToLibrary) {
-            mediaStorageDir = new File(
-                    Environment.getExternalStorageDirectory() + "/Movies",
-                    appName
-            );
-        } else {
-            mediaStorageDir = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + "/Android/data/" + cordova.getActivity().getPackageName() + "/files/files/videos");
+        final VideoJob job = jobManager.createJob(options.optString("jobId", null), "createThumbnail", callbackContext);
+        if (job == null) {
+            callbackContext.error("a job with this jobId is already queued or running");
+            return;
         }
 
-        if (!mediaStorageDir.exists()) {
-            if (!mediaStorageDir.mkdirs()) {
-                callback.error("Can't access or make Movies directory");
-                return;
+        // start task
+        jobManager.submit(job, options.optInt("priority", VideoJob.DEFAULT_PRIORITY), new JobManager.Work() {
+
+            protected AdmissionController.Cost estimateCost() throws IOException {
+                VideoProbe inputProbe = probeCache.get(input);
+                AdmissionController.Cost cost = AdmissionController.thumbnailCost(inputProbe.width, inputProbe.height, 0);
+                String rejection = jobManager.reject(cost);
+                if (rejection != null) {
+                    job.error(rejection, "a " + inputProbe.width + "x" + inputProbe.height
+                            + " thumbnail needs " + cost + ", more than the budget");
+                    return null;
+                }
+                return cost;
             }
-        }
-
-        final String outputFilePath = new File(
-                mediaStorageDir.getPath(),
-                outputFileName + outputExtension
-        ).getAbsolutePath();
 
-        Log.d(TAG, "outputFilePath: " + outputFilePath);
+            protected void onNotAdmitted() {
+                output.discard();
+            }
 
-        cordova.getThreadPool().execute(new Runnable() {
             public void run() {
 
-                try {
-
-                    FileInputStream fin = new FileInputStream(inFile);
-
-                    MediaTranscoder.Listener listener = new MediaTranscoder.Listener() {
-                        @Override
-                        public void onTranscodeProgress(double progress) {
-                            Log.d(TAG, "transcode running " + progress);
-
-                            JSONObject jsonObj = new JSONObject();
-                            try {
-                                jsonObj.put("progress", progress);
-                            } catch (JSONException e) {
-                                e.printStackTrace();
-                            }
-
-                            PluginResult progressResult = new PluginResult(PluginResult.Status.OK, jsonObj);
-                            progressResult.setKeepCallback(true);
-                            callback.sendPluginResult(progressResult);
-                        }
-
-                        @Override
-                        public void onTranscodeCompleted() {
-
-                            File outFile = new File(outputFilePath);
-                            if (!outFile.exists()) {
-                                Log.d(TAG, "outputFile doesn't exist!");
-                                callback.error("an error ocurred during transcoding");
-                                return;
-                            }
-
-                            // make the gallery display the new file if saving to library
-                            if (saveToLibrary) {
-                                Intent scanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-                                scanIntent.setData(Uri.fromFile(inFile));
-                                scanIntent.setData(Uri.fromFile(outFile));
-                                appContext.sendBroadcast(scanIntent);
-                            }
-
-                            if (deleteInputFile) {
-                                inFile.delete();
-                            }
+                ThumbnailExtractor extractor = null;
+                long startedAt = SystemClock.elapsedRealtime();
 
-                            callback.success(outputFilePath);
-                        }
+                try {
+                    // past the end there is no frame, use the last one instead
+                    VideoProbe probe = probeCache.get(input);
+                    long frameTime = atTime;
+                    if (probe.durationMs > 0) {
+                        frameTime = Math.min(atTime, probe.durationMs * 1000);
+                    }
 
-                        @Override
-                        public void onTranscodeCanceled() {
-                            callback.error("transcode canceled");
-                            Log.d(TAG, "transcode canceled");
-                        }
+                    // fast snaps to a keyframe; exact only decodes forward when atTime isn't one
+                    SyncSampleIndex index = syncIndexCache.get(input);
+                    extractor = new ThumbnailExtractor(input, bitmapPool);
+                    long keyframeTime;
+                    int option;
+                    FrameScorer scorer = null;
+                    if (seekMode == ThumbnailExtractor.SeekMode.SMART) {
+                        scorer = scoreKeyframes(extractor, index.timesBefore(0), frameTime, probe.durationMs * 1000,
+                                startedAt + smartBudgetMs);
+                        FrameScorer.Score best = scorer.getBest();
+                        frameTime = best != null ? best.timeUs : frameTime;
+                        keyframeTime = index.nearest(frameTime);
+                        option = MediaMetadataRetriever.OPTION_CLOSEST_SYNC;
+                    } else if (seekMode == ThumbnailExtractor.SeekMode.FAST) {
+                        keyframeTime = index.nearest(frameTime);
+                        frameTime = keyframeTime >= 0 ? keyframeTime : frameTime;
+                        option = MediaMetadataRetriever.OPTION_CLOSEST_SYNC;
+                    } else {
+                        keyframeTime = index.previous(frameTime);
+                        option = index.isSync(frameTime)
+                                ? MediaMetadataRetriever.OPTION_CLOSEST_SYNC
+                                : MediaMetadataRetriever.OPTION_CLOSEST;
+                    }
 
-                        @Override
-                        public void onTranscodeFailed(Exception exception) {
-                            callback.error(exception.toString());
-                            Log.d(TAG, "transcode exception", exception);
-                        }
-                    };
+                    Bitmap bitmap = extractor.getFrame(frameTime, option, width, height, resizeMode);
+                    if (bitmap == null) {
+                        job.error("can't extract a frame at " + frameTime / 1000000.0 + "s");
+                        return;
+                    }
 
-                    MediaMetadataRetriever mmr = new MediaMetadataRetriever();
-                    mmr.setDataSource(videoSrcPath);
+                    ThumbnailExtractor.writeJpeg(bitmap, outputFile, quality);
+                    extractor.releaseFrame(bitmap);
+                    Log.d(TAG, "peak bitmap memory: " + extractor.getPeakBytes() + " bytes");
 
-                    String orientation;
-                    String mmrOrientation = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
-                    Log.d(TAG, "mmrOrientation: " + mmrOrientation); // 0, 90, 180, or 270
+                    output.commit();
 
-                    float videoWidth = Float.parseFloat(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
-                    float videoHeight = Float.parseFloat(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+                    long latencyMs = SystemClock.elapsedRealtime() - startedAt;
+                    String mode = seekMode.name().toLowerCase();
+                    transcodeStats.recordThumbnail(mode, latencyMs);
+                    Log.d(TAG, mode + " thumbnail at " + frameTime + "us took " + latencyMs + "ms");
 
-                    MediaTranscoder.getInstance().transcodeVideo(fin.getFD(), outputFilePath,
-                            new CustomAndroidFormatStrategy(videoBitrate, fps, width, height), listener, videoDuration);
+                    JSONObject result = new JSONObject();
+                    result.put("outputFilePath", output.getResultPath());
+                    result.put("frameTime", frameTime / 1000000.0);
+                    if (keyframeTime >= 0) {
+                        result.put("keyframeTime", keyframeTime / 1000000.0);
+                    }
+                    result.put("seekMode", mode);
+                    if (scorer != null && scorer.getBest() != null) {
+                        result.put("score", scorer.getBest().total);
+                        result.put("framesScored", scorer.getScores().size());
+                    }
+                    result.put("latencyMs", latencyMs);
+                    job.success(result);
 
                 } catch (Throwable e) {
-                    Log.d(TAG, "transcode exception ", e);
-                    callback.error(e.toString());
+                    Log.d(TAG, "exception on thumbnail creation", e);
+                    job.error(e);
+
+                } finally {
+                    if (extractor != null) {
+                        extractor.release();
+                    }
+                    if (job.getState() != VideoJob.State.COMPLETED) {
+                        output.discard();
+                    }
                 }
 
             }
@@ -252,47 +1659,92 @@ public class VideoEditor extends CordovaPlugin {
     }
 
     /**
-     * createThumbnail
+     * Samples up to SMART_THUMBNAIL_CANDIDATES keyframes from fromUs on at
+     * FrameScorer.SAMPLE_SIZE and scores them. Stops at deadlineMs, but
+     * always scores the first one.
+     */
+    private FrameScorer scoreKeyframes(ThumbnailExtractor extractor, long[] syncTimesUs, long fromUs, long durationUs,
+            long deadlineMs) {
+        FrameScorer scorer = new FrameScorer();
+        int[] pixels = new int[0];
+        for (long timeUs : FrameScorer.pickTimes(syncTimesUs, fromUs, durationUs, SMART_THUMBNAIL_CANDIDATES)) {
+            if (!scorer.getScores().isEmpty() && SystemClock.elapsedRealtime() >= deadlineMs) {
+                Log.d(TAG, "smart thumbnail out of time after " + scorer.getScores().size() + " frames");
+                break;
+            }
+            Bitmap frame = extractor.getFrame(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                    FrameScorer.SAMPLE_SIZE, FrameScorer.SAMPLE_SIZE, FrameSize.Mode.FIT);
+            if (frame == null) {
+                continue;
+            }
+            int frameWidth = frame.getWidth();
+            int frameHeight = frame.getHeight();
+            if (pixels.length < frameWidth * frameHeight) {
+                pixels = new int[frameWidth * frameHeight];
+            }
+            frame.getPixels(pixels, 0, frameWidth, 0, 0, frameWidth, frameHeight);
+            extractor.releaseFrame(frame);
+            Log.d(TAG, "scored " + scorer.score(timeUs, pixels, frameWidth, frameHeight));
+        }
+        return scorer;
+    }
+
+    /**
+     * createThumbnails
      *
-     * Creates a thumbnail from the start of a video.
+     * Creates several thumbnails of a video in one pass, either as separate
+     * JPEG files or as one sprite sheet with a JSON index of the tiles.
      *
      * ARGUMENTS
      * =========
-     * fileUri        - input file path
-     * outputFileName - output file name
-     * atTime         - location in the video to create the thumbnail (in seconds)
-     * width          - width for the thumbnail (optional)
-     * height         - height for the thumbnail (optional)
-     * quality        - quality of the thumbnail (optional, between 1 and 100)
+     * fileUri        - input file path or content:// URI
+     * outputFileName - base name of the output files
+     * outputDirectory - directory to write the output files to (optional)
+     * times          - times of the thumbnails (in seconds), or
+     * interval       - time between two thumbnails (in seconds)
+     * startTime      - first thumbnail when using interval (optional, in seconds, default 0)
+     * endTime        - last thumbnail when using interval (optional, in seconds, default end of video)
+     * maxFrames      - maximum number of thumbnails (optional, default 100)
+     * width          - width for the thumbnails (optional)
+     * height         - height for the thumbnails (optional)
+     * resizeMode     - 'fit' keeps the whole frame inside width x height, 'fill' crops to it (optional, default 'fit')
+     * quality        - quality of the thumbnails (optional, between 1 and 100)
+     * spriteSheet    - write one tiled image instead of separate files (optional, default false)
+     * columns        - number of columns of the sprite sheet (optional, default about square)
+     * jobId          - optional id for the job, generated when missing
+     * priority       - optional queue priority, higher runs first (default 0)
      *
      * RESPONSE
      * ========
      *
-     * outputFilePath - path to output file
+     * frames         - time and path of every thumbnail, or
+     * spritePath     - path to the sprite sheet
+     * indexPath      - path to the JSON index of the sprite sheet
+     * tileWidth, tileHeight, columns, rows, frames - the index itself
+     * peakBitmapBytes - most bitmap memory held at once for a single frame
      *
      * @param JSONArray args
+     * @param CallbackContext callbackContext
      * @return void
      */
-    private void createThumbnail(JSONArray args) throws JSONException, IOException {
-        Log.d(TAG, "createThumbnail firing");
-
+    private void createThumbnails(JSONArray args, final CallbackContext callbackContext) throws JSONException, IOException {
+        Log.d(TAG, "createThumbnails firing");
 
         JSONObject options = args.optJSONObject(0);
         Log.d(TAG, "options: " + options.toString());
 
         String fileUri = options.getString("fileUri");
-        if (!fileUri.startsWith("file:/")) {
+        if (!fileUri.startsWith("file:/") && !fileUri.startsWith("content:")) {
             fileUri = "file:/" + fileUri;
         }
 
-        File inFile = this.resolveLocalFileSystemURI(fileUri);
-        if (!inFile.exists()) {
+        final MediaInput input = fileResolver.resolveInput(fileUri);
+        if (!input.exists()) {
             Log.d(TAG, "input file does not exist");
-            callback.error("input video does not exist.");
+            callbackContext.error("input video does not exist.");
             return;
         }
-        final String srcVideoPath = inFile.getAbsolutePath();
-        String outputFileName = options.optString(
+        final String outputFileName = options.optString(
                 "outputFileName",
                 new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.ENGLISH).format(new Date())
         );
@@ -300,89 +1752,203 @@ public class VideoEditor extends CordovaPlugin {
         final int quality = options.optInt("quality", 100);
         final int width = options.optInt("width", 0);
         final int height = options.optInt("height", 0);
-        long atTimeOpt = options.optLong("atTime", 0);
-        final long atTime = (atTimeOpt == 0) ? 0 : atTimeOpt * 1000000;
+        final FrameSize.Mode resizeMode = FrameSize.Mode.parse(options.optString("resizeMode", "fit"));
+        final boolean spriteSheet = options.optBoolean("spriteSheet", false);
+        final int columns = options.optInt("columns", 0);
+        final int maxFrames = options.optInt("maxFrames", DEFAULT_MAX_THUMBNAILS);
+        final JSONArray times = options.optJSONArray("times");
+        final double interval = options.optDouble("interval", 0);
+        final double startTime = options.optDouble("startTime", 0);
+        final double endTime = options.optDouble("endTime", 0);
+
+        if (times == null && interval <= 0) {
+            callbackContext.error("either times or interval is required");
+            return;
+        }
 
-        final Context appContext = cordova.getActivity().getApplicationContext();
-        PackageManager pm = appContext.getPackageManager();
+        final File outputDir = getThumbnailDirectory(options.optString("outputDirectory", null));
+        if (outputDir == null) {
+            callbackContext.error("Can't access or make Movies directory");
+            return;
+        }
 
-        ApplicationInfo ai;
-        try {
-            ai = pm.getApplicationInfo(cordova.getActivity().getPackageName(), 0);
-        } catch (final NameNotFoundException e) {
-            ai = null;
+        final VideoJob job = jobManager.createJob(options.optString("jobId", null), "createThumbnails", callbackContext);
+        if (job == null) {
+            callbackContext.error("a job with this jobId is already queued or running");
+            return;
         }
-        final String appName = (String) (ai != null ? pm.getApplicationLabel(ai) : "Unknown");
 
-        File externalFilesDir =  new File(Environment.getExternalStorageDirectory().getAbsolutePath() + "/Android/data/" + cordova.getActivity().getPackageName() + "/files/files/videos");
+        jobManager.submit(job, options.optInt("priority", VideoJob.DEFAULT_PRIORITY), new JobManager.Work() {
 
-        if (!externalFilesDir.exists()) {
-            if (!externalFilesDir.mkdirs()) {
-                callback.error("Can't access or make Movies directory");
-                return;
+            protected AdmissionController.Cost estimateCost() throws IOException, JSONException {
+                // a sprite sheet holds all tiles until it is written
+                VideoProbe inputProbe = probeCache.get(input);
+                long sheetBytes = 0;
+                if (spriteSheet) {
+                    FrameSize tileSize = FrameSize.compute(inputProbe.width, inputProbe.height, width, height, resizeMode);
+                    int tiles = thumbnailTimes(times, interval, startTime, endTime, maxFrames, inputProbe.durationMs * 1000).length;
+                    sheetBytes = (long) tileSize.outputWidth * tileSize.outputHeight * 4 * tiles;
+                }
+                AdmissionController.Cost cost = AdmissionController.thumbnailCost(inputProbe.width, inputProbe.height, sheetBytes);
+                String rejection = jobManager.reject(cost);
+                if (rejection != null) {
+                    job.error(rejection, "thumbnails of " + inputProbe.width + "x" + inputProbe.height
+                            + " need " + cost + ", more than the budget");
+                    return null;
+                }
+                return cost;
             }
-        }
-
-        final File outputFile =  new File(
-                externalFilesDir.getPath(),
-                outputFileName + ".jpg"
-        );
-        final String outputFilePath = outputFile.getAbsolutePath();
 
-        // start task
-        cordova.getThreadPool().execute(new Runnable() {
             public void run() {
 
-                OutputStream outStream = null;
+                ThumbnailExtractor extractor = null;
+                SpriteSheet sheet = null;
 
                 try {
-                    MediaMetadataRetriever mmr = new MediaMetadataRetriever();
-                    mmr.setDataSource(srcVideoPath);
-
-                    Bitmap bitmap = mmr.getFrameAtTime(atTime);
+                    VideoProbe probe = probeCache.get(input);
+                    long[] frameTimes = thumbnailTimes(times, interval, startTime, endTime, maxFrames, probe.durationMs * 1000);
+                    if (frameTimes.length == 0) {
+                        job.error("no thumbnail times within the video");
+                        return;
+                    }
 
-                    if (width > 0 || height > 0) {
-                        int videoWidth = bitmap.getWidth();
-                        int videoHeight = bitmap.getHeight();
-                        double aspectRatio = (double) videoWidth / (double) videoHeight;
+                    extractor = new ThumbnailExtractor(input, bitmapPool);
+                    JSONArray frames = new JSONArray();
+                    JSONObject progressPayload = new JSONObject();
 
-                        Log.d(TAG, "videoWidth: " + videoWidth);
-                        Log.d(TAG, "videoHeight: " + videoHeight);
+                    // times are sorted, so frames are pulled in decode order
+                    for (int i = 0; i < frameTimes.length; i++) {
+                        if (job.isFinished()) {
+                            return;
+                        }
 
-                        int scaleWidth = Double.valueOf(height * aspectRatio).intValue();
-                        int scaleHeight = Double.valueOf(scaleWidth / aspectRatio).intValue();
+                        Bitmap bitmap = extractor.getFrame(frameTimes[i], width, height, resizeMode);
+                        if (bitmap == null) {
+                            Log.d(TAG, "no frame at " + frameTimes[i]);
+                            continue;
+                        }
+                        double timeSeconds = frameTimes[i] / 1000000.0;
 
-                        Log.d(TAG, "scaleWidth: " + scaleWidth);
-                        Log.d(TAG, "scaleHeight: " + scaleHeight);
+                        if (spriteSheet) {
+                            if (sheet == null) {
+                                int sheetColumns = columns > 0 ? columns : SpriteSheet.defaultColumns(frameTimes.length);
+                                sheet = new SpriteSheet(bitmap.getWidth(), bitmap.getHeight(), sheetColumns, frameTimes.length);
+                            }
+                            sheet.addFrame(bitmap, timeSeconds);
+                        } else {
+                            File frameFile = new File(outputDir, outputFileName + "_" + i + ".jpg");
+                            ThumbnailExtractor.writeJpeg(bitmap, frameFile, quality);
+
+                            JSONObject frame = new JSONObject();
+                            frame.put("time", timeSeconds);
+                            frame.put("path", frameFile.getAbsolutePath());
+                            frames.put(frame);
+                        }
+                        extractor.releaseFrame(bitmap);
 
-                        final Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, scaleWidth, scaleHeight, false);
-                        bitmap.recycle();
-                        bitmap = resizedBitmap;
+                        progressPayload.put("progress", (double) (i + 1) / frameTimes.length);
+                        job.sendProgress((double) (i + 1) / frameTimes.length, progressPayload);
                     }
 
-                    outStream = new FileOutputStream(outputFile);
-                    bitmap.compress(Bitmap.CompressFormat.JPEG, quality, outStream);
-
-                    callback.success(outputFilePath);
-
-                } catch (Throwable e) {
-                    if (outStream != null) {
-                        try {
-                            outStream.close();
-                        } catch (IOException e1) {
-                            e1.printStackTrace();
+                    JSONObject result;
+                    if (spriteSheet) {
+                        if (sheet == null) {
+                            job.error("no frames could be extracted");
+                            return;
                         }
+                        File spriteFile = new File(outputDir, outputFileName + ".jpg");
+                        File indexFile = new File(outputDir, outputFileName + ".json");
+                        ThumbnailExtractor.writeJpeg(sheet.getBitmap(), spriteFile, quality);
+
+                        result = sheet.toJSON();
+                        writeTextFile(indexFile, result.toString());
+                        result.put("spritePath", spriteFile.getAbsolutePath());
+                        result.put("indexPath", indexFile.getAbsolutePath());
+                    } else {
+                        result = new JSONObject();
+                        result.put("frames", frames);
                     }
+                    result.put("peakBitmapBytes", extractor.getPeakBytes());
 
-                    Log.d(TAG, "exception on thumbnail creation", e);
-                    callback.error(e.toString());
+                    job.success(result);
+
+                } catch (Throwable e) {
+                    Log.d(TAG, "exception on thumbnails creation", e);
+                    job.error(e);
 
+                } finally {
+                    if (extractor != null) {
+                        extractor.release();
+                    }
+                    if (sheet != null) {
+                        sheet.recycle();
+                    }
                 }
 
             }
         });
     }
 
+    /**
+     * Sorted, distinct thumbnail times in microseconds, clamped to the video.
+     */
+    private static long[] thumbnailTimes(JSONArray times, double interval, double startTime, double endTime,
+                                         int maxFrames, long durationUs) throws JSONException {
+        TreeSet<Long> result = new TreeSet<Long>();
+        long lastUs = durationUs > 0 ? durationUs : Long.MAX_VALUE;
+
+        if (times != null) {
+            for (int i = 0; i < times.length(); i++) {
+                long timeUs = (long) (times.getDouble(i) * 1000000);
+                result.add(Math.max(0, Math.min(timeUs, lastUs)));
+            }
+        } else {
+            long endUs = endTime > 0 ? Math.min((long) (endTime * 1000000), lastUs) : lastUs;
+            long stepUs = Math.max(1, (long) (interval * 1000000));
+            for (long timeUs = (long) (startTime * 1000000); timeUs <= endUs && result.size() < maxFrames; timeUs += stepUs) {
+                result.add(timeUs);
+            }
+        }
+
+        int count = Math.min(result.size(), maxFrames);
+        long[] sorted = new long[count];
+        int i = 0;
+        for (Long timeUs : result) {
+            if (i == count) {
+                break;
+            }
+            sorted[i++] = timeUs;
+        }
+        return sorted;
+    }
+
+    /**
+     * Directory thumbnails are written to, the given one or the default,
+     * created if needed. Returns null if it can't be created.
+     */
+    private File getThumbnailDirectory(String outputDirectory) throws IOException {
+        if (outputDirectory != null) {
+            return fileResolver.resolveOutputDirectory(outputDirectory);
+        }
+        File externalFilesDir =  new File(Environment.getExternalStorageDirectory().getAbsolutePath() + "/Android/data/" + cordova.getActivity().getPackageName() + "/files/files/videos");
+
+        if (!externalFilesDir.exists()) {
+            if (!externalFilesDir.mkdirs()) {
+                return null;
+            }
+        }
+        return externalFilesDir;
+    }
+
+    private static void writeTextFile(File file, String text) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+    }
+
     /**
      * getVideoInfo
      *
@@ -391,243 +1957,320 @@ public class VideoEditor extends CordovaPlugin {
      * ARGUMENTS
      * =========
      *
-     * fileUri:      - path to input video
+     * fileUri:      - path to input video, or a content:// URI
      *
      * RESPONSE
      * ========
      *
      * width         - width of the video
      * height        - height of the video
-     * orientation   - orientation of the video
+     * orientation   - orientation of the video as shown, 'portrait' or 'landscape'
+     * rotation      - clockwise rotation of the stored frames for display (0, 90, 180 or 270)
+     * displayWidth  - width of the video as shown
+     * displayHeight - height of the video as shown
      * duration      - duration of the video (in seconds)
      * size          - size of the video (in bytes)
      * bitrate       - bitrate of the video (in bits per second)
      *
      * @param JSONArray args
+     * @param CallbackContext callbackContext
      * @return void
      */
-    private void getVideoInfo(JSONArray args) throws JSONException, IOException {
+    private void getVideoInfo(JSONArray args, CallbackContext callbackContext) throws JSONException, IOException {
         Log.d(TAG, "getVideoInfo firing");
 
         JSONObject options = args.optJSONObject(0);
         Log.d(TAG, "options: " + options.toString());
 
-        File inFile = this.resolveLocalFileSystemURI(options.getString("fileUri"));
-        if (!inFile.exists()) {
+        MediaInput input = fileResolver.resolveInput(options.getString("fileUri"));
+        if (!input.exists()) {
             Log.d(TAG, "input file does not exist");
-            callback.error("input video does not exist.");
+            callbackContext.error("input video does not exist.");
             return;
         }
+        Log.d(TAG, "input: " + input);
 
-        String videoSrcPath = inFile.getAbsolutePath();
-        Log.d(TAG, "videoSrcPath: " + videoSrcPath);
-
-        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
-        mmr.setDataSource(videoSrcPath);
-        float videoWidth = Float.parseFloat(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
-        float videoHeight = Float.parseFloat(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
-
-        String orientation;
-        if (Build.VERSION.SDK_INT >= 17) {
-            String mmrOrientation = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
-            Log.d(TAG, "mmrOrientation: " + mmrOrientation); // 0, 90, 180, or 270
-
-            if (videoWidth < videoHeight) {
-                if (mmrOrientation.equals("0") || mmrOrientation.equals("180")) {
-                    orientation = "portrait";
-                } else {
-                    orientation = "landscape";
-                }
-            } else {
-                if (mmrOrientation.equals("0") || mmrOrientation.equals("180")) {
-                    orientation = "landscape";
-                } else {
-                    orientation = "portrait";
-                }
-            }
-        } else {
-            orientation = (videoWidth < videoHeight) ? "portrait" : "landscape";
+        VideoProbe probe;
+        try {
+            probe = probeCache.get(input);
+        } catch (RuntimeException e) {
+            Log.d(TAG, "can't probe video", e);
+            callbackContext.error(e.toString());
+            return;
         }
+        Log.d(TAG, "rotation: " + probe.rotation); // 0, 90, 180, or 270
 
-        double duration = Double.parseDouble(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION)) / 1000.0;
-        long bitrate = Long.parseLong(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE));
-
-        JSONObject response = new JSONObject();
-        response.put("width", videoWidth);
-        response.put("height", videoHeight);
-        response.put("orientation", orientation);
-        response.put("duration", duration);
-        response.put("size", inFile.length());
-        response.put("bitrate", bitrate);
-
-        callback.success(response);
+        callbackContext.success(videoInfoJSON(probe));
     }
 
-
-    @SuppressWarnings("deprecation")
-    private File resolveLocalFileSystemURI(String url) throws IOException, JSONException {
-        String decoded = URLDecoder.decode(url, "UTF-8");
-
-        File fp = null;
-
-        // Handle the special case where you get an Android content:// uri.
-        if (decoded.startsWith("content:")) {
-            fp = new File(getPath(this.cordova.getActivity().getApplicationContext(), Uri.parse(decoded)));
-        } else {
-            // Test to see if this is a valid URL first
-            @SuppressWarnings("unused")
-            URL testUrl = new URL(decoded);
-
-            if (decoded.startsWith("file://")) {
-                int questionMark = decoded.indexOf("?");
-                if (questionMark < 0) {
-                    fp = new File(decoded.substring(7, decoded.length()));
-                } else {
-                    fp = new File(decoded.substring(7, questionMark));
-                }
-            } else if (decoded.startsWith("file:/")) {
-                fp = new File(decoded.substring(6, decoded.length()));
-            } else {
-                fp = new File(decoded);
-            }
-        }
-
-        if (!fp.exists()) {
-            throw new FileNotFoundException( "" + url + " -> " + fp.getCanonicalPath());
-        }
-        if (!fp.canRead()) {
-            throw new IOException("can't read file: " + url + " -> " + fp.getCanonicalPath());
-        }
-        return fp;
+    private static JSONObject videoInfoJSON(VideoProbe probe) throws JSONException {
+        Orientation orientation = Orientation.of(probe);
+        JSONObject response = new JSONObject();
+        response.put("width", probe.width);
+        response.put("height", probe.height);
+        response.put("orientation", orientation.getName());
+        response.put("rotation", orientation.rotation);
+        response.put("displayWidth", orientation.getDisplayWidth());
+        response.put("displayHeight", orientation.getDisplayHeight());
+        response.put("duration", probe.getDurationSeconds());
+        response.put("size", probe.size);
+        response.put("bitrate", probe.bitrate);
+        return response;
     }
 
     /**
-     * Get a file path from a Uri. This will get the the path for Storage Access
-     * Framework Documents, as well as the _data field for the MediaStore and
-     * other file-based ContentProviders.
+     * getVideoInfoBatch
+     *
+     * Gets info on many videos, including their streams, reading several at a time
+     *
+     * ARGUMENTS
+     * =========
+     *
+     * fileUris      - paths to input videos, or content:// URIs
+     * concurrency   - number of videos read at the same time (default 4 or the number of cores if less, max 8)
+     * syncSamples   - walk the sample table of each video for its frame and sync sample count (default true)
      *
-     * @param context The context.
-     * @param uri The Uri to query.
-     * @author paulburke
+     * RESPONSE
+     * ========
+     *
+     * results       - one object per fileUri, in the same order: fileUri and the getVideoInfo fields plus
+     *                 codec, profile, profileName, level, frameRate, frameCount, syncSampleCount,
+     *                 audio (format of the first audio track or null) and tracks (format of every track);
+     *                 fileUri and error for a video that couldn't be read
+     * failed        - number of videos that couldn't be read
+     * elapsedMs     - wall time of the batch
+     *
+     * @param JSONArray args
+     * @param CallbackContext callbackContext
+     * @return void
      */
-    public static String getPath(final Context context, final Uri uri) {
+    private void getVideoInfoBatch(JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        Log.d(TAG, "getVideoInfoBatch firing");
 
-        final boolean isKitKat = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
-
-        // DocumentProvider
-        if (isKitKat && DocumentsContract.isDocumentUri(context, uri)) {
-            // ExternalStorageProvider
-            if (isExternalStorageDocument(uri)) {
-                final String docId = DocumentsContract.getDocumentId(uri);
-                final String[] split = docId.split(":");
-                final String type = split[0];
+        JSONObject options = args.optJSONObject(0);
+        final JSONArray fileUris = options.getJSONArray("fileUris");
+        final boolean syncSamples = options.optBoolean("syncSamples", true);
+        int concurrency = options.optInt("concurrency",
+                Math.min(DEFAULT_PROBE_CONCURRENCY, Runtime.getRuntime().availableProcessors()));
+        final int threads = Math.max(1, Math.min(Math.min(concurrency, MAX_PROBE_CONCURRENCY), fileUris.length()));
+        Log.d(TAG, "probing " + fileUris.length() + " videos on " + threads + " threads");
 
-                if ("primary".equalsIgnoreCase(type)) {
-                    return Environment.getExternalStorageDirectory() + "/" + split[1];
-                }
+        cordova.getThreadPool().execute(new Runnable() {
+            public void run() {
+                long startMs = SystemClock.elapsedRealtime();
+                ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                    private int count = 0;
 
-                // TODO handle non-primary volumes
-            }
-            // DownloadsProvider
-            else if (isDownloadsDocument(uri)) {
+                    public synchronized Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "VideoEditorProbe-" + (++count));
+                    }
+                });
 
-                final String id = DocumentsContract.getDocumentId(uri);
-                final Uri contentUri = ContentUris.withAppendedId(
-                        Uri.parse("content://downloads/public_downloads"), Long.valueOf(id));
+                try {
+                    List<Future<JSONObject>> futures = new ArrayList<Future<JSONObject>>();
+                    for (int i = 0; i < fileUris.length(); i++) {
+                        final String fileUri = fileUris.optString(i);
+                        futures.add(executor.submit(new Callable<JSONObject>() {
+                            public JSONObject call() throws JSONException {
+                                return batchVideoInfo(fileUri, syncSamples);
+                            }
+                        }));
+                    }
 
-                return getDataColumn(context, contentUri, null, null);
-            }
-            // MediaProvider
-            else if (isMediaDocument(uri)) {
-                final String docId = DocumentsContract.getDocumentId(uri);
-                final String[] split = docId.split(":");
-                final String type = split[0];
+                    JSONArray results = new JSONArray();
+                    int failed = 0;
+                    for (Future<JSONObject> future : futures) {
+                        JSONObject result = future.get();
+                        if (result.has("error")) {
+                            failed++;
+                        }
+                        results.put(result);
+                    }
 
-                Uri contentUri = null;
-                if ("image".equals(type)) {
-                    contentUri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
-                } else if ("video".equals(type)) {
-                    contentUri = MediaStore.Video.Media.EXTERNAL_CONTENT_URI;
-                } else if ("audio".equals(type)) {
-                    contentUri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+                    JSONObject response = new JSONObject();
+                    response.put("results", results);
+                    response.put("failed", failed);
+                    response.put("elapsedMs", SystemClock.elapsedRealtime() - startMs);
+                    callbackContext.success(response);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    callbackContext.error("getVideoInfoBatch interrupted");
+                } catch (ExecutionException e) {
+                    callbackContext.error(e.getCause().toString());
+                } catch (JSONException e) {
+                    callbackContext.error(e.toString());
+                } finally {
+                    executor.shutdownNow();
                 }
+            }
+        });
+    }
 
-                final String selection = "_id=?";
-                final String[] selectionArgs = new String[] {
-                        split[1]
-                };
+    /**
+     * Info of one video of getVideoInfoBatch from a single extractor pass. A
+     * video that can't be read gets an error instead, the batch goes on.
+     */
+    private JSONObject batchVideoInfo(String fileUri, boolean syncSamples) throws JSONException {
+        JSONObject result;
+        try {
+            MediaInput input = fileResolver.resolveInput(fileUri);
+            if (!input.exists()) {
+                throw new FileNotFoundException("input video does not exist.");
+            }
+            StreamProbe streams = StreamProbe.read(input, syncSamples);
+
+            VideoProbe probe;
+            if (streams.rotation >= 0) {
+                long durationMs = streams.durationUs / 1000;
+                long size = input.length();
+                probe = new VideoProbe(streams.video.format.getInteger(MediaFormat.KEY_WIDTH),
+                        streams.video.format.getInteger(MediaFormat.KEY_HEIGHT), streams.rotation, durationMs,
+                        durationMs > 0 ? size * 8 * 1000 / durationMs : 0, size);
+                probeCache.put(input, probe);
+            } else {
+                // the format states no rotation before API 23, the container metadata does
+                probe = probeCache.get(input);
+            }
+            // later thumbnails of the video find its keyframes without reading them again
+            if (streams.syncIndex != null) {
+                syncIndexCache.put(input, streams.syncIndex);
+            }
 
-                return getDataColumn(context, contentUri, selection, selectionArgs);
+            result = videoInfoJSON(probe);
+            JSONObject streamInfo = streams.toJSON();
+            JSONArray names = streamInfo.names();
+            for (int i = 0; i < names.length(); i++) {
+                result.put(names.getString(i), streamInfo.opt(names.getString(i)));
             }
+        } catch (IOException e) {
+            Log.d(TAG, "can't probe " + fileUri, e);
+            result = new JSONObject();
+            result.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+        } catch (RuntimeException e) {
+            Log.d(TAG, "can't probe " + fileUri, e);
+            result = new JSONObject();
+            result.put("error", e.toString());
         }
-        // MediaStore (and general)
-        else if ("content".equalsIgnoreCase(uri.getScheme())) {
-            return getDataColumn(context, uri, null, null);
-        }
-        // File
-        else if ("file".equalsIgnoreCase(uri.getScheme())) {
-            return uri.getPath();
-        }
-
-        return null;
+        result.put("fileUri", fileUri);
+        return result;
     }
 
     /**
-     * Get the value of the data column for this Uri. This is useful for
-     * MediaStore Uris, and other file-based ContentProviders.
-     *
-     * @param context The context.
-     * @param uri The Uri to query.
-     * @param selection (Optional) Filter used in the query.
-     * @param selectionArgs (Optional) Selection arguments used in the query.
-     * @return The value of the _data column, which is typically a file path.
+     * controlJob
+     *
+     * Cancels, pauses, resumes or reprioritizes a job
+     *
+     * ARGUMENTS
+     * =========
+     *
+     * jobId    - id of the job
+     * priority - new priority (setPriority only)
+     *
+     * @param String action
+     * @param JSONArray args
+     * @param CallbackContext callbackContext
+     * @return void
      */
-    public static String getDataColumn(Context context, Uri uri, String selection,
-                                       String[] selectionArgs) {
-
-        Cursor cursor = null;
-        final String column = "_data";
-        final String[] projection = {
-                column
-        };
+    private void controlJob(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        JSONObject options = args.optJSONObject(0);
+        Log.d(TAG, action + " options: " + options.toString());
+
+        String jobId = options.getString("jobId");
+        boolean done;
+        if (action.equals("cancelTranscode")) {
+            done = jobManager.cancel(jobId);
+        } else if (action.equals("pauseTranscode")) {
+            done = jobManager.pause(jobId);
+        } else if (action.equals("resumeTranscode")) {
+            done = jobManager.resume(jobId);
+        } else {
+            done = jobManager.setPriority(jobId, options.getInt("priority"));
+        }
 
-        try {
-            cursor = context.getContentResolver().query(uri, projection, selection, selectionArgs,
-                    null);
-            if (cursor != null && cursor.moveToFirst()) {
-                final int column_index = cursor.getColumnIndexOrThrow(column);
-                return cursor.getString(column_index);
-            }
-        } finally {
-            if (cursor != null)
-                cursor.close();
+        if (!done) {
+            callbackContext.error("can't " + action.replace("Transcode", "") + " job " + jobId);
+            return;
         }
-        return null;
+        callbackContext.success(jobManager.getJob(jobId).toJSON());
     }
 
-
     /**
-     * @param uri The Uri to check.
-     * @return Whether the Uri authority is ExternalStorageProvider.
+     * reattachJob
+     *
+     * Attaches to a transcodeVideo, mergeVideos or createProxy job again after
+     * the app was restarted, see undelivered of getJobs
+     *
+     * ARGUMENTS
+     * =========
+     *
+     * jobId    - id of the job
+     *
+     * RESPONSE
+     * ========
+     *
+     * the progress and result of the job, as the call that started it would have received them;
+     * a job that already finished delivers its result right away
+     *
+     * @param JSONArray args
+     * @param CallbackContext callbackContext
+     * @return void
      */
-    public static boolean isExternalStorageDocument(Uri uri) {
-        return "com.android.externalstorage.documents".equals(uri.getAuthority());
+    private void reattachJob(JSONArray args, CallbackContext callbackContext) throws JSONException {
+        JSONObject options = args.optJSONObject(0);
+        Log.d(TAG, "reattachJob options: " + options.toString());
+
+        String jobId = options.getString("jobId");
+        if (!jobJournal.attach(jobId, callbackContext)) {
+            callbackContext.error("no journaled job " + jobId);
+        }
     }
 
     /**
-     * @param uri The Uri to check.
-     * @return Whether the Uri authority is DownloadsProvider.
+     * getTranscodeStats
+     *
+     * Gets aggregates of the metrics of finished transcodes
+     *
+     * RESPONSE
+     * ========
+     *
+     * completed, failed, canceled - number of transcodes since the plugin started
+     * window   - number of recent completed transcodes the averages are taken over
+     * recent   - averages of queue wait, wall time, frames per second and realtime factor
+     * encoders - the same averages per encoder
+     * failures - number of failures per cause
+     * thumbnails - average and median createThumbnail latency per seek mode
+     * device   - manufacturer, model and API level
+     *
+     * @param CallbackContext callbackContext
+     * @return void
      */
-    public static boolean isDownloadsDocument(Uri uri) {
-        return "com.android.providers.downloads.documents".equals(uri.getAuthority());
+    private void getTranscodeStats(CallbackContext callbackContext) throws JSONException {
+        JSONObject stats = transcodeStats.toJSON();
+
+        JSONObject device = new JSONObject();
+        device.put("manufacturer", Build.MANUFACTURER);
+        device.put("model", Build.MODEL);
+        device.put("sdk", Build.VERSION.SDK_INT);
+        stats.put("device", device);
+
+        callbackContext.success(stats);
     }
 
     /**
-     * @param uri The Uri to check.
-     * @return Whether the Uri authority is MediaProvider.
+     * clearOutputCache
+     *
+     * Removes all outputs kept for transcodes with the cache option
+     *
+     * @param CallbackContext callbackContext
+     * @return void
      */
-    public static boolean isMediaDocument(Uri uri) {
-        return "com.android.providers.media.documents".equals(uri.getAuthority());
+    private void clearOutputCache(final CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(new Runnable() {
+            public void run() {
+                outputCache.clear();
+                callbackContext.success();
+            }
+        });
     }
 
 }
@@ -0,0 +1,272 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.concurrent.Future;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A single request handled by the VideoEditor plugin.
+ *
+ * Every job owns the CallbackContext of the call that created it, so
+ * overlapping transcodes and thumbnails report their progress and results
+ * to the right caller instead of whichever call came in last.
+ */
+public class VideoJob implements ProgressDispatcher.Target {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        PAUSED,
+        COMPLETED,
+        FAILED,
+        CANCELED
+    }
+
+    public static final int DEFAULT_PRIORITY = 0;
+
+    private final String id;
+    private final String action;
+    private final CallbackContext callback;
+    private final long queuedAt;
+
+    private volatile State state = State.QUEUED;
+    private volatile int priority = DEFAULT_PRIORITY;
+    private volatile double progress = 0;
+    private volatile long startedAt = 0;
+    private volatile long finishedAt = 0;
+    private volatile String errorMessage;
+
+    // encoder session of a running job, used to stop it on cancel or pause
+    private Future<?> session;
+    private boolean pauseRequested = false;
+
+    public VideoJob(String id, String action, CallbackContext callback) {
+        this.id = id;
+        this.action = action;
+        this.callback = callback;
+        this.queuedAt = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    /**
+     * When the job last started running, 0 if it never did.
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Why the job failed or was canceled, null otherwise.
+     */
+    public String getError() {
+        return errorMessage;
+    }
+
+    void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED || state == State.CANCELED;
+    }
+
+    synchronized boolean markRunning() {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        startedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    synchronized boolean markQueued() {
+        if (state != State.PAUSED) {
+            return false;
+        }
+        state = State.QUEUED;
+        return true;
+    }
+
+    /**
+     * Attaches the encoder session of a running job. If the job was canceled
+     * or paused in the meantime, the session is stopped right away.
+     */
+    public synchronized void setSession(Future<?> session) {
+        this.session = session;
+        if (state == State.CANCELED || pauseRequested) {
+            session.cancel(true);
+        }
+    }
+
+    /**
+     * The encoder session attached to the running job, null while there is
+     * none.
+     */
+    synchronized Future<?> getSession() {
+        return session;
+    }
+
+    /**
+     * Pauses a queued job, or stops the encoder session of a running one so
+     * its codecs are released. A running job is restarted when resumed.
+     *
+     * @return false if the job can't be paused in its current state
+     */
+    synchronized boolean pause() {
+        if (state == State.QUEUED) {
+            state = State.PAUSED;
+            return true;
+        }
+        if (state != State.RUNNING || session == null) {
+            return false;
+        }
+        pauseRequested = true;
+        session.cancel(true);
+        return true;
+    }
+
+    /**
+     * Called by the job's work once its session stopped. Returns true if the
+     * stop was caused by a pause request, in which case the job is now paused.
+     */
+    public synchronized boolean onSessionStopped() {
+        session = null;
+        if (!pauseRequested) {
+            return false;
+        }
+        pauseRequested = false;
+        if (state == State.RUNNING) {
+            state = State.PAUSED;
+            progress = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the job. A running encoder session is stopped immediately so
+     * the next queued job can get the hardware codecs.
+     */
+    boolean cancel() {
+        Future<?> runningSession;
+        synchronized (this) {
+            if (!finish(State.CANCELED, "canceled")) {
+                return false;
+            }
+            runningSession = session;
+        }
+        if (runningSession != null) {
+            runningSession.cancel(true);
+        }
+        callback.error(action.equals("transcodeVideo") ? "transcode canceled" : "job canceled");
+        return true;
+    }
+
+    private synchronized boolean finish(State finalState, String message) {
+        if (isFinished()) {
+            return false;
+        }
+        state = finalState;
+        errorMessage = message;
+        finishedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Sends an intermediate result to JS, keeping the callback alive.
+     */
+    @Override
+    public void sendProgress(double progress, JSONObject payload) {
+        if (state != State.RUNNING) {
+            return;
+        }
+        this.progress = progress;
+        PluginResult result = new PluginResult(PluginResult.Status.OK, payload);
+        result.setKeepCallback(true);
+        callback.sendPluginResult(result);
+    }
+
+    public void success(String message) {
+        if (finish(State.COMPLETED, null)) {
+            progress = 1;
+            callback.success(message);
+        }
+    }
+
+    public void success(JSONObject message) {
+        if (finish(State.COMPLETED, null)) {
+            progress = 1;
+            callback.success(message);
+        }
+    }
+
+    public void error(String message) {
+        if (finish(State.FAILED, message)) {
+            callback.error(message);
+        }
+    }
+
+    /**
+     * Fails the job with what it threw: as {code, message} for the failures
+     * JobError knows, as a plain message otherwise.
+     */
+    public void error(Throwable e) {
+        String code = JobError.classify(e);
+        if (code == null) {
+            error(e.toString());
+        } else {
+            error(code, e.toString());
+        }
+    }
+
+    /**
+     * Fails the job as {code, message}, with one of the JobError codes.
+     */
+    public void error(String code, String message) {
+        if (finish(State.FAILED, message)) {
+            callback.error(JobError.toJSON(code, message));
+        }
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("jobId", id);
+        json.put("action", action);
+        json.put("state", state.name().toLowerCase());
+        json.put("priority", priority);
+        json.put("progress", progress);
+        json.put("queuedAt", queuedAt);
+        if (startedAt > 0) {
+            json.put("startedAt", startedAt);
+        }
+        if (finishedAt > 0) {
+            json.put("finishedAt", finishedAt);
+        }
+        if (errorMessage != null) {
+            json.put("error", errorMessage);
+        }
+        return json;
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.apache.cordova.videoeditor;
+
+/**
+ * Container metadata of a video, read once by a MetadataProber and shared
+ * through the ProbeCache.
+ */
+public class VideoProbe {
+
+    public final int width;
+    public final int height;
+    public final int rotation;
+    public final long durationMs;
+    public final long bitrate;
+    public final long size;
+
+    public VideoProbe(int width, int height, int rotation, long durationMs, long bitrate, long size) {
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.durationMs = durationMs;
+        this.bitrate = bitrate;
+        this.size = size;
+    }
+
+    public double getDurationSeconds() {
+        return durationMs / 1000.0;
+    }
+
+}
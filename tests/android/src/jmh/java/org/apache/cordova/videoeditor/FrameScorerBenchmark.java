@@ -0,0 +1,56 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scoring one sampled frame of the smart seek mode of createThumbnail, at
+ * the 96x54 a 16:9 video is sampled at. Up to eight are scored per
+ * thumbnail, next to decoding them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameScorerBenchmark {
+
+    private static final int WIDTH = FrameScorer.SAMPLE_SIZE;
+    private static final int HEIGHT = 54;
+
+    private int[] frame;
+    private FrameScorer scorer;
+    private long timeUs;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        frame = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = 0xff000000 | random.nextInt(0x1000000);
+        }
+        scorer = new FrameScorer();
+    }
+
+    @Benchmark
+    public FrameScorer.Score score() {
+        // a new scorer now and then, the list of scores would grow without end
+        if (++timeUs % 8 == 0) {
+            scorer = new FrameScorer();
+        }
+        return scorer.score(timeUs, frame, WIDTH, HEIGHT);
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.media.MediaFormat;
+
+/**
+ * What runs once per call on the bridge or job thread before any codec
+ * is touched: option parsing, URL resolution, output size and format,
+ * bitrate and admission cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PerCallBenchmark {
+
+    private static final String OPTIONS = "{fileUri: 'file:///storage/emulated/0/DCIM/Camera/VID_20240101_120000.mp4',"
+            + " outputFileName: 'out', width: 1280, height: 720, fps: 30, videoBitrate: 4000000,"
+            + " startTime: 2.5, endTime: 12, audioBitrate: 96000, videoQuality: 'medium',"
+            + " crop: {x: 0, y: 140, width: 1920, height: 800}, jobId: 'job-1', priority: 2}";
+
+    private JSONObject options;
+    private MediaFormat inputFormat;
+    private CustomAndroidFormatStrategy formatStrategy;
+    private AdmissionController admission;
+
+    @Setup
+    public void setUp() throws JSONException {
+        options = new JSONObject(OPTIONS);
+        inputFormat = MediaFormat.createVideoFormat("video/avc", 1920, 1080);
+        inputFormat.setInteger(MediaFormat.KEY_BIT_RATE, 16000000);
+
+        final EncoderInfo encoder = new EncoderInfo("OMX.fake.avc.encoder", "video/avc", true,
+                176, 4096, 144, 2160, 16, 16, 40000000, 0x200, 8);
+        formatStrategy = new CustomAndroidFormatStrategy(4000000, 30, 1280, 720);
+        formatStrategy.setEncoderSelector(new EncoderSelector(new CodecCapabilityProvider() {
+            public List<EncoderInfo> getEncoders(String mime) {
+                return Collections.singletonList(encoder);
+            }
+        }), CustomAndroidFormatStrategy.VIDEO_MIME_AVC);
+        admission = new AdmissionController(256L * 1024 * 1024, AdmissionController.DEFAULT_CODEC_BUDGET);
+    }
+
+    @Benchmark
+    public TranscodeOptions parseOptions() throws JSONException {
+        return TranscodeOptions.parse(options);
+    }
+
+    @Benchmark
+    public String outputKey() throws JSONException {
+        return TranscodeOptions.parse(options).getOutputKey();
+    }
+
+    /** the file of an encoded file URL, without touching the file system */
+    @Benchmark
+    public File resolveFileUrl() throws UnsupportedEncodingException {
+        return ContentFileResolver.fileFromUrl(URLDecoder.decode(options.optString("fileUri"), "UTF-8"));
+    }
+
+    @Benchmark
+    public MediaFormat videoOutputFormat() {
+        return formatStrategy.createVideoOutputFormat(inputFormat);
+    }
+
+    @Benchmark
+    public FrameSize frameSize() {
+        return FrameSize.compute(1920, 1080, 1280, 720, FrameSize.Mode.FIT);
+    }
+
+    @Benchmark
+    public int qualityBitrate() {
+        return BitrateCalculator.forQuality(BitrateCalculator.Quality.MEDIUM, 1280, 720, 30);
+    }
+
+    @Benchmark
+    public boolean admit() {
+        AdmissionController.Cost cost = AdmissionController.transcodeCost(1920, 1080, 2);
+        boolean admitted = admission.tryAcquire(cost);
+        if (admitted) {
+            admission.release(cost);
+        }
+        return admitted;
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What runs once per decoded frame: the progress callback, the frame
+ * decimator, the texture coordinates of the renderer and the sync sample
+ * lookups of thumbnails. Each of these is paid 30 to 60 times per second
+ * of video.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PerFrameBenchmark {
+
+    private static final long FRAME_US = 33333;
+    private static final int FRAMES = 30 * 60;
+
+    private long frameTimeUs;
+    private ManualClock clock;
+    private ProgressDispatcher dispatcher;
+    private FrameDecimator decimator;
+    private SyncSampleIndex syncIndex;
+
+    @Setup
+    public void setUp() {
+        clock = new ManualClock();
+        dispatcher = new ProgressDispatcher(new ProgressDispatcher.Target() {
+            public void sendProgress(double progress, JSONObject payload) {
+            }
+        }, ProgressDispatcher.DEFAULT_INTERVAL_MS, ProgressDispatcher.DEFAULT_STEP, 60, clock);
+        decimator = new FrameDecimator(24);
+        long[] syncTimes = new long[FRAMES / 30];
+        for (int i = 0; i < syncTimes.length; i++) {
+            syncTimes[i] = i * 30 * FRAME_US;
+        }
+        syncIndex = new SyncSampleIndex(syncTimes);
+    }
+
+    /** most calls are throttled away, one in about eight is sent */
+    @Benchmark
+    public void progress() {
+        frameTimeUs = (frameTimeUs + FRAME_US) % (FRAMES * FRAME_US);
+        clock.now += 33;
+        dispatcher.onProgress((double) frameTimeUs / (FRAMES * FRAME_US));
+    }
+
+    @Benchmark
+    public boolean decimate() {
+        frameTimeUs += FRAME_US;
+        return decimator.keep(frameTimeUs);
+    }
+
+    @Benchmark
+    public float[] textureCoordinates() {
+        return Orientation.textureCoordinates(90, 0.1f, 0.2f, 0.9f, 0.8f);
+    }
+
+    @Benchmark
+    public long nearestSyncSample() {
+        frameTimeUs = (frameTimeUs + 7 * FRAME_US) % (FRAMES * FRAME_US);
+        return syncIndex.nearest(frameTimeUs);
+    }
+
+    static class ManualClock implements ProgressDispatcher.Clock {
+
+        long now;
+
+        public long elapsedRealtime() {
+            return now;
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * JVM replacement for the framework class, which reads system properties
+ * natively. Reports the API level the tests compile against.
+ */
+public class Build {
+
+    public static final String MANUFACTURER = "jvm";
+    public static final String MODEL = "jvm";
+
+    public static class VERSION {
+        public static final int SDK_INT = 33;
+        public static final String RELEASE = "13";
+    }
+
+}
@@ -0,0 +1,50 @@
+package android.os;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * JVM replacement for the framework class, which opens files natively.
+ * Read-only files only, which is all MediaInput opens.
+ */
+public class ParcelFileDescriptor implements Closeable {
+
+    public static final int MODE_READ_ONLY = 0x10000000;
+
+    private final File file;
+    private final FileInputStream stream;
+
+    private ParcelFileDescriptor(File file, FileInputStream stream) {
+        this.file = file;
+        this.stream = stream;
+    }
+
+    public static ParcelFileDescriptor open(File file, int mode) throws FileNotFoundException {
+        if (mode != MODE_READ_ONLY) {
+            throw new UnsupportedOperationException("mode " + Integer.toHexString(mode));
+        }
+        return new ParcelFileDescriptor(file, new FileInputStream(file));
+    }
+
+    public FileDescriptor getFileDescriptor() {
+        try {
+            return stream.getFD();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getStatSize() {
+        return file.length();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+}
@@ -0,0 +1,67 @@
+package android.util;
+
+/**
+ * JVM replacement for the framework class, whose logging is native.
+ * Messages go to stderr when the videoeditor.log system property is set.
+ */
+public final class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    private static final boolean ENABLED = Boolean.getBoolean("videoeditor.log");
+
+    private Log() {
+    }
+
+    public static int v(String tag, String msg) {
+        return println(VERBOSE, tag, msg, null);
+    }
+
+    public static int d(String tag, String msg) {
+        return println(DEBUG, tag, msg, null);
+    }
+
+    public static int d(String tag, String msg, Throwable tr) {
+        return println(DEBUG, tag, msg, tr);
+    }
+
+    public static int i(String tag, String msg) {
+        return println(INFO, tag, msg, null);
+    }
+
+    public static int w(String tag, String msg) {
+        return println(WARN, tag, msg, null);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return println(WARN, tag, msg, tr);
+    }
+
+    public static int e(String tag, String msg) {
+        return println(ERROR, tag, msg, null);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return println(ERROR, tag, msg, tr);
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        return ENABLED;
+    }
+
+    private static int println(int priority, String tag, String msg, Throwable tr) {
+        if (!ENABLED) {
+            return 0;
+        }
+        System.err.println(priority + " " + tag + ": " + msg);
+        if (tr != null) {
+            tr.printStackTrace();
+        }
+        return msg.length();
+    }
+
+}
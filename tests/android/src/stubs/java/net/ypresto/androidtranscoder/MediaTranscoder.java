@@ -0,0 +1,35 @@
+package net.ypresto.androidtranscoder;
+
+import java.io.FileDescriptor;
+import java.util.concurrent.Future;
+
+import net.ypresto.androidtranscoder.format.MediaFormatStrategy;
+
+/**
+ * Stand-in for the android-transcoder class of the same name. There is no
+ * transcoder on a JVM, tests use a fake TranscoderEngine instead.
+ */
+public class MediaTranscoder {
+
+    public interface Listener {
+        void onTranscodeProgress(double progress);
+
+        void onTranscodeCompleted();
+
+        void onTranscodeCanceled();
+
+        void onTranscodeFailed(Exception exception);
+    }
+
+    private static final MediaTranscoder INSTANCE = new MediaTranscoder();
+
+    public static MediaTranscoder getInstance() {
+        return INSTANCE;
+    }
+
+    public Future<Void> transcodeVideo(FileDescriptor inFileDescriptor, String outPath,
+                                       MediaFormatStrategy outFormatStrategy, Listener listener, long durationUs) {
+        throw new UnsupportedOperationException("no transcoder on a JVM");
+    }
+
+}
@@ -0,0 +1,14 @@
+package net.ypresto.androidtranscoder.format;
+
+import android.media.MediaFormat;
+
+/**
+ * Stand-in for the android-transcoder interface of the same name.
+ */
+public interface MediaFormatStrategy {
+
+    MediaFormat createVideoOutputFormat(MediaFormat inputFormat);
+
+    MediaFormat createAudioOutputFormat(MediaFormat inputFormat);
+
+}
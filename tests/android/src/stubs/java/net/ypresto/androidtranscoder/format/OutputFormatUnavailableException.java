@@ -0,0 +1,12 @@
+package net.ypresto.androidtranscoder.format;
+
+/**
+ * Stand-in for the android-transcoder exception of the same name.
+ */
+public class OutputFormatUnavailableException extends RuntimeException {
+
+    public OutputFormatUnavailableException(String detailMessage) {
+        super(detailMessage);
+    }
+
+}
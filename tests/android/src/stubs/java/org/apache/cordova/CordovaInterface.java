@@ -0,0 +1,20 @@
+package org.apache.cordova;
+
+import java.util.concurrent.ExecutorService;
+
+import android.app.Activity;
+import android.content.Context;
+
+/**
+ * Stand-in for the Cordova interface of the same name, reduced to what
+ * the plugin calls.
+ */
+public interface CordovaInterface {
+
+    Activity getActivity();
+
+    Context getContext();
+
+    ExecutorService getThreadPool();
+
+}
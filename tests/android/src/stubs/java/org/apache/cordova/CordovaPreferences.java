@@ -0,0 +1,38 @@
+package org.apache.cordova;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Stand-in for the Cordova class of the same name.
+ */
+public class CordovaPreferences {
+
+    private final Map<String, String> prefs = new HashMap<String, String>();
+
+    public void set(String name, String value) {
+        prefs.put(name.toLowerCase(Locale.ENGLISH), value);
+    }
+
+    public String getString(String name, String defaultValue) {
+        String value = prefs.get(name.toLowerCase(Locale.ENGLISH));
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String value = getString(name, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    public int getInteger(String name, int defaultValue) {
+        String value = getString(name, null);
+        return value != null ? (int) Long.decode(value).longValue() : defaultValue;
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = getString(name, null);
+        return value != null ? Double.valueOf(value) : defaultValue;
+    }
+
+}
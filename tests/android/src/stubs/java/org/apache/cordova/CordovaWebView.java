@@ -0,0 +1,11 @@
+package org.apache.cordova;
+
+/**
+ * Stand-in for the Cordova interface of the same name, reduced to what
+ * CallbackContext calls.
+ */
+public interface CordovaWebView {
+
+    void sendPluginResult(PluginResult pluginResult, String callbackId);
+
+}
@@ -0,0 +1,75 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stand-in for the Cordova class of the same name. Keeps the message as
+ * it was passed, so tests can look at it.
+ */
+public class PluginResult {
+
+    public enum Status {
+        NO_RESULT,
+        OK,
+        CLASS_NOT_FOUND_EXCEPTION,
+        ILLEGAL_ACCESS_EXCEPTION,
+        INSTANTIATION_EXCEPTION,
+        MALFORMED_URL_EXCEPTION,
+        IO_EXCEPTION,
+        INVALID_ACTION,
+        JSON_EXCEPTION,
+        ERROR
+    }
+
+    private final Status status;
+    private final Object message;
+    private boolean keepCallback = false;
+
+    public PluginResult(Status status) {
+        this(status, (Object) null);
+    }
+
+    public PluginResult(Status status, String message) {
+        this(status, (Object) message);
+    }
+
+    public PluginResult(Status status, JSONObject message) {
+        this(status, (Object) message);
+    }
+
+    public PluginResult(Status status, JSONArray message) {
+        this(status, (Object) message);
+    }
+
+    public PluginResult(Status status, boolean message) {
+        this(status, (Object) message);
+    }
+
+    public PluginResult(Status status, int message) {
+        this(status, (Object) message);
+    }
+
+    private PluginResult(Status status, Object message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    public void setKeepCallback(boolean keepCallback) {
+        this.keepCallback = keepCallback;
+    }
+
+    public boolean getKeepCallback() {
+        return keepCallback;
+    }
+
+    public int getStatus() {
+        return status.ordinal();
+    }
+
+    /** the message as passed in, not encoded like Cordova's getMessage */
+    public Object getValue() {
+        return message;
+    }
+
+}
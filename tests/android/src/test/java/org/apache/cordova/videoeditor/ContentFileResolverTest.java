@@ -0,0 +1,86 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentFileResolverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ContentFileResolver resolver;
+
+    @Before
+    public void setUp() {
+        // without a ContentResolver, only file URLs and paths can be resolved
+        resolver = new ContentFileResolver(null);
+    }
+
+    @Test
+    public void fileUrls() {
+        assertEquals(new File("/storage/emulated/0/DCIM/a.mp4"),
+                ContentFileResolver.fileFromUrl("file:///storage/emulated/0/DCIM/a.mp4"));
+        assertEquals(new File("/storage/a.mp4"), ContentFileResolver.fileFromUrl("file:/storage/a.mp4"));
+    }
+
+    @Test
+    public void fileUrlsLoseTheirQuery() {
+        assertEquals(new File("/storage/a.mp4"), ContentFileResolver.fileFromUrl("file:///storage/a.mp4?t=12"));
+    }
+
+    @Test
+    public void anythingElseIsAPath() {
+        assertEquals(new File("/storage/a.mp4"), ContentFileResolver.fileFromUrl("/storage/a.mp4"));
+        assertEquals(new File("a.mp4"), ContentFileResolver.fileFromUrl("a.mp4"));
+        assertEquals(new File("/storage/a.mp4?t=12"), ContentFileResolver.fileFromUrl("/storage/a.mp4?t=12"));
+    }
+
+    @Test
+    public void resolvesAnEncodedFileUrl() throws Exception {
+        File file = folder.newFile("my clip.mp4");
+        MediaInput input = resolver.resolveInput("file://" + folder.getRoot().getPath() + "/my%20clip.mp4");
+        assertEquals(file, input.getFile());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void rejectsAMissingFile() throws Exception {
+        resolver.resolveInput("file://" + folder.getRoot().getPath() + "/missing.mp4");
+    }
+
+    @Test(expected = MalformedURLException.class)
+    public void rejectsAPathAsInput() throws Exception {
+        // the input has to be a URL, unlike the output directory
+        resolver.resolveInput(folder.newFile("a.mp4").getPath());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsABrokenEscape() throws Exception {
+        resolver.resolveInput("file:///storage/a%zz.mp4");
+    }
+
+    @Test
+    public void createsTheOutputDirectory() throws IOException {
+        File directory = new File(folder.getRoot(), "out/videos");
+        assertEquals(directory, resolver.resolveOutputDirectory("file://" + directory.getPath()));
+        assertTrue(directory.isDirectory());
+        assertEquals(directory, resolver.resolveOutputDirectory(directory.getPath()));
+    }
+
+    @Test
+    public void fileIsNoOutputDirectory() throws IOException {
+        File file = folder.newFile("a.mp4");
+        assertNull(resolver.resolveOutputDirectory(file.getPath()));
+    }
+
+}
@@ -0,0 +1,167 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+
+public class CustomAndroidFormatStrategyTest {
+
+    private static final int BITRATE = 4000000;
+    private static final String AVC = CustomAndroidFormatStrategy.VIDEO_MIME_AVC;
+    private static final String HEVC = CustomAndroidFormatStrategy.VIDEO_MIME_HEVC;
+
+    @Test
+    public void passesASourceWithinTheLimitsThrough() {
+        CustomAndroidFormatStrategy strategy = strategy();
+        assertTrue(strategy.isVideoPassthrough(video(1280, 720, 3000000, 30)));
+        assertNull(strategy.createVideoOutputFormat(video(1280, 720, 3000000, 30)));
+    }
+
+    @Test
+    public void reencodesALargerOrRicherSource() {
+        CustomAndroidFormatStrategy strategy = strategy();
+        assertFalse(strategy.isVideoPassthrough(video(1920, 1080, 3000000, 30)));
+        assertFalse(strategy.isVideoPassthrough(video(1280, 720, 8000000, 30)));
+        assertNotNull(strategy.createVideoOutputFormat(video(1920, 1080, 3000000, 30)));
+    }
+
+    @Test
+    public void reencodesWhenFramesAreToBeDropped() {
+        CustomAndroidFormatStrategy strategy = strategy();
+        strategy.setDecimation(30);
+        assertFalse(strategy.isVideoPassthrough(video(1280, 720, 3000000, 60)));
+        MediaFormat output = strategy.createVideoOutputFormat(video(1280, 720, 3000000, 60));
+        assertNotNull(output);
+        assertEquals(30, output.getInteger(MediaFormat.KEY_FRAME_RATE));
+    }
+
+    @Test
+    public void reencodesAnUnknownFrameRateWhenFramesAreToBeDropped() {
+        CustomAndroidFormatStrategy strategy = strategy();
+        strategy.setDecimation(30);
+        assertFalse(strategy.isVideoPassthrough(video(1280, 720, 3000000, 0)));
+    }
+
+    @Test
+    public void passesThroughWithinTheDecimationTolerance() {
+        CustomAndroidFormatStrategy strategy = strategy();
+        strategy.setDecimation(30);
+        assertTrue(strategy.isVideoPassthrough(video(1280, 720, 3000000, 30)));
+        assertTrue(strategy.isVideoPassthrough(video(1280, 720, 3000000, 32)));
+        assertTrue(strategy.isVideoPassthrough(video(1280, 720, 3000000, 24)));
+
+        MediaFormat floatRate = video(1280, 720, 3000000, 0);
+        floatRate.setFloat(MediaFormat.KEY_FRAME_RATE, 29.97f);
+        assertTrue(strategy.isVideoPassthrough(floatRate));
+    }
+
+    @Test
+    public void copiesOnlyWhenBothTracksPassThrough() {
+        CustomAndroidFormatStrategy strategy = strategy();
+        MediaFormat audio = MediaFormat.createAudioFormat("audio/mp4a-latm", 44100, 2);
+        audio.setInteger(MediaFormat.KEY_BIT_RATE, 128000);
+        assertTrue(strategy.canCopy(video(1280, 720, 3000000, 60), audio));
+        assertTrue(strategy.canCopy(video(1280, 720, 3000000, 60), null));
+
+        strategy.setDecimation(30);
+        assertFalse(strategy.canCopy(video(1280, 720, 3000000, 60), audio));
+
+        strategy = strategy();
+        strategy.setAudio(64000, 1, 0);
+        assertFalse(strategy.canCopy(video(1280, 720, 3000000, 30), audio));
+        assertTrue(strategy.canCopy(video(1280, 720, 3000000, 30), null));
+    }
+
+    @Test
+    public void sampleRateAloneCopiesTheAudio() {
+        CustomAndroidFormatStrategy strategy = strategy();
+        strategy.setAudio(0, 0, 22050);
+        assertNull(strategy.createAudioOutputFormat(MediaFormat.createAudioFormat("audio/mp4a-latm", 44100, 2)));
+    }
+
+    @Test
+    public void decimatorNeedsNoticeablyMoreFrames() {
+        assertFalse(FrameDecimator.isNeeded(60, 0));
+        assertFalse(FrameDecimator.isNeeded(32, 30));
+        assertTrue(FrameDecimator.isNeeded(34, 30));
+        assertTrue(FrameDecimator.isNeeded(0, 30));
+    }
+
+    @Test
+    public void usesHardwareHevcWhenAskedFor() {
+        CustomAndroidFormatStrategy strategy = encodingStrategy(new FakeCodecCapabilityProvider()
+                .add(FakeCodecCapabilityProvider.encoder("c2.qti.avc.encoder", AVC, true))
+                .add(FakeCodecCapabilityProvider.encoder("c2.qti.hevc.encoder", HEVC, true)), HEVC);
+        MediaFormat output = strategy.createVideoOutputFormat(video(1920, 1080, 10000000, 30));
+        assertEquals(HEVC, output.getString(MediaFormat.KEY_MIME));
+        assertFalse(output.containsKey(MediaFormat.KEY_PROFILE));
+    }
+
+    @Test
+    public void fallsBackToAvcWithoutHardwareHevc() {
+        CustomAndroidFormatStrategy strategy = encodingStrategy(new FakeCodecCapabilityProvider()
+                .add(FakeCodecCapabilityProvider.encoder("c2.qti.avc.encoder", AVC, true))
+                .add(FakeCodecCapabilityProvider.encoder("c2.android.hevc.encoder", HEVC, false)), HEVC);
+        assertEquals(AVC, strategy.createVideoOutputFormat(video(1920, 1080, 10000000, 30)).getString(MediaFormat.KEY_MIME));
+
+        strategy = encodingStrategy(new FakeCodecCapabilityProvider()
+                .add(FakeCodecCapabilityProvider.encoder("c2.qti.avc.encoder", AVC, true)), HEVC);
+        assertEquals(AVC, strategy.createVideoOutputFormat(video(1920, 1080, 10000000, 30)).getString(MediaFormat.KEY_MIME));
+    }
+
+    @Test
+    public void fitsSizeAndBitrateToTheEncoder() {
+        EncoderInfo encoder = new EncoderInfo("c2.small.avc.encoder", AVC, true, 176, 1024, 144, 1024, 16, 16,
+                2000000, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+        CustomAndroidFormatStrategy strategy = encodingStrategy(new FakeCodecCapabilityProvider().add(encoder), AVC);
+        MediaFormat output = strategy.createVideoOutputFormat(video(1920, 1080, 10000000, 30));
+        // 1280x720 asked for, 1024 wide at most
+        assertEquals(1024, output.getInteger(MediaFormat.KEY_WIDTH));
+        assertEquals(576, output.getInteger(MediaFormat.KEY_HEIGHT));
+        assertEquals(2000000, output.getInteger(MediaFormat.KEY_BIT_RATE));
+    }
+
+    @Test
+    public void asksForHighProfileWhereSupported() {
+        EncoderInfo high = new EncoderInfo("c2.qti.avc.encoder", AVC, true, 176, 4096, 144, 2160, 16, 16,
+                40000000, 0x2000, EncoderInfo.UNKNOWN);
+        MediaFormat output = encodingStrategy(new FakeCodecCapabilityProvider().add(high), AVC)
+                .createVideoOutputFormat(video(1920, 1080, 10000000, 30));
+        assertEquals(MediaCodecInfo.CodecProfileLevel.AVCProfileHigh, output.getInteger(MediaFormat.KEY_PROFILE));
+        assertEquals(0x2000, output.getInteger(MediaFormat.KEY_LEVEL));
+
+        output = encodingStrategy(new FakeCodecCapabilityProvider()
+                .add(FakeCodecCapabilityProvider.encoder("c2.qti.avc.encoder", AVC, true)), AVC)
+                .createVideoOutputFormat(video(1920, 1080, 10000000, 30));
+        assertFalse(output.containsKey(MediaFormat.KEY_PROFILE));
+    }
+
+    private static CustomAndroidFormatStrategy encodingStrategy(CodecCapabilityProvider provider, String videoMime) {
+        CustomAndroidFormatStrategy strategy = new CustomAndroidFormatStrategy(BITRATE, 30, 1280, 720);
+        strategy.setEncoderSelector(new EncoderSelector(provider), videoMime);
+        return strategy;
+    }
+
+    private static CustomAndroidFormatStrategy strategy() {
+        CustomAndroidFormatStrategy strategy = new CustomAndroidFormatStrategy(BITRATE, 30, 1280, 720);
+        strategy.setPassthrough(true, 0);
+        return strategy;
+    }
+
+    private static MediaFormat video(int width, int height, int bitrate, int frameRate) {
+        MediaFormat format = MediaFormat.createVideoFormat("video/avc", width, height);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+        if (frameRate > 0) {
+            format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+        }
+        return format;
+    }
+
+}
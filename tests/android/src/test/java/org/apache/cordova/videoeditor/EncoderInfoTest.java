@@ -0,0 +1,97 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EncoderInfoTest {
+
+    @Test
+    public void keepsASizeWithinTheRanges() {
+        assertArrayEquals(new int[] { 1280, 720 }, encoder(4096, 2160, 16, 16).clampSize(1280, 720));
+    }
+
+    @Test
+    public void scalesDownKeepingTheAspectRatio() {
+        // 3840x2160 into 1920x1088, the height limit wins
+        int[] size = encoder(1920, 1088, 2, 2).clampSize(3840, 2160);
+        assertArrayEquals(new int[] { 1920, 1080 }, size);
+
+        // portrait, the width limit wins
+        size = encoder(1088, 1920, 2, 2).clampSize(2160, 3840);
+        assertArrayEquals(new int[] { 1080, 1920 }, size);
+    }
+
+    @Test
+    public void alignsBothSidesDown() {
+        assertArrayEquals(new int[] { 848, 480 }, encoder(4096, 2160, 16, 16).clampSize(854, 480));
+        assertArrayEquals(new int[] { 1280, 718 }, encoder(4096, 2160, 2, 2).clampSize(1281, 719));
+    }
+
+    @Test
+    public void alignsToEvenSizesWhenNotReported() {
+        EncoderInfo encoder = new EncoderInfo("c2.fake", "video/avc", true, 0, 0, 0, 0, 0, 0,
+                EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+        assertArrayEquals(new int[] { 638, 358 }, encoder.clampSize(639, 359));
+    }
+
+    @Test
+    public void raisesSizesBelowTheMinimum() {
+        EncoderInfo encoder = new EncoderInfo("c2.fake", "video/avc", true, 176, 4096, 144, 2160, 16, 16,
+                EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+        assertArrayEquals(new int[] { 176, 144 }, encoder.clampSize(96, 54));
+        // the minimum itself is aligned up, 150 would be refused
+        encoder = new EncoderInfo("c2.fake", "video/avc", true, 150, 4096, 100, 2160, 16, 16,
+                EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+        assertArrayEquals(new int[] { 160, 112 }, encoder.clampSize(96, 54));
+    }
+
+    @Test
+    public void shrinksASizeTheRuleRefuses() {
+        // both sides within 4096x4096, but more macroblocks than 1920x1088
+        EncoderInfo encoder = new EncoderInfo("c2.fake", "video/avc", true, 176, 4096, 144, 4096, 16, 16,
+                EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, new EncoderInfo.SizeRule() {
+                    public boolean isSupported(int width, int height) {
+                        return width * height <= 1920 * 1088;
+                    }
+                });
+        int[] size = encoder.clampSize(2160, 2160);
+        assertTrue(size[0] * size[1] <= 1920 * 1088);
+        assertTrue(size[0] * size[1] > 0.9 * 0.9 * 1920 * 1088);
+        assertEquals(size[0], size[1]);
+        assertEquals(0, size[0] % 16);
+
+        assertArrayEquals(new int[] { 1920, 1088 }, encoder.clampSize(1920, 1088));
+    }
+
+    @Test
+    public void keepsTheRangeSizeIfTheRuleRefusesAll() {
+        EncoderInfo encoder = new EncoderInfo("c2.fake", "video/avc", true, 176, 4096, 144, 2160, 16, 16,
+                EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, new EncoderInfo.SizeRule() {
+                    public boolean isSupported(int width, int height) {
+                        return false;
+                    }
+                });
+        assertArrayEquals(new int[] { 1280, 720 }, encoder.clampSize(1280, 720));
+    }
+
+    @Test
+    public void clampsTheBitrate() {
+        EncoderInfo encoder = new EncoderInfo("c2.fake", "video/avc", true, 0, 0, 0, 0, 0, 0,
+                20000000, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+        assertEquals(8000000, encoder.clampBitrate(8000000));
+        assertEquals(20000000, encoder.clampBitrate(50000000));
+
+        EncoderInfo unknown = new EncoderInfo("c2.fake", "video/avc", true, 0, 0, 0, 0, 0, 0,
+                EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+        assertEquals(50000000, unknown.clampBitrate(50000000));
+    }
+
+    private static EncoderInfo encoder(int maxWidth, int maxHeight, int widthAlignment, int heightAlignment) {
+        return new EncoderInfo("c2.fake", "video/avc", true, 2, maxWidth, 2, maxHeight, widthAlignment, heightAlignment,
+                EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+    }
+
+}
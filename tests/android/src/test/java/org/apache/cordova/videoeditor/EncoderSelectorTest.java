@@ -0,0 +1,57 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EncoderSelectorTest {
+
+    private static final String AVC = CustomAndroidFormatStrategy.VIDEO_MIME_AVC;
+    private static final String HEVC = CustomAndroidFormatStrategy.VIDEO_MIME_HEVC;
+
+    @Test
+    public void prefersHardwareListedAfterSoftware() {
+        EncoderInfo software = FakeCodecCapabilityProvider.encoder("c2.android.avc.encoder", AVC, false);
+        EncoderInfo hardware = FakeCodecCapabilityProvider.encoder("c2.qti.avc.encoder", AVC, true);
+        EncoderInfo second = FakeCodecCapabilityProvider.encoder("c2.exynos.avc.encoder", AVC, true);
+        EncoderSelector selector = new EncoderSelector(
+                new FakeCodecCapabilityProvider().add(software).add(hardware).add(second));
+        assertSame(hardware, selector.select(AVC));
+        assertTrue(selector.hasHardwareEncoder(AVC));
+    }
+
+    @Test
+    public void fallsBackToTheFirstSoftwareEncoder() {
+        EncoderInfo first = FakeCodecCapabilityProvider.encoder("c2.android.hevc.encoder", HEVC, false);
+        EncoderInfo second = FakeCodecCapabilityProvider.encoder("OMX.google.hevc.encoder", HEVC, false);
+        EncoderSelector selector = new EncoderSelector(new FakeCodecCapabilityProvider().add(first).add(second));
+        assertSame(first, selector.select(HEVC));
+        assertFalse(selector.hasHardwareEncoder(HEVC));
+    }
+
+    @Test
+    public void noEncoderForAType() {
+        EncoderSelector selector = new EncoderSelector(new FakeCodecCapabilityProvider()
+                .add(FakeCodecCapabilityProvider.encoder("c2.qti.avc.encoder", AVC, true)));
+        assertNull(selector.select(HEVC));
+        assertFalse(selector.hasHardwareEncoder(HEVC));
+    }
+
+    @Test
+    public void queriesTheCodecListOncePerType() {
+        FakeCodecCapabilityProvider provider = new FakeCodecCapabilityProvider()
+                .add(FakeCodecCapabilityProvider.encoder("c2.qti.avc.encoder", AVC, true));
+        EncoderSelector selector = new EncoderSelector(provider);
+        selector.select(AVC);
+        selector.select(AVC);
+        selector.hasHardwareEncoder(AVC);
+        selector.select(HEVC);
+        selector.select(HEVC);
+        assertEquals(2, provider.getQueryCount());
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CodecCapabilityProvider over a fixed table of encoders, listed in the
+ * order they were added, that counts how often it was asked.
+ */
+public class FakeCodecCapabilityProvider implements CodecCapabilityProvider {
+
+    private final Map<String, List<EncoderInfo>> encoders = new HashMap<String, List<EncoderInfo>>();
+    private int queryCount;
+
+    public synchronized FakeCodecCapabilityProvider add(EncoderInfo encoder) {
+        List<EncoderInfo> list = encoders.get(encoder.mime);
+        if (list == null) {
+            list = new ArrayList<EncoderInfo>();
+            encoders.put(encoder.mime, list);
+        }
+        list.add(encoder);
+        return this;
+    }
+
+    @Override
+    public synchronized List<EncoderInfo> getEncoders(String mime) {
+        queryCount++;
+        List<EncoderInfo> list = encoders.get(mime);
+        return list != null ? new ArrayList<EncoderInfo>(list) : new ArrayList<EncoderInfo>();
+    }
+
+    public synchronized int getQueryCount() {
+        return queryCount;
+    }
+
+    /**
+     * An encoder with the usual ranges of a phone: 176x144 to 4096x2160,
+     * 16 pixel alignment, 40 Mbps.
+     */
+    public static EncoderInfo encoder(String name, String mime, boolean hardware) {
+        return new EncoderInfo(name, mime, hardware, 176, 4096, 144, 2160, 16, 16, 40000000,
+                EncoderInfo.UNKNOWN, EncoderInfo.UNKNOWN);
+    }
+
+}
@@ -0,0 +1,44 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * FileResolver over a directory: "file:///name" and "name" both stand for
+ * a file in it, nothing outside of it can be reached.
+ */
+public class FakeFileResolver implements FileResolver {
+
+    private static final String FILE_PREFIX = "file:///";
+
+    private final File root;
+
+    public FakeFileResolver(File root) {
+        this.root = root;
+    }
+
+    public File fileOf(String url) {
+        String name = url.startsWith(FILE_PREFIX) ? url.substring(FILE_PREFIX.length()) : url;
+        return new File(root, name);
+    }
+
+    @Override
+    public MediaInput resolveInput(String url) throws IOException {
+        File file = fileOf(url);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(url);
+        }
+        return MediaInput.fromFile(file);
+    }
+
+    @Override
+    public File resolveOutputDirectory(String url) throws IOException {
+        File directory = fileOf(url);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return null;
+        }
+        return directory;
+    }
+
+}
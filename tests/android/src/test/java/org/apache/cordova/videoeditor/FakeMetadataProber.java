@@ -0,0 +1,39 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MetadataProber that answers from a table keyed by the input's string
+ * form and counts how often it was asked.
+ */
+public class FakeMetadataProber implements MetadataProber {
+
+    private final Map<String, VideoProbe> probes = new HashMap<String, VideoProbe>();
+    private final AtomicInteger probeCount = new AtomicInteger();
+
+    public synchronized FakeMetadataProber add(MediaInput input, VideoProbe probe) {
+        probes.put(input.toString(), probe);
+        return this;
+    }
+
+    @Override
+    public VideoProbe probe(MediaInput input) throws IOException {
+        probeCount.incrementAndGet();
+        VideoProbe probe;
+        synchronized (this) {
+            probe = probes.get(input.toString());
+        }
+        if (probe == null) {
+            throw new IllegalArgumentException("no video track in " + input);
+        }
+        return probe;
+    }
+
+    public int getProbeCount() {
+        return probeCount.get();
+    }
+
+}
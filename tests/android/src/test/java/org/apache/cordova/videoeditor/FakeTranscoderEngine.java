@@ -0,0 +1,141 @@
+package org.apache.cordova.videoeditor;
+
+import java.io.FileDescriptor;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.ypresto.androidtranscoder.format.MediaFormatStrategy;
+
+/**
+ * TranscoderEngine whose sessions do nothing until the test drives them:
+ * each transcode call returns a Session to report progress, complete or
+ * fail through. Canceling a session's Future calls onCanceled, like the
+ * library does.
+ */
+public class FakeTranscoderEngine implements TranscoderEngine {
+
+    public static class Session implements Future<Void> {
+
+        public final String outputPath;
+        public final MediaFormatStrategy formatStrategy;
+        public final long durationUs;
+        private final Listener listener;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private boolean over;
+        private volatile boolean canceled;
+        private volatile Exception failure;
+
+        Session(String outputPath, MediaFormatStrategy formatStrategy, Listener listener, long durationUs) {
+            this.outputPath = outputPath;
+            this.formatStrategy = formatStrategy;
+            this.listener = listener;
+            this.durationUs = durationUs;
+        }
+
+        public void progress(double progress) {
+            if (!isOver()) {
+                listener.onProgress(progress);
+            }
+        }
+
+        public void complete() {
+            if (finish()) {
+                listener.onCompleted();
+                done.countDown();
+            }
+        }
+
+        public void fail(Exception exception) {
+            if (finish()) {
+                failure = exception;
+                listener.onFailed(exception);
+                done.countDown();
+            }
+        }
+
+        /**
+         * Claims the end of the session. The listener hears of it before
+         * get returns, so the job has seen the outcome by then.
+         */
+        private synchronized boolean finish() {
+            if (over) {
+                return false;
+            }
+            over = true;
+            return true;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!finish()) {
+                return false;
+            }
+            canceled = true;
+            listener.onCanceled();
+            done.countDown();
+            return true;
+        }
+
+        private synchronized boolean isOver() {
+            return over;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return canceled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            done.await();
+            return result();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return result();
+        }
+
+        private Void result() throws ExecutionException {
+            if (canceled) {
+                throw new CancellationException();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return null;
+        }
+    }
+
+    private final List<Session> sessions = new CopyOnWriteArrayList<Session>();
+
+    @Override
+    public Future<Void> transcode(FileDescriptor input, String outputPath, MediaFormatStrategy formatStrategy,
+                                  Listener listener, long durationUs) {
+        Session session = new Session(outputPath, formatStrategy, listener, durationUs);
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * Every session started so far, in order.
+     */
+    public List<Session> getSessions() {
+        return sessions;
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FrameDecimatorTest {
+
+    @Test
+    public void keeps24Of60FramesInA3To2Cadence() {
+        FrameDecimator decimator = new FrameDecimator(24);
+        List<Integer> kept = new ArrayList<Integer>();
+        for (int i = 0; i < 600; i++) {
+            if (decimator.keep(i * 1000000L / 60)) {
+                kept.add(i);
+            }
+        }
+        assertEquals(240, decimator.getKept());
+        assertEquals(360, decimator.getDropped());
+        assertEquals(Arrays.asList(0, 3, 5, 8, 10), kept.subList(0, 5));
+        for (int i = 1; i < kept.size(); i++) {
+            int gap = kept.get(i) - kept.get(i - 1);
+            assertTrue("gap of " + gap + " at frame " + kept.get(i), gap == 2 || gap == 3);
+        }
+    }
+
+    @Test
+    public void slotsStartAtTheFirstFrame() {
+        FrameDecimator decimator = new FrameDecimator(30);
+        assertTrue(decimator.keep(5000000));
+        assertFalse(decimator.keep(5016667));
+        assertTrue(decimator.keep(5033333));
+    }
+
+    @Test
+    public void jitterWithinTheToleranceKeepsEveryFrame() {
+        FrameDecimator decimator = new FrameDecimator(30);
+        for (int i = 0; i < 300; i++) {
+            long jitterUs = i % 2 == 0 ? -FrameDecimator.TOLERANCE_US / 2 : FrameDecimator.TOLERANCE_US / 2;
+            assertTrue("frame " + i, decimator.keep(Math.max(0, i * 1000000L / 30 + jitterUs)));
+        }
+        assertEquals(0, decimator.getDropped());
+    }
+
+    @Test
+    public void jitterBeyondTheToleranceDropsAFrame() {
+        FrameDecimator decimator = new FrameDecimator(30);
+        assertTrue(decimator.keep(0));
+        assertFalse(decimator.keep(33333 - 2 * FrameDecimator.TOLERANCE_US));
+    }
+
+    @Test
+    public void followsTheTimesOfAVariableFrameRate() {
+        // a burst, a gap of two slots, then frames at 10ms again
+        long[] times = { 0, 10000, 20000, 100000, 110000, 300000, 310000 };
+        boolean[] expected = { true, false, false, true, false, true, false };
+        FrameDecimator decimator = new FrameDecimator(10);
+        for (int i = 0; i < times.length; i++) {
+            assertEquals("frame at " + times[i], expected[i], decimator.keep(times[i]));
+        }
+    }
+
+    @Test
+    public void keepsEveryFrameOfASlowerSource() {
+        FrameDecimator decimator = new FrameDecimator(30);
+        for (int i = 0; i < 150; i++) {
+            assertTrue(decimator.keep(i * 1000000L / 15));
+        }
+        assertEquals(150, decimator.getKept());
+    }
+
+    @Test
+    public void noFrameRateKeepsEveryFrame() {
+        FrameDecimator decimator = new FrameDecimator(0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(decimator.keep(i * 1000L));
+        }
+        assertEquals(10, decimator.getKept());
+        assertEquals(0, decimator.getDropped());
+    }
+
+}
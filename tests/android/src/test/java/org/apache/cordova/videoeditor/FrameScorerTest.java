@@ -0,0 +1,134 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FrameScorerTest {
+
+    static final int WIDTH = 96;
+    static final int HEIGHT = 54;
+
+    @Test
+    public void ranksBlackFlatAndDetailedFrames() {
+        FrameScorer scorer = new FrameScorer();
+        FrameScorer.Score black = scorer.score(0, uniform(0), WIDTH, HEIGHT);
+        FrameScorer.Score flat = scorer.score(1000000, gradient(), WIDTH, HEIGHT);
+        FrameScorer.Score detailed = scorer.score(2000000, detailed(42), WIDTH, HEIGHT);
+
+        assertEquals(0, black.total, 1e-9);
+        assertTrue(flat + " vs " + black, flat.total > black.total);
+        assertTrue(detailed + " vs " + flat, detailed.total > flat.total);
+        assertTrue(detailed.sharpness > flat.sharpness);
+        assertSame(detailed, scorer.getBest());
+    }
+
+    @Test
+    public void rulesOutUniformFrames() {
+        FrameScorer scorer = new FrameScorer();
+        // well exposed, but nothing to see
+        FrameScorer.Score gray = scorer.score(0, uniform(0x73), WIDTH, HEIGHT);
+        FrameScorer.Score white = scorer.score(1000000, uniform(0xff), WIDTH, HEIGHT);
+        assertEquals(0, gray.detail, 1e-9);
+        assertEquals(0, gray.total, 1e-9);
+        assertEquals(0, white.total, 1e-9);
+    }
+
+    @Test
+    public void penalizesClippedFrames() {
+        FrameScorer scorer = new FrameScorer();
+        FrameScorer.Score dark = scorer.score(0, scaled(detailed(42), 0.1), WIDTH, HEIGHT);
+        FrameScorer.Score exposed = scorer.score(1000000, detailed(42), WIDTH, HEIGHT);
+        assertTrue(dark.exposure < exposed.exposure);
+        assertTrue(dark.total < exposed.total);
+    }
+
+    @Test
+    public void measuresSceneChangeToThePreviousFrame() {
+        FrameScorer scorer = new FrameScorer();
+        assertEquals(0, scorer.score(0, detailed(1), WIDTH, HEIGHT).sceneChange, 1e-9);
+        assertTrue(scorer.score(1000000, detailed(2), WIDTH, HEIGHT).sceneChange < 0.1);
+        assertTrue(scorer.score(2000000, uniform(0), WIDTH, HEIGHT).sceneChange > 0.9);
+        assertEquals(3, scorer.getScores().size());
+    }
+
+    @Test
+    public void bestIsTheEarliestOnATie() {
+        FrameScorer scorer = new FrameScorer();
+        FrameScorer.Score first = scorer.score(0, uniform(0), WIDTH, HEIGHT);
+        scorer.score(1000000, uniform(0), WIDTH, HEIGHT);
+        assertSame(first, scorer.getBest());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooFewPixels() {
+        new FrameScorer().score(0, new int[WIDTH], WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void picksSyncSamplesFromTheStart() {
+        long[] syncTimes = { 0, 2000000, 4000000, 6000000, 8000000, 10000000 };
+        assertArrayEquals(new long[] { 4000000, 6000000, 8000000, 10000000 },
+                FrameScorer.pickTimes(syncTimes, 3000000, 12000000, 8));
+        assertArrayEquals(new long[] { 0, 4000000, 10000000 },
+                FrameScorer.pickTimes(syncTimes, 0, 12000000, 3));
+    }
+
+    @Test
+    public void spreadsTimesWithoutSyncSamples() {
+        assertArrayEquals(new long[] { 2000000, 4000000, 6000000, 8000000 },
+                FrameScorer.pickTimes(new long[0], 2000000, 10000000, 4));
+        assertArrayEquals(new long[] { 12000000 },
+                FrameScorer.pickTimes(new long[] { 1000000 }, 12000000, 10000000, 4));
+    }
+
+    static int[] uniform(int luma) {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = gray(luma);
+        }
+        return argb;
+    }
+
+    /** a smooth ramp, like a sky or a wall: exposed well, no edges */
+    static int[] gradient() {
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                argb[y * WIDTH + x] = gray(40 + x * 160 / WIDTH);
+            }
+        }
+        return argb;
+    }
+
+    /** mid tones with texture all over */
+    static int[] detailed(long seed) {
+        Random random = new Random(seed);
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = 0xff000000 | (30 + random.nextInt(190)) << 16 | (30 + random.nextInt(190)) << 8 | (30 + random.nextInt(190));
+        }
+        return argb;
+    }
+
+    private static int[] scaled(int[] argb, double factor) {
+        int[] scaled = new int[argb.length];
+        for (int i = 0; i < argb.length; i++) {
+            int r = (int) (((argb[i] >> 16) & 0xff) * factor);
+            int g = (int) (((argb[i] >> 8) & 0xff) * factor);
+            int b = (int) ((argb[i] & 0xff) * factor);
+            scaled[i] = 0xff000000 | r << 16 | g << 8 | b;
+        }
+        return scaled;
+    }
+
+    private static int gray(int luma) {
+        return 0xff000000 | luma << 16 | luma << 8 | luma;
+    }
+
+}
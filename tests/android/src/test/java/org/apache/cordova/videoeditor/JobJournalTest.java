@@ -0,0 +1,268 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JobJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "journal");
+    }
+
+    @Test
+    public void forgetsADeliveredJob() throws Exception {
+        JobJournal journal = new JobJournal(directory);
+        RecordingCallback target = new RecordingCallback();
+        JobJournal.Callback callback = journal.open("a", "transcodeVideo", options("a"), target);
+        journal.markRunning("a");
+        assertEquals(1, journalFiles().length);
+
+        callback.success("done");
+        assertEquals("done", target.getFinalResult().getValue());
+        assertEquals(0, journalFiles().length);
+        assertTrue(new JobJournal(directory).recover().isEmpty());
+    }
+
+    @Test
+    public void keepsAnUndeliveredResultForAttach() throws Exception {
+        JobJournal journal = new JobJournal(directory);
+        journal.open("a", "transcodeVideo", options("a"), null).success("done");
+
+        JobJournal restarted = new JobJournal(directory);
+        assertTrue(restarted.recover().isEmpty());
+        assertEquals("a", restarted.getUndelivered().getString(0));
+
+        RecordingCallback target = new RecordingCallback();
+        assertTrue(restarted.attach("a", target));
+        assertEquals(PluginResult.Status.OK.ordinal(), target.getFinalResult().getStatus());
+        assertEquals("done", target.getFinalResult().getValue());
+        assertEquals(0, restarted.getUndelivered().length());
+        assertFalse(restarted.attach("a", new RecordingCallback()));
+        assertEquals(0, journalFiles().length);
+    }
+
+    @Test
+    public void startsAnInterruptedJobOver() throws Exception {
+        JobJournal journal = new JobJournal(directory);
+        journal.open("a", "transcodeVideo", options("a"), new RecordingCallback());
+        journal.markRunning("a");
+
+        List<JSONObject> interrupted = new JobJournal(directory).recover();
+        assertEquals(1, interrupted.size());
+        assertEquals("a", interrupted.get(0).getString("jobId"));
+        assertEquals("transcodeVideo", interrupted.get(0).getString("action"));
+        assertEquals("a", interrupted.get(0).getJSONObject("options").getString("jobId"));
+    }
+
+    @Test
+    public void failsAJobInterruptedMaxAttemptsTimes() throws Exception {
+        JobJournal journal = new JobJournal(directory);
+        journal.open("a", "transcodeVideo", options("a"), new RecordingCallback());
+        for (int attempt = 2; attempt <= JobJournal.MAX_ATTEMPTS; attempt++) {
+            journal = new JobJournal(directory);
+            assertEquals(1, journal.recover().size());
+            journal.open("a", "transcodeVideo", options("a"), null);
+            journal.markRunning("a");
+        }
+
+        JobJournal restarted = new JobJournal(directory);
+        assertTrue(restarted.recover().isEmpty());
+        RecordingCallback target = new RecordingCallback();
+        assertTrue(restarted.attach("a", target));
+        assertEquals(PluginResult.Status.ERROR.ordinal(), target.getFinalResult().getStatus());
+        assertEquals("job interrupted " + JobJournal.MAX_ATTEMPTS + " times, not started again",
+                target.getFinalResult().getValue());
+    }
+
+    @Test
+    public void dropsResultsOlderThanMaxAge() throws Exception {
+        JSONObject old = doneEntry("old", System.currentTimeMillis() - JobJournal.MAX_AGE_MS - 1000);
+        JSONObject recent = doneEntry("recent", System.currentTimeMillis() - JobJournal.MAX_AGE_MS / 2);
+        directory.mkdirs();
+        write(new File(directory, "old.json"), old.toString());
+        write(new File(directory, "recent.json"), recent.toString());
+
+        JobJournal journal = new JobJournal(directory);
+        assertTrue(journal.recover().isEmpty());
+        assertEquals(1, journal.getUndelivered().length());
+        assertEquals("recent", journal.getUndelivered().getString(0));
+        assertFalse(new File(directory, "old.json").exists());
+        assertFalse(journal.attach("old", new RecordingCallback()));
+    }
+
+    @Test
+    public void deletesWorkFilesAndTheirSiblings() throws Exception {
+        File output = folder.newFile("out.mp4");
+        File part = folder.newFile("out.mp4.part0");
+        File temp = folder.newFile("out.mp4.tmp");
+        File other = folder.newFile("out.mp4-other.mp4");
+        File unrelated = folder.newFile("out.mp");
+
+        JobJournal journal = new JobJournal(directory);
+        journal.open("a", "transcodeVideo", options("a"), new RecordingCallback());
+        journal.markRunning("a");
+        journal.addWorkFile("a", output.getAbsolutePath());
+
+        assertEquals(1, new JobJournal(directory).recover().size());
+        assertFalse(output.exists());
+        assertFalse(part.exists());
+        assertFalse(temp.exists());
+        assertTrue(other.exists());
+        assertTrue(unrelated.exists());
+    }
+
+    @Test
+    public void keepsWorkFilesOfAFinishedJob() throws Exception {
+        File output = folder.newFile("out.mp4");
+        JobJournal journal = new JobJournal(directory);
+        JobJournal.Callback callback = journal.open("a", "transcodeVideo", options("a"), null);
+        journal.addWorkFile("a", output.getAbsolutePath());
+        callback.success("done");
+
+        assertTrue(new JobJournal(directory).recover().isEmpty());
+        assertTrue(output.exists());
+    }
+
+    @Test
+    public void removesTempFilesAndBrokenEntries() throws Exception {
+        JobJournal journal = new JobJournal(directory);
+        journal.open("a", "transcodeVideo", options("a"), new RecordingCallback());
+        // a save killed halfway and one that never got an id
+        File temp = new File(directory, "b.json.tmp");
+        File broken = new File(directory, "c.json");
+        File anonymous = new File(directory, "d.json");
+        write(temp, "{\"jobId\":\"b\",\"sta");
+        write(broken, "{\"jobId\":");
+        write(anonymous, "{\"state\":\"running\"}");
+
+        List<JSONObject> interrupted = new JobJournal(directory).recover();
+        assertEquals(1, interrupted.size());
+        assertEquals("a", interrupted.get(0).getString("jobId"));
+        assertFalse(temp.exists());
+        assertFalse(broken.exists());
+        assertFalse(anonymous.exists());
+        assertEquals(1, journalFiles().length);
+    }
+
+    @Test
+    public void keepsJobIdsOutOfThePath() throws Exception {
+        JobJournal journal = new JobJournal(directory);
+        journal.open("../../a", "transcodeVideo", options("../../a"), new RecordingCallback());
+
+        File[] files = journalFiles();
+        assertEquals(1, files.length);
+        assertEquals(directory, files[0].getParentFile());
+        assertEquals("../../a", new JobJournal(directory).recover().get(0).getString("jobId"));
+    }
+
+    @Test
+    public void attachRacingFinishDeliversOnce() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            final JobJournal journal = new JobJournal(directory);
+            final String jobId = "job" + i;
+            final JobJournal.Callback callback = journal.open(jobId, "transcodeVideo", options(jobId), null);
+            final RecordingCallback target = new RecordingCallback();
+            final boolean[] attached = new boolean[1];
+            final CountDownLatch start = new CountDownLatch(1);
+
+            Thread finisher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    callback.success("done");
+                }
+            });
+            Thread attacher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    attached[0] = journal.attach(jobId, target);
+                }
+            });
+            finisher.start();
+            attacher.start();
+            start.countDown();
+            finisher.join();
+            attacher.join();
+
+            assertTrue(attached[0]);
+            assertEquals(1, target.getResults().size());
+            assertNotNull(target.getFinalResult());
+            assertEquals("done", target.getFinalResult().getValue());
+            assertEquals(0, journal.getUndelivered().length());
+            assertEquals(0, journalFiles().length);
+        }
+    }
+
+    @Test
+    public void unknownJobDoesNotAttach() throws Exception {
+        JobJournal journal = new JobJournal(directory);
+        RecordingCallback target = new RecordingCallback();
+        assertFalse(journal.attach("a", target));
+        assertNull(target.getFinalResult());
+    }
+
+    private static JSONObject options(String jobId) throws Exception {
+        JSONObject options = new JSONObject();
+        options.put("jobId", jobId);
+        options.put("fileUri", "file:///a.mp4");
+        return options;
+    }
+
+    private static JSONObject doneEntry(String jobId, long updatedAt) throws Exception {
+        JSONObject entry = new JSONObject();
+        entry.put("jobId", jobId);
+        entry.put("action", "transcodeVideo");
+        entry.put("options", options(jobId));
+        entry.put("state", JobJournal.STATE_DONE);
+        entry.put("ok", true);
+        entry.put("result", "done");
+        entry.put("updatedAt", updatedAt);
+        return entry;
+    }
+
+    private File[] journalFiles() {
+        File[] files = directory.listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    private static void write(File file, String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,383 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JobManagerTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+    private static final long MB = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JobManager manager;
+    private FakeTranscoderEngine engine;
+    private FakeFileResolver resolver;
+    private VideoEditor editor;
+    private int sessionsSeen;
+    private final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        manager = new JobManager(1, new AdmissionController(100 * MB, 4));
+        engine = new FakeTranscoderEngine();
+        resolver = new FakeFileResolver(folder.getRoot());
+        editor = new VideoEditor(resolver, new FakeMetadataProber(), engine);
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    public void startsHigherPrioritiesFirstThenInSubmissionOrder() throws Exception {
+        CountDownLatch blocker = blockSlot();
+        CountDownLatch done = new CountDownLatch(4);
+        submit("low-1", 0, done);
+        submit("low-2", 0, done);
+        submit("high", 5, done);
+        submit("negative", -1, done);
+
+        blocker.countDown();
+        await(done);
+        assertEquals(Arrays.asList("blocker", "high", "low-1", "low-2", "negative"), started);
+    }
+
+    @Test
+    public void setPriorityMovesAQueuedJob() throws Exception {
+        CountDownLatch blocker = blockSlot();
+        CountDownLatch done = new CountDownLatch(3);
+        submit("a", 0, done);
+        submit("b", 0, done);
+        submit("c", 0, done);
+
+        assertTrue(manager.setPriority("c", 1));
+        blocker.countDown();
+        await(done);
+        assertEquals(Arrays.asList("blocker", "c", "a", "b"), started);
+    }
+
+    @Test
+    public void cancelDropsAQueuedJob() throws Exception {
+        CountDownLatch blocker = blockSlot();
+        CountDownLatch done = new CountDownLatch(1);
+        RecordingCallback canceled = submit("canceled", 0, null);
+        submit("next", 0, done);
+
+        assertTrue(manager.cancel("canceled"));
+        assertFalse(manager.cancel("canceled"));
+        blocker.countDown();
+        await(done);
+
+        assertEquals(Arrays.asList("blocker", "next"), started);
+        assertEquals(VideoJob.State.CANCELED, manager.getJob("canceled").getState());
+        assertEquals(PluginResult.Status.ERROR.ordinal(), canceled.getFinalResult().getStatus());
+        assertEquals("job canceled", canceled.getFinalResult().getValue());
+    }
+
+    @Test
+    public void cancelStopsTheSessionOfARunningJob() throws Exception {
+        RecordingCallback callback = submitSession("running", 0);
+        FakeTranscoderEngine.Session session = nextSession("running");
+
+        assertTrue(manager.cancel("running"));
+        assertTrue(session.isCancelled());
+        assertEquals(VideoJob.State.CANCELED, manager.getJob("running").getState());
+        assertEquals("transcode canceled", callback.getFinalResult().getValue());
+    }
+
+    @Test
+    public void pausedQueuedJobWaitsForResume() throws Exception {
+        CountDownLatch blocker = blockSlot();
+        CountDownLatch done = new CountDownLatch(2);
+        submit("paused", 5, done);
+        submit("other", 0, done);
+
+        assertTrue(manager.pause("paused"));
+        assertEquals(VideoJob.State.PAUSED, manager.getJob("paused").getState());
+        blocker.countDown();
+        waitFor("other");
+        assertEquals(Arrays.asList("blocker", "other"), started);
+
+        assertTrue(manager.resume("paused"));
+        await(done);
+        assertEquals(Arrays.asList("blocker", "other", "paused"), started);
+    }
+
+    @Test
+    public void pausedRunningJobStartsOverOnResume() throws Exception {
+        RecordingCallback callback = submitSession("job", 0);
+        FakeTranscoderEngine.Session first = nextSession("job");
+        first.progress(0.5);
+
+        assertTrue(manager.pause("job"));
+        assertTrue(first.isCancelled());
+        waitForState("job", VideoJob.State.PAUSED);
+        assertNull(callback.getFinalResult());
+
+        assertTrue(manager.resume("job"));
+        FakeTranscoderEngine.Session second = nextSession("job");
+        second.complete();
+        waitForState("job", VideoJob.State.COMPLETED);
+        assertEquals(Arrays.asList("job", "job"), started);
+        assertEquals(Arrays.asList(first, second), engine.getSessions());
+        assertEquals("done", callback.getFinalResult().getValue());
+    }
+
+    @Test
+    public void failedSessionFailsTheJob() throws Exception {
+        RecordingCallback callback = submitSession("job", 0);
+        nextSession("job").fail(new IllegalStateException("boom"));
+
+        waitForState("job", VideoJob.State.FAILED);
+        assertEquals("java.lang.IllegalStateException: boom", callback.getFinalResult().getValue());
+    }
+
+    @Test
+    public void sessionReportsProgressAndCompletes() throws Exception {
+        RecordingCallback callback = submitSession("job", 0);
+        FakeTranscoderEngine.Session session = nextSession("job");
+        assertEquals(folder.getRoot() + "/out.mp4", session.outputPath);
+        assertEquals(0, session.durationUs);
+
+        session.progress(0.5);
+        assertEquals(1, callback.getResults().size());
+        assertTrue(callback.getResults().get(0).getKeepCallback());
+        session.complete();
+        waitForState("job", VideoJob.State.COMPLETED);
+        assertEquals("done", callback.getFinalResult().getValue());
+    }
+
+    @Test
+    public void createJobRefusesAnIdInUse() throws Exception {
+        CountDownLatch blocker = blockSlot();
+        assertNull(manager.createJob("blocker", "transcodeVideo", new RecordingCallback()));
+        assertNotNull(manager.createJob(null, "transcodeVideo", new RecordingCallback()));
+        blocker.countDown();
+        waitForState("blocker", VideoJob.State.COMPLETED);
+        assertNotNull(manager.createJob("blocker", "transcodeVideo", new RecordingCallback()));
+    }
+
+    @Test
+    public void jobOverTheBudgetWaitsForRelease() throws Exception {
+        manager.shutdown();
+        manager = new JobManager(2, new AdmissionController(100 * MB, 4));
+        final CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        VideoJob big = manager.createJob("big", "transcodeVideo", new RecordingCallback());
+        manager.submit(big, 0, new AdmissionController.Cost(80 * MB, 1), work(big, release, null));
+        waitFor("big");
+        VideoJob second = manager.createJob("second", "transcodeVideo", new RecordingCallback());
+        manager.submit(second, 0, new AdmissionController.Cost(40 * MB, 1), work(second, null, done));
+
+        Thread.sleep(100);
+        assertEquals(VideoJob.State.QUEUED, second.getState());
+        assertEquals(1, manager.toJSON().getInt("waitingForBudget"));
+        release.countDown();
+        await(done);
+        assertEquals(Arrays.asList("big", "second"), started);
+    }
+
+    @Test
+    public void estimatesTheCostOnTheJobThread() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final List<Thread> estimatedOn = Collections.synchronizedList(new ArrayList<Thread>());
+        CountDownLatch done = new CountDownLatch(1);
+        final VideoJob job = manager.createJob("job", "transcodeVideo", new RecordingCallback());
+        final Runnable work = work(job, null, done);
+        manager.submit(job, 0, new JobManager.Work() {
+            protected AdmissionController.Cost estimateCost() {
+                estimatedOn.add(Thread.currentThread());
+                return new AdmissionController.Cost(10 * MB, 2);
+            }
+
+            public void run() {
+                work.run();
+            }
+        });
+
+        await(done);
+        assertEquals(1, estimatedOn.size());
+        assertNotSame(caller, estimatedOn.get(0));
+        assertEquals(VideoJob.State.COMPLETED, job.getState());
+    }
+
+    @Test
+    public void jobFailedInEstimateNeverRuns() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        final VideoJob job = manager.createJob("job", "transcodeVideo", callback);
+        final CountDownLatch notAdmitted = new CountDownLatch(1);
+        manager.submit(job, 0, new JobManager.Work() {
+            protected AdmissionController.Cost estimateCost() {
+                job.error(JobError.CODEC_BUDGET_EXCEEDED, "needs 6 codecs");
+                return null;
+            }
+
+            protected void onNotAdmitted() {
+                notAdmitted.countDown();
+            }
+
+            public void run() {
+                started.add(job.getId());
+            }
+        });
+
+        await(notAdmitted);
+        assertTrue(started.isEmpty());
+        assertEquals(VideoJob.State.FAILED, job.getState());
+        JSONObject error = (JSONObject) callback.getFinalResult().getValue();
+        assertEquals(JobError.CODEC_BUDGET_EXCEEDED, error.getString("code"));
+    }
+
+    @Test
+    public void failedProbeFailsTheJob() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        final VideoJob job = manager.createJob("job", "createThumbnail", callback);
+        manager.submit(job, 0, new JobManager.Work() {
+            protected AdmissionController.Cost estimateCost() throws IOException {
+                throw new FileNotFoundException("gone.mp4");
+            }
+
+            public void run() {
+                started.add(job.getId());
+            }
+        });
+
+        waitForState("job", VideoJob.State.FAILED);
+        assertTrue(started.isEmpty());
+        assertEquals("java.io.FileNotFoundException: gone.mp4", callback.getFinalResult().getValue());
+    }
+
+    @Test
+    public void rejectsCostsBeyondTheBudget() {
+        assertNull(manager.reject(new AdmissionController.Cost(10 * MB, 1)));
+        assertNotNull(manager.reject(new AdmissionController.Cost(10 * MB, 5)));
+    }
+
+    /**
+     * Occupies the only slot until the returned latch is counted down.
+     */
+    private CountDownLatch blockSlot() throws InterruptedException {
+        CountDownLatch blocker = new CountDownLatch(1);
+        VideoJob job = manager.createJob("blocker", "transcodeVideo", new RecordingCallback());
+        manager.submit(job, 100, work(job, blocker, null));
+        waitFor("blocker");
+        return blocker;
+    }
+
+    private RecordingCallback submit(String id, int priority, CountDownLatch done) {
+        RecordingCallback callback = new RecordingCallback();
+        VideoJob job = manager.createJob(id, "createThumbnail", callback);
+        manager.submit(job, priority, work(job, null, done));
+        return callback;
+    }
+
+    private Runnable work(final VideoJob job, final CountDownLatch blocker, final CountDownLatch done) {
+        return new Runnable() {
+            public void run() {
+                started.add(job.getId());
+                try {
+                    if (blocker != null) {
+                        blocker.await();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                job.success("done");
+                if (done != null) {
+                    done.countDown();
+                }
+            }
+        };
+    }
+
+    /**
+     * Submits a job that runs one session of the fake engine through
+     * VideoEditor, the way a transcode does.
+     */
+    private RecordingCallback submitSession(String id, int priority) throws IOException {
+        RecordingCallback callback = new RecordingCallback();
+        final VideoJob job = manager.createJob(id, "transcodeVideo", callback);
+        FileOutputStream out = new FileOutputStream(resolver.fileOf(id + ".mp4"));
+        out.close();
+        final MediaInput input = resolver.resolveInput(id + ".mp4");
+        final String outputPath = resolver.fileOf("out.mp4").getPath();
+        manager.submit(job, priority, new Runnable() {
+            public void run() {
+                started.add(job.getId());
+                ProgressDispatcher progress = new ProgressDispatcher(job, 0, 0, 10);
+                try {
+                    if (editor.runTranscoderSession(job, input, outputPath, null, progress, 0)) {
+                        job.success("done");
+                    }
+                } catch (Exception e) {
+                    job.error(e);
+                }
+            }
+        });
+        return callback;
+    }
+
+    /**
+     * The next session the engine started, once the job holds it.
+     */
+    private FakeTranscoderEngine.Session nextSession(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_SECONDS * 1000;
+        while (engine.getSessions().size() <= sessionsSeen) {
+            assertTrue("no session started", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        FakeTranscoderEngine.Session session = engine.getSessions().get(sessionsSeen++);
+        while (manager.getJob(jobId).getSession() != session) {
+            assertTrue("session not attached to " + jobId, System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        return session;
+    }
+
+    private void waitFor(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_SECONDS * 1000;
+        while (!started.contains(jobId)) {
+            assertTrue("job " + jobId + " didn't start", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private void waitForState(String jobId, VideoJob.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_SECONDS * 1000;
+        while (manager.getJob(jobId).getState() != state) {
+            assertTrue("job " + jobId + " is " + manager.getJob(jobId).getState(), System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        assertTrue("jobs didn't finish", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ParallelTranscoderTest {
+
+    private static final long SECOND_US = 1000000;
+
+    @Test
+    public void cutsAtTheSyncSamplesNearestEqualSegments() {
+        long[] syncTimes = every(2 * SECOND_US, 60 * SECOND_US);
+        assertArrayEquals(new long[] { 0, 20 * SECOND_US, 40 * SECOND_US },
+                ParallelTranscoder.cutPoints(syncTimes, 60 * SECOND_US, 3));
+        // 15s and 45s lie halfway between two keyframes, the earlier one wins
+        assertArrayEquals(new long[] { 0, 14 * SECOND_US, 30 * SECOND_US, 44 * SECOND_US },
+                ParallelTranscoder.cutPoints(syncTimes, 60 * SECOND_US, 4));
+    }
+
+    @Test
+    public void firstCutIsTheFirstSyncSample() {
+        long[] syncTimes = { 40000, 10 * SECOND_US, 20 * SECOND_US };
+        assertArrayEquals(new long[] { 40000 }, ParallelTranscoder.cutPoints(syncTimes, 30 * SECOND_US, 1));
+        assertEquals(40000, ParallelTranscoder.cutPoints(syncTimes, 30 * SECOND_US, 3)[0]);
+    }
+
+    @Test
+    public void keepsSegmentsAtLeastMinSegmentLong() {
+        // one keyframe at 3s: a cut there would leave a short first segment
+        long[] syncTimes = { 0, 3 * SECOND_US, 27 * SECOND_US };
+        assertArrayEquals(new long[] { 0 }, ParallelTranscoder.cutPoints(syncTimes, 30 * SECOND_US, 2));
+
+        long[] everySecond = every(SECOND_US, 12 * SECOND_US);
+        long[] cuts = ParallelTranscoder.cutPoints(everySecond, 12 * SECOND_US, 4);
+        assertArrayEquals(new long[] { 0, 6 * SECOND_US }, cuts);
+        for (int i = 1; i < cuts.length; i++) {
+            assertTrue(cuts[i] - cuts[i - 1] >= ParallelTranscoder.MIN_SEGMENT_US);
+        }
+        assertTrue(12 * SECOND_US - cuts[cuts.length - 1] >= ParallelTranscoder.MIN_SEGMENT_US);
+    }
+
+    @Test
+    public void sparseKeyframesGiveFewerSegments() {
+        // a keyframe every 20s can't make 4 segments of 15s
+        long[] syncTimes = every(20 * SECOND_US, 60 * SECOND_US);
+        assertArrayEquals(new long[] { 0, 20 * SECOND_US, 40 * SECOND_US },
+                ParallelTranscoder.cutPoints(syncTimes, 60 * SECOND_US, 4));
+    }
+
+    @Test
+    public void doesNotCutTwiceAtTheSameSyncSample() {
+        long[] syncTimes = { 0, 30 * SECOND_US };
+        assertArrayEquals(new long[] { 0, 30 * SECOND_US },
+                ParallelTranscoder.cutPoints(syncTimes, 60 * SECOND_US, 4));
+    }
+
+    @Test
+    public void noSyncSamplesNoCuts() {
+        assertEquals(0, ParallelTranscoder.cutPoints(new long[0], 60 * SECOND_US, 4).length);
+    }
+
+    private static long[] every(long intervalUs, long durationUs) {
+        long[] times = new long[(int) (durationUs / intervalUs)];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i * intervalUs;
+        }
+        return times;
+    }
+
+}
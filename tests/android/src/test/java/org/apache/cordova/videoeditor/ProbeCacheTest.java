@@ -0,0 +1,89 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProbeCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeFileResolver resolver;
+    private FakeMetadataProber prober;
+
+    @Before
+    public void setUp() {
+        resolver = new FakeFileResolver(folder.getRoot());
+        prober = new FakeMetadataProber();
+    }
+
+    @Test
+    public void probesEachFileOnce() throws Exception {
+        MediaInput a = addVideo("a.mp4", 10);
+        MediaInput b = addVideo("b.mp4", 20);
+        ProbeCache cache = new ProbeCache(4, prober);
+
+        VideoProbe first = cache.get(resolver.resolveInput("file:///a.mp4"));
+        assertSame(first, cache.get(resolver.resolveInput("a.mp4")));
+        cache.get(b);
+        cache.get(a);
+        assertEquals(2, prober.getProbeCount());
+        assertEquals(2, cache.toJSON().getInt("hits"));
+        assertEquals(2, cache.toJSON().getInt("misses"));
+    }
+
+    @Test
+    public void probesAChangedFileAgain() throws Exception {
+        MediaInput input = addVideo("a.mp4", 10);
+        ProbeCache cache = new ProbeCache(4, prober);
+        cache.get(input);
+
+        write(resolver.fileOf("a.mp4"), 30);
+        cache.get(input);
+        assertEquals(2, prober.getProbeCount());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() throws Exception {
+        MediaInput a = addVideo("a.mp4", 10);
+        MediaInput b = addVideo("b.mp4", 10);
+        MediaInput c = addVideo("c.mp4", 10);
+        ProbeCache cache = new ProbeCache(2, prober);
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+
+        cache.get(a);
+        assertEquals(3, prober.getProbeCount());
+        cache.get(b);
+        assertEquals(4, prober.getProbeCount());
+    }
+
+    private MediaInput addVideo(String name, int size) throws IOException {
+        File file = resolver.fileOf(name);
+        write(file, size);
+        MediaInput input = resolver.resolveInput(name);
+        prober.add(input, new VideoProbe(1280, 720, 0, 1000, 8 * size, size));
+        return input;
+    }
+
+    private static void write(File file, int size) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+    }
+
+}
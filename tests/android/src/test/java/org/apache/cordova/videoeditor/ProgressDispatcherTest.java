@@ -0,0 +1,118 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ProgressDispatcherTest {
+
+    private static final double DELTA = 1e-9;
+
+    private final ManualClock clock = new ManualClock();
+    private final List<Double> sent = new ArrayList<Double>();
+    private final List<JSONObject> payloads = new ArrayList<JSONObject>();
+
+    private final ProgressDispatcher.Target target = new ProgressDispatcher.Target() {
+        public void sendProgress(double progress, JSONObject payload) {
+            sent.add(progress);
+            payloads.add(payload);
+        }
+    };
+
+    @Test
+    public void sendsTheFirstUpdateRightAway() {
+        ProgressDispatcher dispatcher = new ProgressDispatcher(target, 250, 0.01, 10, clock);
+        dispatcher.onProgress(0);
+        assertEquals(1, sent.size());
+        assertEquals(0, sent.get(0), DELTA);
+    }
+
+    @Test
+    public void dropsUpdatesWithinTheInterval() {
+        ProgressDispatcher dispatcher = new ProgressDispatcher(target, 250, 0.01, 10, clock);
+        dispatcher.onProgress(0.1);
+        for (int i = 1; i <= 10; i++) {
+            clock.advance(20);
+            dispatcher.onProgress(0.1 + i * 0.02);
+        }
+        assertEquals(1, sent.size());
+
+        clock.advance(50);
+        dispatcher.onProgress(0.35);
+        assertEquals(2, sent.size());
+        assertEquals(0.35, sent.get(1), DELTA);
+    }
+
+    @Test
+    public void dropsUpdatesBelowTheStep() {
+        ProgressDispatcher dispatcher = new ProgressDispatcher(target, 0, 0.05, 10, clock);
+        dispatcher.onProgress(0.1);
+        clock.advance(1000);
+        dispatcher.onProgress(0.14);
+        assertEquals(1, sent.size());
+        dispatcher.onProgress(0.2);
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void finishSendsOneAndOnlyOnce() {
+        ProgressDispatcher dispatcher = new ProgressDispatcher(target, 250, 0.01, 10, clock);
+        dispatcher.onProgress(0.5);
+        // the final update comes from finish, not from the transcoder
+        dispatcher.onProgress(1);
+        assertEquals(1, sent.size());
+
+        dispatcher.finish();
+        dispatcher.finish();
+        assertEquals(2, sent.size());
+        assertEquals(1, sent.get(1), DELTA);
+    }
+
+    @Test
+    public void mapsPassesIntoTheirRangeWithinTheStage() {
+        ProgressDispatcher dispatcher = new ProgressDispatcher(target, 0, 0, 10, clock);
+        dispatcher.setStage(0.5, 1);
+        dispatcher.setRange(0, 0.8);
+        dispatcher.onProgress(0.5);
+        dispatcher.setRange(0.8, 1);
+        clock.advance(1);
+        dispatcher.onProgress(0.5);
+        assertEquals(0.7, sent.get(0), DELTA);
+        assertEquals(0.95, sent.get(1), DELTA);
+    }
+
+    @Test
+    public void payloadHasTimeAndEta() throws Exception {
+        ProgressDispatcher dispatcher = new ProgressDispatcher(target, 0, 0, 10, clock);
+        dispatcher.onProgress(0);
+        assertFalse(payloads.get(0).has("eta"));
+
+        clock.advance(2000);
+        dispatcher.onProgress(0.25);
+        JSONObject payload = payloads.get(1);
+        assertEquals(0.25, payload.getDouble("progress"), DELTA);
+        assertEquals(2.5, payload.getDouble("time"), DELTA);
+        assertTrue(payload.has("eta"));
+        assertEquals(6, payload.getDouble("eta"), DELTA);
+    }
+
+    static class ManualClock implements ProgressDispatcher.Clock {
+
+        private long now = 10000;
+
+        void advance(long ms) {
+            now += ms;
+        }
+
+        public long elapsedRealtime() {
+            return now;
+        }
+    }
+
+}
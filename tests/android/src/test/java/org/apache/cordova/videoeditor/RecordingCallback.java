@@ -0,0 +1,44 @@
+package org.apache.cordova.videoeditor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+/**
+ * CallbackContext that keeps every result sent to JS.
+ */
+public class RecordingCallback extends CallbackContext {
+
+    private final List<PluginResult> results = new ArrayList<PluginResult>();
+
+    public RecordingCallback() {
+        super("test", null);
+    }
+
+    @Override
+    public void sendPluginResult(PluginResult pluginResult) {
+        synchronized (this) {
+            if (!isFinished()) {
+                results.add(pluginResult);
+            }
+        }
+        super.sendPluginResult(pluginResult);
+    }
+
+    public synchronized List<PluginResult> getResults() {
+        return new ArrayList<PluginResult>(results);
+    }
+
+    /**
+     * The result that finished the callback, null while it's open.
+     */
+    public synchronized PluginResult getFinalResult() {
+        if (results.isEmpty() || results.get(results.size() - 1).getKeepCallback()) {
+            return null;
+        }
+        return results.get(results.size() - 1);
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.apache.cordova.videoeditor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class TranscodeOptionsTest {
+
+    @Test
+    public void appliesDefaults() throws Exception {
+        TranscodeOptions options = parse("{fileUri: 'file:///in.mp4'}");
+        assertEquals("file:///in.mp4", options.fileUri);
+        assertEquals(TranscodeOptions.DEFAULT_FPS, options.fps);
+        assertFalse(options.decimateFrames);
+        assertEquals(TranscodeOptions.DEFAULT_VIDEO_BITRATE, options.videoBitrate);
+        assertEquals(CustomAndroidFormatStrategy.VIDEO_MIME_AVC, options.videoMime);
+        assertEquals(1, options.parallelism);
+        assertTrue(options.saveToLibrary);
+        assertTrue(options.allowPassthrough);
+        assertTrue(options.isAudioCopied());
+        assertNull(options.videoQuality);
+        assertNull(options.crop);
+        assertEquals(0, options.rotate);
+        assertEquals(VideoJob.DEFAULT_PRIORITY, options.priority);
+        assertEquals(ProgressDispatcher.DEFAULT_INTERVAL_MS, options.progressIntervalMs);
+    }
+
+    @Test
+    public void convertsTimesAndCodecs() throws Exception {
+        TranscodeOptions options = parse("{fileUri: 'in', startTime: 1.5, endTime: 4, duration: 2,"
+                + " videoCodec: 'HEVC', fps: 30, rotate: -90, crop: {x: 10, width: 100, height: 50}}");
+        assertEquals(1500000, options.trimStartUs);
+        assertEquals(4000000, options.trimEndUs);
+        assertEquals(2000000, options.videoDuration);
+        assertEquals(CustomAndroidFormatStrategy.VIDEO_MIME_HEVC, options.videoMime);
+        assertTrue(options.decimateFrames);
+        assertEquals(270, options.rotate);
+        assertArrayEquals(new int[] { 10, 0, 100, 50 }, options.crop);
+    }
+
+    @Test
+    public void clampsParallelism() throws Exception {
+        assertEquals(TranscodeOptions.MAX_PARALLELISM, parse("{fileUri: 'in', parallelism: 16}").parallelism);
+        assertEquals(1, parse("{fileUri: 'in', parallelism: 0}").parallelism);
+    }
+
+    @Test
+    public void fpsOfZeroDoesNotDecimate() throws Exception {
+        assertFalse(parse("{fileUri: 'in', fps: 0}").decimateFrames);
+    }
+
+    @Test
+    public void sampleRateAloneCopiesTheAudio() throws Exception {
+        assertTrue(parse("{fileUri: 'in', audioSampleRate: 22050}").isAudioCopied());
+        assertFalse(parse("{fileUri: 'in', audioBitrate: 96000}").isAudioCopied());
+        assertFalse(parse("{fileUri: 'in', audioChannels: 1}").isAudioCopied());
+    }
+
+    @Test
+    public void parsesVideoQuality() throws Exception {
+        assertEquals(BitrateCalculator.Quality.HIGH, parse("{fileUri: 'in', videoQuality: 'high'}").videoQuality);
+        assertInvalid("{fileUri: 'in', videoQuality: 'best'}", "videoQuality must be 'low', 'medium' or 'high'");
+    }
+
+    @Test
+    public void rejectsEndBeforeStart() throws Exception {
+        assertInvalid("{fileUri: 'in', startTime: 5, endTime: 5}", "endTime must be after startTime");
+    }
+
+    @Test(expected = JSONException.class)
+    public void requiresFileUri() throws Exception {
+        parse("{width: 640}");
+    }
+
+    @Test(expected = JSONException.class)
+    public void requiresTheSizeOfACrop() throws Exception {
+        parse("{fileUri: 'in', crop: {x: 10}}");
+    }
+
+    @Test
+    public void outputKeyIgnoresWhereTheOutputGoes() throws Exception {
+        String key = parse("{fileUri: 'a', outputFileName: 'x', width: 640}").getOutputKey();
+        assertEquals(key, parse("{fileUri: 'b', outputFileName: 'y', saveToLibrary: false, width: 640}").getOutputKey());
+        assertEquals(key, parse("{fileUri: 'a', width: 640, audioSampleRate: 22050}").getOutputKey());
+        assertNotEquals(key, parse("{fileUri: 'a', width: 720}").getOutputKey());
+        assertNotEquals(key, parse("{fileUri: 'a', width: 640, fps: 24}").getOutputKey());
+    }
+
+    private static TranscodeOptions parse(String json) throws JSONException {
+        return TranscodeOptions.parse(new JSONObject(json));
+    }
+
+    private static void assertInvalid(String json, String message) throws JSONException {
+        try {
+            parse(json);
+            fail("parsed " + json);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+//
+//  tests.js
+//
+//  Tests for cordova-plugin-test-framework. The manual test measures
+//  parallel against single-stream encoding on the device it runs on.
+//
+
+/* global VideoEditor */
+
+exports.defineAutoTests = function() {
+  describe('VideoEditor', function() {
+    it('should exist', function() {
+      expect(window.VideoEditor).toBeDefined();
+      expect(typeof VideoEditor.transcodeVideo).toBe('function');
+    });
+  });
+};
+
+exports.defineManualTests = function(contentEl, createActionButton) {
+  // parallelism of the parallel runs, the plugin caps it at 4
+  var PARALLELISM = 4;
+  // runs of each mode, alternated so heat and caches hit both alike
+  var ROUNDS = 3;
+
+  contentEl.innerHTML =
+    '<p>Transcodes a reference clip (at least 20 seconds, a keyframe every few seconds) ' +
+    'with parallelism 1 and ' + PARALLELISM + ' in turn and reports the median of each (Android only).</p>' +
+    '<p>Clip: <input id="videoeditor_clip" type="text" size="40" placeholder="file:///sdcard/Movies/reference.mp4"></p>' +
+    '<div id="videoeditor_parallel"></div>' +
+    '<pre id="videoeditor_log"></pre>';
+
+  function log(text) {
+    document.getElementById('videoeditor_log').textContent += text + '\n';
+  }
+
+  function median(values) {
+    var sorted = values.slice().sort(function(a, b) { return a - b; });
+    return sorted[Math.floor(sorted.length / 2)];
+  }
+
+  function transcode(fileUri, parallelism, run, done) {
+    VideoEditor.transcodeVideo(
+      function(path, metrics) {
+        log('parallelism ' + parallelism + ', run ' + run + ': ' + metrics.wallMs + ' ms, ' +
+          metrics.framesPerSecond + ' fps, mode ' + metrics.mode + ', encoder ' + metrics.encoder);
+        done(metrics);
+      },
+      function(error) {
+        log('parallelism ' + parallelism + ', run ' + run + ' failed: ' + JSON.stringify(error));
+        done(null);
+      },
+      {
+        fileUri: fileUri,
+        outputFileName: 'videoeditor-benchmark-' + parallelism + '-' + run,
+        saveToLibrary: false,
+        // no audioBitrate or audioChannels, segments are only encoded in parallel while the audio is copied
+        parallelism: parallelism
+      }
+    );
+  }
+
+  createActionButton('Compare parallel and single-stream', function() {
+    var fileUri = document.getElementById('videoeditor_clip').value;
+    if (!fileUri) {
+      log('enter the clip first');
+      return;
+    }
+    var wallMs = { single: [], parallel: [] };
+    var run = 0;
+
+    function next() {
+      if (run === 2 * ROUNDS) {
+        if (wallMs.single.length === 0 || wallMs.parallel.length === 0) {
+          log('no result to compare');
+          return;
+        }
+        var single = median(wallMs.single);
+        var parallel = median(wallMs.parallel);
+        log('median: single-stream ' + single + ' ms, parallel ' + parallel + ' ms, speedup ' +
+          (single / parallel).toFixed(2) + 'x');
+        return;
+      }
+      var parallelism = run % 2 === 0 ? 1 : PARALLELISM;
+      transcode(fileUri, parallelism, Math.floor(run / 2) + 1, function(metrics) {
+        if (metrics) {
+          if (parallelism > 1 && metrics.mode !== 'parallel') {
+            log('  not encoded in parallel, left out of the comparison');
+          } else {
+            wallMs[parallelism > 1 ? 'parallel' : 'single'].push(metrics.wallMs);
+          }
+        }
+        run++;
+        next();
+      });
+    }
+
+    log('clip ' + fileUri + ', ' + ROUNDS + ' rounds');
+    next();
+  }, 'videoeditor_parallel');
+};
@@ -40,6 +40,10 @@ declare interface VideoEditorTranscodeProperties {
         duration?: number,
         /** Not supported in windows, save into the device library*/
         saveToLibrary?: boolean,
+        /** Android only. Directory to write the output to, a path or file:// URL. */
+        outputDirectory?: string,
+        /** Android only. content:// URI of a document or MediaStore entry to write the output to, overrides outputDirectory and saveToLibrary. */
+        outputUri?: string,
         /** Not supported in windows, delete the orginal video*/
         deleteInputFile?: boolean,
         /** iOS only. Defaults to true */
@@ -50,14 +54,62 @@ declare interface VideoEditorTranscodeProperties {
         height?: number,
         /** Bitrate in bits. Defaults to 1 megabit (1000000). */
         videoBitrate?: number,
-        /** Frames per second of the result. Android only. Defaults to 24. */
+        /** Frames per second of the result. Android only. When set, source frames above it are dropped before encoding. Defaults to 24. */
         fps?: number,
-        /** Number of audio channels. iOS only. Defaults to 2. */
+        /** Number of audio channels. Defaults to 2 on iOS; Android copies the source audio unless set, and supports 1 or 2. */
         audioChannels?: number,
-        /** Sample rate for the audio. iOS only. Defaults to 4410. */
+        /** Sample rate for the audio. Defaults to 44100 on iOS; Android keeps the source rate. */
+        audioSampleRate?: number,
+        /** Audio bitrate in bits. Defaults to 128 kilobits (128000) on iOS; Android copies the source audio unless set. */
         audioBitrate?: number,
+        /** Android only. Leave the audio track out of the output. Defaults to false. */
+        removeAudio?: boolean,
+        /** Android only. Start of the output in the source, in seconds. Defaults to 0. */
+        startTime?: number,
+        /** Android only. End of the output in the source, in seconds. Defaults to the end of the video. */
+        endTime?: number,
+        /** Android only. Cut exactly at startTime by re-encoding instead of at the keyframe before it. Defaults to false. */
+        exactTrim?: boolean,
+        /** Android only. Number of segments of a long video encoded at the same time, up to 4. Defaults to 1. */
+        parallelism?: number,
+        /** Android only. Video codec of the output; HEVC is only used when the device has a hardware HEVC encoder. Defaults to 'h264'. */
+        videoCodec?: 'h264' | 'hevc',
+        /** Android only. Derive the video bitrate from this output size in bytes. Overrides videoBitrate. */
+        targetSizeBytes?: number,
+        /** Android only. Encode again at a lower bitrate if the output exceeds targetSizeBytes. Defaults to true. */
+        secondPass?: boolean,
+        /** Android only. Derive the video bitrate from the output size and fps. Overrides videoBitrate. */
+        videoQuality?: 'low' | 'medium' | 'high',
+        /** Android only. Copy the source without re-encoding when it is already H.264 within the requested size and bitrate. Defaults to true. */
+        allowPassthrough?: boolean,
+        /** Android only. Id used to track the job, generated when missing. */
+        jobId?: string,
+        /** Android only. Queue priority, higher runs first. Defaults to 0. */
+        priority?: number,
+        /** Android only. Reuse the output of an earlier transcode of the same content with the same options, and keep this one for later. Defaults to false. */
+        cache?: boolean,
+        /** Android only. Turn the output clockwise by 90, 180 or 270 degrees, through the orientation hint. Defaults to 0. */
+        rotate?: number,
+        /** Android only. Region of the video as shown to keep, in pixels. Needs API 21 and the audio copied. */
+        crop?: { x: number, y: number, width: number, height: number },
+        /** Android only. Minimum time between two progress updates in milliseconds. Defaults to 250. */
+        progressIntervalMs?: number,
+        /** Android only. Minimum progress change between two updates (0 to 1). Defaults to 0.01. */
+        progressStep?: number,
         /** Not supported in windows, progress on the transcode*/
-        progress?: (info: any) => void
+        progress?: (info: any, details?: VideoEditorProgressDetails) => void
+}
+
+/**
+ * Details passed as the second argument of the transcode progress callback. Android only.
+ */
+declare interface VideoEditorProgressDetails {
+        /** Progress between 0 and 1. */
+        progress: number,
+        /** Time of the current frame in the output, in seconds. */
+        time: number,
+        /** Estimated time remaining in seconds. */
+        eta?: number
 }
 
 /**
@@ -84,14 +136,200 @@ declare interface VideoEditorThumbnailProperties {
         fileUri: string,
         /** A string that indicates what type of field this is, home for example. */
         outputFileName: string,
+        /** Android only. Directory to write the thumbnail to, a path or file:// URL. */
+        outputDirectory?: string,
+        /** Android only. content:// URI of a document or MediaStore entry to write the thumbnail to. */
+        outputUri?: string,
         /** Location in video to create the thumbnail (in seconds). */
         atTime?: number,
+        /**
+         * Android only. 'fast' takes the keyframe nearest to atTime, 'exact' the frame at atTime, 'smart' the best
+         * looking of a few keyframes from atTime on. Defaults to 'fast'.
+         */
+        seekMode?: 'fast' | 'exact' | 'smart',
+        /** Android only. Time the smart seek mode may spend sampling keyframes (in ms). Defaults to 1000. */
+        smartBudgetMs?: number,
         /** Width of the thumbnail. */
         width?: number,
         /** Height of the thumbnail. */
         height?: number,
+        /** Android only. 'fit' keeps the whole frame inside width x height, 'fill' crops to it. Defaults to 'fit'. */
+        resizeMode?: 'fit' | 'fill',
         /** Quality of the thumbnail (between 1 and 100). */
-        quality?: number
+        quality?: number,
+        /** Android only. Id used to track the job, generated when missing. */
+        jobId?: string,
+        /** Android only. Queue priority, higher runs first. Defaults to 0. */
+        priority?: number
+}
+
+declare interface VideoEditorThumbnailInfo {
+        /** Path of the thumbnail, or the content:// URI it was written to. */
+        outputFilePath: string,
+        /** Time of the frame in the thumbnail (in seconds). */
+        frameTime: number,
+        /** Time of the keyframe decoding started from (in seconds). */
+        keyframeTime?: number,
+        seekMode: 'fast' | 'exact' | 'smart',
+        /** Smart seek mode only. Score of the chosen frame between 0 and 1. */
+        score?: number,
+        /** Smart seek mode only. Number of keyframes sampled. */
+        framesScored?: number,
+        /** Time from the start of the job until the thumbnail was written (in ms). */
+        latencyMs: number
+}
+
+/**
+ * Options for making an editing proxy of a video. Android only.
+ */
+declare interface VideoEditorProxyProperties {
+        /** A well-known location where the editable video lives. */
+        fileUri: string,
+        /** Longer side of the proxy. Defaults to 640. */
+        size?: number,
+        /** Seconds between keyframes, 0 makes every frame a keyframe. Defaults to 0. */
+        keyframeInterval?: number,
+        /** Bitrate in bits. Defaults to 2 megabits (2000000). */
+        videoBitrate?: number,
+        /** Drop frames above this rate. Defaults to keeping every frame. */
+        fps?: number,
+        /** Id used to track the job, generated when missing. */
+        jobId?: string,
+        /** Queue priority, higher runs first. Defaults to 0. */
+        priority?: number,
+        /** Minimum time between two progress updates in milliseconds. Defaults to 250. */
+        progressIntervalMs?: number,
+        /** Minimum progress change between two updates (0 to 1). Defaults to 0.01. */
+        progressStep?: number,
+        /** Progress of making the proxy, from 0 to 100. */
+        progress?: (info: number, details?: any) => void
+}
+
+declare interface VideoEditorProxyInfo {
+        /** Path of the proxy. */
+        outputFilePath: string,
+        /** Whether the proxy was already there. */
+        cached: boolean,
+        /** Metrics of the job, when the proxy was made. */
+        metrics?: VideoEditorTranscodeMetrics
+}
+
+/**
+ * Options for joining several videos into one. Android only.
+ */
+declare interface VideoEditorMergeProperties {
+        /** Locations of the videos, in the order they are played. At least two. */
+        fileUris: string[],
+        /** Name of the output file, without extension. Defaults to the current date and time. */
+        outputFileName?: string,
+        /** Save into the device library. Defaults to true. */
+        saveToLibrary?: boolean,
+        /** Directory to write the output to, a path or file:// URL. */
+        outputDirectory?: string,
+        /** content:// URI of a document or MediaStore entry to write the output to, overrides outputDirectory and saveToLibrary. */
+        outputUri?: string,
+        /** Width of the result when the videos are re-encoded. Defaults to the size of the first video. */
+        width?: number,
+        /** Height of the result when the videos are re-encoded. Defaults to the size of the first video. */
+        height?: number,
+        /** Drop frames above this rate, re-encodes the videos. Defaults to keeping every frame. */
+        fps?: number,
+        /** Bitrate in bits when the videos are re-encoded. Defaults to 1 megabit (1000000). */
+        videoBitrate?: number,
+        /** 'h264' or 'hevc' when the videos are re-encoded. Defaults to 'h264'. */
+        videoCodec?: string,
+        /** Copy the samples when all videos have the same codec, size and codec config. Defaults to true. */
+        allowPassthrough?: boolean,
+        /** Leave the audio track out of the output. Defaults to false. */
+        removeAudio?: boolean,
+        /** Id used to track the job, generated when missing. */
+        jobId?: string,
+        /** Queue priority, higher runs first. Defaults to 0. */
+        priority?: number,
+        /** Minimum time between two progress updates in milliseconds. Defaults to 250. */
+        progressIntervalMs?: number,
+        /** Minimum progress change between two updates (0 to 1). Defaults to 0.01. */
+        progressStep?: number,
+        /** Progress of the merge, from 0 to 100. */
+        progress?: (info: number, details?: any) => void
+}
+
+declare interface VideoEditorMergeInfo {
+        /** Path of the merged video, or the content:// URI it was written to. */
+        outputFilePath: string,
+        /** Metrics of the job. */
+        metrics: VideoEditorTranscodeMetrics,
+        /** Whether the merged video has no audio although removeAudio wasn't set: a video has none, or its audio has another format or codec config than the others. */
+        audioDropped: boolean
+}
+
+/**
+ * Options for extracting several thumbnails in one pass. Android only.
+ */
+declare interface VideoEditorThumbnailsProperties {
+        /** A well-known location where the editable video lives. */
+        fileUri: string,
+        /** Base name of the output files. */
+        outputFileName?: string,
+        /** Directory to write the output files to, a path or file:// URL. */
+        outputDirectory?: string,
+        /** Times of the thumbnails (in seconds). Either times or interval is required. */
+        times?: number[],
+        /** Time between two thumbnails (in seconds). */
+        interval?: number,
+        /** First thumbnail when using interval (in seconds). Defaults to 0. */
+        startTime?: number,
+        /** Last thumbnail when using interval (in seconds). Defaults to the end of the video. */
+        endTime?: number,
+        /** Maximum number of thumbnails. Defaults to 100. */
+        maxFrames?: number,
+        /** Width of the thumbnails. */
+        width?: number,
+        /** Height of the thumbnails. */
+        height?: number,
+        /** 'fit' keeps the whole frame inside width x height, 'fill' crops to it. Defaults to 'fit'. */
+        resizeMode?: 'fit' | 'fill',
+        /** Quality of the thumbnails (between 1 and 100). */
+        quality?: number,
+        /** Write one tiled image plus a JSON index instead of separate files. Defaults to false. */
+        spriteSheet?: boolean,
+        /** Number of columns of the sprite sheet. Defaults to a roughly square sheet. */
+        columns?: number,
+        /** Id used to track the job, generated when missing. */
+        jobId?: string,
+        /** Queue priority, higher runs first. Defaults to 0. */
+        priority?: number,
+        /** Progress of the extraction, from 0 to 1. */
+        progress?: (progress: number) => void
+}
+
+declare interface VideoEditorThumbnailFrame {
+        /** Time of the thumbnail in seconds. */
+        time: number,
+        /** Path to the JPEG file, when not using a sprite sheet. */
+        path?: string,
+        /** Position and size of the tile in the sprite sheet. */
+        x?: number,
+        y?: number,
+        width?: number,
+        height?: number
+}
+
+declare interface VideoEditorThumbnailsResult {
+        /** Every extracted thumbnail. */
+        frames: VideoEditorThumbnailFrame[],
+        /** Path to the sprite sheet. */
+        spritePath?: string,
+        /** Path to the JSON index of the sprite sheet. */
+        indexPath?: string,
+        /** Size of one tile of the sprite sheet. */
+        tileWidth?: number,
+        tileHeight?: number,
+        /** Most bitmap memory held at once for a single frame, in bytes. */
+        peakBitmapBytes?: number,
+        /** Layout of the sprite sheet. */
+        columns?: number,
+        rows?: number
 }
 
 declare interface VideoEditorVideoInfoOptions {
@@ -106,6 +344,12 @@ declare interface VideoEditorVideoInfoDetails {
         height: number,
         /** Orientation of the video. Will be either portrait or landscape. */
         orientation: 'portrait' | 'landscape',
+        /** Android only. Clockwise rotation of the stored frames for display: 0, 90, 180 or 270. */
+        rotation?: number,
+        /** Android only. Width of the video as shown, after rotation. */
+        displayWidth?: number,
+        /** Android only. Height of the video as shown, after rotation. */
+        displayHeight?: number,
         /** Duration of the video in seconds. */
         duration: number,
         /** Size of the video in bytes. */
@@ -114,6 +358,226 @@ declare interface VideoEditorVideoInfoDetails {
         bitrate: number
 }
 
+declare interface VideoEditorVideoInfoBatchOptions {
+        /** Paths to the videos on the device, or content:// URIs. */
+        fileUris: string[],
+        /** Number of videos read at the same time. Defaults to 4, or the number of cores if less; at most 8. */
+        concurrency?: number,
+        /** Walk the sample table of each video for frameCount and syncSampleCount. Defaults to true. */
+        syncSamples?: boolean
+}
+
+declare interface VideoEditorTrackInfo {
+        /** Index of the track in the container. */
+        index: number,
+        type: 'video' | 'audio' | 'other',
+        /** Mime type of the track, e.g. video/avc. */
+        mime: string,
+        /** Short codec name, e.g. h264, hevc or aac. */
+        codec: string,
+        durationUs?: number,
+        bitrate?: number,
+        language?: string,
+        /** Video tracks only. */
+        width?: number,
+        height?: number,
+        profile?: number,
+        level?: number,
+        profileName?: string,
+        frameRate?: number,
+        /** Audio tracks only. */
+        sampleRate?: number,
+        channels?: number
+}
+
+declare interface VideoEditorVideoInfoBatchResult extends VideoEditorVideoInfoDetails {
+        /** The fileUri this result is for. */
+        fileUri: string,
+        /** Why the video couldn't be read; none of the other fields are set then. */
+        error?: string,
+        /** Short codec name of the video, e.g. h264 or hevc. */
+        codec: string,
+        /** MediaCodecInfo.CodecProfileLevel profile and level of the video, when the container states them. */
+        profile?: number,
+        level?: number,
+        /** e.g. baseline, main or high for H.264, main or main10 for HEVC. */
+        profileName?: string,
+        /** Frame rate the container states, or else the average over the samples. */
+        frameRate?: number,
+        /** Number of video samples and sync samples (keyframes), with syncSamples. */
+        frameCount?: number,
+        syncSampleCount?: number,
+        /** Format of the first audio track, null without audio. */
+        audio: VideoEditorTrackInfo | null,
+        /** Format of every track. */
+        tracks: VideoEditorTrackInfo[]
+}
+
+declare interface VideoEditorVideoInfoBatch {
+        /** One result per fileUri, in the same order. */
+        results: VideoEditorVideoInfoBatchResult[],
+        /** Number of videos that couldn't be read. */
+        failed: number,
+        /** Wall time of the batch in milliseconds. */
+        elapsedMs: number
+}
+
+declare interface VideoEditorJobStatus {
+        /** Id of the job. */
+        jobId: string,
+        /** Plugin action that created the job, e.g. transcodeVideo. */
+        action: string,
+        /** Current state of the job. */
+        state: 'queued' | 'running' | 'paused' | 'completed' | 'failed' | 'canceled',
+        /** Queue priority, higher runs first. */
+        priority: number,
+        /** Progress of the job between 0 and 1. */
+        progress: number,
+        /** Time the job was queued (ms since epoch). */
+        queuedAt: number,
+        /** Time the job started running (ms since epoch). */
+        startedAt?: number,
+        /** Time the job finished (ms since epoch). */
+        finishedAt?: number,
+        /** Error message of a failed job. */
+        error?: string
+}
+
+declare interface VideoEditorJobOptions {
+        /** Id of the job, as returned by transcodeVideo or createThumbnail. */
+        jobId: string
+}
+
+declare interface VideoEditorReattachOptions {
+        /** Id of the job, as returned by transcodeVideo, mergeVideos or createProxy. */
+        jobId: string,
+        /** Callback invoked with the progress of a job that is still running. */
+        progress?: (progress: number, info: any) => void
+}
+
+declare interface VideoEditorPriorityOptions {
+        /** Id of the job, as returned by transcodeVideo or createThumbnail. */
+        jobId: string,
+        /** New priority of the job, higher runs first. */
+        priority: number
+}
+
+declare interface VideoEditorJobs {
+        /** Maximum number of jobs that run at the same time. */
+        maxConcurrentJobs: number,
+        /** Number of jobs waiting for a free slot. */
+        queued: number,
+        /** Number of paused jobs. */
+        paused: number,
+        /** Number of jobs currently running. */
+        running: number,
+        /** Number of queued jobs that had a free slot but didn't fit into the budget yet. */
+        waitingForBudget: number,
+        /** Memory and codec budget of the running jobs. */
+        budget: VideoEditorJobBudget,
+        /** Active and recently finished jobs. */
+        jobs: VideoEditorJobStatus[],
+        /** Ids of jobs that finished while the app was away, their result waits for reattachJob. */
+        undelivered: string[]
+}
+
+declare interface VideoEditorJobBudget {
+        /** Estimated memory all running jobs may hold (in bytes). */
+        memoryBudget: number,
+        /** Estimated memory held by the running jobs (in bytes). */
+        memoryInUse: number,
+        /** Decoders and encoders all running jobs may hold. */
+        codecBudget: number,
+        /** Decoders and encoders held by the running jobs. */
+        codecsInUse: number
+}
+
+declare interface VideoEditorError {
+        /** 'MEMORY_BUDGET_EXCEEDED', 'CODEC_BUDGET_EXCEEDED', 'OUT_OF_MEMORY' or 'CODEC_UNAVAILABLE'. */
+        code: string,
+        message: string
+}
+
+declare interface VideoEditorProbeCacheStats {
+        /** Number of lookups answered from the cache. */
+        hits: number,
+        /** Number of lookups that had to read the file. */
+        misses: number,
+        /** Number of cached entries. */
+        size: number,
+        /** Maximum number of cached entries. */
+        capacity: number
+}
+
+declare interface VideoEditorOutputCacheStats {
+        /** Number of transcodes answered from the cache. */
+        hits: number,
+        /** Number of transcodes that had to encode. */
+        misses: number,
+        /** Number of cached outputs. */
+        entries: number,
+        /** Size of the cached outputs (in bytes). */
+        bytes: number,
+        /** Size the cache is trimmed to (in bytes). */
+        maxBytes: number
+}
+
+declare interface VideoEditorTranscodeMetrics {
+        /** Time spent in the queue before the job started (in ms). */
+        queueWaitMs: number,
+        /** Time from the start of the job until it finished (in ms). */
+        wallMs: number,
+        /** Output frames per second of wall time. */
+        framesPerSecond: number,
+        /** Seconds of video per second of wall time, above 1 is faster than realtime. */
+        realtimeFactor: number,
+        /** Number of video frames in the output. */
+        frames: number,
+        /** Duration of the output (in seconds). */
+        mediaSeconds: number,
+        /** Size of the input (in bytes). */
+        inputBytes: number,
+        /** Size of the output (in bytes). */
+        outputBytes: number,
+        /** Number of encoding passes. */
+        passes: number,
+        /** How the output was made: 'remux', 'encode', 'parallel', 'segment' or 'cached'. */
+        mode?: string,
+        /** Name of the video encoder, missing when the video wasn't re-encoded. */
+        encoder?: string
+}
+
+declare interface VideoEditorTranscodeAverages {
+        /** Number of completed transcodes the averages are taken over. */
+        jobs: number,
+        avgQueueWaitMs?: number,
+        avgWallMs?: number,
+        avgFramesPerSecond?: number,
+        avgRealtimeFactor?: number,
+        medianRealtimeFactor?: number
+}
+
+declare interface VideoEditorTranscodeStats {
+        /** Number of completed transcodes since the app started. */
+        completed: number,
+        /** Number of failed transcodes since the app started. */
+        failed: number,
+        /** Number of transcodes canceled while running since the app started. */
+        canceled: number,
+        /** Maximum number of recent completed transcodes the averages are taken over. */
+        window: number,
+        /** Averages of the recent completed transcodes. */
+        recent: VideoEditorTranscodeAverages,
+        /** Averages of the recent completed transcodes per encoder name. */
+        encoders: { [encoder: string]: VideoEditorTranscodeAverages },
+        /** Number of failures per cause. */
+        failures: { [cause: string]: number },
+        /** Latency of the recent thumbnails per seek mode. */
+        thumbnails: { [seekMode: string]: { thumbnails: number, avgLatencyMs: number, medianLatencyMs: number } },
+        /** The device the numbers come from. */
+        device: { manufacturer: string, model: string, sdk: number }
+}
+
 /**
  * The VideoEditor object represents a tool for editing videos. Videos can only be trimmed, so far.
  */
@@ -126,9 +590,9 @@ interface VideoEditor {
     * @param onError Error callback function, invoked when an error occurs.
     * @param transcodeOptions Transcode options that are required to reencode or change the coding of the video.
     */
-    transcodeVideo(onSuccess: (path: string) => void,
+    transcodeVideo(onSuccess: (path: string, metrics?: VideoEditorTranscodeMetrics) => void,
         onError: (error: any) => void,
-        options: VideoEditorTranscodeProperties): void;
+        options: VideoEditorTranscodeProperties): string;
 
     /**
      * The VideoEditor.trim method executes asynchronously, taking a video location and trimming the beginning and end of the video
@@ -150,9 +614,47 @@ interface VideoEditor {
     * @param onError Error callback function, invoked when an error occurs.
     * @param trimOptions Trim options that are required to locate, reduce start/end and save the video.
     */
-    createThumbnail(onSuccess: (path: string) => void,
+    createThumbnail(onSuccess: (path: string, info?: VideoEditorThumbnailInfo) => void,
+        onError: (error: any) => void,
+        options: VideoEditorThumbnailProperties): string;
+
+    /**
+     * The VideoEditor.createThumbnails method executes asynchronously, extracting several frames of a video in one
+     * pass and writing them as separate JPEG files or as one sprite sheet. Android only.
+     * @param onSuccess Success callback function invoked with the extracted thumbnails.
+     * @param onError Error callback function, invoked when an error occurs.
+     * @param options Times, size and layout of the thumbnails.
+     * @returns The id of the job.
+     */
+    createThumbnails(onSuccess: (result: VideoEditorThumbnailsResult) => void,
+        onError: (error: any) => void,
+        options: VideoEditorThumbnailsProperties): string;
+
+    /**
+     * The VideoEditor.createProxy method makes a small copy of a video that seeks quickly, for editing
+     * timelines, or returns the one made before if the video didn't change. Android only.
+     * @param onSuccess Success callback function invoked with the path of the proxy.
+     * @param onError Error callback function, invoked when an error occurs.
+     * @param options Size and keyframe interval of the proxy.
+     * @returns The id of the job.
+     */
+    createProxy(onSuccess: (path: string, info?: VideoEditorProxyInfo) => void,
         onError: (error: any) => void,
-        options: VideoEditorThumbnailProperties): void;
+        options: VideoEditorProxyProperties): string;
+
+    /**
+     * The VideoEditor.mergeVideos method executes asynchronously, joining several videos one after another
+     * into one MP4. The samples are copied when all videos share their format, otherwise they are re-encoded
+     * in one encoder session. Android only.
+     * @param onSuccess Success callback function invoked with the path of the merged video, the metrics of the job
+     * and the whole result, whose audioDropped tells whether the audio of the videos had to be left out.
+     * @param onError Error callback function, invoked when an error occurs.
+     * @param options The videos to join and how to encode them.
+     * @returns The id of the job.
+     */
+    mergeVideos(onSuccess: (path: string, metrics?: VideoEditorTranscodeMetrics, info?: VideoEditorMergeInfo) => void,
+        onError: (error: any) => void,
+        options: VideoEditorMergeProperties): string;
 
     /**
      * The VideoEditor.getVideoInfo method executes asynchronously, taking a video location and returning the details of the video.
@@ -164,6 +666,117 @@ interface VideoEditor {
     getVideoInfo(onSuccess: (info: VideoEditorVideoInfoDetails) => void,
         onError: (error: any) => void,
         options: VideoEditorVideoInfoOptions): void;
+
+    /**
+     * The VideoEditor.getVideoInfoBatch method reads the details and stream formats of many videos,
+     * several at a time, with one pass over each container. A video that can't be read gets an error in
+     * its result and doesn't fail the batch. Android only.
+     * @param onSuccess Success callback function invoked with one result per video.
+     * @param onError Error callback function, invoked when the options are invalid.
+     * @param options The videos to read.
+     */
+    getVideoInfoBatch(onSuccess: (info: VideoEditorVideoInfoBatch) => void,
+        onError: (error: any) => void,
+        options: VideoEditorVideoInfoBatchOptions): void;
+
+    /**
+     * The VideoEditor.getProbeCacheStats method returns the counters of the metadata cache shared by
+     * getVideoInfo, transcodeVideo and createThumbnail. Android only.
+     * @param onSuccess Success callback function invoked with the cache counters.
+     * @param onError Error callback function, invoked when an error occurs.
+     */
+    getProbeCacheStats(onSuccess: (stats: VideoEditorProbeCacheStats) => void,
+        onError: (error: any) => void): void;
+
+    /**
+     * The VideoEditor.getTranscodeStats method returns totals and rolling averages of the metrics of
+     * finished transcodes. Android only.
+     * @param onSuccess Success callback function invoked with the aggregates.
+     * @param onError Error callback function, invoked when an error occurs.
+     */
+    getTranscodeStats(onSuccess: (stats: VideoEditorTranscodeStats) => void,
+        onError: (error: any) => void): void;
+
+    /**
+     * The VideoEditor.getOutputCacheStats method returns the counters and size of the cache of
+     * transcode outputs used with the cache option. Android only.
+     * @param onSuccess Success callback function invoked with the cache counters.
+     * @param onError Error callback function, invoked when an error occurs.
+     */
+    getOutputCacheStats(onSuccess: (stats: VideoEditorOutputCacheStats) => void,
+        onError: (error: any) => void): void;
+
+    /**
+     * The VideoEditor.clearOutputCache method removes all cached transcode outputs. Android only.
+     * @param onSuccess Success callback function invoked once the cache is empty.
+     * @param onError Error callback function, invoked when an error occurs.
+     */
+    clearOutputCache(onSuccess: () => void,
+        onError: (error: any) => void): void;
+
+    /**
+     * The VideoEditor.getJobs method executes asynchronously and returns the queue depth and status of
+     * active and recently finished jobs. Android only.
+     * @param onSuccess Success callback function invoked with the job list.
+     * @param onError Error callback function, invoked when an error occurs.
+     */
+    getJobs(onSuccess: (jobs: VideoEditorJobs) => void,
+        onError: (error: any) => void): void;
+
+    /**
+     * The VideoEditor.cancelTranscode method cancels a queued, paused or running job and removes its
+     * partial output. The job's own error callback is invoked with "transcode canceled". Android only.
+     * @param onSuccess Success callback function invoked with the status of the canceled job.
+     * @param onError Error callback function, invoked when the job can't be canceled.
+     * @param options Id of the job.
+     */
+    cancelTranscode(onSuccess: (job: VideoEditorJobStatus) => void,
+        onError: (error: any) => void,
+        options: VideoEditorJobOptions): void;
+
+    /**
+     * The VideoEditor.pauseTranscode method pauses a job. A running transcode releases its encoder and
+     * starts over when resumed. Android only.
+     * @param onSuccess Success callback function invoked with the status of the paused job.
+     * @param onError Error callback function, invoked when the job can't be paused.
+     * @param options Id of the job.
+     */
+    pauseTranscode(onSuccess: (job: VideoEditorJobStatus) => void,
+        onError: (error: any) => void,
+        options: VideoEditorJobOptions): void;
+
+    /**
+     * The VideoEditor.resumeTranscode method puts a paused job back into the queue. Android only.
+     * @param onSuccess Success callback function invoked with the status of the resumed job.
+     * @param onError Error callback function, invoked when the job isn't paused.
+     * @param options Id of the job.
+     */
+    resumeTranscode(onSuccess: (job: VideoEditorJobStatus) => void,
+        onError: (error: any) => void,
+        options: VideoEditorJobOptions): void;
+
+    /**
+     * The VideoEditor.setPriority method changes the queue priority of a job. Android only.
+     * @param onSuccess Success callback function invoked with the status of the job.
+     * @param onError Error callback function, invoked when the job already finished.
+     * @param options Id and new priority of the job.
+     */
+    setPriority(onSuccess: (job: VideoEditorJobStatus) => void,
+        onError: (error: any) => void,
+        options: VideoEditorPriorityOptions): void;
+
+    /**
+     * The VideoEditor.reattachJob method receives the progress and result of a transcodeVideo,
+     * mergeVideos or createProxy job started before the app was killed. Jobs interrupted by the kill
+     * are started over when the plugin loads; a job that finished meanwhile delivers its result right
+     * away. Android only.
+     * @param onSuccess Success callback function invoked with the result of the job.
+     * @param onError Error callback function, invoked when the job failed or isn't known.
+     * @param options Id of the job and an optional progress callback.
+     */
+    reattachJob(onSuccess: (result: any, info?: any) => void,
+        onError: (error: any) => void,
+        options: VideoEditorReattachOptions): void;
 }
 
 declare var VideoEditor: VideoEditor;
\ No newline at end of file
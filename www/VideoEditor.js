@@ -7,21 +7,73 @@
 
 var exec = require('cordova/exec');
 var pluginName = 'VideoEditor';
+var jobCounter = 0;
 
 function VideoEditor() {}
 
+// a shallow copy of options with a jobId, the caller's object stays as it
+// was so it can be passed again for another job
+function withJobId(options) {
+  var copy = {};
+  for (var key in options) {
+    if (Object.prototype.hasOwnProperty.call(options, key)) {
+      copy[key] = options[key];
+    }
+  }
+  if (!copy.jobId) {
+    copy.jobId = 'job-' + Date.now().toString(36) + '-' + (++jobCounter);
+  }
+  return copy;
+}
+
 VideoEditor.prototype.transcodeVideo = function(success, error, options) {
   var self = this;
   var win = function(result) {
     if (typeof result.progress !== 'undefined') {
       if (typeof options.progress === 'function') {
-        options.progress(result.progress);
+        options.progress(result.progress, result);
       }
+    } else if (result && typeof result.outputFilePath !== 'undefined') {
+      // Android sends the metrics of the job along with the path
+      success(result.outputFilePath, result.metrics);
     } else {
       success(result);
     }
   };
-  exec(win, error, pluginName, 'transcodeVideo', [options]);
+  var jobOptions = withJobId(options);
+  exec(win, error, pluginName, 'transcodeVideo', [jobOptions]);
+  return jobOptions.jobId;
+};
+
+VideoEditor.prototype.createProxy = function(success, error, options) {
+  var win = function(result) {
+    if (typeof result.progress !== 'undefined') {
+      if (typeof options.progress === 'function') {
+        options.progress(result.progress, result);
+      }
+    } else {
+      success(result.outputFilePath, result);
+    }
+  };
+  var jobOptions = withJobId(options);
+  exec(win, error, pluginName, 'createProxy', [jobOptions]);
+  return jobOptions.jobId;
+};
+
+VideoEditor.prototype.mergeVideos = function(success, error, options) {
+  var win = function(result) {
+    if (typeof result.progress !== 'undefined') {
+      if (typeof options.progress === 'function') {
+        options.progress(result.progress, result);
+      }
+    } else {
+      // result.audioDropped tells whether the audio had to be left out
+      success(result.outputFilePath, result.metrics, result);
+    }
+  };
+  var jobOptions = withJobId(options);
+  exec(win, error, pluginName, 'mergeVideos', [jobOptions]);
+  return jobOptions.jobId;
 };
 
 VideoEditor.prototype.trim = function(success, error, options) {
@@ -39,13 +91,93 @@ VideoEditor.prototype.trim = function(success, error, options) {
 };
 
 VideoEditor.prototype.createThumbnail = function(success, error, options) {
-  exec(success, error, pluginName, 'createThumbnail', [options]);
+  var win = function(result) {
+    if (result && typeof result.outputFilePath !== 'undefined') {
+      // Android sends where the frame came from and how long it took along with the path
+      success(result.outputFilePath, result);
+    } else {
+      success(result);
+    }
+  };
+  var jobOptions = withJobId(options);
+  exec(win, error, pluginName, 'createThumbnail', [jobOptions]);
+  return jobOptions.jobId;
+};
+
+VideoEditor.prototype.createThumbnails = function(success, error, options) {
+  var win = function(result) {
+    if (typeof result.progress !== 'undefined') {
+      if (typeof options.progress === 'function') {
+        options.progress(result.progress);
+      }
+    } else {
+      success(result);
+    }
+  };
+  var jobOptions = withJobId(options);
+  exec(win, error, pluginName, 'createThumbnails', [jobOptions]);
+  return jobOptions.jobId;
 };
 
 VideoEditor.prototype.getVideoInfo = function(success, error, options) {
   exec(success, error, pluginName, 'getVideoInfo', [options]);
 };
 
+VideoEditor.prototype.getVideoInfoBatch = function(success, error, options) {
+  exec(success, error, pluginName, 'getVideoInfoBatch', [options]);
+};
+
+VideoEditor.prototype.getProbeCacheStats = function(success, error) {
+  exec(success, error, pluginName, 'getProbeCacheStats', []);
+};
+
+VideoEditor.prototype.getTranscodeStats = function(success, error) {
+  exec(success, error, pluginName, 'getTranscodeStats', []);
+};
+
+VideoEditor.prototype.getOutputCacheStats = function(success, error) {
+  exec(success, error, pluginName, 'getOutputCacheStats', []);
+};
+
+VideoEditor.prototype.clearOutputCache = function(success, error) {
+  exec(success, error, pluginName, 'clearOutputCache', []);
+};
+
+VideoEditor.prototype.getJobs = function(success, error) {
+  exec(success, error, pluginName, 'getJobs', []);
+};
+
+VideoEditor.prototype.reattachJob = function(success, error, options) {
+  var win = function(result) {
+    if (typeof result.progress !== 'undefined') {
+      if (typeof options.progress === 'function') {
+        options.progress(result.progress, result);
+      }
+    } else if (result && typeof result.outputFilePath !== 'undefined') {
+      success(result.outputFilePath, result);
+    } else {
+      success(result);
+    }
+  };
+  exec(win, error, pluginName, 'reattachJob', [options]);
+};
+
+VideoEditor.prototype.cancelTranscode = function(success, error, options) {
+  exec(success, error, pluginName, 'cancelTranscode', [options]);
+};
+
+VideoEditor.prototype.pauseTranscode = function(success, error, options) {
+  exec(success, error, pluginName, 'pauseTranscode', [options]);
+};
+
+VideoEditor.prototype.resumeTranscode = function(success, error, options) {
+  exec(success, error, pluginName, 'resumeTranscode', [options]);
+};
+
+VideoEditor.prototype.setPriority = function(success, error, options) {
+  exec(success, error, pluginName, 'setPriority', [options]);
+};
+
 VideoEditor.prototype.execFFMPEG = function(success, error, options) {
   var msg = 'execFFMPEG has been removed as of v1.1.0';
   console.log(msg);